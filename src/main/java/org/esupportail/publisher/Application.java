@@ -24,6 +24,7 @@ import java.util.List;
 import javax.annotation.PostConstruct;
 
 import org.esupportail.publisher.config.Constants;
+import org.esupportail.publisher.config.metric.StartupReport;
 
 import com.google.common.base.Joiner;
 import org.slf4j.Logger;
@@ -87,6 +88,7 @@ public class Application {
 	public static void main(String[] args) throws UnknownHostException {
 		SpringApplication app = new SpringApplication(Application.class);
 		app.setBannerMode(Mode.OFF);
+		app.setApplicationStartup(StartupReport.newApplicationStartup());
 
 		SimpleCommandLinePropertySource source = new SimpleCommandLinePropertySource(args);
 		log.info("Properties from command line " + Arrays.toString(args));
@@ -16,6 +16,7 @@
 package org.esupportail.publisher;
 
 import org.esupportail.publisher.config.Constants;
+import org.esupportail.publisher.config.metric.StartupReport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.Banner.Mode;
@@ -33,6 +34,7 @@ public class ApplicationWebXml extends SpringBootServletInitializer {
     protected SpringApplicationBuilder configure(SpringApplicationBuilder application) {
         return application.profiles(addDefaultProfile())
                 .bannerMode(Mode.OFF)
+                .applicationStartup(StartupReport.newApplicationStartup())
 				.sources(Application.class);
 	}
 
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.aop.metrics;
+
+import org.esupportail.publisher.config.metric.PublisherMetrics;
+
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+
+/**
+ * Aspect timing calls done on users and groups directory DAO.
+ */
+@Aspect
+public class DirectoryMetricsAspect {
+
+    private final PublisherMetrics publisherMetrics;
+
+    public DirectoryMetricsAspect(PublisherMetrics publisherMetrics) {
+        this.publisherMetrics = publisherMetrics;
+    }
+
+    @Pointcut("execution(* org.esupportail.publisher.repository.externals.IExternalUserDao.*(..))")
+    public void userDaoPointcut() {}
+
+    @Pointcut("execution(* org.esupportail.publisher.repository.externals.IExternalGroupDao.*(..))")
+    public void groupDaoPointcut() {}
+
+    @Around("userDaoPointcut()")
+    public Object timeUserDao(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "users");
+    }
+
+    @Around("groupDaoPointcut()")
+    public Object timeGroupDao(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "groups");
+    }
+
+    private Object time(final ProceedingJoinPoint joinPoint, final String dao) throws Throwable {
+        final Timer.Sample sample = publisherMetrics.start();
+        String outcome = "error";
+        try {
+            final Object result = joinPoint.proceed();
+            outcome = "success";
+            return result;
+        } finally {
+            publisherMetrics.recordDirectoryCall(sample, dao, joinPoint.getSignature().getName(), outcome);
+        }
+    }
+}
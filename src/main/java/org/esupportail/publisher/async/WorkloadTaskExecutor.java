@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.async;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.esupportail.publisher.config.bean.ExecutorProperties;
+import org.esupportail.publisher.config.metric.PublisherMetrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Bounded executor dedicated to one async workload, with its own rejection policy.
+ * Once bound to a registry, it publishes its active threads, queue size, pool size and rejected tasks,
+ * and times how long tasks wait in the queue and run, all tagged with the workload name.
+ */
+@Slf4j
+public class WorkloadTaskExecutor extends ThreadPoolTaskExecutor implements MeterBinder {
+
+    private static final long serialVersionUID = 1L;
+
+    @Getter
+    private final String workload;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private transient volatile Timer waitTimer;
+
+    private transient volatile Timer successTimer;
+
+    private transient volatile Timer errorTimer;
+
+    public WorkloadTaskExecutor(final String workload, final ExecutorProperties properties) {
+        this.workload = workload;
+        setThreadNamePrefix("esup-publisher-" + workload + "-");
+        setCorePoolSize(properties.getCoreSize());
+        setMaxPoolSize(Math.max(properties.getCoreSize(), properties.getMaxSize()));
+        setQueueCapacity(properties.getQueueCapacity());
+        final RejectedExecutionHandler policy = properties.getRejectionPolicy().newHandler();
+        setRejectedExecutionHandler((task, executor) -> {
+            final long count = rejected.incrementAndGet();
+            if (count == 1 || count % 100 == 0) {
+                log.warn("Executor {} is full, {} tasks rejected since start, applying policy {}", workload, count,
+                    properties.getRejectionPolicy());
+            }
+            policy.rejectedExecution(task, executor);
+        });
+        setTaskDecorator(this::decorate);
+        setWaitForTasksToCompleteOnShutdown(true);
+        setAwaitTerminationSeconds(30);
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public int getQueueSize() {
+        try {
+            return getThreadPoolExecutor().getQueue().size();
+        } catch (IllegalStateException e) {
+            // not initialized
+            return 0;
+        }
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder(PublisherMetrics.EXECUTOR_ACTIVE, this, ThreadPoolTaskExecutor::getActiveCount)
+            .description("Threads running a task").tag("name", workload).register(registry);
+        Gauge.builder(PublisherMetrics.EXECUTOR_QUEUED, this, WorkloadTaskExecutor::getQueueSize)
+            .description("Tasks waiting for a thread").tag("name", workload).register(registry);
+        Gauge.builder(PublisherMetrics.EXECUTOR_POOL_SIZE, this, ThreadPoolTaskExecutor::getPoolSize)
+            .description("Threads of the pool").tag("name", workload).register(registry);
+        FunctionCounter.builder(PublisherMetrics.EXECUTOR_REJECTED, this, WorkloadTaskExecutor::getRejectedCount)
+            .description("Tasks rejected as the queue was full").tag("name", workload).register(registry);
+        waitTimer = Timer.builder(PublisherMetrics.EXECUTOR_WAIT)
+            .description("Time spent by tasks in the queue").tag("name", workload).register(registry);
+        successTimer = executionTimer(registry, "success");
+        errorTimer = executionTimer(registry, "error");
+    }
+
+    private Timer executionTimer(final MeterRegistry registry, final String outcome) {
+        return Timer.builder(PublisherMetrics.EXECUTOR_EXECUTION)
+            .description("Time to run tasks").tags("name", workload, "outcome", outcome).register(registry);
+    }
+
+    private Runnable decorate(final Runnable task) {
+        final long submitted = System.nanoTime();
+        return () -> {
+            final long start = System.nanoTime();
+            if (waitTimer != null) {
+                waitTimer.record(start - submitted, TimeUnit.NANOSECONDS);
+            }
+            boolean success = false;
+            try {
+                task.run();
+                success = true;
+            } catch (RuntimeException | Error e) {
+                log.error("Caught async exception in executor {}", workload, e);
+                throw e;
+            } finally {
+                final Timer timer = success ? successTimer : errorTimer;
+                if (timer != null) {
+                    timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        };
+    }
+}
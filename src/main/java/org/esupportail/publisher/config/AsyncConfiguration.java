@@ -18,8 +18,8 @@ package org.esupportail.publisher.config;
 import java.util.concurrent.Executor;
 
 import org.esupportail.publisher.async.ExceptionHandlingAsyncTaskExecutor;
+import org.esupportail.publisher.async.WorkloadTaskExecutor;
 
-import net.javacrumbs.shedlock.spring.annotation.EnableSchedulerLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
@@ -35,15 +35,23 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 @Configuration
 @EnableAsync
 @EnableScheduling
-@EnableSchedulerLock(defaultLockAtMostFor = "PT5M")
 public class AsyncConfiguration implements AsyncConfigurer {
 
+    /** qualifiers of workload executors, to use as value of @Async or with @Qualifier */
+    public static final String MAIL_EXECUTOR = "mailExecutor";
+    public static final String FILE_CLEANUP_EXECUTOR = "fileCleanupExecutor";
+    public static final String CACHE_WARM_UP_EXECUTOR = "cacheWarmUpExecutor";
+    public static final String DIRECTORY_REFRESH_EXECUTOR = "directoryRefreshExecutor";
+
     private final Logger log = LoggerFactory.getLogger(AsyncConfiguration.class);
 
     private final TaskExecutionProperties taskExecutionProperties;
 
-    public AsyncConfiguration(TaskExecutionProperties taskExecutionProperties) {
+    private final ESUPPublisherProperties esupPublisherProperties;
+
+    public AsyncConfiguration(TaskExecutionProperties taskExecutionProperties, ESUPPublisherProperties esupPublisherProperties) {
         this.taskExecutionProperties = taskExecutionProperties;
+        this.esupPublisherProperties = esupPublisherProperties;
     }
 
     @Override
@@ -58,6 +66,26 @@ public class AsyncConfiguration implements AsyncConfigurer {
         return new ExceptionHandlingAsyncTaskExecutor(executor);
     }
 
+    @Bean(name = MAIL_EXECUTOR)
+    public WorkloadTaskExecutor mailExecutor() {
+        return new WorkloadTaskExecutor("mail", esupPublisherProperties.getAsync().getMail());
+    }
+
+    @Bean(name = FILE_CLEANUP_EXECUTOR)
+    public WorkloadTaskExecutor fileCleanupExecutor() {
+        return new WorkloadTaskExecutor("file-cleanup", esupPublisherProperties.getAsync().getFileCleanup());
+    }
+
+    @Bean(name = CACHE_WARM_UP_EXECUTOR)
+    public WorkloadTaskExecutor cacheWarmUpExecutor() {
+        return new WorkloadTaskExecutor("cache-warm-up", esupPublisherProperties.getAsync().getCacheWarmUp());
+    }
+
+    @Bean(name = DIRECTORY_REFRESH_EXECUTOR)
+    public WorkloadTaskExecutor directoryRefreshExecutor() {
+        return new WorkloadTaskExecutor("directory-refresh", esupPublisherProperties.getAsync().getDirectoryRefresh());
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return new SimpleAsyncUncaughtExceptionHandler();
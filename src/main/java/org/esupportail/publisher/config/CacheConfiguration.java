@@ -27,6 +27,8 @@ import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomi
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
 
 @Configuration
 @EnableCaching
@@ -34,7 +36,10 @@ public class CacheConfiguration {
 
     private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
 
-    public CacheConfiguration(ESUPPublisherProperties esupPublisherProperties) throws IllegalStateException {
+    private final ApplicationStartup applicationStartup;
+
+    public CacheConfiguration(ESUPPublisherProperties esupPublisherProperties, ApplicationStartup applicationStartup) throws IllegalStateException {
+        this.applicationStartup = applicationStartup;
         long defaultNbEntries = esupPublisherProperties.getCache().getMaxEntries();
         long defaultTTL = esupPublisherProperties.getCache().getTimeToLiveSeconds();
         jcacheConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
@@ -52,6 +57,7 @@ public class CacheConfiguration {
     @Bean
     public JCacheManagerCustomizer cacheManagerCustomizer() {
         return cm -> {
+            final StartupStep step = applicationStartup.start("esup.cache.create");
             createCache(cm, org.esupportail.publisher.domain.User.class.getName());
             createCache(cm, org.esupportail.publisher.domain.PersistentAuditEvent.class.getName());
             createCache(cm, org.esupportail.publisher.domain.AbstractClassification.class.getName());
@@ -74,6 +80,7 @@ public class CacheConfiguration {
             createCache(cm, org.esupportail.publisher.domain.Subscriber.class.getName());
             createCache(cm, "feed");
             //createCache(cm, org.esupportail.publisher.domain.AbstractClassification.class.getName() + ".books");
+            step.end();
         };
     }
 
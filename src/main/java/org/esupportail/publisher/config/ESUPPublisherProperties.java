@@ -18,9 +18,12 @@ package org.esupportail.publisher.config;
 import javax.annotation.PostConstruct;
 
 import org.esupportail.publisher.config.bean.ApiDocsProperties;
+import org.esupportail.publisher.config.bean.AsyncProperties;
+import org.esupportail.publisher.config.bean.AuditProperties;
 import org.esupportail.publisher.config.bean.CASProperties;
 import org.esupportail.publisher.config.bean.CacheProperties;
 import org.esupportail.publisher.config.bean.CustomLdapProperties;
+import org.esupportail.publisher.config.bean.CustomLiquibaseProperties;
 import org.esupportail.publisher.config.bean.CustomMailProperties;
 import org.esupportail.publisher.config.bean.CustomMetricsProperties;
 import org.esupportail.publisher.config.bean.IpRangeProperties;
@@ -60,6 +63,9 @@ public class ESUPPublisherProperties {
     private CASProperties cas = new CASProperties();
     private CacheProperties cache = new CacheProperties();
     private CustomLdapProperties ldap = new CustomLdapProperties();
+    private AuditProperties audit = new AuditProperties();
+    private AsyncProperties async = new AsyncProperties();
+    private CustomLiquibaseProperties liquibase = new CustomLiquibaseProperties();
 
     @PostConstruct
     private void init() throws JsonProcessingException {
@@ -82,6 +88,9 @@ public class ESUPPublisherProperties {
                 + ",\n\t \"cas\":" + cas
                 + ",\n\t \"cache\":" + cache
                 + ",\n\t \"ldap\":" + ldap
+                + ",\n\t \"audit\":" + audit
+                + ",\n\t \"async\":" + async
+                + ",\n\t \"liquibase\":" + liquibase
                 + "\n\t}\n}";
     }
 }
\ No newline at end of file
@@ -16,6 +16,7 @@
 package org.esupportail.publisher.config;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.esupportail.publisher.config.bean.CustomLdapProperties;
 import org.esupportail.publisher.config.bean.GroupDesignerProperties;
@@ -37,6 +38,8 @@ import org.esupportail.publisher.security.IPermissionService;
 import org.esupportail.publisher.service.ContextService;
 import org.esupportail.publisher.service.GroupService;
 import org.esupportail.publisher.service.GroupServiceEmpty;
+import org.esupportail.publisher.service.GroupServiceEsco;
+import org.esupportail.publisher.service.GroupTreeIndex;
 import org.esupportail.publisher.service.IGroupService;
 import org.esupportail.publisher.service.SubscriberService;
 import org.esupportail.publisher.service.factories.TreeJSDTOFactory;
@@ -44,6 +47,7 @@ import org.esupportail.publisher.service.factories.UserDTOFactory;
 
 import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -177,10 +181,22 @@ public class LDAPConfiguration {
         return new GroupServiceEmpty();
     }
 
+    @Bean
+    @Profile(Constants.SPRING_PROFILE_LDAP_GROUP)
+    public GroupTreeIndex groupTreeIndex(IExternalGroupDao externalGroupDao, FilterRepository filterRepository,
+                                         @Qualifier(AsyncConfiguration.DIRECTORY_REFRESH_EXECUTOR) Executor directoryRefreshExecutor) {
+        return new GroupTreeIndex(externalGroupDao, filterRepository, directoryRefreshExecutor);
+    }
+
     @Bean
     @Profile(Constants.SPRING_PROFILE_LDAP_GROUP)
     public IGroupService ldapGroupService(IPermissionService permissionService, TreeJSDTOFactory treeJSDTOFactory, UserDTOFactory userDTOFactory,
-                                          SubscriberService subscriberService, FilterRepository filterRepository, ContextService contextService, IExternalGroupDao externalGroupDao) {
+                                          SubscriberService subscriberService, FilterRepository filterRepository, ContextService contextService,
+                                          IExternalGroupDao externalGroupDao, GroupTreeIndex groupTreeIndex) {
+        if (ldapProperties.getGroupTree().isEnabled()) {
+            log.debug("Configuring IGroupService with tree of groups {}", ldapProperties.getGroupTree());
+            return new GroupServiceEsco(permissionService, treeJSDTOFactory, userDTOFactory, externalGroupDao, contextService, groupTreeIndex);
+        }
         return new GroupService(permissionService, treeJSDTOFactory, userDTOFactory, externalGroupDao, subscriberService, filterRepository, contextService);
     }
 }
\ No newline at end of file
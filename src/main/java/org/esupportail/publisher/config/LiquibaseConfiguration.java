@@ -19,6 +19,7 @@ import java.util.concurrent.Executor;
 
 import javax.sql.DataSource;
 
+import org.esupportail.publisher.config.liquibase.ChangelogHashSpringLiquibase;
 import org.esupportail.publisher.config.liquibase.SpringLiquibaseUtil;
 
 import liquibase.integration.spring.SpringLiquibase;
@@ -41,8 +42,11 @@ public class LiquibaseConfiguration {
 
     private final Environment env;
 
-    public LiquibaseConfiguration(Environment env) {
+    private final ESUPPublisherProperties esupPublisherProperties;
+
+    public LiquibaseConfiguration(Environment env, ESUPPublisherProperties esupPublisherProperties) {
         this.env = env;
+        this.esupPublisherProperties = esupPublisherProperties;
     }
 
     @Bean
@@ -54,7 +58,9 @@ public class LiquibaseConfiguration {
         DataSourceProperties dataSourceProperties
     ) {
         // If you don't want Liquibase to start asynchronously, substitute by this:
-        SpringLiquibase liquibase = SpringLiquibaseUtil.createSpringLiquibase(liquibaseDataSource.getIfAvailable(), liquibaseProperties, dataSource.getIfUnique(), dataSourceProperties);
+        ChangelogHashSpringLiquibase liquibase = SpringLiquibaseUtil.createChangelogHashSpringLiquibase(liquibaseDataSource.getIfAvailable(), liquibaseProperties, dataSource.getIfUnique(), dataSourceProperties);
+        liquibase.setChangeLogResources("classpath*:config/liquibase/**/*");
+        liquibase.setSkipWhenUnchanged(esupPublisherProperties.getLiquibase().isSkipWhenUnchanged());
         /*SpringLiquibase liquibase = SpringLiquibaseUtil.createAsyncSpringLiquibase(
             this.env,
             executor,
@@ -15,19 +15,30 @@
  */
 package org.esupportail.publisher.config;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 
 import javax.inject.Inject;
+import javax.sql.DataSource;
 
+import org.esupportail.publisher.config.bean.SessionMappingProperties;
 import org.esupportail.publisher.security.AjaxAuthenticationFailureHandler;
 import org.esupportail.publisher.security.AjaxAuthenticationSuccessHandler;
 import org.esupportail.publisher.security.AjaxLogoutSuccessHandler;
 import org.esupportail.publisher.security.AuthoritiesConstants;
 import org.esupportail.publisher.security.CustomSessionFixationProtectionStrategy;
 import org.esupportail.publisher.security.CustomSingleSignOutFilter;
-import org.esupportail.publisher.security.HasIpRangeExpressionCreator;
+import org.esupportail.publisher.security.CustomSingleSignOutHttpSessionListener;
+import org.esupportail.publisher.security.ExpiringSessionMappingStorage;
+import org.esupportail.publisher.security.IpRangeAuthorizationManager;
+import org.esupportail.publisher.security.JdbcSessionMappingStorage;
 import org.esupportail.publisher.security.RememberCasAuthenticationEntryPoint;
 import org.esupportail.publisher.security.RememberCasAuthenticationProvider;
 import org.esupportail.publisher.security.RememberWebAuthenticationDetailsSource;
@@ -37,11 +48,14 @@ import org.esupportail.publisher.web.filter.CsrfCookieGeneratorFilter;
 
 import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
+import org.jasig.cas.client.session.SessionMappingStorage;
 import org.jasig.cas.client.validation.Cas20ServiceTicketValidator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.env.Environment;
 import org.springframework.http.HttpMethod;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.cas.ServiceProperties;
@@ -70,6 +84,10 @@ public class SecurityConfiguration {
 
     private static final String APP_CONTEXT_PATH = "server.servlet.context-path";
 
+    private static final String APP_SESSION_TIMEOUT = "server.servlet.session.timeout";
+
+    private static final Duration DEFAULT_SESSION_TIMEOUT = Duration.ofMinutes(30);
+
     // preflight cache duration in the browser
     private static final Long maxAge = 600L; // 600 seconds = 10 minutes
     private static final String[] allowedMethods = {"GET","POST","PUT","DELETE","OPTIONS"};
@@ -93,6 +111,10 @@ public class SecurityConfiguration {
     @Inject
     private AuthenticationUserDetailsService<CasAssertionAuthenticationToken> userDetailsService;
 
+    @Inject
+    @Lazy
+    private SessionMappingStorage casSessionMappingStorage;
+
     // @Inject
     // private RememberMeServices rememberMeServices;
 
@@ -207,9 +229,40 @@ public class SecurityConfiguration {
     public CustomSingleSignOutFilter singleSignOutFilter() {
         CustomSingleSignOutFilter singleSignOutFilter = new CustomSingleSignOutFilter();
         singleSignOutFilter.setCasServerUrlPrefix(esupPublisherProperties.getCas().getUrlPrefix());
+        singleSignOutFilter.setSessionMappingStorage(casSessionMappingStorage);
         return singleSignOutFilter;
     }
 
+    @Bean
+    public SessionMappingStorage casSessionMappingStorage(DataSource dataSource) {
+        final SessionMappingProperties props = esupPublisherProperties.getCas().getSessionMapping();
+        Duration ttl = props.getTimeToLive();
+        if (ttl == null) {
+            ttl = env.getProperty(APP_SESSION_TIMEOUT, Duration.class, DEFAULT_SESSION_TIMEOUT);
+        }
+        if (SessionMappingProperties.StorageType.JDBC.equals(props.getStorage())) {
+            final String nodeId = getNodeName() + "-" + UUID.randomUUID();
+            log.info("Configuring CAS session mappings shared in database for node {}, with ttl {} and max entries {}",
+                nodeId, ttl, props.getMaxEntries());
+            return new JdbcSessionMappingStorage(new JdbcTemplate(dataSource), nodeId, ttl, props.getMaxEntries());
+        }
+        log.info("Configuring CAS session mappings in memory with ttl {} and max entries {}", ttl, props.getMaxEntries());
+        return new ExpiringSessionMappingStorage(ttl, props.getMaxEntries());
+    }
+
+    @Bean
+    public CustomSingleSignOutHttpSessionListener singleSignOutHttpSessionListener() {
+        return new CustomSingleSignOutHttpSessionListener();
+    }
+
+    private String getNodeName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+
     @Bean
     protected AuthenticationManager authenticationManager() throws Exception {
         return new ProviderManager(Collections.singletonList(casAuthenticationProvider()));
@@ -233,13 +286,20 @@ public class SecurityConfiguration {
     }
 
     @Bean
-    public HasIpRangeExpressionCreator servicesPublishedIpAdressFilter(ESUPPublisherProperties esupPublisherProperties) {
-        return new HasIpRangeExpressionCreator(esupPublisherProperties.getAuthorizedServices().getIpRanges());
+    public IpRangeAuthorizationManager servicesPublishedIpAdressFilter(ESUPPublisherProperties esupPublisherProperties) {
+        return new IpRangeAuthorizationManager(withLoopbackAddresses(esupPublisherProperties.getAuthorizedServices().getIpRanges()));
     }
 
     @Bean
-    public HasIpRangeExpressionCreator prometeusIpAdressFilter(ESUPPublisherProperties esupPublisherProperties) {
-        return new HasIpRangeExpressionCreator(esupPublisherProperties.getMetrics().getPrometeusAuthorizedAcess().getIpRanges());
+    public IpRangeAuthorizationManager prometeusIpAdressFilter(ESUPPublisherProperties esupPublisherProperties) {
+        return new IpRangeAuthorizationManager(withLoopbackAddresses(esupPublisherProperties.getMetrics().getPrometeusAuthorizedAcess().getIpRanges()));
+    }
+
+    private static Set<String> withLoopbackAddresses(final Set<String> ipRanges) {
+        final Set<String> ranges = new LinkedHashSet<>(ipRanges);
+        ranges.add("127.0.0.1/32");
+        ranges.add("::1");
+        return ranges;
     }
 
     @Bean
@@ -250,6 +310,10 @@ public class SecurityConfiguration {
             .addFilterBefore(singleSignOutFilter(), CasAuthenticationFilter.class);
 
 
+        // ip ranges are checked by precompiled matchers beans, see servicesPublishedIpAdressFilter and prometeusIpAdressFilter
+        final String managementAccess = "hasRole('" + AuthoritiesConstants.ADMIN + "') or @prometeusIpAdressFilter.matches(request)";
+        final String publishedAccess = "hasRole('" + AuthoritiesConstants.ANONYMOUS + "') and @servicesPublishedIpAdressFilter.matches(request)";
+
         // .and()
         // .rememberMe()
         // .rememberMeServices(rememberMeServices)
@@ -285,20 +349,14 @@ public class SecurityConfiguration {
             .antMatchers("/api/conf/**").permitAll()
             .antMatchers("/api/admin/**").hasAuthority(AuthoritiesConstants.ADMIN)
             .antMatchers("/api/**").hasAuthority(AuthoritiesConstants.USER)
-            .antMatchers("/management/health").access("hasRole('" + AuthoritiesConstants.ADMIN + "') or (" + prometeusIpAdressFilter(esupPublisherProperties).getExpression()
-                        + " or hasIpAddress('127.0.0.1/32') or hasIpAddress('::1'))")
-            .antMatchers("/management/health/**").access("hasRole('" + AuthoritiesConstants.ADMIN + "') or (" + prometeusIpAdressFilter(esupPublisherProperties).getExpression()
-                        + " or hasIpAddress('127.0.0.1/32') or hasIpAddress('::1'))")
-            .antMatchers("/management/info").access("hasRole('" + AuthoritiesConstants.ADMIN + "') or (" + prometeusIpAdressFilter(esupPublisherProperties).getExpression()
-                        + " or hasIpAddress('127.0.0.1/32') or hasIpAddress('::1'))")
-            .antMatchers("/management/prometheus").access("hasRole('" + AuthoritiesConstants.ADMIN + "') or (" + prometeusIpAdressFilter(esupPublisherProperties).getExpression()
-                        + " or hasIpAddress('127.0.0.1/32') or hasIpAddress('::1'))")
+            .antMatchers("/management/health").access(managementAccess)
+            .antMatchers("/management/health/**").access(managementAccess)
+            .antMatchers("/management/info").access(managementAccess)
+            .antMatchers("/management/prometheus").access(managementAccess)
             .antMatchers("/management/**").hasAuthority(AuthoritiesConstants.ADMIN)
             .antMatchers("/api-docs/**").hasAuthority(AuthoritiesConstants.ADMIN)
-            .antMatchers("/published/**").access("hasRole('" + AuthoritiesConstants.ANONYMOUS + "') and (" + servicesPublishedIpAdressFilter(esupPublisherProperties).getExpression()
-                        + " or hasIpAddress('127.0.0.1/32') or hasIpAddress('::1'))")
-            .antMatchers(FeedController.PRIVATE_RSS_FEED_URL_PATH + "**").access("hasRole('" + AuthoritiesConstants.ANONYMOUS + "') and (" + servicesPublishedIpAdressFilter(esupPublisherProperties).getExpression()
-                        + " or hasIpAddress('127.0.0.1/32') or hasIpAddress('::1'))")
+            .antMatchers("/published/**").access(publishedAccess)
+            .antMatchers(FeedController.PRIVATE_RSS_FEED_URL_PATH + "**").access(publishedAccess)
             .antMatchers(FeedController.FEED_CONTROLLER_PATH + "/**").permitAll()
             .antMatchers(PROTECTED_PATH + "**").authenticated()
             .antMatchers("/view/**").permitAll()
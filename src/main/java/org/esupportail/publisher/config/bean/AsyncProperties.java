@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.bean;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+import org.esupportail.publisher.config.bean.ExecutorProperties.RejectionPolicy;
+
+import lombok.Data;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Executors of async workloads, each workload has its own pool so a burst of one kind of work doesn't starve the others.
+ */
+@Data
+@Validated
+public class AsyncProperties {
+
+    /** sending of e-mails, callers send the mail themselves when the queue is full */
+    @Valid
+    @NotNull
+    private ExecutorProperties mail = new ExecutorProperties(2, 4, 500, RejectionPolicy.CALLER_RUNS);
+    /** deletion of uploaded files of removed items */
+    @Valid
+    @NotNull
+    private ExecutorProperties fileCleanup = new ExecutorProperties(1, 2, 1000, RejectionPolicy.CALLER_RUNS);
+    /** loading of caches in background, a warm-up can be skipped */
+    @Valid
+    @NotNull
+    private ExecutorProperties cacheWarmUp = new ExecutorProperties(1, 2, 50, RejectionPolicy.DISCARD);
+    /** reloading of data read from the users and groups directory, a refresh can be skipped */
+    @Valid
+    @NotNull
+    private ExecutorProperties directoryRefresh = new ExecutorProperties(1, 2, 20, RejectionPolicy.DISCARD);
+
+    @Override
+    public String toString() {
+        return "{\n\"AsyncProperties\":{"
+                + "\n \"mail\":" + mail
+                + ",\n \"fileCleanup\":" + fileCleanup
+                + ",\n \"cacheWarmUp\":" + cacheWarmUp
+                + ",\n \"directoryRefresh\":" + directoryRefresh
+                + "\n}\n}";
+    }
+}
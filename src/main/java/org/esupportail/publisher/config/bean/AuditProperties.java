@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.bean;
+
+import java.time.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import lombok.Data;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+public class AuditProperties {
+
+    /** audit events waiting to be written, when full callers wait the offer timeout and then the event is dropped */
+    @Min(100)
+    private int queueCapacity = 10000;
+    /** max number of audit events written in one transaction */
+    @Min(1)
+    private int batchSize = 100;
+    /** max time an audit event waits before being written */
+    @NotNull
+    private Duration flushInterval = Duration.ofSeconds(1);
+    @NotNull
+    private Duration offerTimeout = Duration.ofMillis(50);
+
+    @Override
+    public String toString() {
+        return "{\n\"AuditProperties\":{"
+                + "\n \"queueCapacity\":\"" + queueCapacity + "\""
+                + ",\n \"batchSize\":\"" + batchSize + "\""
+                + ",\n \"flushInterval\":\"" + flushInterval + "\""
+                + ",\n \"offerTimeout\":\"" + offerTimeout + "\""
+                + "\n}\n}";
+    }
+}
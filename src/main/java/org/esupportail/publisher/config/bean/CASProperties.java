@@ -30,6 +30,8 @@ public class CASProperties {
     @NotEmpty
     private String urlLogin;
     private String urlLogout;
+    @Valid
+    private SessionMappingProperties sessionMapping = new SessionMappingProperties();
 
     @Override
     public String toString() {
@@ -37,6 +39,7 @@ public class CASProperties {
                 + "\n \"urlPrefix\":\"" + urlPrefix + "\""
                 + ",\n \"urlLogin\":\"" + urlLogin + "\""
                 + ",\n \"urlLogout\":\"" + urlLogout + "\""
+                + ",\n \"sessionMapping\":" + sessionMapping
                 + "\n}\n}";
     }
 }
\ No newline at end of file
@@ -28,12 +28,18 @@ public class CacheProperties {
     private long timeToLiveSeconds = 3600;
     @Min(10)
     private long maxEntries = 1000;
+    @Valid
+    private WarmUpProperties warmUp = new WarmUpProperties();
+    @Valid
+    private ContextHierarchyProperties contextHierarchy = new ContextHierarchyProperties();
 
     @Override
     public String toString() {
         return "{\n\"CacheProperties\":{"
                 + "\n \"timeToLiveSeconds\":\"" + timeToLiveSeconds + "\""
                 + ",\n \"maxEntries\":\"" + maxEntries + "\""
+                + ",\n \"warmUp\":" + warmUp
+                + ",\n \"contextHierarchy\":" + contextHierarchy
                 + "\n}\n}";
     }
 }
\ No newline at end of file
@@ -45,6 +45,8 @@ public class CustomLdapProperties {
     private BranchProperties userBranch = new BranchProperties();
     @Nullable
     private GroupBranchProperties groupBranch = new GroupBranchProperties();
+    @NotNull
+    private GroupTreeProperties groupTree = new GroupTreeProperties();
 
     @Data
     @Validated
@@ -195,6 +197,7 @@ public class CustomLdapProperties {
                 + ",\n \"ldapTemplate\":" + ldapTemplate
                 + ",\n \"userBranch\":" + userBranch
                 + ",\n \"groupBranch\":" + groupBranch
+                + ",\n \"groupTree\":" + groupTree
                 + "\n}\n}";
     }
 }
\ No newline at end of file
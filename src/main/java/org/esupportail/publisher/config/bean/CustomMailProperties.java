@@ -15,6 +15,7 @@
  */
 package org.esupportail.publisher.config.bean;
 
+import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 
 import lombok.Data;
@@ -26,12 +27,15 @@ public class CustomMailProperties {
     private String baseUrl;
     @NotBlank
     private String from;
+    @Valid
+    private NotificationProperties notification = new NotificationProperties();
 
     @Override
     public String toString() {
         return "{\n\"CustomMailProperties\":{"
                 + "\n \"baseUrl\":\"" + baseUrl + "\""
                 + ",\n \"from\":\"" + from + "\""
+                + ",\n \"notification\":" + notification
                 + "\n}\n}";
     }
 }
\ No newline at end of file
@@ -15,6 +15,7 @@
  */
 package org.esupportail.publisher.config.bean;
 
+import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 
 import lombok.Data;
@@ -26,11 +27,14 @@ public class CustomMetricsProperties {
 
     @NotNull
     private final IpRangeProperties prometeusAuthorizedAcess = new IpRangeProperties();
+    @Valid
+    private StartupProperties startup = new StartupProperties();
 
     @Override
     public String toString() {
         return "{\n\"CustomMetricsProperties\":{"
                 + "\n \"prometeusAuthorizedAcess\":" + prometeusAuthorizedAcess
+                + ",\n \"startup\":" + startup
                 + "\n}\n}";
     }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.bean;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Bounded thread pool of one async workload.
+ */
+@Data
+@NoArgsConstructor
+@Validated
+public class ExecutorProperties {
+
+    @Min(1)
+    private int coreSize = 1;
+    @Min(1)
+    private int maxSize = 2;
+    /** tasks waiting for a thread, when full the pool grows up to maxSize, then tasks are rejected */
+    @Min(0)
+    private int queueCapacity = 100;
+    /** what to do with rejected tasks */
+    @NotNull
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.CALLER_RUNS;
+
+    public ExecutorProperties(final int coreSize, final int maxSize, final int queueCapacity, final RejectionPolicy rejectionPolicy) {
+        this.coreSize = coreSize;
+        this.maxSize = maxSize;
+        this.queueCapacity = queueCapacity;
+        this.rejectionPolicy = rejectionPolicy;
+    }
+
+    public enum RejectionPolicy {
+        /** throw a RejectedExecutionException to the caller */
+        ABORT,
+        /** run the task on the caller thread, slowing down the producer */
+        CALLER_RUNS,
+        /** drop the task */
+        DISCARD,
+        /** drop the oldest waiting task and queue the new one */
+        DISCARD_OLDEST;
+
+        public RejectedExecutionHandler newHandler() {
+            switch (this) {
+                case ABORT:
+                    return new ThreadPoolExecutor.AbortPolicy();
+                case DISCARD:
+                    return new ThreadPoolExecutor.DiscardPolicy();
+                case DISCARD_OLDEST:
+                    return new ThreadPoolExecutor.DiscardOldestPolicy();
+                default:
+                    return new ThreadPoolExecutor.CallerRunsPolicy();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{\n\"ExecutorProperties\":{"
+                + "\n \"coreSize\":\"" + coreSize + "\""
+                + ",\n \"maxSize\":\"" + maxSize + "\""
+                + ",\n \"queueCapacity\":\"" + queueCapacity + "\""
+                + ",\n \"rejectionPolicy\":\"" + rejectionPolicy + "\""
+                + "\n}\n}";
+    }
+}
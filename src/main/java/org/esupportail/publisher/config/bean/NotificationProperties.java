@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.bean;
+
+import java.time.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+import lombok.Data;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+public class NotificationProperties {
+
+    /** send digests of pending moderations to moderators and of publications to authors */
+    private boolean enabled = false;
+    /** delay between two sendings of digests, events are aggregated per recipient meanwhile */
+    @NotNull
+    private Duration digestInterval = Duration.ofMinutes(15);
+    /** max number of events read for one sending, the next ones wait the next sending */
+    @Min(1)
+    private int maxEventsPerDigest = 1000;
+    /** max number of mails sent over one smtp connection */
+    @Min(1)
+    private int maxMessagesPerConnection = 50;
+    /** language of digests, as recipients resolved from the directory have no preferred language */
+    @NotBlank
+    private String langKey = "fr";
+
+    @Override
+    public String toString() {
+        return "{\n\"NotificationProperties\":{"
+                + "\n \"enabled\":\"" + enabled + "\""
+                + ",\n \"digestInterval\":\"" + digestInterval + "\""
+                + ",\n \"maxEventsPerDigest\":\"" + maxEventsPerDigest + "\""
+                + ",\n \"maxMessagesPerConnection\":\"" + maxMessagesPerConnection + "\""
+                + ",\n \"langKey\":\"" + langKey + "\""
+                + "\n}\n}";
+    }
+}
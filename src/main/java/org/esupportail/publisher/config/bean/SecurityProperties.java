@@ -15,11 +15,14 @@
  */
 package org.esupportail.publisher.config.bean;
 
+import java.time.Duration;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
 
 import lombok.Data;
 import org.springframework.validation.annotation.Validated;
@@ -37,6 +40,11 @@ public class SecurityProperties {
     private String protocol = "https://";
     @NotBlank
     private String idKeyProvider;
+    /** Time during which computed authorities of a user are reused, zero to disable. */
+    @NotNull
+    private Duration authoritiesTimeToLive = Duration.ofSeconds(60);
+    @Min(10)
+    private long authoritiesMaxEntries = 10000;
 
     @Override
     public String toString() {
@@ -48,6 +56,8 @@ public class SecurityProperties {
                 .collect(Collectors.joining("\",\"", "[\"", "\"]"))
                 + ",\n \"protocol\":\"" + protocol + "\""
                 + ",\n \"idKeyProvider\":\"" + idKeyProvider + "\""
+                + ",\n \"authoritiesTimeToLive\":\"" + authoritiesTimeToLive + "\""
+                + ",\n \"authoritiesMaxEntries\":\"" + authoritiesMaxEntries + "\""
                 + "\n}\n}";
     }
 }
\ No newline at end of file
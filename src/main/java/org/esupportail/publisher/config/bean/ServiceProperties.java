@@ -29,6 +29,12 @@ public class ServiceProperties {
     @NotNull
     private ClassificationParams classificationParams = new ClassificationParams();
 
+    @NotNull
+    private ChangeLogProperties changeLog = new ChangeLogProperties();
+
+    @NotNull
+    private PublicationSchedulerProperties publicationScheduler = new PublicationSchedulerProperties();
+
     @Data
     @Validated
     public static class ClassificationParams{
@@ -74,6 +80,8 @@ public class ServiceProperties {
     public String toString() {
         return "{\n\"ServiceProperties\":{"
                 + "\n \"classificationParams\":" + classificationParams
+                + ",\n \"changeLog\":" + changeLog
+                + ",\n \"publicationScheduler\":" + publicationScheduler
                 + "\n}\n}";
     }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.bean;
+
+import java.time.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import lombok.Data;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+public class SessionMappingProperties {
+
+    public enum StorageType {
+        /** mappings kept on the node, only for single node deployments */
+        MEMORY,
+        /** mappings shared in database, needed behind a load balancer */
+        JDBC
+    }
+
+    @NotNull
+    private StorageType storage = StorageType.MEMORY;
+    /** when not set the http session timeout is used */
+    private Duration timeToLive;
+    @Min(100)
+    private int maxEntries = 50000;
+    @NotNull
+    private Duration pollingDelay = Duration.ofSeconds(30);
+
+    @Override
+    public String toString() {
+        return "{\n\"SessionMappingProperties\":{"
+                + "\n \"storage\":\"" + storage + "\""
+                + ",\n \"timeToLive\":\"" + timeToLive + "\""
+                + ",\n \"maxEntries\":\"" + maxEntries + "\""
+                + ",\n \"pollingDelay\":\"" + pollingDelay + "\""
+                + "\n}\n}";
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.bean;
+
+import java.time.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import lombok.Data;
+import org.springframework.validation.annotation.Validated;
+
+@Data
+@Validated
+public class WarmUpProperties {
+
+    /** warm up caches of the most polled publications once the application is ready */
+    private boolean enabled = true;
+    /** max number of publications, categories and organizations warmed up after startup */
+    @Min(0)
+    private int maxTargets = 50;
+    /** delay between two writes of hits counted in memory */
+    @NotNull
+    private Duration flushDelay = Duration.ofMinutes(5);
+    /** hits older than this retention are forgotten */
+    @NotNull
+    private Duration retention = Duration.ofDays(30);
+
+    @Override
+    public String toString() {
+        return "{\n\"WarmUpProperties\":{"
+                + "\n \"enabled\":\"" + enabled + "\""
+                + ",\n \"maxTargets\":\"" + maxTargets + "\""
+                + ",\n \"flushDelay\":\"" + flushDelay + "\""
+                + ",\n \"retention\":\"" + retention + "\""
+                + "\n}\n}";
+    }
+}
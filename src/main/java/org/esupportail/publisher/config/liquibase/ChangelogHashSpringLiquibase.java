@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.liquibase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import liquibase.Liquibase;
+import liquibase.exception.LiquibaseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.liquibase.DataSourceClosingSpringLiquibase;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StopWatch;
+import org.springframework.util.StringUtils;
+
+/**
+ * SpringLiquibase skipping the update when the database already matches the bundled changelogs.
+ * After each update a hash of the changelog resources, with the contexts and labels, is stored in the
+ * T_CHANGELOG_HASH table with the number of applied changesets. On the next startup, when both are unchanged,
+ * liquibase isn't run at all, so changelogs aren't parsed and checksums aren't compared.
+ * In any other case, as a missing table or a changelog modified in place, the normal update is done.
+ */
+public class ChangelogHashSpringLiquibase extends DataSourceClosingSpringLiquibase {
+
+    public static final String TABLE_NAME = "T_CHANGELOG_HASH";
+
+    /** Constant <code>SKIPPED_MESSAGE="Liquibase update skipped, the database a"{trunked}</code> */
+    public static final String SKIPPED_MESSAGE = "Liquibase update skipped, the database already matches the changelogs (hash {}), checked in {} ms";
+
+    private static final String DEFAULT_CHANGELOG_TABLE = "DATABASECHANGELOG";
+
+    // named "logger" because there is already a field called "log" in "SpringLiquibase"
+    private final Logger logger = LoggerFactory.getLogger(ChangelogHashSpringLiquibase.class);
+
+    private String changeLogResources;
+
+    private boolean skipWhenUnchanged = true;
+
+    private boolean skipped;
+
+    private String hash;
+
+    /**
+     * @param changeLogResources location pattern of all the changelog files, included files and loaded data.
+     */
+    public void setChangeLogResources(String changeLogResources) {
+        this.changeLogResources = changeLogResources;
+    }
+
+    public void setSkipWhenUnchanged(boolean skipWhenUnchanged) {
+        this.skipWhenUnchanged = skipWhenUnchanged;
+    }
+
+    /**
+     * @return true if the last call of afterPropertiesSet skipped the update.
+     */
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterPropertiesSet() throws LiquibaseException {
+        skipped = false;
+        if (shouldRun && skipWhenUnchanged && !dropFirst && changeLogResources != null) {
+            final StopWatch watch = new StopWatch();
+            watch.start();
+            final boolean upToDate = isUpToDate();
+            watch.stop();
+            if (upToDate) {
+                logger.info(SKIPPED_MESSAGE, hash, watch.getTotalTimeMillis());
+                skipped = true;
+                // only let the parent close the datasource
+                shouldRun = false;
+                try {
+                    super.afterPropertiesSet();
+                } finally {
+                    shouldRun = true;
+                }
+                return;
+            }
+        }
+        super.afterPropertiesSet();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void performUpdate(Liquibase liquibase) throws LiquibaseException {
+        super.performUpdate(liquibase);
+        if (changeLogResources != null) {
+            storeHash();
+        }
+    }
+
+    private boolean isUpToDate() {
+        final String currentHash = getHash();
+        if (currentHash == null) {
+            return false;
+        }
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate(getDataSource());
+        try {
+            final List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT hash, changesets FROM " + TABLE_NAME + " WHERE changelog = ?", changeLog);
+            if (rows.isEmpty()) {
+                logger.debug("No hash stored for changelog {}", changeLog);
+                return false;
+            }
+            final String storedHash = (String) rows.get(0).get("hash");
+            final long storedChangeSets = ((Number) rows.get(0).get("changesets")).longValue();
+            if (!currentHash.equals(storedHash)) {
+                logger.info("Changelogs have changed since the last liquibase update, hash {} instead of {}", currentHash, storedHash);
+                return false;
+            }
+            final long changeSets = countChangeSets(jdbcTemplate);
+            if (changeSets != storedChangeSets) {
+                logger.warn("{} changesets applied instead of {} on the last liquibase update", changeSets, storedChangeSets);
+                return false;
+            }
+            return true;
+        } catch (DataAccessException e) {
+            logger.debug("Unable to read the hash of changelogs, liquibase update will be done: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void storeHash() {
+        final String currentHash = getHash();
+        if (currentHash == null) {
+            return;
+        }
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate(getDataSource());
+        try {
+            final long changeSets = countChangeSets(jdbcTemplate);
+            final Timestamp now = new Timestamp(System.currentTimeMillis());
+            if (jdbcTemplate.update("UPDATE " + TABLE_NAME + " SET hash = ?, changesets = ?, updated_at = ? WHERE changelog = ?",
+                currentHash, changeSets, now, changeLog) == 0) {
+                jdbcTemplate.update("INSERT INTO " + TABLE_NAME + " (changelog, hash, changesets, updated_at) VALUES (?, ?, ?, ?)",
+                    changeLog, currentHash, changeSets, now);
+            }
+            logger.debug("Hash {} of changelogs stored with {} changesets", currentHash, changeSets);
+        } catch (DataAccessException e) {
+            logger.warn("Unable to store the hash of changelogs, the next startup will do the liquibase update", e);
+        }
+    }
+
+    private long countChangeSets(final JdbcTemplate jdbcTemplate) {
+        String table = StringUtils.hasText(databaseChangeLogTable) ? databaseChangeLogTable : DEFAULT_CHANGELOG_TABLE;
+        if (StringUtils.hasText(liquibaseSchema)) {
+            table = liquibaseSchema + "." + table;
+        }
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    /**
+     * @return the hash of changelog resources, contexts and labels, null if resources can't be read.
+     */
+    String getHash() {
+        if (hash == null) {
+            hash = computeHash();
+        }
+        return hash;
+    }
+
+    private String computeHash() {
+        try {
+            final Resource[] resources = ResourcePatternUtils.getResourcePatternResolver(getResourceLoader())
+                .getResources(changeLogResources);
+            final String location = changeLogResources.substring(changeLogResources.indexOf(':') + 1);
+            final String root = location.substring(0, location.indexOf('*'));
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            int files = 0;
+            Arrays.sort(resources, Comparator.comparing(resource -> relativePath(resource, root)));
+            for (Resource resource : resources) {
+                if (!resource.isReadable()) {
+                    continue;
+                }
+                digest.update(relativePath(resource, root).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                try (InputStream in = resource.getInputStream()) {
+                    final byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+                digest.update((byte) 0);
+                files++;
+            }
+            if (files == 0) {
+                logger.warn("No changelog found with {}, liquibase update will be done", changeLogResources);
+                return null;
+            }
+            digest.update(("contexts=" + contexts + ";labels=" + labels + ";parameters=" + (parameters != null ? new TreeMap<>(parameters) : null)).getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (IOException | NoSuchAlgorithmException | RuntimeException e) {
+            logger.warn("Unable to compute the hash of changelogs {}, liquibase update will be done", changeLogResources, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the path of the resource from the root of the pattern, the same for a jar, a war or a directory.
+     */
+    private static String relativePath(final Resource resource, final String root) {
+        try {
+            final String url = resource.getURL().toString();
+            final int index = url.lastIndexOf(root);
+            return index >= 0 ? url.substring(index + root.length()) : url;
+        } catch (IOException e) {
+            return String.valueOf(resource.getFilename());
+        }
+    }
+}
@@ -62,6 +62,27 @@ public final class SpringLiquibaseUtil {
         return liquibase;
     }
 
+    /**
+     * <p>createChangelogHashSpringLiquibase.</p>
+     *
+     * @param liquibaseDatasource a {@link javax.sql.DataSource} object.
+     * @param liquibaseProperties a {@link org.springframework.boot.autoconfigure.liquibase.LiquibaseProperties} object.
+     * @param dataSource a {@link javax.sql.DataSource} object.
+     * @param dataSourceProperties a {@link org.springframework.boot.autoconfigure.jdbc.DataSourceProperties} object.
+     * @return a {@link ChangelogHashSpringLiquibase} object.
+     */
+    public static ChangelogHashSpringLiquibase createChangelogHashSpringLiquibase(DataSource liquibaseDatasource, LiquibaseProperties liquibaseProperties, DataSource dataSource, DataSourceProperties dataSourceProperties) {
+        ChangelogHashSpringLiquibase liquibase = new ChangelogHashSpringLiquibase();
+        DataSource liquibaseDataSource = getDataSource(liquibaseDatasource, liquibaseProperties, dataSource);
+        if (liquibaseDataSource != null) {
+            liquibase.setCloseDataSourceOnceMigrated(false);
+            liquibase.setDataSource(liquibaseDataSource);
+        } else {
+            liquibase.setDataSource(createNewDataSource(liquibaseProperties, dataSourceProperties));
+        }
+        return liquibase;
+    }
+
     /**
      * <p>createAsyncSpringLiquibase.</p>
      *
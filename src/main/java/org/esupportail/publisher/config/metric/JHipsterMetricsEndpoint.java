@@ -23,11 +23,15 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.FunctionCounter;
 import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.TimeGauge;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.distribution.ValueAtPercentile;
@@ -87,10 +91,49 @@ public class JHipsterMetricsEndpoint {
         results.put("garbageCollector", this.garbageCollectorMetrics());
         // Process stats
         results.put("processMetrics", this.processMetrics());
+        // Application stats
+        results.put("publisher", this.publisherMetrics());
 
         return results;
     }
 
+    private Map<String, Map<String, Map<String, Number>>> publisherMetrics() {
+        Map<String, Map<String, Map<String, Number>>> resultsPublisher = new HashMap<>();
+
+        Collection<Timer> timers = Search.in(this.meterRegistry).name(s -> s.startsWith(PublisherMetrics.PREFIX)).timers();
+        timers.forEach(timer -> {
+            Map<String, Number> timerResults = new HashMap<>();
+            timerResults.put("count", timer.count());
+            timerResults.put("max", timer.max(TimeUnit.MILLISECONDS));
+            timerResults.put("totalTime", timer.totalTime(TimeUnit.MILLISECONDS));
+            timerResults.put("mean", timer.mean(TimeUnit.MILLISECONDS));
+
+            resultsPublisher.computeIfAbsent(timer.getId().getName(), k -> new HashMap<>())
+                .put(this.tagsKey(timer.getId()), timerResults);
+        });
+
+        Collection<DistributionSummary> summaries = Search.in(this.meterRegistry).name(s -> s.startsWith(PublisherMetrics.PREFIX)).summaries();
+        summaries.forEach(summary -> {
+            Map<String, Number> summaryResults = new HashMap<>();
+            summaryResults.put("count", summary.count());
+            summaryResults.put("max", summary.max());
+            summaryResults.put("total", summary.totalAmount());
+            summaryResults.put("mean", summary.mean());
+
+            resultsPublisher.computeIfAbsent(summary.getId().getName(), k -> new HashMap<>())
+                .put(this.tagsKey(summary.getId()), summaryResults);
+        });
+
+        return resultsPublisher;
+    }
+
+    private String tagsKey(Meter.Id id) {
+        return id.getTags().stream()
+            .filter(tag -> !"application".equals(tag.getKey()))
+            .map(Tag::getValue)
+            .collect(Collectors.joining("."));
+    }
+
     private Map<String, Number> processMetrics() {
         Map<String, Number> resultsProcess = new HashMap<>();
 
@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.metric;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+
+/**
+ * Application meters on the expensive paths of the publisher: user context tree loading, directory calls,
+ * feed rendering, /published payloads, file transfers and async executors.
+ * All meter names start with {@link #PREFIX} so they can be grouped in the jhimetrics endpoint.
+ */
+public class PublisherMetrics {
+
+    public static final String PREFIX = "publisher.";
+
+    public static final String USER_TREE_LOAD = PREFIX + "user.tree.load";
+    public static final String USER_TREE_WAIT = PREFIX + "user.tree.wait";
+    public static final String DIRECTORY_CALLS = PREFIX + "directory.calls";
+    public static final String FEED_RENDER = PREFIX + "feed.render";
+    public static final String FEED_ITEMS = PREFIX + "feed.items";
+    public static final String PUBLISHED_BUILD = PREFIX + "published.build";
+    public static final String PUBLISHED_ITEMS = PREFIX + "published.items";
+    public static final String PUBLISHED_QUERIES = PREFIX + "published.queries";
+    public static final String FILE_TRANSFER = PREFIX + "file.transfer";
+    public static final String FILE_TRANSFER_BYTES = PREFIX + "file.transfer.bytes";
+    public static final String EXECUTOR_ACTIVE = PREFIX + "executor.active";
+    public static final String EXECUTOR_QUEUED = PREFIX + "executor.queued";
+    public static final String EXECUTOR_POOL_SIZE = PREFIX + "executor.pool.size";
+    public static final String EXECUTOR_WAIT = PREFIX + "executor.wait";
+    public static final String EXECUTOR_EXECUTION = PREFIX + "executor.execution";
+    public static final String EXECUTOR_REJECTED = PREFIX + "executor.rejected";
+
+    @Getter
+    private final MeterRegistry meterRegistry;
+
+    public PublisherMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Record the time spent to load the context tree of a user.
+     * @param sample started when entering the loader.
+     * @param outcome one of loaded, waited, skipped or error.
+     */
+    public void recordUserTreeLoad(final Timer.Sample sample, final String outcome) {
+        sample.stop(Timer.builder(USER_TREE_LOAD)
+            .description("Time to load the context tree of a user")
+            .tag("outcome", outcome)
+            .register(meterRegistry));
+    }
+
+    /**
+     * Record the time a thread was sleeping while an other one was loading the same user tree.
+     * @param millis time waited.
+     */
+    public void recordUserTreeWait(final long millis) {
+        Timer.builder(USER_TREE_WAIT)
+            .description("Time spent waiting for a concurrent user tree loading")
+            .register(meterRegistry)
+            .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordDirectoryCall(final Timer.Sample sample, final String dao, final String operation, final String outcome) {
+        sample.stop(Timer.builder(DIRECTORY_CALLS)
+            .description("Calls done on the users and groups directory")
+            .tags("dao", dao, "operation", operation, "outcome", outcome)
+            .register(meterRegistry));
+    }
+
+    /**
+     * Record the rendering of a feed.
+     * @param sample started before building the feed.
+     * @param type rss or atom.
+     * @param nbItems number of items rendered.
+     */
+    public void recordFeedRender(final Timer.Sample sample, final String type, final int nbItems) {
+        sample.stop(Timer.builder(FEED_RENDER)
+            .description("Time to render a feed")
+            .tag("type", type)
+            .register(meterRegistry));
+        DistributionSummary.builder(FEED_ITEMS)
+            .description("Number of items rendered in a feed")
+            .tag("type", type)
+            .register(meterRegistry)
+            .record(nbItems);
+    }
+
+    /**
+     * Build a /published payload while recording its build time, its size and the number of sql statements issued.
+     * @param endpoint the name of the /published endpoint.
+     * @param payload the payload builder.
+     * @param sizeOf how to count elements of the payload.
+     * @param <T> type of the payload.
+     * @return the built payload.
+     */
+    public <T> T recordPublished(final String endpoint, final Supplier<T> payload, final ToIntFunction<T> sizeOf) {
+        final long queriesBefore = HibernateQueryCounter.count();
+        final Timer.Sample sample = start();
+        String outcome = "error";
+        try {
+            final T result = payload.get();
+            outcome = "success";
+            DistributionSummary.builder(PUBLISHED_ITEMS)
+                .description("Number of elements returned by a /published payload")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .record(result != null ? sizeOf.applyAsInt(result) : 0);
+            return result;
+        } finally {
+            sample.stop(Timer.builder(PUBLISHED_BUILD)
+                .description("Time to build a /published payload")
+                .tags("endpoint", endpoint, "outcome", outcome)
+                .register(meterRegistry));
+            DistributionSummary.builder(PUBLISHED_QUERIES)
+                .description("Number of sql statements issued to build a /published payload")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .record(HibernateQueryCounter.count() - queriesBefore);
+        }
+    }
+
+    /**
+     * Record a file transfer.
+     * @param sample started before the transfer.
+     * @param direction upload or download.
+     * @param bytes size of the transferred file.
+     */
+    public void recordFileTransfer(final Timer.Sample sample, final String direction, final long bytes) {
+        sample.stop(Timer.builder(FILE_TRANSFER)
+            .description("Time to transfer a file")
+            .tag("direction", direction)
+            .register(meterRegistry));
+        DistributionSummary.builder(FILE_TRANSFER_BYTES)
+            .description("Size of transferred files")
+            .baseUnit("bytes")
+            .tag("direction", direction)
+            .register(meterRegistry)
+            .record(bytes);
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.metric;
+
+import org.esupportail.publisher.aop.metrics.DirectoryMetricsAspect;
+import org.esupportail.publisher.config.ESUPPublisherProperties;
+
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.core.metrics.ApplicationStartup;
+
+@Configuration
+@EnableAspectJAutoProxy
+@Slf4j
+public class PublisherMetricsConfiguration {
+
+    @Bean
+    public PublisherMetrics publisherMetrics(MeterRegistry meterRegistry) {
+        log.debug("Configuring application meters");
+        return new PublisherMetrics(meterRegistry);
+    }
+
+    @Bean
+    public DirectoryMetricsAspect directoryMetricsAspect(PublisherMetrics publisherMetrics) {
+        return new DirectoryMetricsAspect(publisherMetrics);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer queryCounterHibernateCustomizer() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, new HibernateQueryCounter());
+    }
+
+    @Bean
+    public static StartupStepBeanPostProcessor startupStepBeanPostProcessor() {
+        return new StartupStepBeanPostProcessor(ImmutableMap.of(
+            "liquibase", StartupReport.STEP_PREFIX + "liquibase.update",
+            "entityManagerFactory", StartupReport.STEP_PREFIX + "hibernate.metamodel",
+            "contextSource", StartupReport.STEP_PREFIX + "ldap.context-source"));
+    }
+
+    @Bean
+    public StartupReport startupReport(ApplicationStartup applicationStartup, ESUPPublisherProperties esupPublisherProperties) {
+        return new StartupReport(applicationStartup, esupPublisherProperties.getMetrics().getStartup());
+    }
+
+    @Bean
+    public StartupReportEndpoint startupReportEndpoint(StartupReport startupReport) {
+        return new StartupReportEndpoint(startupReport);
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.metric;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.esupportail.publisher.config.bean.StartupProperties;
+
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+/**
+ * Timeline of the application startup, built from the steps recorded by spring and from the application steps,
+ * named with the {@link #STEP_PREFIX}, once the application is ready.
+ * Steps are only buffered when the application is launched with {@link #newApplicationStartup()},
+ * otherwise no report is produced.
+ */
+@Slf4j
+public class StartupReport {
+
+    public static final String STEP_PREFIX = "esup.";
+
+    /** max number of buffered steps, spring records a step by bean instantiation */
+    public static final int TIMELINE_CAPACITY = 10000;
+
+    private final ApplicationStartup applicationStartup;
+
+    private final StartupProperties properties;
+
+    @Getter
+    private volatile Report report;
+
+    public StartupReport(final ApplicationStartup applicationStartup, final StartupProperties properties) {
+        this.applicationStartup = applicationStartup;
+        this.properties = properties;
+    }
+
+    public static BufferingApplicationStartup newApplicationStartup() {
+        return new BufferingApplicationStartup(TIMELINE_CAPACITY);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        report = buildReport(Instant.now());
+        if (report == null) {
+            log.debug("Startup steps are not buffered, no startup report");
+            return;
+        }
+        final StringBuilder summary = new StringBuilder();
+        for (Step step : report.getSlowestSteps()) {
+            summary.append("\n\t").append(step.getDurationMillis()).append(" ms\t").append(step.getName());
+            if (!step.getTags().isEmpty()) {
+                summary.append(' ').append(step.getTags());
+            }
+        }
+        log.info("Application started in {} ms, slowest steps:{}", report.getDurationMillis(), summary);
+        for (Step step : report.getOverBudgetSteps()) {
+            log.warn("Startup step {} {} took {} ms, over the budget of {}", step.getName(), step.getTags(),
+                step.getDurationMillis(), properties.getBudget());
+        }
+    }
+
+    /**
+     * @return the report of steps ended until now, null if steps are not buffered.
+     */
+    public Report buildReport(final Instant readyTime) {
+        if (!(applicationStartup instanceof BufferingApplicationStartup)) {
+            return null;
+        }
+        final StartupTimeline timeline = ((BufferingApplicationStartup) applicationStartup).getBufferedTimeline();
+        final Instant startTime = timeline.getStartTime();
+        final List<Step> steps = new ArrayList<>(timeline.getEvents().size());
+        for (StartupTimeline.TimelineEvent event : timeline.getEvents()) {
+            final StartupStep startupStep = event.getStartupStep();
+            final Map<String, String> tags = new LinkedHashMap<>();
+            startupStep.getTags().forEach(tag -> tags.put(tag.getKey(), tag.getValue()));
+            steps.add(new Step(startupStep.getName(), tags, Duration.between(startTime, event.getStartTime()).toMillis(),
+                event.getDuration().toMillis()));
+        }
+        final long budget = properties.getBudget().toMillis();
+        return new Report(startTime, Duration.between(startTime, readyTime).toMillis(), budget,
+            steps.stream().filter(step -> step.getName().startsWith(STEP_PREFIX))
+                .sorted(Comparator.comparingLong(Step::getStartMillis)).collect(Collectors.toList()),
+            steps.stream().sorted(Comparator.comparingLong(Step::getDurationMillis).reversed())
+                .limit(properties.getTopSteps()).collect(Collectors.toList()),
+            steps.stream().filter(step -> step.getDurationMillis() > budget).collect(Collectors.toList()));
+    }
+
+    @Value
+    public static class Step {
+        String name;
+        Map<String, String> tags;
+        /** start of the step from the start of the application */
+        long startMillis;
+        long durationMillis;
+    }
+
+    @Value
+    public static class Report {
+        Instant startTime;
+        long durationMillis;
+        long budgetMillis;
+        /** steps recorded by the application, in start order */
+        List<Step> applicationSteps;
+        List<Step> slowestSteps;
+        List<Step> overBudgetSteps;
+    }
+}
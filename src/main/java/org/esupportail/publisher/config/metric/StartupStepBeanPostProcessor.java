@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.metric;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.ApplicationStartupAware;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+/**
+ * Record a startup step around the initialization of some beans, as the liquibase update or the build of the
+ * hibernate metamodel are done in the afterPropertiesSet of their factory beans.
+ * Unlike the spring.beans.instantiate steps, these steps don't include the creation of the bean dependencies.
+ */
+public class StartupStepBeanPostProcessor implements BeanPostProcessor, ApplicationStartupAware {
+
+    private final Map<String, String> stepNamesByBeanName;
+
+    private final Map<String, StartupStep> runningSteps = new ConcurrentHashMap<>();
+
+    private ApplicationStartup applicationStartup = ApplicationStartup.DEFAULT;
+
+    public StartupStepBeanPostProcessor(final Map<String, String> stepNamesByBeanName) {
+        this.stepNamesByBeanName = stepNamesByBeanName;
+    }
+
+    @Override
+    public void setApplicationStartup(final ApplicationStartup applicationStartup) {
+        this.applicationStartup = applicationStartup;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(final Object bean, final String beanName) throws BeansException {
+        final String stepName = stepNamesByBeanName.get(beanName);
+        if (stepName != null) {
+            runningSteps.put(beanName, applicationStartup.start(stepName).tag("beanName", beanName));
+        }
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(final Object bean, final String beanName) throws BeansException {
+        final StartupStep step = runningSteps.remove(beanName);
+        if (step != null) {
+            step.end();
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.metrics;
+
+import org.esupportail.publisher.service.CacheWarmUpService;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.util.Assert;
+
+/**
+ * SpringBoot Actuator HealthIndicator giving the progress of the cache warm up done after startup.
+ * The application can serve requests while caches are warmed up, so the status stays up.
+ */
+public class CacheWarmUpHealthIndicator extends AbstractHealthIndicator {
+
+	private final CacheWarmUpService cacheWarmUpService;
+
+	public CacheWarmUpHealthIndicator(CacheWarmUpService cacheWarmUpService) {
+		Assert.notNull(cacheWarmUpService, "CacheWarmUpService must not be null");
+		this.cacheWarmUpService = cacheWarmUpService;
+	}
+
+	@Override
+	protected void doHealthCheck(Health.Builder builder) throws Exception {
+		builder.up()
+			.withDetail("state", cacheWarmUpService.getState())
+			.withDetail("total", cacheWarmUpService.getTotal())
+			.withDetail("warmed", cacheWarmUpService.getWarmed())
+			.withDetail("failed", cacheWarmUpService.getFailed());
+		if (CacheWarmUpService.State.DONE.equals(cacheWarmUpService.getState())) {
+			builder.withDetail("durationMillis", cacheWarmUpService.getDurationMillis());
+		}
+	}
+}
@@ -20,6 +20,7 @@ import javax.sql.DataSource;
 import org.esupportail.publisher.config.LDAPConfiguration;
 import org.esupportail.publisher.config.LiquibaseConfiguration;
 import org.esupportail.publisher.domain.externals.ExternalUserHelper;
+import org.esupportail.publisher.service.CacheWarmUpService;
 
 import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
@@ -61,4 +62,9 @@ public class JHipsterHealthIndicatorConfiguration {
 	public HealthIndicator ldapHealthIndicator() {
 		return new LdapHealthIndicator(contextSource, externalUserHelper);
 	}
+
+	@Bean
+	public HealthIndicator cacheWarmUpHealthIndicator(CacheWarmUpService cacheWarmUpService) {
+		return new CacheWarmUpHealthIndicator(cacheWarmUpService);
+	}
 }
\ No newline at end of file
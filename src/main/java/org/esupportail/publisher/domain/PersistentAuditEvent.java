@@ -21,6 +21,8 @@ import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.hibernate.annotations.BatchSize;
+
 /**
  * Persist AuditEvent managed by the Spring Boot actuator
  * @see org.springframework.boot.actuate.audit.AuditEvent
@@ -45,7 +47,9 @@ public class PersistentAuditEvent {
 	@Column(name = "event_type")
 	private String auditEventType;
 
+	// data of a page of events is read by one query
 	@ElementCollection
+	@BatchSize(size = 100)
 	@MapKeyColumn(name = "name")
 	@Column(name = "value")
 	@CollectionTable(name = "T_PERSISTENT_AUDIT_EVENT_DATA", joinColumns = @JoinColumn(name = "event_id"))
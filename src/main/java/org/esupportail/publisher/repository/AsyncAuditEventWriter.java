@@ -0,0 +1,267 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.esupportail.publisher.config.bean.AuditProperties;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+
+/**
+ * Write audit events in background, so requests don't wait for their commit.
+ * Events are queued in a bounded buffer and written by one thread, by batches of JDBC inserts in one transaction.
+ * An event waits at most the flush interval before being written. When the buffer is full, callers wait the offer
+ * timeout for a free place, then the event is dropped and counted. Buffered events are written on shutdown.
+ */
+@Slf4j
+public class AsyncAuditEventWriter {
+
+    private static final String INSERT_EVENT = "INSERT INTO T_PERSISTENT_AUDIT_EVENT (principal, event_date, event_type) VALUES (?, ?, ?)";
+
+    private static final String INSERT_DATA = "INSERT INTO T_PERSISTENT_AUDIT_EVENT_DATA (event_id, name, value) VALUES (?, ?, ?)";
+
+    /** time given to the writer to write buffered events on shutdown */
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionOperations transactionOperations;
+
+    private final BlockingQueue<PendingEvent> queue;
+
+    private final int batchSize;
+
+    private final long flushIntervalMillis;
+
+    private final long offerTimeoutMillis;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    public AsyncAuditEventWriter(final JdbcTemplate jdbcTemplate, final TransactionOperations transactionOperations,
+                                 final AuditProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.batchSize = properties.getBatchSize();
+        this.flushIntervalMillis = properties.getFlushInterval().toMillis();
+        this.offerTimeoutMillis = properties.getOfferTimeout().toMillis();
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        writer = new Thread(this::writeLoop, "audit-event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        final Thread current;
+        synchronized (this) {
+            running = false;
+            current = writer;
+            writer = null;
+        }
+        if (current != null) {
+            try {
+                current.join(SHUTDOWN_TIMEOUT.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // events added while stopping
+        flush();
+        log.info("Audit event writer stopped, {} events written, {} dropped", written.get(), dropped.get());
+    }
+
+    /**
+     * Queue the event, waiting for a free place at most the offer timeout.
+     * @return false when the event was dropped.
+     */
+    public boolean add(final String principal, final Instant date, final String type, final Map<String, String> data) {
+        final PendingEvent event = new PendingEvent(principal, date, type, data);
+        boolean queued;
+        try {
+            queued = queue.offer(event, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            final long count = dropped.incrementAndGet();
+            if (count == 1 || count % 1000 == 0) {
+                log.warn("Audit events buffer is full, {} events dropped since start", count);
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Write buffered events on the calling thread.
+     */
+    public void flush() {
+        final List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void writeLoop() {
+        final List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                final PendingEvent first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // wait for a full batch, but not longer than the flush interval
+                final long deadline = System.currentTimeMillis() + flushIntervalMillis;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    final long remaining = deadline - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) break;
+                    final PendingEvent next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        flush();
+    }
+
+    private void write(final List<PendingEvent> batch) {
+        try {
+            transactionOperations.executeWithoutResult(status -> jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+                insert(con, batch);
+                return null;
+            }));
+            written.addAndGet(batch.size());
+        } catch (RuntimeException e) {
+            log.warn("Batch of {} audit events can't be written, events are written one by one", batch.size(), e);
+            for (PendingEvent event : batch) {
+                try {
+                    transactionOperations.executeWithoutResult(status -> jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+                        insert(con, Collections.singletonList(event));
+                        return null;
+                    }));
+                    written.incrementAndGet();
+                } catch (RuntimeException ex) {
+                    dropped.incrementAndGet();
+                    log.error("Audit event {} of {} can't be written", event.type, event.principal, ex);
+                }
+            }
+        }
+    }
+
+    private static void insert(final Connection con, final List<PendingEvent> events) throws SQLException {
+        final List<Long> ids = new ArrayList<>(events.size());
+        try (PreparedStatement ps = con.prepareStatement(INSERT_EVENT, Statement.RETURN_GENERATED_KEYS)) {
+            for (PendingEvent event : events) {
+                ps.setString(1, event.principal);
+                ps.setTimestamp(2, event.date != null ? Timestamp.from(event.date) : null);
+                ps.setString(3, event.type);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                while (keys.next()) {
+                    ids.add(keys.getLong(1));
+                }
+            }
+        }
+        if (ids.size() != events.size()) {
+            throw new SQLException("Expected " + events.size() + " generated ids of audit events but got " + ids.size());
+        }
+        boolean hasData = false;
+        try (PreparedStatement ps = con.prepareStatement(INSERT_DATA)) {
+            for (int i = 0; i < events.size(); i++) {
+                if (events.get(i).data == null) continue;
+                for (Map.Entry<String, String> entry : events.get(i).data.entrySet()) {
+                    ps.setLong(1, ids.get(i));
+                    ps.setString(2, entry.getKey());
+                    ps.setString(3, entry.getValue());
+                    ps.addBatch();
+                    hasData = true;
+                }
+            }
+            if (hasData) {
+                ps.executeBatch();
+            }
+        }
+    }
+
+    private static final class PendingEvent {
+        private final String principal;
+        private final Instant date;
+        private final String type;
+        private final Map<String, String> data;
+
+        private PendingEvent(final String principal, final Instant date, final String type, final Map<String, String> data) {
+            this.principal = principal;
+            this.date = date;
+            this.type = type;
+            this.data = data;
+        }
+    }
+}
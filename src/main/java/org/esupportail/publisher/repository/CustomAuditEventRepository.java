@@ -15,15 +15,20 @@
  */
 package org.esupportail.publisher.repository;
 
+import org.esupportail.publisher.config.ESUPPublisherProperties;
 import org.esupportail.publisher.config.audit.AuditEventConverter;
 import org.esupportail.publisher.domain.PersistentAuditEvent;
+import org.esupportail.publisher.repository.predicates.AuditEventPredicates;
 import java.time.Instant;
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.boot.actuate.audit.AuditEventRepository;
 import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.inject.Inject;
 
@@ -31,6 +36,7 @@ import java.util.List;
 
 /**
  * Wraps an implementation of Spring Boot's AuditEventRepository.
+ * Events are written asynchronously by an {@link AsyncAuditEventWriter}.
  */
 @Repository
 public class CustomAuditEventRepository {
@@ -39,43 +45,47 @@ public class CustomAuditEventRepository {
     private PersistenceAuditEventRepository persistenceAuditEventRepository;
 
     @Bean
-    public AuditEventRepository auditEventRepository() {
+    public AsyncAuditEventWriter asyncAuditEventWriter(final JdbcTemplate jdbcTemplate,
+                                                       final PlatformTransactionManager transactionManager,
+                                                       final ESUPPublisherProperties esupPublisherProperties) {
+        // events flushed by find mustn't join its read-only transaction
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return new AsyncAuditEventWriter(jdbcTemplate, transactionTemplate, esupPublisherProperties.getAudit());
+    }
+
+    @Bean
+    public AuditEventRepository auditEventRepository(final AsyncAuditEventWriter asyncAuditEventWriter) {
         return new AuditEventRepository() {
 
             private static final String AUTHORIZATION_FAILURE = "AUTHORIZATION_FAILURE";
 
             private static final String ANONYMOUS_USER = "anonymousUser";
 
+            /** max number of events returned by find, the most recent ones */
+            private static final int FIND_LIMIT = 1000;
+
             @Inject
             private AuditEventConverter auditEventConverter;
 
 
             @Override
+            @Transactional(readOnly = true)
             public List<AuditEvent> find(String principal, Instant after, String type) {
-                Iterable<PersistentAuditEvent> persistentAuditEvents;
-                if (principal == null && after == null) {
-                    persistentAuditEvents = persistenceAuditEventRepository.findAll();
-                } else if (after == null) {
-                    persistentAuditEvents = persistenceAuditEventRepository.findByPrincipal(principal);
-                } else {
-                    persistentAuditEvents =
-                            persistenceAuditEventRepository.findByPrincipalAndAuditEventDateAfter(principal, after);
-                }
+                // read buffered events too
+                asyncAuditEventWriter.flush();
+                // bounded, the audit screen pages events through AuditEventService
+                final List<PersistentAuditEvent> persistentAuditEvents = persistenceAuditEventRepository.findFirstEvents(
+                    AuditEventPredicates.filter(principal, type, after, null), FIND_LIMIT);
                 return auditEventConverter.convertToAuditEvent(persistentAuditEvents);
             }
 
             @Override
-            @Transactional(propagation = Propagation.REQUIRES_NEW)
             public void add(AuditEvent event) {
                 if(!AUTHORIZATION_FAILURE.equals(event.getType()) &&
                     !ANONYMOUS_USER.equals(event.getPrincipal().toString())) {
-                    PersistentAuditEvent persistentAuditEvent = new PersistentAuditEvent();
-                    persistentAuditEvent.setPrincipal(event.getPrincipal());
-                    persistentAuditEvent.setAuditEventType(event.getType());
-                    persistentAuditEvent.setAuditEventDate(event.getTimestamp());
-                    persistentAuditEvent.setData(auditEventConverter.convertDataToStrings(event.getData()));
-
-                    persistenceAuditEventRepository.save(persistentAuditEvent);
+                    asyncAuditEventWriter.add(event.getPrincipal(), event.getTimestamp(), event.getType(),
+                        auditEventConverter.convertDataToStrings(event.getData()));
                 }
             }
         };
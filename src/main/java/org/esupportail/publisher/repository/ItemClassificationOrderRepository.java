@@ -15,8 +15,12 @@
  */
 package org.esupportail.publisher.repository;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.esupportail.publisher.domain.ItemClassificationKey;
 import org.esupportail.publisher.domain.ItemClassificationOrder;
+import org.esupportail.publisher.domain.enums.ItemStatus;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -31,6 +35,23 @@ public interface ItemClassificationOrderRepository extends
     @Query("SELECT COALESCE(max(e.displayOrder) +1, 0) FROM #{#entityName} e where e.itemClassificationId.abstractClassification.id = :classId")
     int getNextDisplayOrderInClassification(@Param("classId") long classification);
 
+    /**
+     * Next display order of all given classifications, as [classification id, next display order] rows.
+     * Classifications without items are missing and start at 0.
+     */
+    @Query("SELECT e.itemClassificationId.abstractClassification.id, max(e.displayOrder) + 1 FROM #{#entityName} e " +
+        "where e.itemClassificationId.abstractClassification.id in :classIds group by e.itemClassificationId.abstractClassification.id")
+    List<Object[]> getNextDisplayOrdersInClassifications(@Param("classIds") Collection<Long> classifications);
+
+    /**
+     * Given items having the status, in a classification of the publisher.
+     */
+    @Query("SELECT DISTINCT e.itemClassificationId.abstractItem.id FROM #{#entityName} e " +
+        "where e.itemClassificationId.abstractClassification.publisher.id = :publisherId " +
+        "and e.itemClassificationId.abstractItem.status = :status and e.itemClassificationId.abstractItem.id in :itemIds")
+    List<Long> getItemIdsOfPublisherWithStatus(@Param("publisherId") long publisherId, @Param("status") ItemStatus status,
+                                               @Param("itemIds") Collection<Long> itemIds);
+
     @Query("SELECT COALESCE(e.displayOrder, 0) FROM #{#entityName} e where e.itemClassificationId = :id")
     int getDisplayOrderOf(@Param("id") ItemClassificationKey id);
 
@@ -15,16 +15,19 @@
  */
 package org.esupportail.publisher.repository;
 
+import java.time.LocalDate;
+
 import org.esupportail.publisher.domain.AbstractItem;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /**
  *
  * @author GIP RECIA - Julien Gribonvald 4 juil. 2014
  */
 public interface ItemRepository<T extends AbstractItem> extends
-		AbstractRepository<T, Long> {
+		AbstractRepository<T, Long>, ItemRepositoryCustom {
 
     @Modifying(clearAutomatically = true)
     @Query("update #{#entityName} e set e.status = org.esupportail.publisher.domain.enums.ItemStatus.ARCHIVED where e.status = org.esupportail.publisher.domain.enums.ItemStatus.PUBLISHED and e.endDate is not null and e.endDate < CURRENT_DATE")
@@ -33,4 +36,18 @@ public interface ItemRepository<T extends AbstractItem> extends
     @Modifying(clearAutomatically = true)
     @Query("update #{#entityName} e set e.status = org.esupportail.publisher.domain.enums.ItemStatus.PUBLISHED, e.lastModifiedDate = CURRENT_TIMESTAMP where e.status = org.esupportail.publisher.domain.enums.ItemStatus.SCHEDULED and e.startDate is not null and e.startDate <= CURRENT_DATE")
     Integer publishScheduled();
+
+    @Modifying(clearAutomatically = true)
+    @Query("update #{#entityName} e set e.status = org.esupportail.publisher.domain.enums.ItemStatus.ARCHIVED where e.status = org.esupportail.publisher.domain.enums.ItemStatus.PUBLISHED and e.endDate is not null and e.endDate < :today")
+    Integer archiveExpiredPublished(@Param("today") LocalDate today);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update #{#entityName} e set e.status = org.esupportail.publisher.domain.enums.ItemStatus.PUBLISHED, e.lastModifiedDate = CURRENT_TIMESTAMP where e.status = org.esupportail.publisher.domain.enums.ItemStatus.SCHEDULED and e.startDate is not null and e.startDate <= :today")
+    Integer publishScheduled(@Param("today") LocalDate today);
+
+    @Query("select min(e.startDate) from #{#entityName} e where e.status = org.esupportail.publisher.domain.enums.ItemStatus.SCHEDULED")
+    LocalDate findFirstScheduledStartDate();
+
+    @Query("select min(e.endDate) from #{#entityName} e where e.status = org.esupportail.publisher.domain.enums.ItemStatus.PUBLISHED and e.endDate is not null")
+    LocalDate findFirstPublishedEndDate();
 }
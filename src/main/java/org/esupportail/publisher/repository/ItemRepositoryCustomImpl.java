@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.repository;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.Category;
+import org.esupportail.publisher.domain.ContextKey;
+import org.esupportail.publisher.domain.QAbstractClassification;
+import org.esupportail.publisher.domain.QAbstractItem;
+import org.esupportail.publisher.domain.QItemClassificationOrder;
+import org.esupportail.publisher.domain.enums.ContextType;
+import org.esupportail.publisher.repository.predicates.ItemPredicates;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
+
+public class ItemRepositoryCustomImpl implements ItemRepositoryCustom {
+
+    private static final QAbstractItem qItem = QAbstractItem.abstractItem;
+
+    private static final QItemClassificationOrder qItemClass = QItemClassificationOrder.itemClassificationOrder;
+
+    private static final QAbstractClassification qClassif = QAbstractClassification.abstractClassification;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ItemRepositoryCustomImpl() {
+        super();
+    }
+
+    public ItemRepositoryCustomImpl(final EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<AbstractItem> findFirstItems(final Predicate predicate, final int limit, final OrderSpecifier<?>... orders) {
+        return new JPAQuery<AbstractItem>(entityManager).select(qItem).from(qItem)
+            .where(predicate).orderBy(orders).limit(limit).fetch();
+    }
+
+    @Override
+    public Set<ContextKey> findClassificationKeysOfItem(final long itemId) {
+        final List<Tuple> rows = new JPAQuery<Tuple>(entityManager)
+            .select(qClassif.id, JPAExpressions.type(qClassif)).from(qItemClass)
+            .innerJoin(qItemClass.itemClassificationId.abstractClassification, qClassif)
+            .where(ItemPredicates.itemsClassOfItem(itemId)).fetch();
+        final Set<ContextKey> keys = new HashSet<>();
+        for (Tuple row : rows) {
+            final Object type = row.get(1, Object.class);
+            keys.add(new ContextKey(row.get(qClassif.id), Category.class.equals(type) ? ContextType.CATEGORY : ContextType.FEED));
+        }
+        return keys;
+    }
+}
@@ -18,8 +18,6 @@ package org.esupportail.publisher.repository;
 import org.esupportail.publisher.domain.PersistentAuditEvent;
 import java.time.Instant;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.time.Instant;
@@ -28,15 +26,10 @@ import java.util.List;
 /**
  * Spring Data JPA repository for the PersistentAuditEvent entity.
  */
-public interface PersistenceAuditEventRepository extends JpaRepository<PersistentAuditEvent, String> {
+public interface PersistenceAuditEventRepository extends JpaRepository<PersistentAuditEvent, String>,
+    PersistenceAuditEventRepositoryCustom {
 
     List<PersistentAuditEvent> findByPrincipal(String principal);
 
-    List<PersistentAuditEvent> findByPrincipalAndAuditEventDateAfter(String principal, Instant after);
-
-    List<PersistentAuditEvent> findAllByAuditEventDateBetween(Instant fromDate, Instant toDate);
-
-    Page<PersistentAuditEvent> findAllByAuditEventDateBetween(Instant fromDate, Instant toDate, Pageable pageable);
-
     List<PersistentAuditEvent> findByAuditEventDateBefore(Instant before);
 }
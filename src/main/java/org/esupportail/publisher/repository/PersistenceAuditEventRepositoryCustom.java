@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.repository;
+
+import java.util.List;
+
+import org.esupportail.publisher.domain.PersistentAuditEvent;
+
+import com.querydsl.core.types.Predicate;
+
+/**
+ * Queries on audit events not provided by spring data.
+ */
+public interface PersistenceAuditEventRepositoryCustom {
+
+    /**
+     * Return the first audit events matching the predicate, the most recent first, without the count query done
+     * when reading a page, used for keyset pagination.
+     */
+    List<PersistentAuditEvent> findFirstEvents(Predicate predicate, int limit);
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.repository;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.esupportail.publisher.domain.PersistentAuditEvent;
+import org.esupportail.publisher.domain.QPersistentAuditEvent;
+import org.esupportail.publisher.repository.predicates.AuditEventPredicates;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQuery;
+
+public class PersistenceAuditEventRepositoryCustomImpl implements PersistenceAuditEventRepositoryCustom {
+
+    private static final QPersistentAuditEvent qEvent = QPersistentAuditEvent.persistentAuditEvent;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public PersistenceAuditEventRepositoryCustomImpl() {
+        super();
+    }
+
+    public PersistenceAuditEventRepositoryCustomImpl(final EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<PersistentAuditEvent> findFirstEvents(final Predicate predicate, final int limit) {
+        return new JPAQuery<PersistentAuditEvent>(entityManager).select(qEvent).from(qEvent)
+            .where(predicate).orderBy(AuditEventPredicates.keysetOrder()).limit(limit).fetch();
+    }
+}
@@ -17,10 +17,16 @@ package org.esupportail.publisher.repository.externals;
 
 import org.esupportail.publisher.domain.externals.IExternalGroup;
 import org.esupportail.publisher.domain.externals.IExternalUser;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Created by jgribonvald on 11/06/15.
@@ -51,11 +57,21 @@ public class EmptyGroupDaoImpl implements IExternalGroupDao {
         return null;
     }
 
+    @Override
+    public Set<String> getGroupIdsWithFilter(@NotNull String stringFilter) {
+        return new HashSet<>();
+    }
+
     @Override
     public List<IExternalUser> getDirectUserMembers(@NotNull String id) {
         return null;
     }
 
+    @Override
+    public Page<IExternalUser> getDirectUserMembers(@NotNull String id, String search, @NotNull Pageable pageable) {
+        return new PageImpl<>(new ArrayList<>(), pageable, 0);
+    }
+
     @Override
     public boolean isGroupMemberOfGroup(@NotNull String member, @NotNull String parent) {
         return false;
@@ -79,5 +95,18 @@ public class EmptyGroupDaoImpl implements IExternalGroupDao {
         return false;
     }
 
+    @Override
+    public Set<String> getGroupsMemberOfGroupFilter(@NotNull String stringFilter, @NotNull Collection<String> members) {
+        return new HashSet<>();
+    }
+
+    @Override
+    public Set<String> getGroupsMemberOfAtLeastOneGroup(@NotNull Collection<String> members, @NotNull Collection<String> parents) {
+        return new HashSet<>();
+    }
 
+    @Override
+    public Set<String> getUsersMemberOfAtLeastOneGroup(@NotNull Collection<String> uids, @NotNull Collection<String> groups) {
+        return new HashSet<>();
+    }
 }
@@ -17,10 +17,13 @@ package org.esupportail.publisher.repository.externals;
 
 import org.esupportail.publisher.domain.externals.IExternalGroup;
 import org.esupportail.publisher.domain.externals.IExternalUser;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
 import javax.validation.constraints.NotNull;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author GIP RECIA - Julien Gribonvald
@@ -38,8 +41,21 @@ public interface IExternalGroupDao {
 
     List<IExternalGroup> getGroupsWithFilter(@NotNull final String stringFilter, final String token, final boolean withMembers);
 
+    /**
+     * Light version of getGroupsWithFilter returning only the ids of groups.
+     */
+    Set<String> getGroupIdsWithFilter(@NotNull final String stringFilter);
+
     List<IExternalUser> getDirectUserMembers(@NotNull final String id);
 
+    /**
+     * Paged version of getDirectUserMembers, only display names of all members are loaded to filter and sort them,
+     * all attributes are loaded only for users of the page.
+     * @param search optional part of the display name or of the uid of users, case insensitive.
+     * @param pageable the page, sortable on "login" or "displayName" (default).
+     */
+    Page<IExternalUser> getDirectUserMembers(@NotNull final String id, final String search, @NotNull final Pageable pageable);
+
     boolean isGroupMemberOfGroup(@NotNull final String member, @NotNull final String parent);
 
     boolean isGroupMemberOfGroupFilter(@NotNull String stringFilter, @NotNull final String member);
@@ -50,4 +66,22 @@ public interface IExternalGroupDao {
 
     boolean isUserMemberOfAtLeastOneGroup(@NotNull final String uid, @NotNull final Iterable<String> groups);
 
+    /**
+     * Batched version of isGroupMemberOfGroupFilter.
+     * @return the members found in groups matching the filter, or matching themselves the filter.
+     */
+    Set<String> getGroupsMemberOfGroupFilter(@NotNull String stringFilter, @NotNull final Collection<String> members);
+
+    /**
+     * Batched version of isGroupMemberOfAtLeastOneGroup.
+     * @return the members being member of at least one of the parents.
+     */
+    Set<String> getGroupsMemberOfAtLeastOneGroup(@NotNull final Collection<String> members, @NotNull final Collection<String> parents);
+
+    /**
+     * Batched version of isUserMemberOfAtLeastOneGroup.
+     * @return the uids being member of at least one of the groups.
+     */
+    Set<String> getUsersMemberOfAtLeastOneGroup(@NotNull final Collection<String> uids, @NotNull final Collection<String> groups);
+
 }
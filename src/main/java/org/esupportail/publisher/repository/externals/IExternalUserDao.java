@@ -17,7 +17,10 @@ package org.esupportail.publisher.repository.externals;
 
 import org.esupportail.publisher.domain.externals.IExternalUser;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author GIP RECIA - Julien Gribonvald
@@ -35,10 +38,28 @@ public interface IExternalUserDao {
 
     List<IExternalUser> getUsersByGroupId(final String groupId);
 
+    /**
+     * Light version of getUsersByUids loading only the display name of users.
+     * @return map of uids to display names.
+     */
+    Map<String, String> getUserDisplayNamesByUids(final Collection<String> uids);
+
+    /**
+     * Light version of getUsersByGroupId loading only the display name of users.
+     * @return map of uids to display names.
+     */
+    Map<String, String> getUserDisplayNamesByGroupId(final String groupId);
+
     List<IExternalUser> getUsersFromParentGroups(final Iterable<String> groupIds, final String token);
 
     List<IExternalUser> getUsersWithFilter(final String stringFilter, final String token);
 
     boolean isUserFoundWithFilter(final String stringFilter, final String uid);
 
+    /**
+     * Batched version of isUserFoundWithFilter.
+     * @return the uids found with the filter.
+     */
+    Set<String> getUidsFoundWithFilter(final String stringFilter, final Collection<String> uids);
+
 }
@@ -15,12 +15,19 @@
  */
 package org.esupportail.publisher.repository.externals.ldap;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import javax.validation.constraints.NotNull;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -32,7 +39,12 @@ import org.esupportail.publisher.domain.externals.IExternalUser;
 import org.esupportail.publisher.repository.externals.IExternalGroupDao;
 import org.esupportail.publisher.repository.externals.IExternalUserDao;
 import org.esupportail.publisher.repository.externals.IGroupMemberDesigner;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.ldap.core.ContextMapper;
+import org.springframework.ldap.core.DirContextAdapter;
 import org.springframework.ldap.core.LdapTemplate;
 import org.springframework.ldap.filter.AndFilter;
 import org.springframework.ldap.filter.EqualsFilter;
@@ -53,6 +65,11 @@ import org.springframework.ldap.query.LdapQueryBuilder;
 @Slf4j
 public class LdapGroupDaoImpl implements IExternalGroupDao {
 
+    /**
+     * Max number of members tested in one LDAP filter.
+     */
+    private static final int MAX_MEMBERS_BY_FILTER = 50;
+
     /**
      * Spring template used to perform search in the ldap.
      */
@@ -152,6 +169,20 @@ public class LdapGroupDaoImpl implements IExternalGroupDao {
         return searchWithFilter(filter, withMembers);
     }
 
+    @Override
+    public Set<String> getGroupIdsWithFilter(@NotNull String stringFilter) {
+        log.debug("getGroupIdsWithFilter LDAP filter {}", stringFilter);
+        final Set<String> ids = new HashSet<>();
+        LdapQuery query = LdapQueryBuilder.query().attributes(externalGroupHelper.getGroupIdAttribute())
+            .base(externalGroupHelper.getGroupDNSubPath()).filter(new HardcodedFilter(stringFilter));
+        ldapTemplate.search(query, (ContextMapper<Void>) ctx -> {
+            final String id = ((DirContextAdapter) ctx).getStringAttribute(externalGroupHelper.getGroupIdAttribute());
+            if (id != null) ids.add(id);
+            return null;
+        });
+        return ids;
+    }
+
     @Override
     public List<IExternalUser> getDirectUserMembers(@NotNull final String id) {
         if (!externalGroupHelper.isGroupResolveUserMember()) return Lists.newArrayList();
@@ -165,6 +196,57 @@ public class LdapGroupDaoImpl implements IExternalGroupDao {
         return Lists.newArrayList();
     }
 
+    @Override
+    public Page<IExternalUser> getDirectUserMembers(@NotNull final String id, final String search, @NotNull final Pageable pageable) {
+        if (!externalGroupHelper.isGroupResolveUserMember()) return new PageImpl<>(new ArrayList<>(), pageable, 0);
+        Map<String, String> names;
+        if (externalGroupHelper.isGroupResolveUserMemberByUserAttributes()) {
+            names = externalUserDao.getUserDisplayNamesByGroupId(id);
+        } else {
+            IExternalGroup group = getGroupById(id, true);
+            names = group != null && group.hasMembers() && !group.getUserMembers().isEmpty()
+                ? externalUserDao.getUserDisplayNamesByUids(group.getUserMembers()) : new HashMap<>();
+        }
+        final String token = search != null ? search.trim().toLowerCase() : "";
+        final List<Map.Entry<String, String>> members = new ArrayList<>();
+        for (Map.Entry<String, String> member : names.entrySet()) {
+            if (token.isEmpty() || member.getKey().toLowerCase().contains(token)
+                || member.getValue() != null && member.getValue().toLowerCase().contains(token)) {
+                members.add(member);
+            }
+        }
+        members.sort(membersComparator(pageable.getSort()));
+        if (pageable.getOffset() >= members.size()) return new PageImpl<>(new ArrayList<>(), pageable, members.size());
+
+        final List<String> uids = new ArrayList<>();
+        for (Map.Entry<String, String> member : members.subList((int) pageable.getOffset(),
+            (int) Math.min(pageable.getOffset() + pageable.getPageSize(), members.size()))) {
+            uids.add(member.getKey());
+        }
+        final Map<String, IExternalUser> users = new HashMap<>();
+        for (IExternalUser user : externalUserDao.getUsersByUids(uids)) {
+            users.put(user.getId(), user);
+        }
+        final List<IExternalUser> content = new ArrayList<>(uids.size());
+        for (String uid : uids) {
+            if (users.containsKey(uid)) content.add(users.get(uid));
+        }
+        return new PageImpl<>(content, pageable, members.size());
+    }
+
+    private Comparator<Map.Entry<String, String>> membersComparator(final Sort sort) {
+        final Sort.Order byLogin = sort.getOrderFor("login");
+        final Sort.Order order = byLogin != null ? byLogin : sort.getOrderFor("displayName");
+        Comparator<Map.Entry<String, String>> comparator;
+        if (byLogin != null) {
+            comparator = Comparator.comparing(Map.Entry::getKey, String.CASE_INSENSITIVE_ORDER);
+        } else {
+            comparator = Comparator.comparing((Map.Entry<String, String> e) -> e.getValue() != null ? e.getValue() : e.getKey(),
+                String.CASE_INSENSITIVE_ORDER).thenComparing(Map.Entry::getKey);
+        }
+        return order != null && order.isDescending() ? comparator.reversed() : comparator;
+    }
+
     @Override
     public boolean isGroupMemberOfGroup(@NotNull final String member, @NotNull final String parent) {
         if (externalGroupHelper.getGroupKeyMemberRegex() == null) return false;
@@ -269,6 +351,132 @@ public class LdapGroupDaoImpl implements IExternalGroupDao {
         return filter;
     }
 
+    @Override
+    public Set<String> getGroupsMemberOfGroupFilter(@NotNull String stringFilter, @NotNull final Collection<String> members) {
+        log.debug("getGroupsMemberOfGroupFilter LDAP filter {} and groups {}", stringFilter, members);
+        final Set<String> found = new HashSet<>();
+        if (members.isEmpty()) return found;
+        for (List<String> chunk : Iterables.partition(members, MAX_MEMBERS_BY_FILTER)) {
+            final Map<String, String> expectedValues = new HashMap<>();
+            OrFilter or = new OrFilter();
+            for (String member : chunk) {
+                final String memberValue = externalGroupHelper.getGroupKeyMemberRegex().toString().replace("(.*)", member);
+                expectedValues.put(memberValue.toLowerCase(), member);
+                expectedValues.put(member.toLowerCase(), member);
+                or.append(new EqualsFilter(externalGroupHelper.getGroupMembersAttribute(), memberValue));
+                or.append(new EqualsFilter(externalGroupHelper.getGroupSearchAttribute(), member));
+            }
+            AndFilter filter = new AndFilter().and(new HardcodedFilter(stringFilter)).and(or);
+            found.addAll(searchExpectedValues(filter, expectedValues, externalGroupHelper.getGroupMembersAttribute(),
+                externalGroupHelper.getGroupSearchAttribute()));
+        }
+        if (found.size() == members.size()) return found;
+
+        // FIX : to watch on applied designers
+        final Set<String> remaining = new HashSet<>(members);
+        remaining.removeAll(found);
+        final List<IExternalGroup> groups = searchWithFilter(new HardcodedFilter(stringFilter), true);
+        final Set<String> designedChilds = new HashSet<>();
+        for (IExternalGroup gp: groups) {
+            for (String child: gp.getGroupMembers()) {
+                if (remaining.contains(child)) {
+                    found.add(child);
+                }
+                // looking for childs of root
+                for (IGroupMemberDesigner gpDesigner: groupMemberDesigners) {
+                    if (gpDesigner.isDesignerMatchGroup(child)) {
+                        designedChilds.add(child);
+                    }
+                }
+            }
+        }
+        remaining.removeAll(found);
+        if (!remaining.isEmpty() && !designedChilds.isEmpty()) {
+            for (IExternalGroup designedGroup : getGroupsById(designedChilds, true)) {
+                for (String member : remaining) {
+                    if (designedGroup.getGroupMembers().contains(member)) found.add(member);
+                }
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Set<String> getGroupsMemberOfAtLeastOneGroup(@NotNull final Collection<String> members, @NotNull final Collection<String> parents) {
+        final Set<String> found = new HashSet<>();
+        if (externalGroupHelper.getGroupKeyMemberRegex() == null || parents.isEmpty()) return found;
+        final List<String> toSearch = Lists.newArrayList();
+        for (String member : members) {
+            // direct resolution when using grouper subpath is in parent path, so do only char comparison.
+            if (OptimContainsGroup(member, parents)) {
+                found.add(member);
+            } else {
+                toSearch.add(member);
+            }
+        }
+        found.addAll(searchMembersOfAtLeastOneGroup(toSearch, parents, externalGroupHelper.getGroupKeyMemberRegex()));
+        return found;
+    }
+
+    @Override
+    public Set<String> getUsersMemberOfAtLeastOneGroup(@NotNull final Collection<String> uids, @NotNull final Collection<String> groups) {
+        if (externalGroupHelper.getUserKeyMemberRegex() == null || groups.isEmpty()) return new HashSet<>();
+        return searchMembersOfAtLeastOneGroup(uids, groups, externalGroupHelper.getUserKeyMemberRegex());
+    }
+
+    /**
+     * Search in one query by chunk of members the groups, or sub groups, containing at least one of the members,
+     * and return the members found in the member attribute of these groups.
+     */
+    private Set<String> searchMembersOfAtLeastOneGroup(@NotNull final Collection<String> members, @NotNull final Collection<String> groups,
+                                                       @NotNull final Pattern pattern) {
+        final Set<String> found = new HashSet<>();
+        if (members.isEmpty()) return found;
+        OrFilter groupsFilter = new OrFilter();
+        for (final String group : groups) {
+            groupsFilter.append(new LikeFilter(externalGroupHelper.getGroupSearchAttribute(), group + "*"));
+        }
+        for (List<String> chunk : Iterables.partition(members, MAX_MEMBERS_BY_FILTER)) {
+            final Map<String, String> expectedValues = new HashMap<>();
+            OrFilter membersFilter = new OrFilter();
+            for (String member : chunk) {
+                final String memberValue = pattern.toString().replace("(.*)", member);
+                expectedValues.put(memberValue.toLowerCase(), member);
+                membersFilter.append(new EqualsFilter(externalGroupHelper.getGroupMembersAttribute(), memberValue));
+            }
+            AndFilter filter = new AndFilter().and(groupsFilter).and(membersFilter);
+            found.addAll(searchExpectedValues(filter, expectedValues, externalGroupHelper.getGroupMembersAttribute()));
+        }
+        return found;
+    }
+
+    /**
+     * Return the expected values found in the attributes of groups matching the filter.
+     * @param expectedValues map of lower cased attribute values to the value to return.
+     */
+    private Set<String> searchExpectedValues(@NotNull final Filter filter, @NotNull final Map<String, String> expectedValues,
+                                             final String... attributes) {
+        if (log.isDebugEnabled()) {
+            log.debug("LDAP filter applied {} on attributes {}", filter.encode(), attributes);
+        }
+        final Set<String> found = new HashSet<>();
+        LdapQuery query = LdapQueryBuilder.query().attributes(attributes)
+            .base(externalGroupHelper.getGroupDNSubPath()).filter(filter);
+        ldapTemplate.search(query, (ContextMapper<Void>) ctx -> {
+            DirContextAdapter context = (DirContextAdapter) ctx;
+            for (String attribute : attributes) {
+                String[] values = context.getStringAttributes(attribute);
+                if (values == null) continue;
+                for (String value : values) {
+                    String expected = expectedValues.get(value.toLowerCase());
+                    if (expected != null) found.add(expected);
+                }
+            }
+            return null;
+        });
+        return found;
+    }
+
     // @Cacheable(value = "ExternalGroups", key = "#filter")
     private List<IExternalGroup> searchWithFilter(@NotNull final Filter filter, final boolean withMembers) {
         if (log.isDebugEnabled()) {
@@ -16,8 +16,13 @@
 package org.esupportail.publisher.repository.externals.ldap;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.validation.constraints.NotNull;
 
@@ -33,6 +38,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.ldap.core.ContextMapper;
+import org.springframework.ldap.core.DirContextAdapter;
 import org.springframework.ldap.core.LdapTemplate;
 import org.springframework.ldap.filter.AndFilter;
 import org.springframework.ldap.filter.EqualsFilter;
@@ -54,6 +60,11 @@ import org.springframework.stereotype.Service;
 @AllArgsConstructor
 public class LdapUserDaoImpl implements IExternalUserDao {
 
+	/**
+	 * Max number of uids tested in one LDAP filter.
+	 */
+	private static final int MAX_UIDS_BY_FILTER = 50;
+
 	/**
 	 * Logger.
 	 */
@@ -187,6 +198,25 @@ public class LdapUserDaoImpl implements IExternalUserDao {
         return new LinkedList<IExternalUser>();
     }
 
+    @Override
+    public Map<String, String> getUserDisplayNamesByUids(final Collection<String> uids) {
+        final Map<String, String> names = new HashMap<>();
+        for (List<String> chunk : Iterables.partition(uids, MAX_UIDS_BY_FILTER)) {
+            final OrFilter filter = orFilterOnUids(chunk);
+            if (filter != null) names.putAll(searchDisplayNames(filter));
+        }
+        return names;
+    }
+
+    @Override
+    public Map<String, String> getUserDisplayNamesByGroupId(final String groupId) {
+        final String userAttrGroup = this.externalUserHelper.getUserGroupAttribute();
+        if (userAttrGroup != null && !userAttrGroup.isEmpty() && groupId != null && !groupId.trim().isEmpty()) {
+            return searchDisplayNames(new EqualsFilter(userAttrGroup, groupId.trim()));
+        }
+        return new HashMap<>();
+    }
+
     @Override
     public List<IExternalUser> getUsersFromParentGroups(final Iterable<String> groupIds, final String search) {
         final String userAttrGroup = this.externalUserHelper.getUserGroupAttribute();
@@ -219,6 +249,26 @@ public class LdapUserDaoImpl implements IExternalUserDao {
         return !searchWithFilter(filter).isEmpty();
     }
 
+    @Override
+    public Set<String> getUidsFoundWithFilter(@NotNull final String stringFilter, @NotNull final Collection<String> uids) {
+        final Map<String, String> expectedUids = new HashMap<>();
+        for (String uid : uids) {
+            expectedUids.put(uid.toLowerCase(), uid);
+        }
+        final Set<String> found = new HashSet<>();
+        for (List<String> chunk : Iterables.partition(uids, MAX_UIDS_BY_FILTER)) {
+            OrFilter uidsFilter = orFilterOnUids(chunk);
+            if (uidsFilter == null) continue;
+            AndFilter filter = new AndFilter()
+                .and(new HardcodedFilter(stringFilter)).and(uidsFilter);
+            for (IExternalUser user : searchWithFilter(filter)) {
+                String uid = user.getId() == null ? null : expectedUids.get(user.getId().toLowerCase());
+                if (uid != null) found.add(uid);
+            }
+        }
+        return found;
+    }
+
     // @Cacheable(value = "ExternalUsers", key = "#filter")
 	private List<IExternalUser> searchWithFilter(final Filter filter) {
 		final String filterAsStr = filter.encode();
@@ -235,6 +285,24 @@ public class LdapUserDaoImpl implements IExternalUserDao {
 		return ldapTemplate.search(query, mapper);
 	}
 
+	private Map<String, String> searchDisplayNames(final Filter filter) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("LDAP filter applied for display names : " + filter.encode());
+		}
+		final String idAttribute = externalUserHelper.getUserIdAttribute();
+		final String displayNameAttribute = externalUserHelper.getUserDisplayNameAttribute();
+		final Map<String, String> names = new HashMap<>();
+		LdapQuery query = LdapQueryBuilder.query().attributes(idAttribute, displayNameAttribute)
+				.base(externalUserHelper.getUserDNSubPath()).filter(filter);
+		ldapTemplate.search(query, (ContextMapper<Void>) ctx -> {
+			final DirContextAdapter context = (DirContextAdapter) ctx;
+			final String uid = context.getStringAttribute(idAttribute);
+			if (uid != null) names.put(uid, context.getStringAttribute(displayNameAttribute));
+			return null;
+		});
+		return names;
+	}
+
 	private OrFilter orFilterOnUids(final Iterable<String> uids) {
 		// needed since empty OrFilter() is true instead of false
         // we must not have an empty filter !
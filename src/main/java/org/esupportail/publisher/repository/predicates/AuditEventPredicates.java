@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.repository.predicates;
+
+import java.time.Instant;
+
+import org.esupportail.publisher.domain.QPersistentAuditEvent;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+
+/**
+ * Predicates on audit events, the most recent first, matching indexes on (event_date, event_id),
+ * (principal, event_date, event_id) and (event_type, event_date, event_id).
+ */
+public final class AuditEventPredicates {
+
+    private final static QPersistentAuditEvent qEvent = QPersistentAuditEvent.persistentAuditEvent;
+
+    private AuditEventPredicates() {
+    }
+
+    /**
+     * All parameters are optional.
+     * @param fromDate included.
+     * @param toDate excluded.
+     */
+    public static Predicate filter(final String principal, final String type, final Instant fromDate, final Instant toDate) {
+        final BooleanBuilder builder = new BooleanBuilder();
+        if (principal != null && !principal.isEmpty()) {
+            builder.and(qEvent.principal.eq(principal));
+        }
+        if (type != null && !type.isEmpty()) {
+            builder.and(qEvent.auditEventType.eq(type));
+        }
+        if (fromDate != null) {
+            builder.and(qEvent.auditEventDate.goe(fromDate));
+        }
+        if (toDate != null) {
+            builder.and(qEvent.auditEventDate.lt(toDate));
+        }
+        return builder;
+    }
+
+    /**
+     * Order of audit events for keyset pagination, the id breaking ties.
+     */
+    public static OrderSpecifier<?>[] keysetOrder() {
+        return new OrderSpecifier<?>[] {qEvent.auditEventDate.desc(), qEvent.id.desc()};
+    }
+
+    /**
+     * @return audit events after the date and the id of an event in the keysetOrder.
+     */
+    public static Predicate keysetAfter(final Instant date, final long id) {
+        return qEvent.auditEventDate.lt(date).or(qEvent.auditEventDate.eq(date).and(qEvent.id.lt(id)));
+    }
+}
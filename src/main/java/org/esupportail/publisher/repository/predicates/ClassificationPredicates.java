@@ -45,6 +45,10 @@ public final class ClassificationPredicates {
         return QAbstractClassification.abstractClassification.isNotNull();
     }
 
+    public static Predicate nameContains(final String search) {
+        return QAbstractClassification.abstractClassification.name.containsIgnoreCase(search);
+    }
+
     public static OrderSpecifier<?> classifOrderByDisplayOrderType(DisplayOrderType displayOrder) {
         final QAbstractClassification classif = QAbstractClassification.abstractClassification;
         switch (displayOrder) {
@@ -18,10 +18,12 @@
  */
 package org.esupportail.publisher.repository.predicates;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.EnumSet;
 
 import org.esupportail.publisher.domain.AbstractClassification;
+import org.esupportail.publisher.domain.AbstractItem;
 import org.esupportail.publisher.domain.Flash;
 import org.esupportail.publisher.domain.Media;
 import org.esupportail.publisher.domain.News;
@@ -136,6 +138,67 @@ public final class ItemPredicates {
         }
     }
 
+    /**
+     * Order of items for keyset pagination: same as orderByItemDefinition but on persisted and indexed columns,
+     * and with the id to break ties, as each page starts after the sort key and the id of the last item of the previous page.
+     * lastModifiedDate is always set, so it replaces the coalesce with createdDate.
+     */
+    public static OrderSpecifier<?>[] keysetOrderByItemDefinition(
+        final DisplayOrderType displayOrder) {
+        switch (displayOrder) {
+            case LAST_CREATED_MODIFIED_FIRST:
+                return new OrderSpecifier<?>[] {qItem.lastModifiedDate.desc(), qItem.id.desc()};
+            case ONLY_LAST_CREATED_FIRST:
+                return new OrderSpecifier<?>[] {qItem.createdDate.desc(), qItem.id.desc()};
+            case NAME:
+                return new OrderSpecifier<?>[] {qItem.title.asc(), qItem.id.asc()};
+            case CUSTOM:
+                return new OrderSpecifier<?>[] {qItem.id.desc()};
+            default:
+                return new OrderSpecifier<?>[] {qItem.startDate.desc(), qItem.id.desc()};
+        }
+    }
+
+    /**
+     * @return the sort key of the item for keyset pagination, as string.
+     */
+    public static String keysetValueOf(final DisplayOrderType displayOrder, final AbstractItem item) {
+        switch (displayOrder) {
+            case LAST_CREATED_MODIFIED_FIRST:
+                return item.getLastModifiedDate().toString();
+            case ONLY_LAST_CREATED_FIRST:
+                return item.getCreatedDate().toString();
+            case NAME:
+                return item.getTitle();
+            case CUSTOM:
+                return "";
+            default:
+                return item.getStartDate().toString();
+        }
+    }
+
+    /**
+     * @return items after the sort key and the id of an item in the keysetOrderByItemDefinition order.
+     * @throws java.time.format.DateTimeParseException when the sort key doesn't match the display order.
+     */
+    public static Predicate keysetAfter(final DisplayOrderType displayOrder, final String value, final long id) {
+        switch (displayOrder) {
+            case LAST_CREATED_MODIFIED_FIRST:
+                final Instant lastModified = Instant.parse(value);
+                return qItem.lastModifiedDate.lt(lastModified).or(qItem.lastModifiedDate.eq(lastModified).and(qItem.id.lt(id)));
+            case ONLY_LAST_CREATED_FIRST:
+                final Instant created = Instant.parse(value);
+                return qItem.createdDate.lt(created).or(qItem.createdDate.eq(created).and(qItem.id.lt(id)));
+            case NAME:
+                return qItem.title.gt(value).or(qItem.title.eq(value).and(qItem.id.gt(id)));
+            case CUSTOM:
+                return qItem.id.lt(id);
+            default:
+                final LocalDate startDate = LocalDate.parse(value);
+                return qItem.startDate.lt(startDate).or(qItem.startDate.eq(startDate).and(qItem.id.lt(id)));
+        }
+    }
+
     public static Predicate ItemWithStatus(final long itemId, final ItemStatus status) {
         Predicate onStatus = qItem.status.isNotNull();
         if (status != null) {
@@ -44,6 +44,10 @@ public final class OrganizationPredicates {
         return QOrganization.organization.isNotNull();
     }
 
+    public static Predicate displayNameContains(final String search) {
+        return QOrganization.organization.displayName.containsIgnoreCase(search);
+    }
+
 	public static OrderSpecifier<?>[] orderBy() {
 		final QOrganization qorg = QOrganization.organization;
 		return new OrderSpecifier<?>[]{qorg.displayOrder.asc(), qorg.displayName.asc()};
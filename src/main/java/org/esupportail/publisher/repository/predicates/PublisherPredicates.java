@@ -43,6 +43,10 @@ public final class PublisherPredicates {
         return qobj.isNotNull();
     }
 
+    public static Predicate displayNameContains(final String search) {
+        return qobj.displayName.containsIgnoreCase(search);
+    }
+
     public static Predicate AllOfUsedState(boolean used) {
         if (used) {
             return qobj.used.isTrue();
@@ -15,26 +15,43 @@
  */
 package org.esupportail.publisher.security;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 
+import org.esupportail.publisher.config.ESUPPublisherProperties;
 import org.esupportail.publisher.service.bean.IAuthoritiesDefinition;
 import org.esupportail.publisher.service.evaluators.IEvaluation;
 import org.esupportail.publisher.service.factories.UserDTOFactory;
 import org.esupportail.publisher.web.rest.dto.UserDTO;
 
-import com.google.common.collect.Lists;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
 
+/**
+ * Resolve application authorities of a user from the roles definitions.
+ * Roles definitions and their reachable authorities are compiled once at startup, and the result of an evaluation
+ * is reused for a short time while the user attributes don't change, to avoid doing the work on each login.
+ * Authorities only depend on the user attributes, a change of group membership gives an other cache entry.
+ */
 @Service
+@Slf4j
 public class AuthorityServiceImpl implements IAuthorityService {
 
 	@Inject
@@ -47,10 +64,39 @@ public class AuthorityServiceImpl implements IAuthorityService {
 	@Inject
 	public IAuthoritiesDefinition rolesDefs;
 
+	@Inject
+	private ESUPPublisherProperties esupPublisherProperties;
+
+	/** Roles evaluated in order, the first applicable one wins. */
+	private List<CompiledRole> compiledRoles;
+
+	private Collection<? extends GrantedAuthority> defaultAuthorities;
+
+	private Cache<AuthoritiesKey, Collection<? extends GrantedAuthority>> authoritiesCache;
+
 	public AuthorityServiceImpl() {
 		super();
 	}
 
+	@PostConstruct
+	public void init() {
+		final ImmutableList.Builder<CompiledRole> roles = ImmutableList.builder();
+		for (Map.Entry<String, IEvaluation> role : rolesDefs.getAppRoles().entrySet()) {
+			roles.add(new CompiledRole(role.getValue(), reachableAuthorities(role.getKey())));
+		}
+		compiledRoles = roles.build();
+		defaultAuthorities = reachableAuthorities(AuthoritiesConstants.AUTHENTICATED);
+
+		final long ttl = esupPublisherProperties.getSecurity().getAuthoritiesTimeToLive().toMillis();
+		if (ttl > 0) {
+			authoritiesCache = CacheBuilder.newBuilder()
+				.expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+				.maximumSize(esupPublisherProperties.getSecurity().getAuthoritiesMaxEntries())
+				.build();
+		}
+		log.debug("Compiled roles definitions {}", compiledRoles);
+	}
+
 	@Override
 	public Collection<? extends GrantedAuthority> getUserAuthorities(final String userName) {
 		if (userName == null) {
@@ -64,19 +110,77 @@ public class AuthorityServiceImpl implements IAuthorityService {
 		if (user == null || !user.isFoundOnExternalSource()) {
 			return AuthorityUtils.NO_AUTHORITIES;
 		}
-		List<GrantedAuthority> authorities = Lists.newArrayList();
-		if (!rolesDefs.getAppRoles().isEmpty()) {
-			for (Map.Entry<String, IEvaluation> map : rolesDefs.getAppRoles().entrySet()) {
-				if (map.getValue().isApplicable(user)) {
-					authorities.add(new SimpleGrantedAuthority(map.getKey()));
-					break;
+		if (authoritiesCache == null) {
+			return evaluateAuthorities(user);
+		}
+		try {
+			return authoritiesCache.get(new AuthoritiesKey(user), () -> evaluateAuthorities(user));
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private Collection<? extends GrantedAuthority> evaluateAuthorities(final UserDTO user) {
+		for (CompiledRole role : compiledRoles) {
+			if (role.evaluation.isApplicable(user)) {
+				return role.authorities;
+			}
+		}
+		return defaultAuthorities;
+	}
+
+	private Collection<? extends GrantedAuthority> reachableAuthorities(final String role) {
+		return ImmutableList.copyOf(roleHierarchy.getReachableGrantedAuthorities(
+			AuthorityUtils.createAuthorityList(role)));
+	}
+
+	private static final class CompiledRole {
+		private final IEvaluation evaluation;
+		private final Collection<? extends GrantedAuthority> authorities;
+
+		private CompiledRole(final IEvaluation evaluation, final Collection<? extends GrantedAuthority> authorities) {
+			this.evaluation = evaluation;
+			this.authorities = authorities;
+		}
+
+		@Override
+		public String toString() {
+			return authorities + " <- " + evaluation;
+		}
+	}
+
+	/**
+	 * Fingerprint of what is evaluated by roles definitions: the user id and a copy of its attributes.
+	 */
+	private static final class AuthoritiesKey {
+		private final String userId;
+		private final Map<String, List<String>> attributes;
+		private final int hash;
+
+		private AuthoritiesKey(final UserDTO user) {
+			this.userId = user.getLogin();
+			final Map<String, List<String>> copy = new HashMap<>();
+			if (user.getAttributes() != null) {
+				for (Map.Entry<String, List<String>> entry : user.getAttributes().entrySet()) {
+					copy.put(entry.getKey(), entry.getValue() == null ? null : new ArrayList<>(entry.getValue()));
 				}
 			}
+			this.attributes = copy;
+			this.hash = 31 * (userId == null ? 0 : userId.hashCode()) + attributes.hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) return true;
+			if (!(o instanceof AuthoritiesKey)) return false;
+			final AuthoritiesKey that = (AuthoritiesKey) o;
+			return hash == that.hash && Objects.equals(userId, that.userId) && attributes.equals(that.attributes);
 		}
-		if (authorities.isEmpty()) {
-			authorities.add(new SimpleGrantedAuthority(AuthoritiesConstants.AUTHENTICATED));
+
+		@Override
+		public int hashCode() {
+			return hash;
 		}
-		return roleHierarchy.getReachableGrantedAuthorities(authorities);
 	}
 
-}
\ No newline at end of file
+}
@@ -15,29 +15,23 @@
  */
 package org.esupportail.publisher.security;
 
-import java.util.Set;
-import java.util.stream.Collectors;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionEvent;
+import javax.servlet.http.HttpSessionListener;
 
-import lombok.Getter;
-import lombok.ToString;
-import lombok.extern.slf4j.Slf4j;
-
-@ToString
-@Slf4j
-public class HasIpRangeExpressionCreator {
-
-    private final Set<String> ipRanges;
-    @Getter
-    private final String expression;
+/**
+ * Remove the CAS ticket mapping of a session when it is destroyed, instead of waiting its expiration in the storage.
+ */
+public class CustomSingleSignOutHttpSessionListener implements HttpSessionListener {
 
-    public HasIpRangeExpressionCreator(Set<String> ipRanges) {
-        this.ipRanges = ipRanges;
-        this.expression = createHasIpRangeExpression(ipRanges);
-        log.info("Constructed {}", this);
+    @Override
+    public void sessionCreated(final HttpSessionEvent event) {
+        // nothing to do
     }
 
-    private String createHasIpRangeExpression(final Set<String> ipRanges) {
-        return ipRanges.stream()
-                .collect(Collectors.joining("') or hasIpAddress('", "hasIpAddress('","')"));
+    @Override
+    public void sessionDestroyed(final HttpSessionEvent event) {
+        final HttpSession session = event.getSession();
+        CustomSingleSignOutFilter.getSingleSignOutHandler().getSessionMappingStorage().removeBySessionById(session.getId());
     }
-}
\ No newline at end of file
+}
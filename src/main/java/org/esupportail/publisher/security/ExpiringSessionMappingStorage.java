@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.security;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpSession;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jasig.cas.client.session.SessionMappingStorage;
+import org.springframework.util.Assert;
+
+/**
+ * In memory CAS ticket to session mapping, replacing the unbounded HashMapBackedSessionMappingStorage.
+ * Mappings expire after a time to live that should be aligned on the http session timeout, and the number of
+ * mappings is bounded: the oldest ones are evicted first.
+ * As the time to live is the same for all entries, the insertion order is also the expiration order,
+ * so purging expired mappings only looks at the head of the map.
+ */
+@Slf4j
+public class ExpiringSessionMappingStorage implements SessionMappingStorage {
+
+    private final Map<String, MappingEntry> mappingIdToEntry = new LinkedHashMap<>();
+
+    private final Map<String, String> sessionIdToMappingId = new HashMap<>();
+
+    private final long timeToLiveMillis;
+
+    private final int maxEntries;
+
+    private final Clock clock;
+
+    public ExpiringSessionMappingStorage(final Duration timeToLive, final int maxEntries) {
+        this(timeToLive, maxEntries, Clock.systemUTC());
+    }
+
+    public ExpiringSessionMappingStorage(final Duration timeToLive, final int maxEntries, final Clock clock) {
+        Assert.isTrue(!timeToLive.isNegative() && !timeToLive.isZero(), "The time to live of session mappings should be positive");
+        Assert.isTrue(maxEntries > 0, "The max number of session mappings should be positive");
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized HttpSession removeSessionByMappingId(final String mappingId) {
+        final MappingEntry entry = mappingIdToEntry.remove(mappingId);
+        if (entry == null) {
+            return null;
+        }
+        sessionIdToMappingId.remove(entry.sessionId);
+        if (entry.isExpired(clock.millis())) {
+            log.debug("Session mapping for ticket {} has expired", mappingId);
+            return null;
+        }
+        return entry.session;
+    }
+
+    @Override
+    public synchronized void removeBySessionById(final String sessionId) {
+        final String mappingId = sessionIdToMappingId.remove(sessionId);
+        if (mappingId != null) {
+            mappingIdToEntry.remove(mappingId);
+        }
+    }
+
+    @Override
+    public synchronized void addSessionById(final String mappingId, final HttpSession session) {
+        purgeExpired();
+        // a new ticket on an already mapped session replace the old mapping
+        removeBySessionById(session.getId());
+        final MappingEntry previous = mappingIdToEntry.remove(mappingId);
+        if (previous != null) {
+            sessionIdToMappingId.remove(previous.sessionId);
+        }
+        while (mappingIdToEntry.size() >= maxEntries) {
+            final Iterator<MappingEntry> eldest = mappingIdToEntry.values().iterator();
+            final MappingEntry evicted = eldest.next();
+            eldest.remove();
+            sessionIdToMappingId.remove(evicted.sessionId);
+            log.warn("Max number of session mappings {} reached, evicting mapping of session {}", maxEntries, evicted.sessionId);
+        }
+        mappingIdToEntry.put(mappingId, new MappingEntry(session.getId(), session, clock.millis() + timeToLiveMillis));
+        sessionIdToMappingId.put(session.getId(), mappingId);
+    }
+
+    /**
+     * Remove expired mappings.
+     * @return the number of removed mappings.
+     */
+    public synchronized int purgeExpired() {
+        final long now = clock.millis();
+        int purged = 0;
+        final Iterator<MappingEntry> it = mappingIdToEntry.values().iterator();
+        while (it.hasNext()) {
+            final MappingEntry entry = it.next();
+            if (!entry.isExpired(now)) {
+                break;
+            }
+            it.remove();
+            sessionIdToMappingId.remove(entry.sessionId);
+            purged++;
+        }
+        return purged;
+    }
+
+    public synchronized int size() {
+        return mappingIdToEntry.size();
+    }
+
+    private static final class MappingEntry {
+        private final String sessionId;
+        private final HttpSession session;
+        private final long expiresAt;
+
+        private MappingEntry(final String sessionId, final HttpSession session, final long expiresAt) {
+            this.sessionId = sessionId;
+            this.session = session;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(final long now) {
+            return expiresAt <= now;
+        }
+    }
+}
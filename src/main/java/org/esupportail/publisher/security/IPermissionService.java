@@ -15,6 +15,9 @@
  */
 package org.esupportail.publisher.security;
 
+import java.util.Collection;
+import java.util.Set;
+
 import javax.validation.constraints.NotNull;
 
 import org.esupportail.publisher.domain.ContextKey;
@@ -62,6 +65,18 @@ public interface IPermissionService {
 
     boolean hasAuthorizedChilds(Authentication authentication, @NotNull final ContextKey contextKey);
 
+    /**
+     * Same as {@link #hasAuthorizedChilds(Authentication, ContextKey)} on several contexts, each one checked on the session tree.
+     * @return the contexts having authorized childs.
+     */
+    Set<ContextKey> filterContextsWithAuthorizedChilds(Authentication authentication, @NotNull final Collection<ContextKey> contextKeys);
+
+    /**
+     * Same as {@link #canEditCtx(Authentication, ContextKey)} on several contexts, each one checked on the session tree.
+     * @return the editable contexts.
+     */
+    Set<ContextKey> filterEditableContexts(Authentication authentication, @NotNull final Collection<ContextKey> contextKeys);
+
     boolean canHighlightInCtx(Authentication authentication, @NotNull final ContextKey contextKey);
 
 }
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.security;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import javax.servlet.http.HttpServletRequest;
+
+import inet.ipaddr.IPAddress;
+import inet.ipaddr.IPAddressString;
+import inet.ipaddr.ipv6.IPv6Address;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+/**
+ * Check the remote address of a request against a set of IP addresses or CIDR ranges.
+ * Ranges are compiled once into sorted and merged IPv4 and IPv6 intervals, so a check is a binary search
+ * instead of the evaluation of a chain of hasIpAddress expressions, each one parsing its mask.
+ * Can be used as an {@link AuthorizationManager} or from a web security expression with {@code @beanName.matches(request)}.
+ */
+@ToString(of = "ipRanges")
+@Slf4j
+public class IpRangeAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+
+    private static final Comparator<byte[]> UNSIGNED_COMPARATOR = Arrays::compareUnsigned;
+
+    private final Set<String> ipRanges;
+
+    private final IntervalSet ipv4Ranges;
+
+    private final IntervalSet ipv6Ranges;
+
+    public IpRangeAuthorizationManager(final Set<String> ipRanges) {
+        this.ipRanges = ipRanges;
+        final List<byte[][]> ipv4 = new ArrayList<>();
+        final List<byte[][]> ipv6 = new ArrayList<>();
+        for (String range : ipRanges) {
+            final IPAddress address = new IPAddressString(range.trim()).getAddress();
+            if (address == null) {
+                throw new IllegalArgumentException(String.format("Invalid IP address or range '%s'", range));
+            }
+            final IPAddress block = address.isPrefixed() ? address.toPrefixBlock() : address;
+            final byte[][] interval = {block.getLower().getBytes(), block.getUpper().getBytes()};
+            if (block.isIPv4()) {
+                ipv4.add(interval);
+            } else {
+                ipv6.add(interval);
+            }
+        }
+        this.ipv4Ranges = new IntervalSet(ipv4);
+        this.ipv6Ranges = new IntervalSet(ipv6);
+        log.info("Constructed {}", this);
+    }
+
+    public boolean matches(final HttpServletRequest request) {
+        return matches(request.getRemoteAddr());
+    }
+
+    public boolean matches(final String ip) {
+        if (ip == null) {
+            return false;
+        }
+        IPAddress address = new IPAddressString(ip).getAddress();
+        if (address == null) {
+            log.debug("Unable to parse remote address {}", ip);
+            return false;
+        }
+        if (address.isIPv6()) {
+            final IPv6Address ipv6 = address.toIPv6();
+            if (ipv6.isIPv4Mapped()) {
+                address = ipv6.getEmbeddedIPv4Address();
+            }
+        }
+        return address.isIPv4() ? ipv4Ranges.contains(address.getBytes()) : ipv6Ranges.contains(address.getBytes());
+    }
+
+    @Override
+    public AuthorizationDecision check(final Supplier<Authentication> authentication, final RequestAuthorizationContext context) {
+        return new AuthorizationDecision(matches(context.getRequest()));
+    }
+
+    /**
+     * Disjoint intervals sorted on their lower bound.
+     */
+    private static final class IntervalSet {
+
+        private final byte[][] lowers;
+
+        private final byte[][] uppers;
+
+        private IntervalSet(final List<byte[][]> intervals) {
+            intervals.sort((a, b) -> UNSIGNED_COMPARATOR.compare(a[0], b[0]));
+            final List<byte[][]> merged = new ArrayList<>();
+            for (byte[][] interval : intervals) {
+                final byte[][] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && isContiguous(last[1], interval[0])) {
+                    if (UNSIGNED_COMPARATOR.compare(interval[1], last[1]) > 0) {
+                        last[1] = interval[1];
+                    }
+                } else {
+                    merged.add(new byte[][] {interval[0], interval[1]});
+                }
+            }
+            this.lowers = new byte[merged.size()][];
+            this.uppers = new byte[merged.size()][];
+            for (int i = 0; i < merged.size(); i++) {
+                lowers[i] = merged.get(i)[0];
+                uppers[i] = merged.get(i)[1];
+            }
+        }
+
+        private boolean contains(final byte[] address) {
+            int low = 0;
+            int high = lowers.length - 1;
+            // search the last interval starting before or at the address
+            int candidate = -1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (UNSIGNED_COMPARATOR.compare(lowers[mid], address) <= 0) {
+                    candidate = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return candidate >= 0 && UNSIGNED_COMPARATOR.compare(address, uppers[candidate]) <= 0;
+        }
+
+        /** Whether an interval starting at next overlaps or directly follows an interval ending at upper. */
+        private static boolean isContiguous(final byte[] upper, final byte[] next) {
+            if (UNSIGNED_COMPARATOR.compare(next, upper) <= 0) {
+                return true;
+            }
+            final byte[] following = upper.clone();
+            for (int i = following.length - 1; i >= 0; i--) {
+                if (++following[i] != 0) {
+                    return Arrays.equals(following, next);
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.security;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+import javax.servlet.http.HttpSession;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jasig.cas.client.session.SessionMappingStorage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * CAS ticket to session mapping shared between nodes through the T_CAS_SESSION_MAPPING table.
+ * HttpSession objects can't be shared, so each node keeps its own sessions in a local {@link ExpiringSessionMappingStorage}
+ * and publishes the ticket, the session id and its node id in the table.
+ * When a back channel logout request reaches a node that doesn't own the session, the mapping is marked as revoked,
+ * and the owner node invalidates the session on its next call of {@link #invalidateRevokedSessions()}.
+ */
+@Slf4j
+public class JdbcSessionMappingStorage implements SessionMappingStorage {
+
+    public static final String TABLE_NAME = "T_CAS_SESSION_MAPPING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ExpiringSessionMappingStorage localStorage;
+
+    @Getter
+    private final String nodeId;
+
+    private final long timeToLiveMillis;
+
+    private final Clock clock;
+
+    public JdbcSessionMappingStorage(final JdbcTemplate jdbcTemplate, final String nodeId, final Duration timeToLive,
+                                     final int maxEntries) {
+        this(jdbcTemplate, nodeId, timeToLive, maxEntries, Clock.systemUTC());
+    }
+
+    public JdbcSessionMappingStorage(final JdbcTemplate jdbcTemplate, final String nodeId, final Duration timeToLive,
+                                     final int maxEntries, final Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nodeId = nodeId;
+        this.localStorage = new ExpiringSessionMappingStorage(timeToLive, maxEntries, clock);
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.clock = clock;
+    }
+
+    @Override
+    public HttpSession removeSessionByMappingId(final String mappingId) {
+        final HttpSession session = localStorage.removeSessionByMappingId(mappingId);
+        if (session != null) {
+            jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE mapping_id = ?", mappingId);
+            return session;
+        }
+        // the session is owned by an other node, it will invalidate it
+        final int revoked = jdbcTemplate.update("UPDATE " + TABLE_NAME + " SET revoked = ? WHERE mapping_id = ? AND node_id <> ?",
+            true, mappingId, nodeId);
+        if (revoked > 0) {
+            log.debug("Session mapping for ticket {} revoked for an other node", mappingId);
+        } else {
+            jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE mapping_id = ?", mappingId);
+        }
+        return null;
+    }
+
+    @Override
+    public void removeBySessionById(final String sessionId) {
+        localStorage.removeBySessionById(sessionId);
+        jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE session_id = ? AND node_id = ?", sessionId, nodeId);
+    }
+
+    @Override
+    public void addSessionById(final String mappingId, final HttpSession session) {
+        localStorage.addSessionById(mappingId, session);
+        jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE mapping_id = ? OR (session_id = ? AND node_id = ?)",
+            mappingId, session.getId(), nodeId);
+        jdbcTemplate.update("INSERT INTO " + TABLE_NAME + " (mapping_id, session_id, node_id, expires_at, revoked) VALUES (?, ?, ?, ?, ?)",
+            mappingId, session.getId(), nodeId, clock.millis() + timeToLiveMillis, false);
+    }
+
+    @Scheduled(fixedDelayString = "${app.cas.session-mapping.polling-delay:PT30S}")
+    public void cleanUp() {
+        final int invalidated = invalidateRevokedSessions();
+        final int purged = purgeExpired();
+        if (invalidated > 0 || purged > 0) {
+            log.debug("Session mappings cleaned, {} revoked sessions invalidated, {} expired mappings purged", invalidated, purged);
+        }
+    }
+
+    /**
+     * Invalidate sessions of this node revoked by a logout request received on an other node.
+     * @return the number of invalidated sessions.
+     */
+    public int invalidateRevokedSessions() {
+        final List<String> mappingIds = jdbcTemplate.queryForList(
+            "SELECT mapping_id FROM " + TABLE_NAME + " WHERE node_id = ? AND revoked = ?", String.class, nodeId, true);
+        int invalidated = 0;
+        for (String mappingId : mappingIds) {
+            final HttpSession session = localStorage.removeSessionByMappingId(mappingId);
+            jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE mapping_id = ?", mappingId);
+            if (session != null) {
+                log.debug("Invalidating session [{}] for revoked ticket [{}]", session.getId(), mappingId);
+                try {
+                    session.invalidate();
+                    invalidated++;
+                } catch (final IllegalStateException e) {
+                    log.debug("Error invalidating session.", e);
+                }
+            }
+        }
+        return invalidated;
+    }
+
+    /**
+     * Remove expired mappings of all nodes.
+     * @return the number of removed mappings in the table.
+     */
+    public int purgeExpired() {
+        localStorage.purgeExpired();
+        return jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE expires_at <= ?", clock.millis());
+    }
+}
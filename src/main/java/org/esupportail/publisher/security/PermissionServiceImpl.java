@@ -374,6 +374,43 @@ public class PermissionServiceImpl implements IPermissionService {
         return false;
     }
 
+    @Override
+    public Set<ContextKey> filterContextsWithAuthorizedChilds(@NotNull Authentication authentication, @NotNull Collection<ContextKey> contextKeys) {
+        final UserDTO user = ((CustomUserDetails) authentication.getPrincipal()).getUser();
+        final Collection<? extends GrantedAuthority> authorities = ((CustomUserDetails) authentication.getPrincipal()).getAuthorities();
+
+        log.debug("Testing filterContextsWithAuthorizedChilds on {} contexts for  user {}", contextKeys.size(), user);
+        final Set<ContextKey> ctxs = Sets.newHashSet();
+        final boolean isAdmin = authorities.contains(new SimpleGrantedAuthority(AuthoritiesConstants.ADMIN));
+        if (!isAdmin && !authorities.contains(new SimpleGrantedAuthority(AuthoritiesConstants.USER))) {
+            return ctxs;
+        }
+        if (!isAdmin && !userSessionTree.isTreeLoaded()) {
+            userSessionTreeLoader.loadUserTree(user, authorities);
+        }
+        for (ContextKey contextKey : contextKeys) {
+            if (!ContextType.ITEM.equals(contextKey.getKeyType())
+                && (isAdmin || userSessionTree.hasChildsOnContext(contextKey, PermissionType.LOOKOVER))) {
+                ctxs.add(contextKey);
+            }
+        }
+        return ctxs;
+    }
+
+    @Override
+    public Set<ContextKey> filterEditableContexts(@NotNull Authentication authentication, @NotNull Collection<ContextKey> contextKeys) {
+        final UserDTO user = ((CustomUserDetails) authentication.getPrincipal()).getUser();
+        final Collection<? extends GrantedAuthority> authorities = ((CustomUserDetails) authentication.getPrincipal()).getAuthorities();
+
+        final Set<ContextKey> ctxs = Sets.newHashSet();
+        for (ContextKey contextKey : contextKeys) {
+            if (canEditCtx(user, authorities, contextKey)) {
+                ctxs.add(contextKey);
+            }
+        }
+        return ctxs;
+    }
+
     @Override
     public boolean canModerateSomething(@NotNull Authentication authentication) {
         final UserDTO user = ((CustomUserDetails) authentication.getPrincipal()).getUser();
@@ -17,6 +17,8 @@ package org.esupportail.publisher.security;
 
 import java.util.Collection;
 
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.ContextKey;
 import org.esupportail.publisher.web.rest.dto.UserDTO;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -27,6 +29,14 @@ public interface UserContextLoaderService {
 
 	void doExpireForReload();
 
+	/**
+	 * Add a saved item in the loaded tree under its parents contexts, instead of reloading the whole tree.
+	 * The item gets the same parents and permissions as on a reload, links to previous parents are removed.
+	 * @return false if the item couldn't be added and the tree should be reloaded, true if the tree is up to date,
+	 * as for a super admin where the tree doesn't contain contexts.
+	 */
+	boolean addItemToTree(final AbstractItem item, final Collection<ContextKey> parents);
+
 	void loadUserTree(final UserDTO user,
 			final Collection<? extends GrantedAuthority> authorities);
 
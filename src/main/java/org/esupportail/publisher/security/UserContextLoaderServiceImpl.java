@@ -25,6 +25,7 @@ import java.util.Set;
 
 import javax.inject.Inject;
 
+import org.esupportail.publisher.config.metric.PublisherMetrics;
 import org.esupportail.publisher.domain.AbstractClassification;
 import org.esupportail.publisher.domain.AbstractFeed;
 import org.esupportail.publisher.domain.AbstractItem;
@@ -59,6 +60,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.mysema.commons.lang.Pair;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -103,6 +105,9 @@ public class UserContextLoaderServiceImpl implements UserContextLoaderService {
 	@Inject
 	private ItemRepository<AbstractItem> itemDao;
 
+	@Inject
+	private PublisherMetrics publisherMetrics;
+
 	private static final EnumSet<PermissionClass> contextPermsType = EnumSet
 			.of(PermissionClass.CONTEXT, PermissionClass.CONTEXT_WITH_SUBJECTS);
 
@@ -115,10 +120,46 @@ public class UserContextLoaderServiceImpl implements UserContextLoaderService {
 	    userSessionTree.setExpiringInstant(null);
     }
 
+	public synchronized boolean addItemToTree(final AbstractItem item, final Collection<ContextKey> parents) {
+		if (!userSessionTree.isTreeLoaded()) {
+			return false;
+		}
+		// super admin tree doesn't contain contexts, the role is given on all of them, so nothing to add
+		if (!userSessionTree.isFilteredTree()) {
+			return true;
+		}
+		final Set<ContextKey> loadedParents = Sets.newHashSet();
+		for (ContextKey parent : parents) {
+			if (userSessionTree.isCtxLoaded(parent)) {
+				loadedParents.add(parent);
+			}
+		}
+		if (loadedParents.isEmpty()) {
+			log.debug("Item {} has no parent in tree", item.getContextKey());
+			return false;
+		}
+		final boolean wasLoaded = userSessionTree.isCtxLoaded(item.getContextKey());
+		for (ContextKey parent : loadedParents) {
+			addItemCtx(item, parent);
+		}
+		if (wasLoaded) {
+			// links to the previous classifications aren't found on loading, permissions are taken from the remaining parents
+			for (ContextKey parent : userSessionTree.getParentsOfContext(item.getContextKey())) {
+				if (!loadedParents.contains(parent)) {
+					userSessionTree.removeLinkToParent(item.getContextKey(), parent);
+				}
+			}
+		}
+		log.debug("Item {} added in tree under {}", item.getContextKey(), loadedParents);
+		return true;
+	}
+
 	public synchronized void loadUserTree(final UserDTO user, final Collection<? extends GrantedAuthority> authorities) {
+		final Timer.Sample sample = publisherMetrics.start();
 		// init userTree
         if (!userSessionTree.loadingCanBeDone()) {
             log.debug("loadUserTree can't be done !");
+            publisherMetrics.recordUserTreeLoad(sample, "skipped");
             return;
         }
         if (userSessionTree.isTreeLoadInProgress()) {
@@ -138,10 +179,13 @@ public class UserContextLoaderServiceImpl implements UserContextLoaderService {
             if (totalSleep > 10000) {
                 isInterrupted = true;
             }
+            publisherMetrics.recordUserTreeWait(totalSleep);
 
             if (isInterrupted) {
+                publisherMetrics.recordUserTreeLoad(sample, "error");
                 throw new IllegalStateException("The tree loader was interrupted for the user " + user.toString());
             }
+            publisherMetrics.recordUserTreeLoad(sample, "waited");
             return;
         }
         log.warn("========================= WARNING loadingUserTree ========================");
@@ -193,6 +237,7 @@ public class UserContextLoaderServiceImpl implements UserContextLoaderService {
 			userSessionTree.setSuperAdmin(false);
 		}
 		userSessionTree.notifyEndLoading();
+		publisherMetrics.recordUserTreeLoad(sample, "loaded");
 		if (log.isDebugEnabled()) {
 			log.debug("Tree loaded : {}", userSessionTree.toString());
 		}
@@ -694,10 +739,7 @@ public class UserContextLoaderServiceImpl implements UserContextLoaderService {
 		final List<ItemClassificationOrder> items = Lists.newArrayList(itemClassifDao.findAll(ItemPredicates
 				.itemsClassOfClassification(classification)));
 		for (ItemClassificationOrder item : items) {
-			userSessionTree.addCtx(new OwnerContextKey(
-					item.getItemClassificationId().getAbstractItem().getContextKey(), item.getItemClassificationId()
-							.getAbstractItem().getCreatedBy().getSubject()), false, classification.getContextKey(),
-					null, null);
+			addItemCtx(item.getItemClassificationId().getAbstractItem(), classification.getContextKey());
 		}
 	}
 
@@ -722,8 +764,16 @@ public class UserContextLoaderServiceImpl implements UserContextLoaderService {
 		final List<AbstractItem> items = Lists.newArrayList(itemDao.findAll(ItemPredicates
 				.itemsOwnedOfOrganizationWithoutClassif(user, organization.getKeyId())));
 		for (AbstractItem item : items) {
-			userSessionTree.addCtx(new OwnerContextKey(item.getContextKey(), item.getCreatedBy().getSubject()), false,
-					organization, null, null);
+			addItemCtx(item, organization);
 		}
 	}
+
+	/**
+	 * Items don't have their own permissions, they get the upper permission of their parents when linked to them.
+	 * Used on loading and when adding a saved item, so that both give the same permissions.
+	 */
+	private void addItemCtx(final AbstractItem item, final ContextKey parent) {
+		userSessionTree.addCtx(new OwnerContextKey(item.getContextKey(),
+				item.getCreatedBy() != null ? item.getCreatedBy().getSubject() : null), false, parent, null, null);
+	}
 }
\ No newline at end of file
@@ -15,11 +15,16 @@
  */
 package org.esupportail.publisher.service;
 
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.esupportail.publisher.config.audit.AuditEventConverter;
 import org.esupportail.publisher.domain.PersistentAuditEvent;
 import org.esupportail.publisher.repository.PersistenceAuditEventRepository;
-import java.time.Instant;
+import org.esupportail.publisher.repository.predicates.AuditEventPredicates;
+import org.esupportail.publisher.service.bean.ScheduledJob;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -48,15 +53,31 @@ public class AuditEventService {
     @Inject
     private AuditEventConverter auditEventConverter;
 
-    public List<AuditEvent> findAll() {
-        return auditEventConverter.convertToAuditEvent(persistenceAuditEventRepository.findAll());
-    }
-
-    public List<AuditEvent> findByDates(Instant fromDate, Instant toDate) {
-        List<PersistentAuditEvent> persistentAuditEvents =
-            persistenceAuditEventRepository.findAllByAuditEventDateBetween(fromDate, toDate);
+    @Inject
+    private ScheduledJobService scheduledJobService;
 
-        return auditEventConverter.convertToAuditEvent(persistentAuditEvents);
+    /**
+     * Read a page of audit events, the most recent first.
+     * All filters are optional, fromDate is included and toDate excluded.
+     * @param afterDate date of the last event of the previous page, null for the first page.
+     * @param afterId id of the last event of the previous page, null for the first page.
+     */
+    @Transactional(readOnly = true)
+    public AuditEventsPage findPage(final String principal, final String type, final Instant fromDate, final Instant toDate,
+                                    final Instant afterDate, final Long afterId, final int limit) {
+        Predicate filter = AuditEventPredicates.filter(principal, type, fromDate, toDate);
+        if (afterDate != null && afterId != null) {
+            filter = ExpressionUtils.allOf(filter, AuditEventPredicates.keysetAfter(afterDate, afterId));
+        }
+        // one more event is read to know if there is a next page
+        List<PersistentAuditEvent> events = persistenceAuditEventRepository.findFirstEvents(filter, limit + 1);
+        PersistentAuditEvent last = null;
+        if (events.size() > limit) {
+            events = events.subList(0, limit);
+            last = events.get(limit - 1);
+        }
+        return new AuditEventsPage(auditEventConverter.convertToAuditEvent(events),
+            last != null ? last.getAuditEventDate() : null, last != null ? last.getId() : null);
     }
 
     /**
@@ -66,11 +87,28 @@ public class AuditEventService {
      */
     @Scheduled(cron = "0 0 4 * * ?")
     public void removeOldAuditEvents() {
-        persistenceAuditEventRepository
-            .findByAuditEventDateBefore(Instant.now().minus(30, ChronoUnit.DAYS))
-            .forEach(auditEvent -> {
+        scheduledJobService.run(ScheduledJob.REMOVE_OLD_AUDIT_EVENTS, () -> {
+            final List<PersistentAuditEvent> oldEvents =
+                persistenceAuditEventRepository.findByAuditEventDateBefore(Instant.now().minus(30, ChronoUnit.DAYS));
+            oldEvents.forEach(auditEvent -> {
                 log.debug("Deleting audit data {}", auditEvent);
                 persistenceAuditEventRepository.delete(auditEvent);
             });
+            return oldEvents.size();
+        });
+    }
+
+    /**
+     * Audit events of a page, with the date and the id of the last one when there is a next page.
+     */
+    @Value
+    public static class AuditEventsPage {
+        List<AuditEvent> events;
+        Instant lastDate;
+        Long lastId;
+
+        public boolean hasNext() {
+            return lastId != null;
+        }
     }
 }
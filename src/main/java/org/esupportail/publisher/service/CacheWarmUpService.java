@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.esupportail.publisher.config.AsyncConfiguration;
+import org.esupportail.publisher.config.ESUPPublisherProperties;
+import org.esupportail.publisher.config.bean.WarmUpProperties;
+
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Warm up caches after each startup, so the first polls of readers don't pay the cost of cold caches.
+ * Hits on published contexts are counted in memory and regularly added in the T_WARM_UP_TARGET table,
+ * once the application is ready the most polled contexts of the previous runs are loaded by the {@link CacheWarmer}
+ * on the cache warm up executor.
+ */
+@Service
+@Slf4j
+public class CacheWarmUpService {
+
+    public static final String TABLE_NAME = "T_WARM_UP_TARGET";
+
+    public enum TargetType {
+        ORGANIZATION,
+        PUBLISHER,
+        CATEGORY
+    }
+
+    public enum State {
+        PENDING,
+        DISABLED,
+        RUNNING,
+        DONE
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final CacheWarmer cacheWarmer;
+
+    private final WarmUpProperties properties;
+
+    private final Executor executor;
+
+    private final Clock clock;
+
+    private final Map<Target, LongAdder> hits = new ConcurrentHashMap<>();
+
+    @Getter
+    private volatile State state = State.PENDING;
+
+    @Getter
+    private volatile int total;
+
+    @Getter
+    private volatile int warmed;
+
+    @Getter
+    private volatile int failed;
+
+    @Getter
+    private volatile long durationMillis;
+
+    @Inject
+    public CacheWarmUpService(final JdbcTemplate jdbcTemplate, final CacheWarmer cacheWarmer,
+                              final ESUPPublisherProperties esupPublisherProperties,
+                              @Qualifier(AsyncConfiguration.CACHE_WARM_UP_EXECUTOR) final Executor executor) {
+        this(jdbcTemplate, cacheWarmer, esupPublisherProperties.getCache().getWarmUp(), executor, Clock.systemDefaultZone());
+    }
+
+    public CacheWarmUpService(final JdbcTemplate jdbcTemplate, final CacheWarmer cacheWarmer, final WarmUpProperties properties,
+                              final Executor executor, final Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cacheWarmer = cacheWarmer;
+        this.properties = properties;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    /**
+     * Count a hit on an existing published context.
+     */
+    public void recordHit(final TargetType type, final long id) {
+        if (properties.isEnabled()) {
+            hits.computeIfAbsent(new Target(type, id), key -> new LongAdder()).increment();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.cache.warm-up.flush-delay:PT5M}",
+        fixedDelayString = "${app.cache.warm-up.flush-delay:PT5M}")
+    @PreDestroy
+    public void runFlushHits() {
+        try {
+            flushHits();
+        } catch (RuntimeException e) {
+            log.warn("Unable to write hits of warm up targets", e);
+        }
+    }
+
+    /**
+     * Add hits counted since the last call in the table, the counts of all nodes are summed.
+     * @return the number of written targets.
+     */
+    public int flushHits() {
+        final Timestamp now = new Timestamp(clock.millis());
+        int written = 0;
+        final Iterator<Map.Entry<Target, LongAdder>> it = hits.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Target, LongAdder> entry = it.next();
+            it.remove();
+            // hits done by a reader between the removal and the sum may be lost, counts are only used to sort targets
+            final long count = entry.getValue().sum();
+            if (count > 0) {
+                addHits(entry.getKey(), count, now);
+                written++;
+            }
+        }
+        log.debug("Hits of {} warm up targets written", written);
+        return written;
+    }
+
+    private void addHits(final Target target, final long count, final Timestamp now) {
+        final String update = "UPDATE " + TABLE_NAME + " SET hits = hits + ?, last_hit = ? WHERE target_type = ? AND target_id = ?";
+        if (jdbcTemplate.update(update, count, now, target.getType().name(), target.getId()) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO " + TABLE_NAME + " (target_type, target_id, hits, last_hit) VALUES (?, ?, ?, ?)",
+                target.getType().name(), target.getId(), count, now);
+        } catch (DuplicateKeyException e) {
+            // inserted by an other node in the meantime
+            jdbcTemplate.update(update, count, now, target.getType().name(), target.getId());
+        }
+    }
+
+    /**
+     * @return the most polled targets hit during the retention, ordered by hits.
+     */
+    public List<Target> getMostPolledTargets(final int limit) {
+        final Timestamp since = new Timestamp(clock.millis() - properties.getRetention().toMillis());
+        jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE last_hit < ?", since);
+        return jdbcTemplate.query("SELECT target_type, target_id FROM " + TABLE_NAME + " ORDER BY hits DESC, last_hit DESC", rs -> {
+            final List<Target> targets = new ArrayList<>();
+            while (targets.size() < limit && rs.next()) {
+                targets.add(new Target(TargetType.valueOf(rs.getString("target_type")), rs.getLong("target_id")));
+            }
+            return targets;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!properties.isEnabled() || properties.getMaxTargets() == 0) {
+            state = State.DISABLED;
+            return;
+        }
+        executor.execute(this::warmUp);
+    }
+
+    /**
+     * Load the most polled targets in caches, a target that fails to load doesn't stop the warm up.
+     */
+    public void warmUp() {
+        final long start = clock.millis();
+        state = State.RUNNING;
+        warmed = 0;
+        failed = 0;
+        try {
+            final List<Target> targets = getMostPolledTargets(properties.getMaxTargets());
+            total = targets.size();
+            log.info("Warming up caches of {} published contexts", total);
+            for (Target target : targets) {
+                try {
+                    warm(target);
+                    warmed++;
+                } catch (RuntimeException e) {
+                    log.warn("Unable to warm up caches of {} {}", target.getType(), target.getId(), e);
+                    failed++;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Unable to read the targets to warm up", e);
+        } finally {
+            durationMillis = clock.millis() - start;
+            state = State.DONE;
+        }
+        log.info("Caches warmed up in {} ms, {} contexts loaded, {} failures", durationMillis, warmed, failed);
+    }
+
+    private void warm(final Target target) {
+        switch (target.getType()) {
+            case ORGANIZATION:
+                cacheWarmer.warmOrganization(target.getId());
+                break;
+            case PUBLISHER:
+                cacheWarmer.warmPublisher(target.getId());
+                break;
+            case CATEGORY:
+                cacheWarmer.warmCategory(target.getId());
+                break;
+            default:
+                throw new IllegalArgumentException("The target type " + target.getType() + " is not managed");
+        }
+    }
+
+    @Value
+    public static class Target {
+        TargetType type;
+        long id;
+    }
+}
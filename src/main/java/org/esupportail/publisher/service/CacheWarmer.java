@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.esupportail.publisher.domain.AbstractClassification;
+import org.esupportail.publisher.domain.AbstractFeed;
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.Category;
+import org.esupportail.publisher.domain.ItemClassificationOrder;
+import org.esupportail.publisher.domain.Organization;
+import org.esupportail.publisher.domain.Publisher;
+import org.esupportail.publisher.domain.QAbstractItem;
+import org.esupportail.publisher.domain.QItemClassificationOrder;
+import org.esupportail.publisher.domain.enums.ItemStatus;
+import org.esupportail.publisher.repository.CategoryRepository;
+import org.esupportail.publisher.repository.FeedRepository;
+import org.esupportail.publisher.repository.ItemClassificationOrderRepository;
+import org.esupportail.publisher.repository.LinkedFileItemRepository;
+import org.esupportail.publisher.repository.OrganizationRepository;
+import org.esupportail.publisher.repository.PublisherRepository;
+import org.esupportail.publisher.repository.predicates.ClassificationPredicates;
+import org.esupportail.publisher.repository.predicates.ItemPredicates;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.jpa.JPAExpressions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Load in caches what the published endpoints read for a publisher, a category or an organization:
+ * entities and collections kept in the hibernate second level cache, subscribers of each context,
+ * metadata of local enclosures and the tree of directory groups of the organization.
+ * Each call is done in its own read only transaction, so the persistence context doesn't grow with the warm up.
+ */
+@Service
+@Slf4j
+@Transactional(readOnly = true)
+public class CacheWarmer {
+
+    @Inject
+    private OrganizationRepository organizationRepository;
+
+    @Inject
+    private PublisherRepository publisherRepository;
+
+    @Inject
+    private CategoryRepository categoryRepository;
+
+    @Inject
+    private FeedRepository<AbstractFeed> feedRepository;
+
+    @Inject
+    private ItemClassificationOrderRepository itemClassificationOrderRepository;
+
+    @Inject
+    private LinkedFileItemRepository linkedFileItemRepository;
+
+    @Inject
+    private SubscriberService subscriberService;
+
+    @Inject
+    private EnclosureMetadataService enclosureMetadataService;
+
+    /** only defined with the ldap-group profile */
+    @Inject
+    private ObjectProvider<GroupTreeIndex> groupTreeIndex;
+
+    /**
+     * Warm up what is read by published items and categories of a publisher.
+     * @return the number of loaded items, -1 if the publisher doesn't exist.
+     */
+    public int warmPublisher(final long publisherId) {
+        final Optional<Publisher> optionalPublisher = publisherRepository.findById(publisherId);
+        if (!optionalPublisher.isPresent()) {
+            return -1;
+        }
+        final Publisher publisher = optionalPublisher.get();
+        publisher.getContext().getRedactor().getWritingMode();
+        subscriberService.getDefaultsSubscribersOfContext(publisher.getContextKey());
+
+        final List<Category> categories = Lists.newArrayList(categoryRepository.findAll(ClassificationPredicates.CategoryOfPublisher(publisherId)));
+        for (Category category : categories) {
+            subscriberService.getDefinedSubscribersOfContext(category.getContextKey());
+        }
+
+        final BooleanBuilder builder = new BooleanBuilder(ItemPredicates.itemsClassOfPublisher(publisherId));
+        builder.and(ItemPredicates.OwnedItemsClassOfStatus(null, ItemStatus.PUBLISHED));
+        return warmItems(itemClassificationOrderRepository.findAll(builder));
+    }
+
+    /**
+     * Warm up what is read by published feeds of a category.
+     * @return the number of loaded feeds, -1 if the category doesn't exist.
+     */
+    public int warmCategory(final long categoryId) {
+        final Optional<Category> optionalCategory = categoryRepository.findById(categoryId);
+        if (!optionalCategory.isPresent()) {
+            return -1;
+        }
+        final Category category = optionalCategory.get();
+        category.getPublisher().getContext().getRedactor().getWritingMode();
+        subscriberService.getDefaultsSubscribersOfContext(category.getContextKey());
+
+        final List<AbstractFeed> feeds = Lists.newArrayList(feedRepository.findAll(ClassificationPredicates.AbstractFeedsOfCategory(categoryId)));
+        for (AbstractFeed feed : feeds) {
+            subscriberService.getDefinedSubscribersOfContext(feed.getContextKey());
+        }
+        return feeds.size();
+    }
+
+    /**
+     * Warm up the flash items and the tree of directory groups of an organization.
+     * @return the number of loaded items, -1 if the organization doesn't exist.
+     */
+    public int warmOrganization(final long organizationId) {
+        final Optional<Organization> optionalOrganization = organizationRepository.findById(organizationId);
+        if (!optionalOrganization.isPresent()) {
+            return -1;
+        }
+        final Organization organization = optionalOrganization.get();
+        final GroupTreeIndex index = groupTreeIndex.getIfAvailable();
+        if (index != null) {
+            index.getTree(organizationId);
+        }
+        return warmItems(itemClassificationOrderRepository.findAll(
+            QItemClassificationOrder.itemClassificationOrder.itemClassificationId.abstractItem.id
+                .in(JPAExpressions.selectDistinct(QAbstractItem.abstractItem.id)
+                    .from(QAbstractItem.abstractItem)
+                    // all published flash, the warm up runs without authenticated user to exclude its own items
+                    .where(ItemPredicates.FlashItemsOfOrganization(organization),
+                        ItemPredicates.OwnedItemsOfStatus(null, ItemStatus.PUBLISHED.getId())))));
+    }
+
+    private int warmItems(final Iterable<ItemClassificationOrder> itemsClasss) {
+        final Set<Long> itemIds = Sets.newHashSet();
+        for (ItemClassificationOrder ico : itemsClasss) {
+            final AbstractClassification classif = ico.getItemClassificationId().getAbstractClassification();
+            classif.getDisplayName();
+            final AbstractItem item = ico.getItemClassificationId().getAbstractItem();
+            if (!itemIds.add(item.getId())) {
+                continue;
+            }
+            subscriberService.getDefinedSubscribersOfContext(item.getContextKey());
+            linkedFileItemRepository.findByAbstractItemIdAndInBody(item.getId(), false);
+            if (item.getEnclosure() != null && !EnclosureMetadataService.isAbsoluteUrl(item.getEnclosure())) {
+                enclosureMetadataService.getMetadata(item.getEnclosure());
+            }
+        }
+        log.debug("{} items warmed up", itemIds.size());
+        return itemIds.size();
+    }
+}
@@ -18,8 +18,12 @@ package org.esupportail.publisher.service;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -29,7 +33,6 @@ import javax.validation.constraints.NotNull;
 
 import lombok.extern.slf4j.Slf4j;
 
-import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.esupportail.publisher.domain.AbstractClassification;
 import org.esupportail.publisher.domain.AbstractFeed;
 import org.esupportail.publisher.domain.AbstractItem;
@@ -65,6 +68,8 @@ import org.esupportail.publisher.repository.predicates.SubscriberPredicates;
 import org.esupportail.publisher.security.IPermissionService;
 import org.esupportail.publisher.security.SecurityUtils;
 import org.esupportail.publisher.security.UserContextLoaderService;
+import org.esupportail.publisher.service.ItemChangeLogService.ChangeType;
+import org.esupportail.publisher.service.bean.ScheduledJob;
 import org.esupportail.publisher.service.factories.CompositeKeyExtendedDTOFactory;
 import org.esupportail.publisher.service.factories.SubjectDTOToExtendedKeyConverterFactory;
 import org.esupportail.publisher.web.rest.dto.ContentDTO;
@@ -139,6 +144,21 @@ public class ContentService {
 	@Inject
 	private RedactorRepository redactorRepository;
 
+	@Inject
+	private ItemChangeLogService itemChangeLogService;
+
+	@Inject
+	private PublicationScheduler publicationScheduler;
+
+	@Inject
+	private ScheduledJobService scheduledJobService;
+
+	@Inject
+	private NotificationService notificationService;
+
+	@Inject
+	private ContextHierarchy contextHierarchy;
+
 	public ResponseEntity<?> saveContent(final ContentDTO content) throws URISyntaxException {
 		Optional<Redactor> optionalRedactor = redactorRepository.findById(content.getItem().getRedactor().getId());
 		Redactor redactor = optionalRedactor.orElse(null);
@@ -168,12 +188,18 @@ public class ContentService {
 				item.setValidatedBy(null);
 				item.setValidatedDate(null);
 				item = itemRepository.save(item);
+				if (oldLinkedClassifications != null) {
+					itemChangeLogService.recordChange(item.getId(), ChangeType.MODIFIED, publisherIdsOfLinks(oldLinkedClassifications));
+				}
 				updateLinkedFilesToItem(item, content.getLinkedFiles());
+				// items without classification are loaded under their organization only for their owner
+				if (isUpdate && !item.getCreatedBy().getLogin().equals(SecurityUtils.getCurrentLogin())) {
+					reloadUserTree(authentication);
+				} else {
+					addItemToUserTree(authentication, item, Sets.newHashSet(item.getOrganization().getContextKey()));
+				}
 				if (isUpdate)
 					return ResponseEntity.ok(new ValueResource(item.getStatus()));
-				//else
-                userSessionTreeLoader.doExpireForReload();
-				userSessionTreeLoader.loadUserTree(authentication);
 				return ResponseEntity.created(new URI("/api/contents/" + item.getId())).body(
 						new ValueResource(item.getStatus()));
 			}
@@ -186,9 +212,16 @@ public class ContentService {
 		Pair<PermissionType, PermissionDTO> upperClassifPerm = null;
 		Pair<PermissionType, PermissionDTO> lowerClassifPerm = null;
 		// filter authorized classifs and check constraints
+		final Set<Long> classifIds = new HashSet<>();
+		for (ContextKey classif : content.getClassifications()) {
+			classifIds.add(classif.getKeyId());
+		}
+		final Map<Long, AbstractClassification> classificationsById = new HashMap<>();
+		for (AbstractClassification classification : classificationRepository.findAllById(classifIds)) {
+			classificationsById.put(classification.getId(), classification);
+		}
 		for (ContextKey classif : content.getClassifications()) {
-			Optional<AbstractClassification> optionalClassif = classificationRepository.findById(classif.getKeyId());
-			AbstractClassification classification = optionalClassif.orElse(null);
+			AbstractClassification classification = classificationsById.get(classif.getKeyId());
 			log.debug("entering filtering : {}", classification);
 			if (classification != null && permissionService.canCreateInCtx(authentication, classif)) {
 				log.debug("==> can create = true");
@@ -224,6 +257,11 @@ public class ContentService {
 			}
 		}
 
+		final Set<ContextKey> classificationKeys = new HashSet<>();
+		for (AbstractClassification classification : authorizedClassifications) {
+			classificationKeys.add(classification.getContextKey());
+		}
+
 		if (authorizedClassifications.isEmpty() || upperClassifPerm == null
 				|| upperClassifPerm.getFirst().getMask() <= PermissionType.LOOKOVER.getMask()) {
 			log.warn("Access forbidden from {} !", authentication.getPrincipal());
@@ -266,6 +304,11 @@ public class ContentService {
 				}
 
 				item = itemRepository.save(item);
+				publicationScheduler.itemSaved(item);
+				itemChangeLogService.recordChange(item.getId(), isUpdate ? ChangeType.MODIFIED : ChangeType.CREATED);
+				if (ItemStatus.PENDING.equals(item.getStatus())) {
+					notificationService.recordEvent(item.getId(), NotificationService.EventType.PENDING_MODERATION);
+				}
 				updateLinkedFilesToItem(item, content.getLinkedFiles());
 
 				// now we save all linked classification and before clean olds not anymore linked
@@ -280,19 +323,13 @@ public class ContentService {
 					}
 					itemClassificationOrderRepository.deleteAll(oldToRemoves);
 				}
-				Set<ItemClassificationOrder> classifs = new HashSet<>();
-				for (AbstractClassification classif : authorizedClassifications) {
-					ItemClassificationOrder ico = new ItemClassificationOrder(item, classif,
-							itemClassificationOrderRepository.getNextDisplayOrderInClassification(classif.getId()));
-					classifs.add(ico);
-				}
-				itemClassificationOrderRepository.saveAll(classifs);
+				itemClassificationOrderRepository.saveAll(newClassificationLinks(item, authorizedClassifications));
+				itemChangeLogService.recordChange(item.getId(), isUpdate ? ChangeType.MODIFIED : ChangeType.CREATED,
+						publisherIdsOf(authorizedClassifications));
 
+				addItemToUserTree(authentication, item, classificationKeys);
 				if (isUpdate)
 					return ResponseEntity.ok(new ValueResource(item.getStatus()));
-				//else
-                userSessionTreeLoader.doExpireForReload();
-				userSessionTreeLoader.loadUserTree(authentication);
 				return ResponseEntity.created(new URI("/api/contents/" + item.getId())).body(
 						new ValueResource(item.getStatus()));
 			}
@@ -358,6 +395,11 @@ public class ContentService {
 		}
 		log.debug("Will save item {}", item);
 		item = itemRepository.save(item);
+		publicationScheduler.itemSaved(item);
+		itemChangeLogService.recordChange(item.getId(), isUpdate ? ChangeType.MODIFIED : ChangeType.CREATED);
+		if (ItemStatus.PENDING.equals(item.getStatus())) {
+			notificationService.recordEvent(item.getId(), NotificationService.EventType.PENDING_MODERATION);
+		}
 		updateLinkedFilesToItem(item, content.getLinkedFiles());
 
 		// now we save all linked classification
@@ -373,14 +415,11 @@ public class ContentService {
 			log.debug("remove old/unautorized classif classifications {}", oldToRemoves);
 			itemClassificationOrderRepository.deleteAll(oldToRemoves);
 		}
-		Set<ItemClassificationOrder> classifs = new HashSet<>();
-		for (AbstractClassification classif : authorizedClassifications) {
-			ItemClassificationOrder ico = new ItemClassificationOrder(item, classif,
-					itemClassificationOrderRepository.getNextDisplayOrderInClassification(classif.getId()));
-			classifs.add(ico);
-		}
+		Set<ItemClassificationOrder> classifs = newClassificationLinks(item, authorizedClassifications);
 		log.debug("saving associated classifications {}", classifs);
 		itemClassificationOrderRepository.saveAll(classifs);
+		itemChangeLogService.recordChange(item.getId(), isUpdate ? ChangeType.MODIFIED : ChangeType.CREATED,
+				publisherIdsOf(authorizedClassifications));
 
 		// now we save all subscribers if there is
 		if (!authorizedSubscribers.isEmpty()) {
@@ -400,11 +439,9 @@ public class ContentService {
 			subscriberRepository.saveAll(persistSubscribers);
 		}
 
+		addItemToUserTree(authentication, item, classificationKeys);
 		if (isUpdate)
 			return ResponseEntity.ok(new ValueResource(item.getStatus()));
-		//else
-        userSessionTreeLoader.doExpireForReload();
-		userSessionTreeLoader.loadUserTree(authentication);
 		return ResponseEntity.created(new URI("/api/contents/" + item.getId())).body(
 				new ValueResource(item.getStatus()));
 	}
@@ -432,11 +469,64 @@ public class ContentService {
                 item.setStatus(ItemStatus.DRAFT);
             }
             itemRepository.save(item);
+            publicationScheduler.itemSaved(item);
+            itemChangeLogService.recordChange(item.getId(),
+                ItemStatus.PUBLISHED.equals(item.getStatus()) ? ChangeType.PUBLISHED : ChangeType.UNPUBLISHED);
+            if (validation && (ItemStatus.PUBLISHED.equals(item.getStatus()) || ItemStatus.SCHEDULED.equals(item.getStatus()))) {
+                notificationService.recordEvent(item.getId(), NotificationService.EventType.PUBLISHED);
+            }
 			return ResponseEntity.ok(new ValueResource(item.getStatus()));
 		}
 		return new ResponseEntity<>(HttpStatus.FORBIDDEN);
 	}
 
+	private Set<ItemClassificationOrder> newClassificationLinks(final AbstractItem item,
+			final Set<AbstractClassification> classifications) {
+		Set<ItemClassificationOrder> classifs = new HashSet<>();
+		if (classifications.isEmpty())
+			return classifs;
+		final Set<Long> classifIds = new HashSet<>();
+		for (AbstractClassification classif : classifications) {
+			classifIds.add(classif.getId());
+		}
+		final Map<Long, Integer> nextDisplayOrders = new HashMap<>();
+		for (Object[] row : itemClassificationOrderRepository.getNextDisplayOrdersInClassifications(classifIds)) {
+			nextDisplayOrders.put((Long) row[0], ((Number) row[1]).intValue());
+		}
+		for (AbstractClassification classif : classifications) {
+			classifs.add(new ItemClassificationOrder(item, classif, nextDisplayOrders.getOrDefault(classif.getId(), 0)));
+		}
+		return classifs;
+	}
+
+	private static Set<Long> publisherIdsOf(final Collection<AbstractClassification> classifications) {
+		final Set<Long> publisherIds = new HashSet<>();
+		for (AbstractClassification classification : classifications) {
+			publisherIds.add(classification.getPublisher().getId());
+		}
+		return publisherIds;
+	}
+
+	private static Set<Long> publisherIdsOfLinks(final Collection<ItemClassificationOrder> links) {
+		final Set<Long> publisherIds = new HashSet<>();
+		for (ItemClassificationOrder link : links) {
+			publisherIds.add(link.getId().getAbstractClassification().getPublisher().getId());
+		}
+		return publisherIds;
+	}
+
+	private void addItemToUserTree(final Authentication authentication, final AbstractItem item,
+			final Set<ContextKey> parents) {
+		if (!userSessionTreeLoader.addItemToTree(item, parents)) {
+			reloadUserTree(authentication);
+		}
+	}
+
+	private void reloadUserTree(final Authentication authentication) {
+		userSessionTreeLoader.doExpireForReload();
+		userSessionTreeLoader.loadUserTree(authentication);
+	}
+
 	private boolean isValidatedLevelLink(final AbstractClassification classification) {
 		int nbLevel = classification.getPublisher().getContext().getRedactor().getNbLevelsOfClassification();
 		boolean validCategory = nbLevel == 1 && classification instanceof Category;
@@ -451,6 +541,8 @@ public class ContentService {
 				item.setStatus(ItemStatus.DRAFT);
 			}
 			itemRepository.save(item);
+			publicationScheduler.itemSaved(item);
+			itemChangeLogService.recordChange(item.getId(), ChangeType.MODIFIED);
 			return ResponseEntity.ok(new ValueResource(item.getStatus()));
 		}
 		return new ResponseEntity<>(HttpStatus.FORBIDDEN);
@@ -487,24 +579,20 @@ public class ContentService {
 				throw new IllegalArgumentException("SubjectType '" + subjectKeyDTO.getKeyType() + "' not managed !");
 			}
 		}
+		// targets not directly authorized are resolved with batched membership queries
+		Map<String, SubscriberFormDTO> groupsToTest = new HashMap<>();
+		Map<String, SubscriberFormDTO> usersToTest = new HashMap<>();
 		for (SubscriberFormDTO toTest : targets) {
 			if (authorizedSubjects.contains(toTest.getSubject().getModelId())) {
 				// subjectkey are equals
 				filteredSubjects.add(toTest);
 			} else {
-				// subjectkey are equals so find with "sub queries"
 				switch (toTest.getSubject().getModelId().getKeyType()) {
 				case GROUP:
-					if (externalGroupDao.isGroupMemberOfAtLeastOneGroup(toTest.getSubject().getModelId().getKeyId(),
-							authorizedGroups)) {
-						filteredSubjects.add(toTest);
-					}
+					groupsToTest.put(toTest.getSubject().getModelId().getKeyId(), toTest);
 					break;
 				case PERSON:
-					if (externalGroupDao.isUserMemberOfAtLeastOneGroup(toTest.getSubject().getModelId().getKeyId(),
-							authorizedGroups)) {
-						filteredSubjects.add(toTest);
-					}
+					usersToTest.put(toTest.getSubject().getModelId().getKeyId(), toTest);
 					break;
 				default:
 					throw new IllegalArgumentException("SubjectType '" + toTest.getSubject().getModelId().getKeyType()
@@ -512,6 +600,16 @@ public class ContentService {
 				}
 			}
 		}
+		if (!groupsToTest.isEmpty()) {
+			for (String group : externalGroupDao.getGroupsMemberOfAtLeastOneGroup(groupsToTest.keySet(), authorizedGroups)) {
+				filteredSubjects.add(groupsToTest.get(group));
+			}
+		}
+		if (!usersToTest.isEmpty()) {
+			for (String uid : externalGroupDao.getUsersMemberOfAtLeastOneGroup(usersToTest.keySet(), authorizedGroups)) {
+				filteredSubjects.add(usersToTest.get(uid));
+			}
+		}
 		log.debug("filterSubcribers returned {}, \n comparing to entry {}", filteredSubjects, targets);
 
 		return filteredSubjects;
@@ -527,27 +625,31 @@ public class ContentService {
 		Optional<Filter> optionalFilterUser = filterRepository.findOne(FilterPredicates.ofTypeOfOrganization(ctx.getKeyId(),
 				FilterType.LDAP));
 		Filter filterUser = optionalFilterUser.orElse(null);
+		Map<String, SubscriberFormDTO> groupsToTest = new HashMap<>();
+		Map<String, SubscriberFormDTO> usersToTest = new HashMap<>();
 		for (SubscriberFormDTO subscriberFormDTO : targets) {
 			switch (subscriberFormDTO.getSubject().getModelId().getKeyType()) {
 			case GROUP:
-				if (filterGroup != null
-						&& externalGroupDao.isGroupMemberOfGroupFilter(filterGroup.getPattern(), subscriberFormDTO
-								.getSubject().getModelId().getKeyId())) {
-					filteredSubjects.add(subscriberFormDTO);
-				}
+				groupsToTest.put(subscriberFormDTO.getSubject().getModelId().getKeyId(), subscriberFormDTO);
 				break;
 			case PERSON:
-				if (filterUser != null
-						&& externalUserDao.isUserFoundWithFilter(filterUser.getPattern(), subscriberFormDTO
-								.getSubject().getModelId().getKeyId())) {
-					filteredSubjects.add(subscriberFormDTO);
-				}
+				usersToTest.put(subscriberFormDTO.getSubject().getModelId().getKeyId(), subscriberFormDTO);
 				break;
 			default:
 				throw new IllegalArgumentException("SubjectType '"
 						+ subscriberFormDTO.getSubject().getModelId().getKeyType() + "' not managed !");
 			}
 		}
+		if (filterGroup != null && !groupsToTest.isEmpty()) {
+			for (String group : externalGroupDao.getGroupsMemberOfGroupFilter(filterGroup.getPattern(), groupsToTest.keySet())) {
+				filteredSubjects.add(groupsToTest.get(group));
+			}
+		}
+		if (filterUser != null && !usersToTest.isEmpty()) {
+			for (String uid : externalUserDao.getUidsFoundWithFilter(filterUser.getPattern(), usersToTest.keySet())) {
+				filteredSubjects.add(usersToTest.get(uid));
+			}
+		}
 
 		log.debug("filterSubcribersOnDefault returned {}, \n comparing to entry {}", filteredSubjects, targets);
 
@@ -611,6 +713,7 @@ public class ContentService {
 					item.setStatus(ItemStatus.DRAFT);
 					itemRepository.save(item);
 				}
+				itemChangeLogService.recordChange(item.getId(), ChangeType.MODIFIED);
 				return ResponseEntity.ok(new ValueResource(item.getStatus()));
 			} else {
 				log.warn("The file {} wasn't found or isn't linked to the item specified {}", fileUri, item);
@@ -637,7 +740,8 @@ public class ContentService {
 
 	public void deleteContent(Long id) {
 		Optional<AbstractItem> optionalAbstractItem = itemRepository.findById(id);
-        optionalAbstractItem.ifPresent(item -> fileService.deleteInternalResource(item.getEnclosure()));
+		// logged before removing classification links, to know the publishers of the item
+		itemChangeLogService.recordChange(id, ChangeType.REMOVED);
         final Iterable<Subscriber> subscribersToDel = subscriberRepository.findAll(SubscriberPredicates
 				.onCtx(new ContextKey(id, ContextType.ITEM)));
 		subscriberRepository.deleteAll(subscribersToDel);
@@ -646,42 +750,27 @@ public class ContentService {
 		itemClassificationOrderRepository.deleteAll(classificationsLinksToDel);
 		final Iterable<LinkedFileItem> filesToDelete = linkedFileItemRepository.findByAbstractItemId(id);
 		linkedFileItemRepository.deleteAll(filesToDelete);
+		final List<String> privateUris = new ArrayList<>();
 		for (LinkedFileItem lFile : filesToDelete) {
-			fileService.deletePrivateResource(lFile.getUri());
+			privateUris.add(lFile.getUri());
 		}
+		fileService.deleteResourcesAfterCommit(optionalAbstractItem.map(AbstractItem::getEnclosure).orElse(null), privateUris);
 		itemRepository.deleteById(id);
-	}
-
-	@Scheduled(cron = "1 0 0 * * ?")
-	//@Scheduled(cron = "1 0/2 * * * ?")
-    @SchedulerLock(name = "ContentService_archivePublishedContents",
-        lockAtLeastFor = "PT1M", lockAtMostFor = "PT5M")
-	public void archivePublishedContents() {
-		log.warn("################### Launch scheduled task archivePublishedContents to change state of items !");
-		Integer nbUpdates = itemRepository.archiveExpiredPublished();
-		log.info("scheduled task changed state to ARCHIVED of {} items !", nbUpdates);
-	}
-
-	@Scheduled(cron = "1 10 0 * * ?")
-    @SchedulerLock(name = "ContentService_publishScheduledContents",
-        lockAtLeastFor = "PT1M", lockAtMostFor = "PT5M")
-	public void publishScheduledContents() {
-		log.warn("################### Launch scheduled task publishScheduledContents to change state of items !");
-		Integer nbUpdates = itemRepository.publishScheduled();
-		log.info("scheduled task changed state to PUBLISHED of {} items !", nbUpdates);
+		contextHierarchy.evict(new ContextKey(id, ContextType.ITEM));
 	}
 
 	/**
-	 * Once time per week we purge useless items
+	 * Once time per month we purge useless items
 	 */
 	@Scheduled(cron = "1 20 0 1 * ?")
-    @SchedulerLock(name = "ContentService_publishScheduledContents",
-        lockAtLeastFor = "PT1M", lockAtMostFor = "PT5M")
 	public void removeOldContents() {
-		log.warn("################### Launch scheduled task removeOldContents to remove items !");
-		List<AbstractItem> items = Lists.newArrayList(itemRepository.findAll(ItemPredicates.ItemsToRemove()));
-		for (AbstractItem item : items) {
-			deleteContent(item.getId());
-		}
+		scheduledJobService.run(ScheduledJob.REMOVE_OLD_CONTENTS, () -> {
+			log.warn("################### Launch scheduled task removeOldContents to remove items !");
+			List<AbstractItem> items = Lists.newArrayList(itemRepository.findAll(ItemPredicates.ItemsToRemove()));
+			for (AbstractItem item : items) {
+				deleteContent(item.getId());
+			}
+			return items.size();
+		});
 	}
 }
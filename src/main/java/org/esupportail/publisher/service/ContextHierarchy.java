@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import javax.inject.Inject;
+import javax.validation.constraints.NotNull;
+
+import org.esupportail.publisher.config.ESUPPublisherProperties;
+import org.esupportail.publisher.config.bean.ContextHierarchyProperties;
+import org.esupportail.publisher.domain.AbstractClassification;
+import org.esupportail.publisher.domain.AbstractFeed;
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.ContextKey;
+import org.esupportail.publisher.domain.Publisher;
+import org.esupportail.publisher.repository.CategoryRepository;
+import org.esupportail.publisher.repository.FeedRepository;
+import org.esupportail.publisher.repository.ItemRepository;
+import org.esupportail.publisher.repository.PublisherRepository;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * In memory hierarchy of contexts, keeping for each context the keys of its ancestors up to its organization.
+ * A context is read through from the database on its first request, then resolving its parent or its organization is
+ * a map lookup. Entries are evicted with their descendants when a context is updated or deleted, and expire after a
+ * time to live so changes done from an other node are seen.
+ * Items are attached to their organization only, as they can be in classifications of several publishers.
+ */
+@Service
+@Slf4j
+public class ContextHierarchy {
+
+    private final PublisherRepository publisherRepository;
+
+    private final CategoryRepository categoryRepository;
+
+    private final FeedRepository<AbstractFeed> feedRepository;
+
+    private final ItemRepository<AbstractItem> itemRepository;
+
+    private final Cache<ContextKey, Node> nodes;
+
+    @Inject
+    public ContextHierarchy(final PublisherRepository publisherRepository, final CategoryRepository categoryRepository,
+                            final FeedRepository<AbstractFeed> feedRepository, final ItemRepository<AbstractItem> itemRepository,
+                            final ESUPPublisherProperties esupPublisherProperties) {
+        this(publisherRepository, categoryRepository, feedRepository, itemRepository,
+            esupPublisherProperties.getCache().getContextHierarchy());
+    }
+
+    public ContextHierarchy(final PublisherRepository publisherRepository, final CategoryRepository categoryRepository,
+                            final FeedRepository<AbstractFeed> feedRepository, final ItemRepository<AbstractItem> itemRepository,
+                            final ContextHierarchyProperties properties) {
+        this.publisherRepository = publisherRepository;
+        this.categoryRepository = categoryRepository;
+        this.feedRepository = feedRepository;
+        this.itemRepository = itemRepository;
+        this.nodes = CacheBuilder.newBuilder()
+            .maximumSize(properties.getMaxEntries())
+            .expireAfterWrite(properties.getTimeToLive())
+            .build();
+    }
+
+    public Node getNode(@NotNull final ContextKey ctxKey) {
+        try {
+            return nodes.get(ctxKey, () -> load(ctxKey));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public ContextKey getOrganization(@NotNull final ContextKey ctxKey) {
+        return getNode(ctxKey).getOrganization();
+    }
+
+    public ContextKey getParent(@NotNull final ContextKey ctxKey) {
+        return getNode(ctxKey).getParent();
+    }
+
+    /**
+     * @return the ancestors of the context, from its parent to its organization.
+     */
+    public List<ContextKey> getAncestors(@NotNull final ContextKey ctxKey) {
+        return getNode(ctxKey).getAncestors();
+    }
+
+    /**
+     * Forget a context and its descendants, to call when its parent may have changed or when it is deleted.
+     */
+    public void evict(@NotNull final ContextKey ctxKey) {
+        nodes.invalidate(ctxKey);
+        nodes.asMap().values().removeIf(node -> node.getAncestors().contains(ctxKey));
+    }
+
+    public long size() {
+        return nodes.size();
+    }
+
+    private Node load(final ContextKey ctxKey) {
+        final List<ContextKey> ancestors = new ArrayList<>(3);
+        switch (ctxKey.getKeyType()) {
+            case ORGANIZATION:
+                break;
+            case PUBLISHER:
+                addAncestors(publisherRepository.findById(ctxKey.getKeyId()).orElseThrow(), ancestors);
+                break;
+            case CATEGORY:
+                addAncestors(categoryRepository.findById(ctxKey.getKeyId()).orElseThrow(), ancestors);
+                break;
+            case FEED:
+                final AbstractFeed feed = feedRepository.findById(ctxKey.getKeyId()).orElseThrow();
+                if (feed.getParent() != null) {
+                    ancestors.add(feed.getParent().getContextKey());
+                }
+                addAncestors(feed, ancestors);
+                break;
+            case ITEM:
+                ancestors.add(itemRepository.findById(ctxKey.getKeyId()).orElseThrow().getOrganization().getContextKey());
+                break;
+            default:
+                throw new IllegalArgumentException("The context Type " + ctxKey.getKeyType() + " is not managed");
+        }
+        log.trace("Loaded ancestors {} of context {}", ancestors, ctxKey);
+        return new Node(ctxKey, Collections.unmodifiableList(ancestors));
+    }
+
+    private static void addAncestors(final AbstractClassification classification, final List<ContextKey> ancestors) {
+        ancestors.add(classification.getPublisher().getContextKey());
+        addAncestors(classification.getPublisher(), ancestors);
+    }
+
+    private static void addAncestors(final Publisher publisher, final List<ContextKey> ancestors) {
+        ancestors.add(publisher.getContext().getOrganization().getContextKey());
+    }
+
+    @Value
+    public static class Node {
+        ContextKey key;
+        /** from the parent to the organization, empty for organizations */
+        List<ContextKey> ancestors;
+
+        public ContextKey getParent() {
+            return ancestors.isEmpty() ? null : ancestors.get(0);
+        }
+
+        public ContextKey getOrganization() {
+            return ancestors.isEmpty() ? key : ancestors.get(ancestors.size() - 1);
+        }
+    }
+}
@@ -15,15 +15,16 @@
  */
 package org.esupportail.publisher.service;
 
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 
+import org.esupportail.publisher.domain.AbstractClassification;
 import org.esupportail.publisher.domain.AbstractFeed;
-import org.esupportail.publisher.domain.AbstractItem;
 import org.esupportail.publisher.domain.Category;
 import org.esupportail.publisher.domain.ContextKey;
 import org.esupportail.publisher.domain.IContext;
@@ -33,8 +34,8 @@ import org.esupportail.publisher.domain.enums.DisplayOrderType;
 import org.esupportail.publisher.domain.enums.ItemType;
 import org.esupportail.publisher.domain.enums.PermissionType;
 import org.esupportail.publisher.repository.CategoryRepository;
+import org.esupportail.publisher.repository.ClassificationRepository;
 import org.esupportail.publisher.repository.FeedRepository;
-import org.esupportail.publisher.repository.ItemRepository;
 import org.esupportail.publisher.repository.OrganizationRepository;
 import org.esupportail.publisher.repository.PublisherRepository;
 import org.esupportail.publisher.repository.predicates.ClassificationPredicates;
@@ -43,12 +44,16 @@ import org.esupportail.publisher.repository.predicates.PublisherPredicates;
 import org.esupportail.publisher.security.IPermissionService;
 import org.esupportail.publisher.service.factories.TreeJSDTOFactory;
 import org.esupportail.publisher.web.rest.dto.TreeJS;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.Lists;
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.ExpressionUtils;
 import com.querydsl.core.types.Predicate;
 
 import lombok.extern.slf4j.Slf4j;
@@ -61,6 +66,12 @@ import lombok.extern.slf4j.Slf4j;
 @Transactional(readOnly=true)
 public class ContextService {
 
+    /** Max levels of childs returned in one call. */
+    public static final int MAX_TREE_DEPTH = 5;
+
+    /** Max number of contexts returned by a search. */
+    public static final int MAX_SEARCH_RESULTS = 50;
+
     //@Inject
     //private UserContextTree contextTree;
     @Inject
@@ -78,37 +89,82 @@ public class ContextService {
     @Inject
     private FeedRepository<AbstractFeed> feedRepository;
     @Inject
-    private ItemRepository<AbstractItem> itemRepository;
+    private ClassificationRepository<AbstractClassification> classificationRepository;
+    @Inject
+    private ContextHierarchy contextHierarchy;
 
     public List<TreeJS> getTreeChilds(@NotNull ContextKey ctx, PermissionType minPerm, Boolean filter) {
+        return getTreeChilds(ctx, minPerm, filter, 1);
+    }
+
+    /**
+     * Return the childs of a context, nodes having childs are expanded until the depth is reached.
+     * @param depth levels of childs to return, 1 returns only direct childs, limited to {@link #MAX_TREE_DEPTH}.
+     */
+    public List<TreeJS> getTreeChilds(@NotNull ContextKey ctx, PermissionType minPerm, Boolean filter, int depth) {
         List<? extends IContext> list = getContextChilds(ctx,minPerm, filter);
         if (list != null)
-            return treeJSDTOFactory.asDTOList(list, minPerm);
+            return asTree(list, minPerm, filter, Math.min(depth, MAX_TREE_DEPTH));
         return null;
     }
 
     public List<TreeJS> getRootTree(PermissionType minPerm) {
+        return getRootTree(minPerm, 1);
+    }
+
+    public List<TreeJS> getRootTree(PermissionType minPerm, int depth) {
         List<? extends IContext> list = getRootContexts(minPerm);
         if (list != null)
-            return treeJSDTOFactory.asDTOList(list, minPerm);
+            return asTree(list, minPerm, true, Math.min(depth, MAX_TREE_DEPTH));
         return null;
     }
 
+    /**
+     * Search authorized contexts from their display name, returned nodes are flat with the id of their parent node,
+     * "#" for organizations.
+     * @param search the part of the display name to search, case insensitive.
+     */
+    public List<TreeJS> searchTree(@NotNull final String search, PermissionType minPerm) {
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        final List<IContext> contexts = Lists.newArrayList();
+        contexts.addAll(organizationRepository.findAll(
+            permissionService.filterAuthorizedAllOfContextType(authentication, ContextType.ORGANIZATION, minPerm,
+                OrganizationPredicates.displayNameContains(search)),
+            PageRequest.of(0, MAX_SEARCH_RESULTS, Sort.by("displayName"))).getContent());
+        contexts.addAll(publisherRepository.findAll(
+            permissionService.filterAuthorizedAllOfContextType(authentication, ContextType.PUBLISHER, minPerm,
+                PublisherPredicates.displayNameContains(search)),
+            PageRequest.of(0, MAX_SEARCH_RESULTS, Sort.by("displayName"))).getContent());
+        final List<AbstractClassification> classifications = Lists.newArrayList();
+        classifications.addAll(classificationRepository.findAll(
+            permissionService.filterAuthorizedAllOfContextType(authentication, ContextType.CATEGORY, minPerm,
+                ExpressionUtils.and(ClassificationPredicates.CategoryClassification(), ClassificationPredicates.nameContains(search))),
+            PageRequest.of(0, MAX_SEARCH_RESULTS, Sort.by("name"))).getContent());
+        classifications.addAll(classificationRepository.findAll(
+            permissionService.filterAuthorizedAllOfContextType(authentication, ContextType.FEED, minPerm,
+                ExpressionUtils.and(ClassificationPredicates.AbstractFeedClassification(), ClassificationPredicates.nameContains(search))),
+            PageRequest.of(0, MAX_SEARCH_RESULTS, Sort.by("name"))).getContent());
+        // as in the tree, classifications of publishers hiding them aren't returned
+        final Map<Long, Boolean> hiddenOfPublishers = new HashMap<>();
+        for (AbstractClassification classification : classifications) {
+            final Publisher publisher = classification.getPublisher();
+            if (!hiddenOfPublishers.computeIfAbsent(publisher.getId(), id -> hasHiddenClassifications(authentication, publisher))) {
+                contexts.add(classification);
+            }
+        }
+
+        final List<IContext> found = contexts.size() > MAX_SEARCH_RESULTS ? contexts.subList(0, MAX_SEARCH_RESULTS) : contexts;
+        final List<TreeJS> nodes = treeJSDTOFactory.asDTOList(found, minPerm);
+        for (int i = 0; i < nodes.size(); i++) {
+            final ContextKey parent = getParentCtx(found.get(i));
+            nodes.get(i).setParent(parent == null ? "#" : parent.getKeyId() + ":" + parent.getKeyType());
+        }
+        return nodes;
+    }
+
     public ContextKey getOrganizationCtxOfCtx(@NotNull ContextKey ctxKey){
         if (ctxKey.getKeyType() != null && ctxKey.getKeyId() != null) {
-            switch (ctxKey.getKeyType()) {
-                case ORGANIZATION :
-                    return ctxKey;
-                case PUBLISHER :
-                    return publisherRepository.findById(ctxKey.getKeyId()).get().getContext().getOrganization().getContextKey();
-                case CATEGORY :
-                    return categoryRepository.findById(ctxKey.getKeyId()).get().getPublisher().getContext().getOrganization().getContextKey();
-                case FEED :
-                    return feedRepository.findById(ctxKey.getKeyId()).get().getPublisher().getContext().getOrganization().getContextKey();
-                case ITEM :
-                    return itemRepository.findById(ctxKey.getKeyId()).get().getOrganization().getContextKey();
-                default: throw new IllegalArgumentException("The context Type " + ctxKey.getKeyType() + " is not managed") ;
-            }
+            return contextHierarchy.getOrganization(ctxKey);
         }
         return null;
     }
@@ -131,12 +187,52 @@ public class ContextService {
         }
     }
 
+    /**
+     * Build nodes of the contexts, nodes having childs are expanded until the depth is reached.
+     */
+    private List<TreeJS> asTree(final List<? extends IContext> contexts, PermissionType minPerm, Boolean filter, int depth) {
+        final List<TreeJS> nodes = treeJSDTOFactory.asDTOList(contexts, minPerm);
+        if (depth > 1) {
+            for (int i = 0; i < nodes.size(); i++) {
+                final TreeJS node = nodes.get(i);
+                if (Boolean.TRUE.equals(node.getChildren())) {
+                    node.setChildren(asTree(getContextChilds(contexts.get(i).getContextKey(), minPerm, filter), minPerm, filter, depth - 1));
+                    node.getState().setOpened(true);
+                }
+            }
+        }
+        return nodes;
+    }
+
+    private ContextKey getParentCtx(final IContext ctx) {
+        if (ctx instanceof Publisher) {
+            return ((Publisher) ctx).getContext().getOrganization().getContextKey();
+        } else if (ctx instanceof Category) {
+            return ((Category) ctx).getPublisher().getContextKey();
+        } else if (ctx instanceof AbstractFeed) {
+            return ((AbstractFeed) ctx).getParent().getContextKey();
+        }
+        return null;
+    }
+
     private List<? extends IContext> getRootContexts(PermissionType minPerm) {
         Predicate filter = permissionService.filterAuthorizedAllOfContextType(SecurityContextHolder.getContext().getAuthentication(),
             ContextType.ORGANIZATION, minPerm, OrganizationPredicates.notNull());
         return Lists.newArrayList(organizationRepository.findAll(filter, OrganizationPredicates.orderBy()));
     }
 
+    /**
+     * @return true when the categories of the publisher are hidden to the user, they are auto associated to FLASH
+     * items and only managed by admins.
+     */
+    private boolean hasHiddenClassifications(final Authentication authentication, final Publisher publisher) {
+        if (!publisher.getContext().getReader().getAuthorizedTypes().contains(ItemType.FLASH)) {
+            return false;
+        }
+        final PermissionType role = permissionService.getRoleOfUserInContext(authentication, publisher.getContextKey());
+        return role == null || role.getMask() < PermissionType.ADMIN.getMask();
+    }
+
     private List<? extends IContext> getContextChilds(@NotNull ContextKey ctx, PermissionType minPerm, Boolean filterItem) {
         Predicate filter;
         DisplayOrderType displayOrder;
@@ -148,25 +244,16 @@ public class ContextService {
                 builder.and(filter);
                 return Lists.newArrayList(publisherRepository.findAll(builder, PublisherPredicates.orderByDisplayOrder()));
             case PUBLISHER :
-                displayOrder = publisherRepository.findById(ctx.getKeyId()).get().getDefaultDisplayOrder();
+                final Publisher publisher = publisherRepository.findById(ctx.getKeyId()).get();
+                // Only Super Admins can manage auto associated classifications, all categories are of the same publisher
+                if (hasHiddenClassifications(SecurityContextHolder.getContext().getAuthentication(), publisher)) {
+                    return Lists.newArrayList();
+                }
+                displayOrder = publisher.getDefaultDisplayOrder();
                 filter = permissionService.filterAuthorizedChildsOfContext(SecurityContextHolder.getContext().getAuthentication(),
                     ctx, minPerm, ClassificationPredicates.CategoryOfPublisher(ctx.getKeyId()));
                 builder = new BooleanBuilder(filter);
-                // Only Super Admins can manage auto associated classifications
-                List<Category> myList = Lists.newArrayList(categoryRepository.findAll(builder, ClassificationPredicates.categoryOrderByDisplayOrderType(displayOrder)));
-                if(permissionService.getRoleOfUserInContext(SecurityContextHolder.getContext().getAuthentication(), ctx).getMask() < PermissionType.ADMIN.getMask()) {
-                    // A loop is needed due to hibernate bug, NPE on publisher.context.reader.authorizedTypes.contains(ItemType.FLASH)
-                    //builder.andNot(QCategory.category.publisher.context.isNull());
-                    for(Iterator<Category> iterator = myList.iterator(); iterator.hasNext(); ) {
-                        final Category cat = iterator.next();
-                        // other cat properties can't be null
-                        if(!cat.getPublisher().getContext().getReader().getAuthorizedTypes().isEmpty()
-                            && cat.getPublisher().getContext().getReader().getAuthorizedTypes().contains(ItemType.FLASH)) {
-                            iterator.remove();
-                        }
-                    }
-                }
-                return myList;
+                return Lists.newArrayList(categoryRepository.findAll(builder, ClassificationPredicates.categoryOrderByDisplayOrderType(displayOrder)));
             case CATEGORY :
             	Optional<Category> optionalCategory = categoryRepository.findById(ctx.getKeyId());
                 Category category = optionalCategory == null || !optionalCategory.isPresent() ? null : optionalCategory.get();
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.activation.MimetypesFileTypeMap;
+import javax.inject.Inject;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.esupportail.publisher.service.bean.FileUploadHelper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resolve the mime type and the length of enclosures rendered in feeds.
+ * Metadata of local files are captured at upload time or read once from the file system, then kept in memory
+ * until the file is deleted through the {@link FileService}, so rendering a feed doesn't do any file system access.
+ */
+@Service
+@Slf4j
+public class EnclosureMetadataService {
+
+    private static final Pattern ABSOLUTE_URL = Pattern.compile("^https?://.*$");
+
+    /** The mime table is read once, getContentType is synchronized. */
+    private static final MimetypesFileTypeMap MIME_TYPES = new MimetypesFileTypeMap();
+
+    @Inject
+    @Qualifier("publicFileUploadHelper")
+    private FileUploadHelper publicFileUploadHelper;
+
+    /** Absent value when the file doesn't exist. */
+    private final Cache<String, Optional<EnclosureMetadata>> metadataCache = CacheBuilder.newBuilder()
+        .maximumSize(10000)
+        .expireAfterWrite(1, TimeUnit.HOURS)
+        .build();
+
+    public static boolean isAbsoluteUrl(final String url) {
+        return url != null && ABSOLUTE_URL.matcher(url).matches();
+    }
+
+    public static String getMimeType(final String fileName) {
+        return MIME_TYPES.getContentType(fileName);
+    }
+
+    /**
+     * @param enclosureUrl the relative url of a local enclosure, as stored on items.
+     * @return metadata of the file or null if the file doesn't exist.
+     */
+    public EnclosureMetadata getMetadata(final String enclosureUrl) {
+        try {
+            return metadataCache.get(enclosureUrl, () -> Optional.ofNullable(readMetadata(getFile(enclosureUrl)))).orElse(null);
+        } catch (ExecutionException e) {
+            log.warn("Unable to read metadata of enclosure {}", enclosureUrl, e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Register metadata of a new uploaded file.
+     */
+    public void register(final String enclosureUrl, final File file) {
+        metadataCache.put(enclosureUrl, Optional.ofNullable(readMetadata(file)));
+    }
+
+    public void evict(final String enclosureUrl) {
+        metadataCache.invalidate(enclosureUrl);
+    }
+
+    public long size() {
+        return metadataCache.size();
+    }
+
+    private File getFile(final String enclosureUrl) {
+        final String path = enclosureUrl.startsWith(publicFileUploadHelper.getUrlResourceMapping())
+            ? enclosureUrl.substring(publicFileUploadHelper.getUrlResourceMapping().length()) : enclosureUrl;
+        return new File(publicFileUploadHelper.getUploadDirectoryPath() + path);
+    }
+
+    private EnclosureMetadata readMetadata(final File file) {
+        if (file.exists()) {
+            return new EnclosureMetadata(getMimeType(file.getName()), file.length());
+        }
+        log.debug("Enclosure file {} doesn't exist", file.getPath());
+        return null;
+    }
+
+    @Getter
+    public static final class EnclosureMetadata {
+        private final String type;
+        private final long length;
+
+        public EnclosureMetadata(final String type, final long length) {
+            this.type = type;
+            this.length = length;
+        }
+    }
+}
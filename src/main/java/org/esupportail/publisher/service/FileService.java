@@ -19,18 +19,26 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.concurrent.Executor;
 
 import javax.inject.Inject;
 
 import com.google.common.io.Files;
 import com.mysema.commons.lang.Pair;
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.esupportail.publisher.config.AsyncConfiguration;
+import org.esupportail.publisher.config.metric.PublisherMetrics;
 import org.esupportail.publisher.service.bean.FileUploadHelper;
 import org.esupportail.publisher.service.exceptions.UnsupportedMimeTypeException;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartException;
@@ -54,6 +62,43 @@ public class FileService {
     @Getter
     private FileUploadHelper protectedFileUploadHelper;
 
+    @Inject
+    private PublisherMetrics publisherMetrics;
+
+    @Inject
+    private EnclosureMetadataService enclosureMetadataService;
+
+    @Inject
+    @Qualifier(AsyncConfiguration.FILE_CLEANUP_EXECUTOR)
+    private Executor fileCleanupExecutor;
+
+    /**
+     * Delete the enclosure and the private files of a removed item on the file cleanup executor,
+     * once the current transaction is committed so a rollback doesn't lose files.
+     */
+    public void deleteResourcesAfterCommit(final String enclosure, final Collection<String> privateUris) {
+        final Runnable cleanup = () -> {
+            deleteInternalResource(enclosure);
+            for (String uri : privateUris) {
+                deletePrivateResource(uri);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    fileCleanupExecutor.execute(cleanup);
+                }
+            });
+        } else {
+            fileCleanupExecutor.execute(cleanup);
+        }
+    }
+
+    public void deleteInternalResourceAfterCommit(final String urlPath) {
+        deleteResourcesAfterCommit(urlPath, Collections.emptyList());
+    }
+
 
     public boolean deleteInternalResource(final String urlPath) {
         if (urlPath != null && !urlPath.startsWith("http://") && !urlPath.startsWith("https://")) {
@@ -64,6 +109,7 @@ public class FileService {
                     return false;
                 }
             }
+            enclosureMetadataService.evict(urlPath);
             path = publicFileUploadHelper.getUploadDirectoryPath() + path;
             final File file = new File(path);
             if (file.exists()) {
@@ -154,8 +200,14 @@ public class FileService {
             }
             log.debug("Uploading file as {}", inFile.getPath());
             // start upload
+            final Timer.Sample sample = publisherMetrics.start();
             file.transferTo(inFile);
-            return fileUploadHelper.getUrlResourceMapping() + relativPath + fname;
+            publisherMetrics.recordFileTransfer(sample, "upload", file.getSize());
+            final String url = fileUploadHelper.getUrlResourceMapping() + relativPath + inFile.getName();
+            if (fileUploadHelper == publicFileUploadHelper) {
+                enclosureMetadataService.register(url, inFile);
+            }
+            return url;
         } catch (Exception e) {
             log.error("File Upload error", e);
             return null;
@@ -39,12 +39,16 @@ import org.esupportail.publisher.web.rest.dto.PermissionDTO;
 import org.esupportail.publisher.web.rest.dto.SubjectKeyDTO;
 import org.esupportail.publisher.web.rest.dto.TreeJS;
 import org.esupportail.publisher.web.rest.dto.UserDTO;
+import org.esupportail.publisher.web.rest.util.PaginationUtil;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.mysema.commons.lang.Pair;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 /**
@@ -188,6 +192,11 @@ public class GroupService implements IGroupService {
 		return treeJSDTOFactory.asDTOList(toDTOs);
 	}
 
+	@Override
+	public Page<TreeJS> getGroupMembers(final String id, final Pageable pageable) {
+		return PaginationUtil.toPage(getGroupMembers(id), pageable);
+	}
+
 	public List<UserDTO> getUserMembers(final String id) {
 		List<IExternalUser> users = externalGroupDao.getDirectUserMembers(id);
 		if (users == null || users.isEmpty())
@@ -196,4 +205,10 @@ public class GroupService implements IGroupService {
 		return userDTOFactory.asDTOList(users, false);
 	}
 
+	@Override
+	public Page<UserDTO> getUserMembers(final String id, final String search, final Pageable pageable) {
+		final Page<IExternalUser> users = externalGroupDao.getDirectUserMembers(id, search, pageable);
+		return new PageImpl<>(userDTOFactory.asDTOList(users.getContent(), false), pageable, users.getTotalElements());
+	}
+
 }
\ No newline at end of file
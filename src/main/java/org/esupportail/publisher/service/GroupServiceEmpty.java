@@ -19,6 +19,9 @@ import com.google.common.collect.Lists;
 import org.esupportail.publisher.domain.ContextKey;
 import org.esupportail.publisher.web.rest.dto.TreeJS;
 import org.esupportail.publisher.web.rest.dto.UserDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 
 import java.util.List;
 
@@ -36,8 +39,18 @@ public class GroupServiceEmpty implements IGroupService {
         return Lists.newArrayList();
     }
 
+    @Override
+    public Page<TreeJS> getGroupMembers(String id, Pageable pageable) {
+        return new PageImpl<>(Lists.newArrayList(), pageable, 0);
+    }
+
     @Override
     public List<UserDTO> getUserMembers(String id) {
         return Lists.newArrayList();
     }
+
+    @Override
+    public Page<UserDTO> getUserMembers(String id, String search, Pageable pageable) {
+        return new PageImpl<>(Lists.newArrayList(), pageable, 0);
+    }
 }
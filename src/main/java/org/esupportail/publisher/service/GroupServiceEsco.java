@@ -16,10 +16,7 @@
 package org.esupportail.publisher.service;
 
 import java.util.List;
-import java.util.Optional;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
@@ -28,27 +25,24 @@ import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.esupportail.publisher.domain.ContextKey;
-import org.esupportail.publisher.domain.Filter;
-import org.esupportail.publisher.domain.Subscriber;
-import org.esupportail.publisher.domain.enums.FilterType;
 import org.esupportail.publisher.domain.enums.PermissionType;
 import org.esupportail.publisher.domain.enums.SubjectType;
-import org.esupportail.publisher.domain.externals.ExternalGroupHelper;
-import org.esupportail.publisher.domain.externals.IExternalGroup;
 import org.esupportail.publisher.domain.externals.IExternalUser;
-import org.esupportail.publisher.repository.FilterRepository;
 import org.esupportail.publisher.repository.externals.IExternalGroupDao;
-import org.esupportail.publisher.repository.predicates.FilterPredicates;
 import org.esupportail.publisher.security.IPermissionService;
+import org.esupportail.publisher.service.bean.GroupIdTrie;
 import org.esupportail.publisher.service.factories.TreeJSDTOFactory;
 import org.esupportail.publisher.service.factories.UserDTOFactory;
 import org.esupportail.publisher.web.rest.dto.PermOnClassifWSubjDTO;
 import org.esupportail.publisher.web.rest.dto.PermOnCtxDTO;
 import org.esupportail.publisher.web.rest.dto.PermissionDTO;
+import org.esupportail.publisher.web.rest.dto.SubjectDTO;
 import org.esupportail.publisher.web.rest.dto.SubjectKeyDTO;
 import org.esupportail.publisher.web.rest.dto.TreeJS;
 import org.esupportail.publisher.web.rest.dto.UserDTO;
-import org.springframework.ldap.filter.EqualsFilter;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import com.google.common.collect.Lists;
@@ -74,19 +68,11 @@ public class GroupServiceEsco implements IGroupService {
 	@Inject
 	private IExternalGroupDao externalGroupDao;
 
-	@Inject
-	private ExternalGroupHelper externalGroupHelper;
-
-	@Inject
-	private SubscriberService subscriberService;
-
-	@Inject
-	private FilterRepository filterRepository;
-
 	@Inject
 	private ContextService contextService;
 
-	private Pattern pattern = Pattern.compile("([a-zA-Z0-9_ ]+:[a-zA-Z0-9_ ]+:[a-zA-Z0-9_ ]+:).*");
+	@Inject
+	private GroupTreeIndex groupTreeIndex;
 
 	@Override
 	public List<TreeJS> getRootNodes(final ContextKey contextKey, final List<ContextKey> subContextKeys) {
@@ -118,26 +104,7 @@ public class GroupServiceEsco implements IGroupService {
 
 		// if ADMIN perms.getSecond() is null as all is authorized
 		if (PermissionType.ADMIN.equals(perms.getFirst())) {
-			final ContextKey rootCtx = contextService.getOrganizationCtxOfCtx(contextKey);
-			Set<String> groupIds = Sets.newHashSet();
-			Set<TreeJS> tree = Sets.newHashSet();
-			if (rootCtx != null) {
-				Optional<Filter> optionalFilter = filterRepository.findOne(FilterPredicates.ofTypeOfOrganization(rootCtx.getKeyId(),
-						FilterType.GROUP));
-				Filter filter = optionalFilter == null || !optionalFilter.isPresent() ? null : optionalFilter.get();
-				if (filter != null) {
-					List<IExternalGroup> groups = externalGroupDao
-							.getGroupsWithFilter(filter.getPattern(), null, false);
-					if (groups != null) {
-						/*for (IExternalGroup group : groups) {
-						    groupIds.add(group.getId());
-						}*/
-						tree.addAll(getGroupMembers(groups));
-					}
-				}
-			}
-			//return treeJSDTOFactory.asDTOList(externalGroupDao.getGroupsById(groupIds, true));
-			return Lists.newArrayList(tree);
+			return getRootNodesOfOrganization(contextKey);
 		}
 
 		if (PermissionType.CONTRIBUTOR.getMask() <= perms.getFirst().getMask()) {
@@ -155,33 +122,7 @@ public class GroupServiceEsco implements IGroupService {
 					return treeJSDTOFactory.asDTOList(externalGroupDao.getGroupsByIdStartWith(authorizedGroups, true));
 				} else if (perm instanceof PermOnCtxDTO) {
 					log.debug("PermOnCtxDTO");
-					List<Subscriber> subscribers = subscriberService.getDefaultsSubscribersOfContext(contextKey);
-					Set<String> groupIds = Sets.newHashSet();
-					for (Subscriber subscriber : subscribers) {
-						if (SubjectType.GROUP.equals(subscriber.getSubjectCtxId().getSubject().getKeyType())) {
-							groupIds.add(subscriber.getSubjectCtxId().getSubject().getKeyValue() + "*");
-						}
-					}
-					final ContextKey rootCtx = contextService.getOrganizationCtxOfCtx(contextKey);
-					Set<TreeJS> tree = Sets.newHashSet();
-					if (rootCtx != null) {
-						Optional<Filter> optionalFilter = filterRepository.findOne(FilterPredicates.ofTypeOfOrganization(rootCtx.getKeyId(),
-								FilterType.GROUP));
-						Filter filter = optionalFilter == null || !optionalFilter.isPresent() ? null : optionalFilter.get();
-						if (filter != null) {
-							List<IExternalGroup> groups = externalGroupDao.getGroupsWithFilter(filter.getPattern(),
-									null, false);
-							if (groups != null) {
-								/*for (IExternalGroup group : groups) {
-								    groupIds.add(group.getId());
-								}*/
-								tree.addAll(getGroupMembers(groups));
-							}
-						}
-					}
-
-					return Lists.newArrayList(tree);
-					//return treeJSDTOFactory.asDTOList(externalGroupDao.getGroupsById(groupIds, true));
+					return getRootNodesOfOrganization(contextKey);
 				} else
 					throw new IllegalStateException(String.format("Management of %s type is not yet implemented",
 							perm.getClass()));
@@ -193,24 +134,17 @@ public class GroupServiceEsco implements IGroupService {
 
 	@Override
 	public List<TreeJS> getGroupMembers(final String id) {
-		List<TreeJS> tree = Lists.newArrayList();
-		org.springframework.ldap.filter.Filter filter = new EqualsFilter(externalGroupHelper.getGroupSearchAttribute(),
-				id + ":*");
-		List<IExternalGroup> groups = externalGroupDao.getGroupsWithFilter(filter.encode(), null, false);
-		for (IExternalGroup group : groups) {
-			String[] splitted = group.getId().replaceFirst(id, "").split(":");
-			if (splitted.length > 0) {
-				String currentPath = id;
-				for (int i = 0; i < splitted.length - 1; i++) {
-					String parent = currentPath;
-					currentPath += ":" + splitted[i];
-					tree.add(from(currentPath, splitted[i], i < splitted.length - 1, parent));
-				}
-			}
-		}
+		final GroupIdTrie.Node node = groupTreeIndex.findNode(id);
+		if (node == null) return Lists.newArrayList();
+		return from(node.getChilds(0, Integer.MAX_VALUE));
+	}
 
-		return tree;
-		//return treeJSDTOFactory.asDTOList(toDTOs);
+	@Override
+	public Page<TreeJS> getGroupMembers(final String id, final Pageable pageable) {
+		final GroupIdTrie.Node node = groupTreeIndex.findNode(id);
+		if (node == null) return new PageImpl<>(Lists.newArrayList(), pageable, 0);
+		return new PageImpl<>(from(node.getChilds((int) pageable.getOffset(), pageable.getPageSize())), pageable,
+				node.countChilds());
 	}
 
 	public List<UserDTO> getUserMembers(final String id) {
@@ -221,43 +155,39 @@ public class GroupServiceEsco implements IGroupService {
 		return userDTOFactory.asDTOList(users, false);
 	}
 
-	private List<TreeJS> getGroupMembers(final List<IExternalGroup> groups) {
-		List<TreeJS> tree = Lists.newArrayList();
-		for (IExternalGroup group : groups) {
-			log.debug("Group to Decompose : {}", group.getId());
-			Matcher idmatch = pattern.matcher(group.getId());
-			String id = group.getId();
-			String subpath = group.getId();
-			if (idmatch.find()) {
-				id = idmatch.group(1).substring(0, idmatch.group(1).length() - 1);
-				subpath = group.getId().replace(id + ":", "");
-			}
-			log.debug("Groupe Decomposition : {}, {}", id, subpath);
+	@Override
+	public Page<UserDTO> getUserMembers(final String id, final String search, final Pageable pageable) {
+		final Page<IExternalUser> users = externalGroupDao.getDirectUserMembers(id, search, pageable);
+		return new PageImpl<>(userDTOFactory.asDTOList(users.getContent(), false), pageable, users.getTotalElements());
+	}
 
-			String[] splitted = subpath.split(":");
-			if (splitted.length > 0) {
-				String currentPath = id.equals(subpath) ? splitted[0] : id;
-				for (int i = 0; i < splitted.length - 1; i++) {
-					String parent = currentPath;
-					currentPath += ":" + splitted[i];
-					tree.add(from(currentPath, splitted[i], i < splitted.length - 1, parent));
-				}
-			}
-		}
+	private List<TreeJS> getRootNodesOfOrganization(final ContextKey contextKey) {
+		final ContextKey rootCtx = contextService.getOrganizationCtxOfCtx(contextKey);
+		if (rootCtx == null) return Lists.newArrayList();
+		return from(groupTreeIndex.getTree(rootCtx.getKeyId()).getRootNodes());
+	}
 
+	private List<TreeJS> from(final List<GroupIdTrie.Node> nodes) {
+		List<TreeJS> tree = Lists.newArrayListWithCapacity(nodes.size());
+		for (GroupIdTrie.Node node : nodes) {
+			tree.add(from(node));
+		}
 		return tree;
-		//return treeJSDTOFactory.asDTOList(toDTOs);
 	}
 
-	private TreeJS from(@NotNull final String id, @NotNull final String displayName, final boolean hasMembers,
-			@NotNull final String parent) {
+	private TreeJS from(@NotNull final GroupIdTrie.Node model) {
 		TreeJS node = new TreeJS();
-		node.setId(id);
-		node.setText(displayName);
-		node.setParent(parent);
-		node.getLi_attr().setLeaf(!hasMembers);
-		node.getLi_attr().setBase(id);
-		node.getA_attr().setTitle(id);
+		node.setId(model.getPath());
+		node.setText(model.getLabel());
+		final String parent = model.getDisplayedParentPath();
+		node.setParent(parent != null ? parent : "#");
+		node.setChildren(model.hasChilds());
+		node.getLi_attr().setLeaf(!model.hasChilds());
+		node.getLi_attr().setBase(model.getPath());
+		node.getA_attr().setTitle(model.getPath());
+		if (model.isGroup()) {
+			node.getA_attr().setModel(new SubjectDTO(new SubjectKeyDTO(model.getPath(), SubjectType.GROUP), model.getLabel(), true));
+		}
 		log.debug("{}", node);
 		return node;
 	}
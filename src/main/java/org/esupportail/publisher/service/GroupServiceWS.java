@@ -44,6 +44,10 @@ import org.esupportail.publisher.web.rest.dto.PermissionDTO;
 import org.esupportail.publisher.web.rest.dto.SubjectKeyDTO;
 import org.esupportail.publisher.web.rest.dto.TreeJS;
 import org.esupportail.publisher.web.rest.dto.UserDTO;
+import org.esupportail.publisher.web.rest.util.PaginationUtil;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import com.google.common.collect.Lists;
@@ -182,6 +186,11 @@ public class GroupServiceWS implements IGroupService {
 		return treeJSDTOFactory.asDTOList(toDTOs);
 	}
 
+	@Override
+	public Page<TreeJS> getGroupMembers(final String id, final Pageable pageable) {
+		return PaginationUtil.toPage(getGroupMembers(id), pageable);
+	}
+
 	@Override
 	public List<UserDTO> getUserMembers(String id) {
 		List<IExternalUser> users = externalGroupDao.getDirectUserMembers(id);
@@ -190,4 +199,10 @@ public class GroupServiceWS implements IGroupService {
 
 		return userDTOFactory.asDTOList(users, false);
 	}
+
+	@Override
+	public Page<UserDTO> getUserMembers(final String id, final String search, final Pageable pageable) {
+		final Page<IExternalUser> users = externalGroupDao.getDirectUserMembers(id, search, pageable);
+		return new PageImpl<>(userDTOFactory.asDTOList(users.getContent(), false), pageable, users.getTotalElements());
+	}
 }
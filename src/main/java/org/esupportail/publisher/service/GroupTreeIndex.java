@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import javax.validation.constraints.NotNull;
+
+import org.esupportail.publisher.domain.Filter;
+import org.esupportail.publisher.domain.enums.FilterType;
+import org.esupportail.publisher.repository.FilterRepository;
+import org.esupportail.publisher.repository.externals.IExternalGroupDao;
+import org.esupportail.publisher.repository.predicates.FilterPredicates;
+import org.esupportail.publisher.service.bean.GroupIdTrie;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * In memory trees of group ids by organization, built from the group filter of the organization.
+ * A tree is loaded on the first request on its organization, then reloaded from the directory after each refresh delay,
+ * so navigating in groups doesn't need directory searches.
+ * Reloads are run on the directory refresh executor, an organization being reloaded is skipped until its reload ends.
+ */
+@Slf4j
+public class GroupTreeIndex {
+
+    private final IExternalGroupDao externalGroupDao;
+
+    private final FilterRepository filterRepository;
+
+    private final Executor refreshExecutor;
+
+    private final Map<Long, GroupIdTrie> tries = new ConcurrentHashMap<>();
+
+    private final Set<Long> refreshing = ConcurrentHashMap.newKeySet();
+
+    public GroupTreeIndex(final IExternalGroupDao externalGroupDao, final FilterRepository filterRepository) {
+        this(externalGroupDao, filterRepository, Runnable::run);
+    }
+
+    public GroupTreeIndex(final IExternalGroupDao externalGroupDao, final FilterRepository filterRepository,
+                          final Executor refreshExecutor) {
+        this.externalGroupDao = externalGroupDao;
+        this.filterRepository = filterRepository;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    public GroupIdTrie getTree(final long organizationId) {
+        return tries.computeIfAbsent(organizationId, this::load);
+    }
+
+    /**
+     * @return the node of the path in one of the loaded trees, null if not found.
+     */
+    public GroupIdTrie.Node findNode(@NotNull final String path) {
+        for (GroupIdTrie trie : tries.values()) {
+            final GroupIdTrie.Node node = trie.getNode(path);
+            if (node != null) return node;
+        }
+        return null;
+    }
+
+    @Scheduled(initialDelayString = "${app.ldap.group-tree.refresh-delay:PT30M}",
+        fixedDelayString = "${app.ldap.group-tree.refresh-delay:PT30M}")
+    public void refresh() {
+        for (Long organizationId : tries.keySet()) {
+            if (!refreshing.add(organizationId)) {
+                log.debug("Tree of groups of organization {} is already being reloaded", organizationId);
+                continue;
+            }
+            try {
+                refreshExecutor.execute(() -> {
+                    try {
+                        // the old tree is used until the new one is loaded
+                        tries.put(organizationId, load(organizationId));
+                    } finally {
+                        refreshing.remove(organizationId);
+                    }
+                });
+            } catch (RuntimeException e) {
+                refreshing.remove(organizationId);
+                throw e;
+            }
+        }
+    }
+
+    private GroupIdTrie load(final long organizationId) {
+        final GroupIdTrie trie = new GroupIdTrie();
+        final Optional<Filter> filter = filterRepository.findOne(FilterPredicates.ofTypeOfOrganization(organizationId, FilterType.GROUP));
+        if (filter.isPresent()) {
+            final long start = System.currentTimeMillis();
+            final Set<String> ids = externalGroupDao.getGroupIdsWithFilter(filter.get().getPattern());
+            for (String id : ids) {
+                trie.add(id);
+            }
+            log.debug("Tree of {} groups loaded in {} ms for organization {}", trie.getSize(),
+                System.currentTimeMillis() - start, organizationId);
+        } else {
+            log.warn("No group filter defined for organization {}, the tree of groups is empty", organizationId);
+        }
+        return trie;
+    }
+}
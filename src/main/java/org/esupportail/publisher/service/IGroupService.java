@@ -19,6 +19,9 @@ import org.esupportail.publisher.domain.ContextKey;
 import org.esupportail.publisher.web.rest.dto.TreeJS;
 import org.esupportail.publisher.web.rest.dto.UserDTO;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
 import java.util.List;
 
 /**
@@ -29,5 +32,9 @@ public interface IGroupService {
 
     List<TreeJS> getGroupMembers(String id);
 
+    Page<TreeJS> getGroupMembers(String id, Pageable pageable);
+
     List<UserDTO> getUserMembers(String id);
+
+    Page<UserDTO> getUserMembers(String id, String search, Pageable pageable);
 }
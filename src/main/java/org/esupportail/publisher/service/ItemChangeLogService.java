@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.esupportail.publisher.config.ESUPPublisherProperties;
+import org.esupportail.publisher.domain.enums.ItemStatus;
+import org.esupportail.publisher.service.bean.ScheduledJob;
+
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Log of item changes in the T_ITEM_CHANGE_LOG table, used to answer published items requests with only the items
+ * changed since a token, the token being the id of the last change seen by the reader.
+ * Changes are logged for each publisher where the item is classified, so a reader gets only the changes of its
+ * publication. Only item ids are logged, the state of the publication is always read from items, so a changed item no
+ * more published is a removal for the reader.
+ * Ids are given when rows are inserted but become visible when transactions commit, so tokens are held back before the
+ * changes logged during a safety margin: recent changes are sent again on the next call, instead of being missed.
+ */
+@Service
+@Slf4j
+public class ItemChangeLogService {
+
+    public static final String TABLE_NAME = "T_ITEM_CHANGE_LOG";
+
+    private static final String INSERT_CHANGES_OF_CLASSIFIED_ITEMS = "INSERT INTO " + TABLE_NAME
+        + " (item_id, publisher_id, change_type, changed_at) SELECT DISTINCT ci.item_id, c.publisher_id, ?, ? "
+        + "FROM T_CLASSIFICATION_ITEM ci INNER JOIN T_CLASSIFICATION c ON c.id = ci.classification_id "
+        + "INNER JOIN T_ITEM i ON i.id = ci.item_id WHERE ";
+
+    public enum ChangeType {
+        CREATED,
+        MODIFIED,
+        PUBLISHED,
+        UNPUBLISHED,
+        ARCHIVED,
+        REMOVED
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Duration retention;
+
+    private final Duration safetyMargin;
+
+    private final Clock clock;
+
+    @Inject
+    private ScheduledJobService scheduledJobService;
+
+    @Inject
+    public ItemChangeLogService(final JdbcTemplate jdbcTemplate, final ESUPPublisherProperties esupPublisherProperties) {
+        this(jdbcTemplate, esupPublisherProperties.getService().getChangeLog().getRetention(),
+            esupPublisherProperties.getService().getChangeLog().getSafetyMargin(), Clock.systemDefaultZone());
+    }
+
+    public ItemChangeLogService(final JdbcTemplate jdbcTemplate, final Duration retention, final Duration safetyMargin,
+                                final Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retention = retention;
+        this.safetyMargin = safetyMargin;
+        this.clock = clock;
+    }
+
+    /**
+     * Log the change for the publishers where the item is classified, so it must be called before removing
+     * classification links, and completed with {@link #recordChange(long, ChangeType, Collection)} for new links.
+     */
+    public void recordChange(final long itemId, final ChangeType type) {
+        jdbcTemplate.update(INSERT_CHANGES_OF_CLASSIFIED_ITEMS + "ci.item_id = ?", type.name(), now(), itemId);
+    }
+
+    /**
+     * Log the change for the given publishers.
+     */
+    public void recordChange(final long itemId, final ChangeType type, final Collection<Long> publisherIds) {
+        final Timestamp now = now();
+        final List<Object[]> args = new ArrayList<>();
+        for (Long publisherId : new HashSet<>(publisherIds)) {
+            args.add(new Object[] {itemId, publisherId, type.name(), now});
+        }
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO " + TABLE_NAME + " (item_id, publisher_id, change_type, changed_at) "
+                + "VALUES (?, ?, ?, ?)", args);
+        }
+    }
+
+    /**
+     * Log published items ended before the given day.
+     * @return the number of logged changes.
+     */
+    public int recordExpiredPublishedArchiving(final LocalDate today) {
+        return jdbcTemplate.update(INSERT_CHANGES_OF_CLASSIFIED_ITEMS + "i.status = ? AND i.end_date IS NOT NULL AND i.end_date < ?",
+            ChangeType.ARCHIVED.name(), now(), ItemStatus.PUBLISHED.name(), java.sql.Date.valueOf(today));
+    }
+
+    /**
+     * Log scheduled items starting until the given day.
+     * @return the number of logged changes.
+     */
+    public int recordScheduledPublishing(final LocalDate today) {
+        return jdbcTemplate.update(INSERT_CHANGES_OF_CLASSIFIED_ITEMS + "i.status = ? AND i.start_date IS NOT NULL AND i.start_date <= ?",
+            ChangeType.PUBLISHED.name(), now(), ItemStatus.SCHEDULED.name(), java.sql.Date.valueOf(today));
+    }
+
+    /**
+     * @return the token to give to readers getting the whole publication.
+     */
+    public long getCurrentToken() {
+        return readBounds().getSafeToken();
+    }
+
+    /**
+     * @return the items of the publisher changed since the token, or empty when the token can't be used anymore because
+     * changes after it were purged, or because it doesn't come from this database.
+     */
+    public Optional<Changes> getChangesSince(final long token, final long publisherId) {
+        final Bounds bounds = readBounds();
+        if (token < 0 || token > bounds.getMax() || (bounds.getMin() == null && token != bounds.getMax())
+            || (bounds.getMin() != null && token < bounds.getMin() - 1)) {
+            log.debug("Change token {} is out of the logged changes [{}, {}]", token, bounds.getMin(), bounds.getMax());
+            return Optional.empty();
+        }
+        final List<Long> itemIds = jdbcTemplate.queryForList("SELECT DISTINCT item_id FROM " + TABLE_NAME
+            + " WHERE publisher_id = ? AND id > ?", Long.class, publisherId, token);
+        return Optional.of(new Changes(Math.max(token, bounds.getSafeToken()), new HashSet<>(itemIds)));
+    }
+
+    private Bounds readBounds() {
+        final Map<String, Object> row = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id, "
+            + "MAX(CASE WHEN changed_at < ? THEN id END) AS settled_id FROM " + TABLE_NAME,
+            new Timestamp(clock.millis() - safetyMargin.toMillis()));
+        return new Bounds(toLong(row.get("min_id")), row.get("max_id") != null ? toLong(row.get("max_id")) : 0L,
+            toLong(row.get("settled_id")));
+    }
+
+    private static Long toLong(final Object value) {
+        return value != null ? ((Number) value).longValue() : null;
+    }
+
+    @Scheduled(cron = "1 30 0 * * ?")
+    public void runPurgeOldChanges() {
+        scheduledJobService.run(ScheduledJob.PURGE_ITEM_CHANGES, this::purgeOldChanges);
+    }
+
+    /**
+     * @return the number of purged changes.
+     */
+    public int purgeOldChanges() {
+        final int purged = jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE changed_at < ?",
+            new Timestamp(clock.millis() - retention.toMillis()));
+        log.info("scheduled task purged {} item changes older than {} !", purged, retention);
+        return purged;
+    }
+
+    private Timestamp now() {
+        return new Timestamp(clock.millis());
+    }
+
+    @Value
+    private static class Bounds {
+        Long min;
+        long max;
+        /** the last change logged before the safety margin */
+        Long settled;
+
+        /**
+         * A token before uncommitted changes: the last settled change, or the start of the log when all changes are
+         * recent, the reader will get the whole publication again if older changes were purged.
+         */
+        long getSafeToken() {
+            return settled != null ? settled : 0L;
+        }
+    }
+
+    @Getter
+    public static class Changes {
+        private final long token;
+        private final Set<Long> itemIds;
+
+        public Changes(final long token, final Set<Long> itemIds) {
+            this.token = token;
+            this.itemIds = itemIds;
+        }
+    }
+}
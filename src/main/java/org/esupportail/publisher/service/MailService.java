@@ -20,6 +20,7 @@ import java.util.Locale;
 
 import javax.mail.internet.MimeMessage;
 
+import org.esupportail.publisher.config.AsyncConfiguration;
 import org.esupportail.publisher.config.ESUPPublisherProperties;
 import org.esupportail.publisher.domain.User;
 
@@ -64,7 +65,7 @@ public class MailService {
         this.templateEngine = templateEngine;
     }
 
-    @Async
+    @Async(AsyncConfiguration.MAIL_EXECUTOR)
     public void sendEmail(String to, String subject, String content, boolean isMultipart, boolean isHtml) {
         log.debug("Send e-mail[multipart '{}' and html '{}'] to '{}' with subject '{}' and content={}",
                 isMultipart, isHtml, to, subject, content);
@@ -84,7 +85,7 @@ public class MailService {
         }
     }
 
-    @Async
+    @Async(AsyncConfiguration.MAIL_EXECUTOR)
     public void sendEmailFromTemplate(User user, String templateName, String titleKey) {
         if (user.getEmail() == null) {
             log.debug("Email doesn't exist for user '{}'", user.getLogin());
@@ -99,19 +100,19 @@ public class MailService {
         sendEmail(user.getEmail(), subject, content, false, true);
     }
 
-    @Async
+    @Async(AsyncConfiguration.MAIL_EXECUTOR)
     public void sendActivationEmail(User user) {
         log.debug("Sending activation email to '{}'", user.getEmail());
         sendEmailFromTemplate(user, "mail/activationEmail", "email.activation.title");
     }
 
-    @Async
+    @Async(AsyncConfiguration.MAIL_EXECUTOR)
     public void sendCreationEmail(User user) {
         log.debug("Sending creation email to '{}'", user.getEmail());
         sendEmailFromTemplate(user, "mail/creationEmail", "email.activation.title");
     }
 
-    @Async
+    @Async(AsyncConfiguration.MAIL_EXECUTOR)
     public void sendPasswordResetMail(User user) {
         log.debug("Sending password reset email to '{}'", user.getEmail());
         sendEmailFromTemplate(user, "mail/passwordResetEmail", "email.reset.title");
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.esupportail.publisher.domain.AbstractClassification;
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.AbstractPermission;
+import org.esupportail.publisher.domain.ContextKey;
+import org.esupportail.publisher.domain.PermissionOnContext;
+import org.esupportail.publisher.domain.evaluators.AbstractEvaluator;
+import org.esupportail.publisher.domain.evaluators.OperatorEvaluator;
+import org.esupportail.publisher.domain.evaluators.UserAttributesEvaluator;
+import org.esupportail.publisher.domain.evaluators.UserGroupEvaluator;
+import org.esupportail.publisher.domain.enums.OperatorType;
+import org.esupportail.publisher.domain.enums.PermissionType;
+import org.esupportail.publisher.domain.enums.StringEvaluationMode;
+import org.esupportail.publisher.domain.externals.ExternalUserHelper;
+import org.esupportail.publisher.domain.externals.IExternalUser;
+import org.esupportail.publisher.repository.ClassificationRepository;
+import org.esupportail.publisher.repository.ItemRepository;
+import org.esupportail.publisher.repository.PermissionRepository;
+import org.esupportail.publisher.repository.externals.IExternalUserDao;
+import org.esupportail.publisher.repository.predicates.PermissionPredicates;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Resolve mails of users to notify about an item: its author for publications, and its moderators for pending moderations.
+ * Moderators are users having a role greater than contributor on a classification of the item, on the publisher of a
+ * classification or on the organization of the item. Only users designated by their id, or by a group, through OR
+ * operators can be listed from permission evaluators, the others are not notified.
+ */
+@Service
+@Slf4j
+@Transactional(readOnly = true)
+public class NotificationRecipientResolver {
+
+    @Inject
+    private ItemRepository<AbstractItem> itemRepository;
+
+    @Inject
+    private ClassificationRepository<AbstractClassification> classificationRepository;
+
+    @Inject
+    private PermissionRepository<AbstractPermission> permissionRepository;
+
+    @Inject
+    private IExternalUserDao externalUserDao;
+
+    @Inject
+    private ExternalUserHelper externalUserHelper;
+
+    /**
+     * @return the mail of the author of the item, or null when unknown.
+     */
+    public String getAuthorMail(final AbstractItem item) {
+        if (item.getCreatedBy() == null) return null;
+        if (item.getCreatedBy().getEmail() != null) {
+            return item.getCreatedBy().getEmail();
+        }
+        final Collection<String> mails = externalUserDao.getUserMailsByUids(Collections.singleton(item.getCreatedBy().getLogin()));
+        return mails == null || mails.isEmpty() ? null : mails.iterator().next();
+    }
+
+    /**
+     * @return the contexts on which a role gives the moderation of the item.
+     */
+    public Set<ContextKey> getModerationContexts(final AbstractItem item) {
+        final Set<ContextKey> contexts = new HashSet<>();
+        if (item.getOrganization() != null) {
+            contexts.add(item.getOrganization().getContextKey());
+        }
+        final Set<Long> classificationIds = new HashSet<>();
+        for (ContextKey classification : itemRepository.findClassificationKeysOfItem(item.getId())) {
+            contexts.add(classification);
+            classificationIds.add(classification.getKeyId());
+        }
+        if (!classificationIds.isEmpty()) {
+            for (AbstractClassification classification : classificationRepository.findAllById(classificationIds)) {
+                if (classification.getPublisher() != null) {
+                    contexts.add(classification.getPublisher().getContextKey());
+                }
+            }
+        }
+        return contexts;
+    }
+
+    /**
+     * @return the mails of users having a role greater than contributor on one of the contexts.
+     */
+    public Set<String> getModeratorMails(final Collection<ContextKey> contexts) {
+        if (contexts.isEmpty()) return Collections.emptySet();
+        final Set<String> uids = new HashSet<>();
+        final Set<String> groupIds = new HashSet<>();
+        for (AbstractPermission permission : permissionRepository.findAll(PermissionPredicates.AbstractPermOnCtx(contexts))) {
+            if (permission instanceof PermissionOnContext && ((PermissionOnContext) permission).getRole() != null
+                && ((PermissionOnContext) permission).getRole().getMask() > PermissionType.CONTRIBUTOR.getMask()) {
+                collectSubjects(permission.getEvaluator(), uids, groupIds);
+            }
+        }
+        final Set<String> mails = new HashSet<>();
+        if (!uids.isEmpty()) {
+            mails.addAll(externalUserDao.getUserMailsByUids(uids));
+        }
+        for (String groupId : groupIds) {
+            for (IExternalUser user : externalUserDao.getUsersByGroupId(groupId)) {
+                mails.add(user.getEmail());
+            }
+        }
+        mails.remove(null);
+        return mails;
+    }
+
+    private void collectSubjects(final AbstractEvaluator evaluator, final Set<String> uids, final Set<String> groupIds) {
+        if (evaluator instanceof OperatorEvaluator) {
+            final OperatorEvaluator operator = (OperatorEvaluator) evaluator;
+            if (OperatorType.OR.equals(operator.getType())) {
+                for (AbstractEvaluator child : operator.getEvaluators()) {
+                    collectSubjects(child, uids, groupIds);
+                }
+            } else {
+                log.debug("Moderators designated by a {} operator can't be listed and won't be notified", operator.getType());
+            }
+        } else if (evaluator instanceof UserGroupEvaluator) {
+            groupIds.add(((UserGroupEvaluator) evaluator).getGroup());
+        } else if (evaluator instanceof UserAttributesEvaluator
+            && StringEvaluationMode.EQUALS.equals(((UserAttributesEvaluator) evaluator).getMode())
+            && externalUserHelper.getUserIdAttribute().equals(((UserAttributesEvaluator) evaluator).getAttribute())) {
+            uids.add(((UserAttributesEvaluator) evaluator).getValue());
+        } else if (evaluator != null) {
+            log.debug("Moderators designated by the evaluator {} can't be listed and won't be notified", evaluator);
+        }
+    }
+}
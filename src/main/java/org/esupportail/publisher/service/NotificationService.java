@@ -0,0 +1,305 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import org.esupportail.publisher.config.ESUPPublisherProperties;
+import org.esupportail.publisher.config.bean.CustomMailProperties;
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.ContextKey;
+import org.esupportail.publisher.repository.ItemRepository;
+import org.esupportail.publisher.service.bean.ScheduledJob;
+
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.MessageSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+
+/**
+ * Queue of pending moderation and publication events in the T_NOTIFICATION_EVENT table, sent periodically as digests.
+ * Events are recorded in the transaction saving the item, and aggregated per recipient when sending, so a recipient
+ * gets one mail per sending whatever the number of items, with a template rendered once. Mails of a sending are
+ * sent over the same smtp connection, up to a max number of mails per connection.
+ * Only the read events are deleted, once all the digests including them are sent, so the events of a recipient whose
+ * digest failed are sent again on the next sending, and events recorded while sending are kept.
+ */
+@Service
+@Slf4j
+public class NotificationService {
+
+    public static final String TABLE_NAME = "T_NOTIFICATION_EVENT";
+
+    public static final String TEMPLATE = "mail/notificationDigest";
+
+    public enum EventType {
+        /** an item waits for a moderator validation, moderators are notified */
+        PENDING_MODERATION,
+        /** an item was validated by a moderator, the author is notified */
+        PUBLISHED
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ItemRepository<AbstractItem> itemRepository;
+
+    private final NotificationRecipientResolver recipientResolver;
+
+    private final JavaMailSenderImpl javaMailSender;
+
+    private final SpringTemplateEngine templateEngine;
+
+    private final MessageSource messageSource;
+
+    private final CustomMailProperties properties;
+
+    private final TransactionOperations transactionOperations;
+
+    private final Clock clock;
+
+    @Inject
+    private ScheduledJobService scheduledJobService;
+
+    @Inject
+    public NotificationService(final JdbcTemplate jdbcTemplate, final ItemRepository<AbstractItem> itemRepository,
+                               final NotificationRecipientResolver recipientResolver, final JavaMailSenderImpl javaMailSender,
+                               final SpringTemplateEngine templateEngine, final MessageSource messageSource,
+                               final ESUPPublisherProperties esupPublisherProperties,
+                               final PlatformTransactionManager transactionManager) {
+        this(jdbcTemplate, itemRepository, recipientResolver, javaMailSender, templateEngine, messageSource,
+            esupPublisherProperties.getMail(), readOnly(transactionManager), Clock.systemDefaultZone());
+    }
+
+    public NotificationService(final JdbcTemplate jdbcTemplate, final ItemRepository<AbstractItem> itemRepository,
+                               final NotificationRecipientResolver recipientResolver, final JavaMailSenderImpl javaMailSender,
+                               final SpringTemplateEngine templateEngine, final MessageSource messageSource,
+                               final CustomMailProperties properties, final TransactionOperations transactionOperations,
+                               final Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.itemRepository = itemRepository;
+        this.recipientResolver = recipientResolver;
+        this.javaMailSender = javaMailSender;
+        this.templateEngine = templateEngine;
+        this.messageSource = messageSource;
+        this.properties = properties;
+        this.transactionOperations = transactionOperations;
+        this.clock = clock;
+    }
+
+    public void recordEvent(final long itemId, final EventType type) {
+        if (!properties.getNotification().isEnabled()) return;
+        jdbcTemplate.update("INSERT INTO " + TABLE_NAME + " (item_id, event_type, created_at) VALUES (?, ?, ?)",
+            itemId, type.name(), new Timestamp(clock.millis()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.notification.digest-interval:PT15M}")
+    public void runSendDigests() {
+        if (!properties.getNotification().isEnabled()) return;
+        scheduledJobService.run(ScheduledJob.SEND_NOTIFICATION_DIGESTS, this::sendDigests);
+    }
+
+    /**
+     * Send digests of the recorded events to their recipients.
+     * @return the number of sent digests.
+     */
+    public int sendDigests() {
+        final List<Event> events = getEvents(properties.getNotification().getMaxEventsPerDigest());
+        if (events.isEmpty()) return 0;
+        final Map<String, Digest> digests = transactionOperations.execute(status -> aggregate(events));
+
+        final Locale locale = Locale.forLanguageTag(properties.getNotification().getLangKey());
+        final Map<MimeMessage, Digest> messages = new LinkedHashMap<>();
+        // read events are done, except those of digests that could not be built or sent
+        final Set<Long> doneEventIds = new LinkedHashSet<>();
+        for (Event event : events) {
+            doneEventIds.add(event.getId());
+        }
+        final Set<Long> failedEventIds = new HashSet<>();
+        for (Map.Entry<String, Digest> digest : digests.entrySet()) {
+            try {
+                messages.put(createMessage(digest.getKey(), digest.getValue(), locale), digest.getValue());
+            } catch (MessagingException | RuntimeException e) {
+                log.warn("Notification digest could not be built for '{}'", digest.getKey(), e);
+                failedEventIds.addAll(digest.getValue().getEventIds());
+            }
+        }
+        final Set<MimeMessage> failedMessages = send(new ArrayList<>(messages.keySet()));
+        for (MimeMessage failedMessage : failedMessages) {
+            failedEventIds.addAll(messages.get(failedMessage).getEventIds());
+        }
+        doneEventIds.removeAll(failedEventIds);
+        final List<Object[]> args = new ArrayList<>(doneEventIds.size());
+        for (Long eventId : doneEventIds) {
+            args.add(new Object[] {eventId});
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM " + TABLE_NAME + " WHERE id = ?", args);
+        final int sent = messages.size() - failedMessages.size();
+        if (!failedEventIds.isEmpty()) {
+            log.warn("{} notification digests could not be sent, {} events are kept for the next sending",
+                digests.size() - sent, failedEventIds.size());
+        }
+        log.info("{} notification digests sent for {} events", sent, doneEventIds.size());
+        return sent;
+    }
+
+    private List<Event> getEvents(final int limit) {
+        return jdbcTemplate.query("SELECT id, item_id, event_type FROM " + TABLE_NAME + " ORDER BY id", rs -> {
+            final List<Event> events = new ArrayList<>();
+            while (events.size() < limit && rs.next()) {
+                events.add(new Event(rs.getLong("id"), rs.getLong("item_id"), EventType.valueOf(rs.getString("event_type"))));
+            }
+            return events;
+        });
+    }
+
+    private Map<String, Digest> aggregate(final List<Event> events) {
+        final Set<Long> itemIds = new LinkedHashSet<>();
+        for (Event event : events) {
+            itemIds.add(event.getItemId());
+        }
+        final Map<Long, AbstractItem> items = new HashMap<>();
+        for (AbstractItem item : itemRepository.findAllById(itemIds)) {
+            items.put(item.getId(), item);
+        }
+        // moderators of items in the same classifications are resolved once
+        final Map<Set<ContextKey>, Set<String>> moderatorsByContexts = new HashMap<>();
+        final Map<String, Digest> digests = new LinkedHashMap<>();
+        for (Event event : events) {
+            final AbstractItem item = items.get(event.getItemId());
+            if (item == null) {
+                log.debug("Item {} of notification event {} doesn't exist anymore", event.getItemId(), event.getId());
+                continue;
+            }
+            final DigestItem digestItem = new DigestItem(item.getId(), item.getTitle(),
+                item.getCreatedBy() != null ? item.getCreatedBy().getDisplayName() : null, item.getStartDate());
+            if (EventType.PENDING_MODERATION.equals(event.getType())) {
+                final Set<String> moderators = moderatorsByContexts.computeIfAbsent(recipientResolver.getModerationContexts(item),
+                    recipientResolver::getModeratorMails);
+                for (String moderator : moderators) {
+                    final Digest digest = digests.computeIfAbsent(moderator, mail -> new Digest());
+                    digest.getPendingItems().add(digestItem);
+                    digest.getEventIds().add(event.getId());
+                }
+            } else {
+                final String author = recipientResolver.getAuthorMail(item);
+                if (author != null) {
+                    final Digest digest = digests.computeIfAbsent(author, mail -> new Digest());
+                    digest.getPublishedItems().add(digestItem);
+                    digest.getEventIds().add(event.getId());
+                }
+            }
+        }
+        return digests;
+    }
+
+    private MimeMessage createMessage(final String to, final Digest digest, final Locale locale) throws MessagingException {
+        final Context context = new Context(locale);
+        context.setVariable("pendingItems", digest.getPendingItems());
+        context.setVariable("publishedItems", digest.getPublishedItems());
+        context.setVariable("baseUrl", properties.getBaseUrl());
+        final String content = templateEngine.process(TEMPLATE, context);
+        final String subject = messageSource.getMessage("email.notification.title",
+            new Object[] {digest.getPendingItems().size(), digest.getPublishedItems().size()}, locale);
+
+        final MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        final MimeMessageHelper message = new MimeMessageHelper(mimeMessage, false, StandardCharsets.UTF_8.name());
+        message.setTo(to);
+        message.setFrom(properties.getFrom());
+        message.setSubject(subject);
+        message.setText(content, true);
+        return mimeMessage;
+    }
+
+    /**
+     * Send messages by chunks, each chunk over one smtp connection.
+     * @return the messages that could not be sent.
+     */
+    private Set<MimeMessage> send(final List<MimeMessage> messages) {
+        final int chunkSize = properties.getNotification().getMaxMessagesPerConnection();
+        final Set<MimeMessage> failed = new HashSet<>();
+        for (int from = 0; from < messages.size(); from += chunkSize) {
+            final List<MimeMessage> chunk = messages.subList(from, Math.min(from + chunkSize, messages.size()));
+            try {
+                javaMailSender.send(chunk.toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                for (Object failedMessage : e.getFailedMessages().keySet()) {
+                    failed.add((MimeMessage) failedMessage);
+                }
+                log.warn("{} notification digests could not be sent", e.getFailedMessages().size(), e);
+            } catch (MailException e) {
+                failed.addAll(chunk);
+                log.warn("{} notification digests could not be sent", chunk.size(), e);
+            }
+        }
+        return failed;
+    }
+
+    private static TransactionOperations readOnly(final PlatformTransactionManager transactionManager) {
+        final TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    @Value
+    private static class Event {
+        long id;
+        long itemId;
+        EventType type;
+    }
+
+    @Value
+    public static class DigestItem {
+        long id;
+        String title;
+        String author;
+        LocalDate startDate;
+    }
+
+    @Getter
+    public static class Digest {
+        private final Set<DigestItem> pendingItems = new LinkedHashSet<>();
+        private final Set<DigestItem> publishedItems = new LinkedHashSet<>();
+        private final Set<Long> eventIds = new LinkedHashSet<>();
+    }
+}
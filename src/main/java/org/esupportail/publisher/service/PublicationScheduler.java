@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.time.Clock;
+import java.time.LocalDate;
+
+import javax.inject.Inject;
+
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.enums.ItemStatus;
+import org.esupportail.publisher.repository.ItemRepository;
+import org.esupportail.publisher.service.bean.ScheduledJob;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Publish scheduled items and archive expired published items as soon as their start or end date is crossed,
+ * replacing the daily bulk jobs.
+ * The next publishing and archiving dates are kept in memory, so polls before them don't query items. They are
+ * reloaded from the database each day, as items can be scheduled from other nodes, and lowered on local saves.
+ * Status changes are done by only one node thanks to the shared lock.
+ */
+@Service
+@Slf4j
+public class PublicationScheduler {
+
+    private final ItemRepository<AbstractItem> itemRepository;
+
+    private final ItemChangeLogService itemChangeLogService;
+
+    private final ScheduledJobService scheduledJobService;
+
+    private final TransactionOperations transactionOperations;
+
+    private final Clock clock;
+
+    /** day of the last load of next dates */
+    private LocalDate loadedOn;
+
+    /** first start date of scheduled items */
+    private LocalDate nextPublishing;
+
+    /** day after the first end date of published items */
+    private LocalDate nextArchiving;
+
+    @Inject
+    public PublicationScheduler(final ItemRepository<AbstractItem> itemRepository, final ItemChangeLogService itemChangeLogService,
+                                final ScheduledJobService scheduledJobService,
+                                final PlatformTransactionManager transactionManager) {
+        this(itemRepository, itemChangeLogService, scheduledJobService,
+            new TransactionTemplate(transactionManager), Clock.systemDefaultZone());
+    }
+
+    public PublicationScheduler(final ItemRepository<AbstractItem> itemRepository, final ItemChangeLogService itemChangeLogService,
+                                final ScheduledJobService scheduledJobService,
+                                final TransactionOperations transactionOperations, final Clock clock) {
+        this.itemRepository = itemRepository;
+        this.itemChangeLogService = itemChangeLogService;
+        this.scheduledJobService = scheduledJobService;
+        this.transactionOperations = transactionOperations;
+        this.clock = clock;
+    }
+
+    @Scheduled(fixedDelayString = "${app.service.publication-scheduler.polling-delay:PT1M}")
+    public synchronized void applyDueStatusChanges() {
+        final LocalDate today = LocalDate.now(clock);
+        if (!today.equals(loadedOn)) {
+            loadNextDates(today);
+        }
+        final boolean publishing = isDue(nextPublishing, today);
+        final boolean archiving = isDue(nextArchiving, today);
+        if (!publishing && !archiving) return;
+
+        scheduledJobService.run(ScheduledJob.APPLY_PUBLICATION_STATUS, () -> transactionOperations.execute(status -> {
+            int changed = 0;
+            if (archiving) {
+                itemChangeLogService.recordExpiredPublishedArchiving(today);
+                final int archived = itemRepository.archiveExpiredPublished(today);
+                log.info("scheduled task changed state to ARCHIVED of {} items !", archived);
+                changed += archived;
+            }
+            if (publishing) {
+                itemChangeLogService.recordScheduledPublishing(today);
+                final int published = itemRepository.publishScheduled(today);
+                log.info("scheduled task changed state to PUBLISHED of {} items !", published);
+                changed += published;
+            }
+            return changed;
+        }));
+        // changes may have been done by an other node holding the lock
+        loadNextDates(today);
+    }
+
+    /**
+     * Lower the next dates with the saved item, once the transaction is committed.
+     */
+    public void itemSaved(final AbstractItem item) {
+        final ItemStatus status = item.getStatus();
+        final LocalDate startDate = item.getStartDate();
+        final LocalDate endDate = item.getEndDate();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    itemSaved(status, startDate, endDate);
+                }
+            });
+        } else {
+            itemSaved(status, startDate, endDate);
+        }
+    }
+
+    public synchronized void itemSaved(final ItemStatus status, final LocalDate startDate, final LocalDate endDate) {
+        if (ItemStatus.SCHEDULED.equals(status) && startDate != null) {
+            nextPublishing = min(nextPublishing, startDate);
+        } else if (ItemStatus.PUBLISHED.equals(status) && endDate != null) {
+            nextArchiving = min(nextArchiving, endDate.plusDays(1));
+        }
+    }
+
+    public synchronized LocalDate getNextPublishing() {
+        return nextPublishing;
+    }
+
+    public synchronized LocalDate getNextArchiving() {
+        return nextArchiving;
+    }
+
+    private void loadNextDates(final LocalDate today) {
+        nextPublishing = itemRepository.findFirstScheduledStartDate();
+        final LocalDate firstEnd = itemRepository.findFirstPublishedEndDate();
+        nextArchiving = firstEnd != null ? firstEnd.plusDays(1) : null;
+        loadedOn = today;
+        log.debug("Next publishing on {} and next archiving on {}", nextPublishing, nextArchiving);
+    }
+
+    private static boolean isDue(final LocalDate date, final LocalDate today) {
+        return date != null && !date.isAfter(today);
+    }
+
+    private static LocalDate min(final LocalDate current, final LocalDate date) {
+        return current == null || date.isBefore(current) ? date : current;
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.esupportail.publisher.domain.AbstractClassification;
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.ItemClassificationOrder;
+import org.esupportail.publisher.domain.QItemClassificationOrder;
+import org.esupportail.publisher.domain.enums.DisplayOrderType;
+import org.esupportail.publisher.domain.enums.ItemStatus;
+import org.esupportail.publisher.repository.ItemClassificationOrderRepository;
+import org.esupportail.publisher.repository.predicates.ItemPredicates;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.mysema.commons.lang.Pair;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.querydsl.QPageRequest;
+import org.springframework.stereotype.Service;
+
+/**
+ * Read the published items of a publisher by pages of classification links, in the order of the publication,
+ * each item with all its classifications in the publisher. Only ids of the read items are kept between pages.
+ */
+@Service
+@Slf4j
+public class PublishedItemsService {
+
+    private static final int DEFAULT_PAGE_SIZE = 500;
+
+    private static final QItemClassificationOrder qItemClass = QItemClassificationOrder.itemClassificationOrder;
+
+    private final ItemClassificationOrderRepository itemClassificationOrderRepository;
+
+    private final int pageSize;
+
+    @Inject
+    public PublishedItemsService(final ItemClassificationOrderRepository itemClassificationOrderRepository) {
+        this(itemClassificationOrderRepository, DEFAULT_PAGE_SIZE);
+    }
+
+    public PublishedItemsService(final ItemClassificationOrderRepository itemClassificationOrderRepository, final int pageSize) {
+        this.itemClassificationOrderRepository = itemClassificationOrderRepository;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @return the given items published in the publisher.
+     */
+    public Set<Long> getPublishedItemIds(final long publisherId, final Collection<Long> itemIds) {
+        if (itemIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(itemClassificationOrderRepository.getItemIdsOfPublisherWithStatus(publisherId,
+            ItemStatus.PUBLISHED, itemIds));
+    }
+
+    /**
+     * @param itemIds to read only these items, or null to read all published items.
+     * @return the published items with their classifications, read page by page while iterating.
+     */
+    public Iterator<Pair<AbstractItem, List<AbstractClassification>>> getPublishedItems(final long publisherId,
+                                                                                      final DisplayOrderType displayOrder,
+                                                                                      final Collection<Long> itemIds) {
+        if (itemIds != null && itemIds.isEmpty()) {
+            return Collections.emptyIterator();
+        }
+        final BooleanBuilder builder = new BooleanBuilder(ItemPredicates.itemsClassOfPublisher(publisherId));
+        builder.and(ItemPredicates.OwnedItemsClassOfStatus(null, ItemStatus.PUBLISHED));
+        if (itemIds != null) {
+            builder.and(qItemClass.itemClassificationId.abstractItem.id.in(itemIds));
+        }
+        // classification and item ids make the order total, so pages don't overlap
+        final OrderSpecifier<?>[] orders = new OrderSpecifier<?>[] {
+            ItemPredicates.orderByPublisherDefinition(displayOrder),
+            ItemPredicates.orderByClassifDefinition(DisplayOrderType.LAST_CREATED_MODIFIED_FIRST),
+            qItemClass.itemClassificationId.abstractClassification.id.asc(),
+            qItemClass.itemClassificationId.abstractItem.id.asc()};
+        final Set<Long> readItemIds = new HashSet<>();
+        return Iterators.concat(new AbstractIterator<Iterator<Pair<AbstractItem, List<AbstractClassification>>>>() {
+            private int page = 0;
+            private boolean last = false;
+
+            @Override
+            protected Iterator<Pair<AbstractItem, List<AbstractClassification>>> computeNext() {
+                while (!last) {
+                    final Page<ItemClassificationOrder> links = itemClassificationOrderRepository.findAll(builder,
+                        QPageRequest.of(page++, pageSize, orders));
+                    last = !links.hasNext();
+                    final List<Long> newItemIds = new ArrayList<>();
+                    for (ItemClassificationOrder link : links) {
+                        final Long itemId = link.getItemClassificationId().getAbstractItem().getId();
+                        if (readItemIds.add(itemId)) {
+                            newItemIds.add(itemId);
+                        }
+                    }
+                    if (!newItemIds.isEmpty()) {
+                        return withClassifications(builder, orders, newItemIds).iterator();
+                    }
+                }
+                return endOfData();
+            }
+        });
+    }
+
+    /**
+     * Items appear at their first classification, their other classifications can be on later pages.
+     */
+    private List<Pair<AbstractItem, List<AbstractClassification>>> withClassifications(final Predicate builder,
+                                                                                     final OrderSpecifier<?>[] orders,
+                                                                                     final List<Long> itemIds) {
+        final Map<Long, Pair<AbstractItem, List<AbstractClassification>>> items = new LinkedHashMap<>();
+        for (Long itemId : itemIds) {
+            items.put(itemId, null);
+        }
+        for (ItemClassificationOrder link : itemClassificationOrderRepository.findAll(new BooleanBuilder(builder)
+            .and(qItemClass.itemClassificationId.abstractItem.id.in(itemIds)), orders)) {
+            final AbstractItem item = link.getItemClassificationId().getAbstractItem();
+            final AbstractClassification classif = link.getItemClassificationId().getAbstractClassification();
+            final Pair<AbstractItem, List<AbstractClassification>> entry = items.get(item.getId());
+            if (entry == null) {
+                items.put(item.getId(), new Pair<>(item, Lists.newArrayList(classif)));
+            } else {
+                entry.getSecond().add(classif);
+            }
+        }
+        // an item unpublished between both queries is skipped
+        items.values().removeIf(Objects::isNull);
+        log.debug("{} published items read", items.size());
+        return new ArrayList<>(items.values());
+    }
+}
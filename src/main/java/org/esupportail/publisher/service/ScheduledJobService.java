@@ -0,0 +1,289 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.esupportail.publisher.service.bean.ScheduledJob;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.core.ClockProvider;
+import net.javacrumbs.shedlock.core.DefaultLockingTaskExecutor;
+import net.javacrumbs.shedlock.core.ExtensibleLockProvider;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.LockingTaskExecutor;
+import net.javacrumbs.shedlock.support.KeepAliveLockProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Registry of jobs run by only one node of the cluster.
+ * The lock of a job is kept for twice the longest of its last runs, and it is extended while the job runs, so a long
+ * run isn't started again by an other node, and the lock of a dead node is released soon.
+ * Each run is recorded in the T_SCHEDULED_JOB_RUN table with its duration, processed rows and outcome; runs skipped
+ * because an other node holds the lock aren't recorded.
+ */
+@Service
+@Slf4j
+public class ScheduledJobService {
+
+    public static final String TABLE_NAME = "T_SCHEDULED_JOB_RUN";
+
+    public static final String LOCK_TABLE_NAME = "SHEDLOCK";
+
+    /** time zone of the lock dates, see usingDbTime of the lock provider */
+    public static final TimeZone LOCK_TIME_ZONE = TimeZone.getTimeZone("UTC");
+
+    /** lock of a node dying while running a job is released after this delay at least */
+    public static final Duration MIN_LOCK_AT_MOST_FOR = Duration.ofMinutes(1);
+
+    /** runs older are purged from the history */
+    public static final Duration HISTORY_RETENTION = Duration.ofDays(90);
+
+    /** number of last runs giving the expected duration of a job */
+    private static final int MEASURED_RUNS = 10;
+
+    private static final int MAX_ERROR_LENGTH = 512;
+
+    public enum Outcome {
+        SUCCESS,
+        FAILED
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final LockingTaskExecutor lockingTaskExecutor;
+
+    private final ScheduledExecutorService keepAliveExecutor;
+
+    /** runs are recorded even when the transaction of the job is rolled back */
+    private final TransactionOperations newTransaction;
+
+    @Getter
+    private final String nodeName;
+
+    private final Clock clock;
+
+    @Inject
+    public ScheduledJobService(final JdbcTemplate jdbcTemplate, final LockProvider lockProvider,
+                               final PlatformTransactionManager transactionManager) {
+        this(jdbcTemplate, lockProvider, newTransactionTemplate(transactionManager), getLocalNodeName(), Clock.systemUTC());
+    }
+
+    public ScheduledJobService(final JdbcTemplate jdbcTemplate, final LockProvider lockProvider,
+                               final TransactionOperations newTransaction, final String nodeName, final Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        if (lockProvider instanceof ExtensibleLockProvider) {
+            this.keepAliveExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "scheduled-job-lock-keep-alive");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.lockingTaskExecutor = new DefaultLockingTaskExecutor(
+                new KeepAliveLockProvider((ExtensibleLockProvider) lockProvider, keepAliveExecutor));
+        } else {
+            log.warn("Lock provider {} can't extend locks, locks of long jobs may expire while running", lockProvider);
+            this.keepAliveExecutor = null;
+            this.lockingTaskExecutor = new DefaultLockingTaskExecutor(lockProvider);
+        }
+        this.newTransaction = newTransaction;
+        this.nodeName = nodeName;
+        this.clock = clock;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (keepAliveExecutor != null) {
+            keepAliveExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run the job if no other node is running it.
+     * @param task the job, returning the number of processed rows.
+     * @return false when the job is locked by an other node.
+     */
+    public boolean run(final ScheduledJob job, final IntSupplier task) {
+        final LockConfiguration configuration = new LockConfiguration(ClockProvider.now(), job.getLockName(),
+            getLockAtMostFor(job), job.getLockAtLeastFor());
+        final AtomicBoolean executed = new AtomicBoolean();
+        lockingTaskExecutor.executeWithLock((Runnable) () -> {
+            executed.set(true);
+            execute(job, task);
+        }, configuration);
+        if (!executed.get()) {
+            log.debug("Job {} is locked by an other node", job.getLockName());
+        }
+        return executed.get();
+    }
+
+    /**
+     * @return twice the longest duration of the last runs of the job.
+     */
+    public Duration getLockAtMostFor(final ScheduledJob job) {
+        final Long longest = jdbcTemplate.queryForObject("SELECT MAX(duration_ms) FROM (SELECT duration_ms FROM " + TABLE_NAME
+            + " WHERE job_name = ? ORDER BY id DESC LIMIT " + MEASURED_RUNS + ") last_runs", Long.class, job.getLockName());
+        if (longest == null) return MIN_LOCK_AT_MOST_FOR;
+        final Duration measured = Duration.ofMillis(longest).multipliedBy(2);
+        return measured.compareTo(MIN_LOCK_AT_MOST_FOR) > 0 ? measured : MIN_LOCK_AT_MOST_FOR;
+    }
+
+    public List<JobStatus> getJobs() {
+        final List<JobStatus> jobs = new ArrayList<>();
+        final Instant now = ClockProvider.now();
+        for (ScheduledJob job : ScheduledJob.values()) {
+            final List<JobRun> lastRuns = getRuns(job, null, 1);
+            // the lock provider uses the database time, stored in UTC whatever the time zone of the JVM
+            final List<String> lockedBy = jdbcTemplate.query("SELECT lock_until, locked_by FROM " + LOCK_TABLE_NAME
+                + " WHERE name = ?", (rs, rowNum) -> {
+                final Timestamp lockUntil = rs.getTimestamp("lock_until", Calendar.getInstance(LOCK_TIME_ZONE));
+                return lockUntil != null && lockUntil.toInstant().isAfter(now) ? rs.getString("locked_by") : null;
+            }, job.getLockName());
+            jobs.add(new JobStatus(job.getLockName(), getLockAtMostFor(job), job.getLockAtLeastFor(),
+                lockedBy.isEmpty() ? null : lockedBy.get(0), lastRuns.isEmpty() ? null : lastRuns.get(0)));
+        }
+        return jobs;
+    }
+
+    /**
+     * @param beforeId id of the last run of the previous page, null for the last runs.
+     * @return runs of the job, from the most recent.
+     */
+    public List<JobRun> getRuns(final ScheduledJob job, final Long beforeId, final int limit) {
+        return jdbcTemplate.query("SELECT id, job_name, node_name, started_at, duration_ms, processed_rows, outcome, error_message FROM "
+            + TABLE_NAME + " WHERE job_name = ? AND id < ? ORDER BY id DESC LIMIT " + limit, this::mapRun,
+            job.getLockName(), beforeId != null ? beforeId : Long.MAX_VALUE);
+    }
+
+    private void execute(final ScheduledJob job, final IntSupplier task) {
+        final Instant start = clock.instant();
+        try {
+            final int processed = task.getAsInt();
+            record(job, start, processed, Outcome.SUCCESS, null);
+            log.info("Job {} processed {} rows in {} ms", job.getLockName(), processed,
+                Duration.between(start, clock.instant()).toMillis());
+        } catch (RuntimeException e) {
+            record(job, start, null, Outcome.FAILED, e.toString());
+            throw e;
+        }
+    }
+
+    private void record(final ScheduledJob job, final Instant start, final Integer processed, final Outcome outcome,
+                        final String error) {
+        final Instant end = clock.instant();
+        try {
+            newTransaction.executeWithoutResult(status -> {
+                jdbcTemplate.update("INSERT INTO " + TABLE_NAME + " (job_name, node_name, started_at, duration_ms, processed_rows, "
+                        + "outcome, error_message) VALUES (?, ?, ?, ?, ?, ?, ?)", job.getLockName(), nodeName, Timestamp.from(start),
+                    Duration.between(start, end).toMillis(), processed, outcome.name(),
+                    error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+                jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE job_name = ? AND started_at < ?", job.getLockName(),
+                    Timestamp.from(end.minus(HISTORY_RETENTION)));
+            });
+        } catch (RuntimeException e) {
+            log.error("Run of job {} can't be recorded", job.getLockName(), e);
+        }
+    }
+
+    private JobRun mapRun(final ResultSet rs, final int rowNum) throws SQLException {
+        final int processed = rs.getInt("processed_rows");
+        final Integer processedRows = rs.wasNull() ? null : processed;
+        return new JobRun(rs.getLong("id"), rs.getString("job_name"), rs.getString("node_name"),
+            rs.getTimestamp("started_at").toInstant(), rs.getLong("duration_ms"), processedRows,
+            Outcome.valueOf(rs.getString("outcome")), rs.getString("error_message"));
+    }
+
+    private static TransactionOperations newTransactionTemplate(final PlatformTransactionManager transactionManager) {
+        final TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    private static String getLocalNodeName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+
+    @Getter
+    public static class JobRun {
+        private final long id;
+        private final String jobName;
+        private final String nodeName;
+        private final Instant startedAt;
+        private final long durationMs;
+        private final Integer processedRows;
+        private final Outcome outcome;
+        private final String errorMessage;
+
+        public JobRun(final long id, final String jobName, final String nodeName, final Instant startedAt, final long durationMs,
+                      final Integer processedRows, final Outcome outcome, final String errorMessage) {
+            this.id = id;
+            this.jobName = jobName;
+            this.nodeName = nodeName;
+            this.startedAt = startedAt;
+            this.durationMs = durationMs;
+            this.processedRows = processedRows;
+            this.outcome = outcome;
+            this.errorMessage = errorMessage;
+        }
+    }
+
+    @Getter
+    public static class JobStatus {
+        private final String name;
+        private final Duration lockAtMostFor;
+        private final Duration lockAtLeastFor;
+        /** node running the job, null when not running */
+        private final String lockedBy;
+        private final JobRun lastRun;
+
+        public JobStatus(final String name, final Duration lockAtMostFor, final Duration lockAtLeastFor, final String lockedBy,
+                         final JobRun lastRun) {
+            this.name = name;
+            this.lockAtMostFor = lockAtMostFor;
+            this.lockAtLeastFor = lockAtLeastFor;
+            this.lockedBy = lockedBy;
+            this.lastRun = lastRun;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service.bean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.validation.constraints.NotNull;
+
+import lombok.Getter;
+
+/**
+ * Prefix tree of group ids, ids are split on the ':' separator of grouper like directories.
+ * A node is a path of the hierarchy, it's an existing group or only an intermediate path.
+ * Intermediate paths having only one child are merged with their child when walking the tree,
+ * so "esco:Etablissements" is a single node when all groups start with it.
+ * The trie isn't thread safe while groups are added, it should be built before being shared.
+ */
+public class GroupIdTrie {
+
+    public static final String SEPARATOR = ":";
+
+    private final Node root = new Node(null, null);
+
+    /** Number of groups in the trie. */
+    @Getter
+    private int size;
+
+    public void add(@NotNull final String groupId) {
+        Node current = root;
+        for (String segment : groupId.split(SEPARATOR, -1)) {
+            Node child = current.childs.get(segment);
+            if (child == null) {
+                child = new Node(current, current == root ? segment : current.path + SEPARATOR + segment);
+                current.childs.put(segment, child);
+            }
+            current = child;
+        }
+        if (!current.group) {
+            current.group = true;
+            size++;
+        }
+    }
+
+    /**
+     * @return the node of the path, null if the path isn't a group or a prefix of groups.
+     */
+    public Node getNode(@NotNull final String path) {
+        Node current = root;
+        for (String segment : path.split(SEPARATOR, -1)) {
+            current = current.childs.get(segment);
+            if (current == null) return null;
+        }
+        return current;
+    }
+
+    public List<Node> getRootNodes() {
+        return root.getChilds(0, Integer.MAX_VALUE);
+    }
+
+    @Getter
+    public static final class Node {
+        private final Node parent;
+        /** Full path of the node, it's the group id when the node is a group. */
+        private final String path;
+        /** Sorted by segment */
+        @Getter(lombok.AccessLevel.NONE)
+        private final Map<String, Node> childs = new TreeMap<>();
+        private boolean group;
+
+        private Node(final Node parent, final String path) {
+            this.parent = parent;
+            this.path = path;
+        }
+
+        public boolean hasChilds() {
+            return !childs.isEmpty();
+        }
+
+        public int countChilds() {
+            return childs.size();
+        }
+
+        /**
+         * @return a page of childs, sorted by their path, intermediate paths with only one child are skipped.
+         */
+        public List<Node> getChilds(final int offset, final int limit) {
+            if (offset >= childs.size() || limit <= 0) return Collections.emptyList();
+            final List<Node> nodes = new ArrayList<>(Math.min(limit, childs.size() - offset));
+            int index = 0;
+            for (Node child : childs.values()) {
+                if (index++ < offset) continue;
+                if (nodes.size() >= limit) break;
+                nodes.add(child.skipSingleChildPaths());
+            }
+            return nodes;
+        }
+
+        /**
+         * @return the path of the nearest displayed parent, null for a root node.
+         */
+        public String getDisplayedParentPath() {
+            Node current = parent;
+            while (current.path != null && !current.group && current.childs.size() == 1) {
+                current = current.parent;
+            }
+            return current.path;
+        }
+
+        /**
+         * @return the label of the node relative to its displayed parent.
+         */
+        public String getLabel() {
+            final String parentPath = getDisplayedParentPath();
+            return parentPath == null ? path : path.substring(parentPath.length() + SEPARATOR.length());
+        }
+
+        private Node skipSingleChildPaths() {
+            Node current = this;
+            while (!current.group && current.childs.size() == 1) {
+                current = current.childs.values().iterator().next();
+            }
+            return current;
+        }
+    }
+}
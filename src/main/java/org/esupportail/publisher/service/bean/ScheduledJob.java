@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service.bean;
+
+import java.time.Duration;
+
+import lombok.Getter;
+
+/**
+ * Jobs run by only one node of the cluster, each one with its own lock.
+ * Jobs triggered by a cron keep their lock one minute at least, so nodes with a clock a little late don't run them again.
+ */
+@Getter
+public enum ScheduledJob {
+    APPLY_PUBLICATION_STATUS("PublicationScheduler_applyStatusChanges", Duration.ZERO),
+    PURGE_ITEM_CHANGES("ItemChangeLogService_purgeOldChanges", Duration.ofMinutes(1)),
+    REMOVE_OLD_CONTENTS("ContentService_removeOldContents", Duration.ofMinutes(1)),
+    REMOVE_OLD_AUDIT_EVENTS("AuditEventService_removeOldAuditEvents", Duration.ofMinutes(1)),
+    SEND_NOTIFICATION_DIGESTS("NotificationService_sendDigests", Duration.ZERO);
+
+    /** name of the lock in the SHEDLOCK table, and of the job in its history */
+    private final String lockName;
+
+    private final Duration lockAtLeastFor;
+
+    ScheduledJob(final String lockName, final Duration lockAtLeastFor) {
+        this.lockName = lockName;
+        this.lockAtLeastFor = lockAtLeastFor;
+    }
+
+    public static ScheduledJob fromLockName(final String lockName) {
+        for (ScheduledJob job : values()) {
+            if (job.lockName.equals(lockName)) {
+                return job;
+            }
+        }
+        return null;
+    }
+}
@@ -17,9 +17,11 @@ package org.esupportail.publisher.service.evaluators;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import javax.validation.constraints.NotNull;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
@@ -44,6 +46,10 @@ public class UserAttributesEvaluation implements IEvaluation, Serializable {
 	private String attribute;
 	private String value;
 	private StringEvaluationMode mode;
+	/** Compiled value, used on MATCH mode. */
+	@Getter(AccessLevel.NONE)
+	@ToString.Exclude
+	private transient volatile Pattern pattern;
 
 	/**
 	 * Empty Constructor.
@@ -100,9 +106,21 @@ public class UserAttributesEvaluation implements IEvaluation, Serializable {
 		if (StringEvaluationMode.CONTAINS.equals(mode))
 			return (attrib.indexOf(value) != -1);
 		if (StringEvaluationMode.MATCH.equals(mode))
-			return attrib.matches(value);
+			return matches(attrib);
 		// will never get here
 		return false;
 	}
 
+	/**
+	 * Same as {@link String#matches(String)} with the value, but the regular expression is compiled only once.
+	 */
+	protected boolean matches(final String attrib) {
+		Pattern compiled = pattern;
+		if (compiled == null) {
+			compiled = Pattern.compile(value);
+			pattern = compiled;
+		}
+		return compiled.matcher(attrib).matches();
+	}
+
 }
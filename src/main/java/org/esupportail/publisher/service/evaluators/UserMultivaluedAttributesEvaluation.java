@@ -102,7 +102,7 @@ public class UserMultivaluedAttributesEvaluation extends
 		}
 		if (StringEvaluationMode.MATCH.equals(this.getMode())) {
 			for (String val : attribs) {
-				if (val.matches(this.getValue()))
+				if (matches(val))
 					return true;
 			}
 		}
@@ -16,7 +16,6 @@
 package org.esupportail.publisher.service.factories.impl;
 
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -26,20 +25,16 @@ import javax.validation.constraints.NotNull;
 
 import lombok.extern.slf4j.Slf4j;
 
-import org.esupportail.publisher.domain.AbstractClassification;
 import org.esupportail.publisher.domain.AbstractItem;
 import org.esupportail.publisher.domain.ContextKey;
-import org.esupportail.publisher.domain.ItemClassificationOrder;
 import org.esupportail.publisher.domain.LinkedFileItem;
 import org.esupportail.publisher.domain.SubjectKey;
 import org.esupportail.publisher.domain.SubjectKeyExtended;
 import org.esupportail.publisher.domain.Subscriber;
 import org.esupportail.publisher.domain.enums.SubjectType;
-import org.esupportail.publisher.repository.ItemClassificationOrderRepository;
 import org.esupportail.publisher.repository.ItemRepository;
 import org.esupportail.publisher.repository.LinkedFileItemRepository;
 import org.esupportail.publisher.repository.SubscriberRepository;
-import org.esupportail.publisher.repository.predicates.ItemPredicates;
 import org.esupportail.publisher.repository.predicates.SubscriberPredicates;
 import org.esupportail.publisher.service.exceptions.ObjectNotFoundException;
 import org.esupportail.publisher.service.factories.CompositeKeyExtendedDTOFactory;
@@ -66,9 +61,6 @@ public class ContentDTOFactoryImpl implements ContentDTOFactory {
 	@Inject
 	private ItemRepository<AbstractItem> itemRepository;
 
-	@Inject
-	private ItemClassificationOrderRepository itemClassificationOrderRepository;
-
 	//@Inject
 	//private PublisherRepository publisherRepository;
 
@@ -100,18 +92,8 @@ public class ContentDTOFactoryImpl implements ContentDTOFactory {
 
 		ContentDTO dto = new ContentDTO();
 		dto.setItem(model);
-		//Set<Publisher> publishers = new HashSet<>();
-		Set<ItemClassificationOrder> itemClassifs = Sets.newHashSet(itemClassificationOrderRepository
-				.findAll(ItemPredicates.itemsClassOfItem(model.getId())));
-		Set<ContextKey> classifications = new HashSet<>();
-		if (!itemClassifs.isEmpty()) {
-			for (ItemClassificationOrder itemClassif : itemClassifs) {
-				AbstractClassification classif = itemClassif.getItemClassificationId().getAbstractClassification();
-				classifications.add(classif.getContextKey());
-				//publishers.add(classif.getPublisher());
-			}
-		}
-		//dto.setPublishers(publishers);
+		// classifications keys are read from a projection, loading classifications would load the publisher graph of each one
+		Set<ContextKey> classifications = itemRepository.findClassificationKeysOfItem(model.getId());
 		dto.setClassifications(classifications);
 		Set<Subscriber> subscribers = Sets.newHashSet(subscriberRepository.findAll(SubscriberPredicates.onCtx(model
 				.getContextKey())));
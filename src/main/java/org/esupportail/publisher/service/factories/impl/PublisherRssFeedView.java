@@ -15,24 +15,24 @@
  */
 package org.esupportail.publisher.service.factories.impl;
 
-import java.io.File;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
-import javax.activation.MimetypesFileTypeMap;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.esupportail.publisher.config.metric.PublisherMetrics;
 import org.esupportail.publisher.domain.AbstractClassification;
 import org.esupportail.publisher.domain.AbstractItem;
 import org.esupportail.publisher.domain.ItemClassificationOrder;
 import org.esupportail.publisher.domain.Organization;
 import org.esupportail.publisher.domain.Publisher;
-import org.esupportail.publisher.service.bean.FileUploadHelper;
+import org.esupportail.publisher.service.EnclosureMetadataService;
+import org.esupportail.publisher.service.EnclosureMetadataService.EnclosureMetadata;
 import org.esupportail.publisher.service.bean.ServiceUrlHelper;
 
 import com.google.common.collect.Lists;
@@ -47,10 +47,10 @@ import com.rometools.rome.feed.rss.Guid;
 import com.rometools.rome.feed.rss.Image;
 import com.rometools.rome.feed.rss.Item;
 import com.rometools.rome.feed.rss.Source;
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.view.feed.AbstractRssFeedView;
 
@@ -76,8 +76,21 @@ public class PublisherRssFeedView extends AbstractRssFeedView {
     private ServiceUrlHelper urlHelper;
 
     @Inject
-    @Qualifier("publicFileUploadHelper")
-    private FileUploadHelper publicFileUploadHelper;
+    private EnclosureMetadataService enclosureMetadataService;
+
+    @Inject
+    private PublisherMetrics publisherMetrics;
+
+    @Override
+    public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws Exception {
+        final Timer.Sample sample = publisherMetrics.start();
+        try {
+            super.render(model, request, response);
+        } finally {
+            final Object itemsObj = model != null ? model.get(ITEMS_PARAM) : null;
+            publisherMetrics.recordFeedRender(sample, "rss", itemsObj instanceof List ? ((List<?>) itemsObj).size() : 0);
+        }
+    }
 
     @Override
     protected void buildFeedMetadata(Map<String, Object> model, Channel channel,
@@ -98,7 +111,7 @@ public class PublisherRssFeedView extends AbstractRssFeedView {
                 channel.setLanguage(((AbstractClassification) clasObj).getLang());
                 if (((AbstractClassification) clasObj).getIconUrl() != null) {
                     Image image = new Image();
-                    if (((AbstractClassification) clasObj).getIconUrl().matches("^https?://.*$")) {
+                    if (EnclosureMetadataService.isAbsoluteUrl(((AbstractClassification) clasObj).getIconUrl())) {
                         image.setUrl(((AbstractClassification) clasObj).getIconUrl());
                     } else {
                         image.setUrl(urlHelper.getRootAppUrl(request) + ((AbstractClassification) clasObj).getIconUrl());
@@ -172,17 +185,15 @@ public class PublisherRssFeedView extends AbstractRssFeedView {
                 item.setCategories(cats);
                 if (publication.getEnclosure() != null) {
                     Enclosure enclosure = new Enclosure();
-                    if (publication.getEnclosure().matches("^https?://.*$")) {
+                    if (EnclosureMetadataService.isAbsoluteUrl(publication.getEnclosure())) {
                         enclosure.setUrl(publication.getEnclosure());
                         enclosure.setType("image/" + publication.getEnclosure().substring(publication.getEnclosure().lastIndexOf(".") + 1));
                     } else {
                         enclosure.setUrl(urlHelper.getRootAppUrl(request) + publication.getEnclosure());
-                        final String path = publication.getEnclosure().substring(publicFileUploadHelper.getUrlResourceMapping().length());
-                        final File file = new File(publicFileUploadHelper.getUploadDirectoryPath() + path);
-                        if (file.exists()) {
-                            MimetypesFileTypeMap fileTypeMap = new MimetypesFileTypeMap();
-                            enclosure.setType(fileTypeMap.getContentType(file.getName()));
-                            enclosure.setLength(file.length());
+                        final EnclosureMetadata metadata = enclosureMetadataService.getMetadata(publication.getEnclosure());
+                        if (metadata != null) {
+                            enclosure.setType(metadata.getType());
+                            enclosure.setLength(metadata.getLength());
                         }
                     }
 
@@ -16,6 +16,7 @@
 package org.esupportail.publisher.service.factories.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.esupportail.publisher.domain.ContextKey;
 import org.esupportail.publisher.domain.IContext;
 import org.esupportail.publisher.domain.enums.ContextType;
 import org.esupportail.publisher.domain.enums.PermissionType;
@@ -26,6 +27,7 @@ import org.esupportail.publisher.service.factories.TreeJSDTOFactory;
 import org.esupportail.publisher.web.rest.dto.SubjectDTO;
 import org.esupportail.publisher.web.rest.dto.SubjectKeyDTO;
 import org.esupportail.publisher.web.rest.dto.TreeJS;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -33,7 +35,9 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 @Service
 @Transactional(readOnly=true)
@@ -45,21 +49,33 @@ public class TreeJSFactoryImpl implements TreeJSDTOFactory {
 
     @Override
     public TreeJS from(@NotNull IContext model, PermissionType minPerm) {
+        return asDTOList(Collections.singletonList(model), minPerm).get(0);
+    }
+
+    @Override
+    public List<TreeJS> asDTOList(@NotNull List<? extends IContext> models, PermissionType minPerm) {
+        // flags of all nodes are asked together to the permission service
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        final List<ContextKey> ctxs = new ArrayList<>(models.size());
+        for (IContext ctx: models) {
+            ctxs.add(ctx.getContextKey());
+        }
+        final Set<ContextKey> withChilds = permissionService.filterContextsWithAuthorizedChilds(authentication, ctxs);
+        final Set<ContextKey> editables = permissionService.filterEditableContexts(authentication, ctxs);
+        List<TreeJS> nodes = new ArrayList<>();
+        for (IContext ctx: models) {
+            nodes.add(this.from(ctx, withChilds.contains(ctx.getContextKey()), editables.contains(ctx.getContextKey())));
+        }
+        return nodes;
+    }
+
+    private TreeJS from(@NotNull final IContext model, final boolean hasChilds, final boolean canEdit) {
         TreeJS node = new TreeJS();
         node.setId(model.getContextKey().getKeyId() + ":" + model.getContextKey().getKeyType());
         node.setText(model.getDisplayName());
         node.setType(model.getContextKey().getKeyType().name());
-        /*PermissionType perm = permissionService.getRoleOfUserInContext(SecurityContextHolder.getContext().getAuthentication(), model.getContextKey());
-        if (perm == null) {
-            log.warn("Perms on context {} are undefined !", model.getContextKey());
-            return null;
-        }
-        node.setUserPerms(perm);*/
-        if (permissionService.hasAuthorizedChilds(SecurityContextHolder.getContext().getAuthentication(), model.getContextKey())) {
-            node.setChildren(true);
-        } else {
-            node.setChildren(false);
-        }
+        node.setChildren(hasChilds);
+        node.setCanEdit(canEdit);
         if ( ContextType.ITEM.equals(model.getContextKey().getKeyType())) {
             node.getLi_attr().setLeaf(true);
         }
@@ -68,16 +84,6 @@ public class TreeJSFactoryImpl implements TreeJSDTOFactory {
         return node;
     }
 
-    @Override
-    public List<TreeJS> asDTOList(@NotNull List<? extends IContext> models, PermissionType minPerm) {
-        List<TreeJS> nodes = new ArrayList<>();
-        for (IContext ctx: models) {
-            nodes.add(this.from(ctx, minPerm));
-        }
-        return nodes;
-    }
-
-
     @Override
     public TreeJS from(@NotNull final IExternalGroup model){
         TreeJS node = new TreeJS();
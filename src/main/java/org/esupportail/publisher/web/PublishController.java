@@ -15,16 +15,24 @@
  */
 package org.esupportail.publisher.web;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.NotNull;
 
+import org.esupportail.publisher.config.metric.PublisherMetrics;
 import org.esupportail.publisher.domain.AbstractClassification;
 import org.esupportail.publisher.domain.AbstractFeed;
 import org.esupportail.publisher.domain.AbstractItem;
@@ -50,7 +58,10 @@ import org.esupportail.publisher.repository.PublisherRepository;
 import org.esupportail.publisher.repository.predicates.ClassificationPredicates;
 import org.esupportail.publisher.repository.predicates.ItemPredicates;
 import org.esupportail.publisher.repository.predicates.PublisherPredicates;
+import org.esupportail.publisher.service.CacheWarmUpService;
 import org.esupportail.publisher.service.HighlightedClassificationService;
+import org.esupportail.publisher.service.ItemChangeLogService;
+import org.esupportail.publisher.service.PublishedItemsService;
 import org.esupportail.publisher.service.SubscriberService;
 import org.esupportail.publisher.service.bean.HighlightedClassification;
 import org.esupportail.publisher.service.bean.ServiceUrlHelper;
@@ -59,7 +70,7 @@ import org.esupportail.publisher.service.factories.CategoryProfileFactory;
 import org.esupportail.publisher.service.factories.FlashInfoVOFactory;
 import org.esupportail.publisher.service.factories.ItemVOFactory;
 import org.esupportail.publisher.service.factories.RubriqueVOFactory;
-import org.esupportail.publisher.web.rest.vo.Actualite;
+import org.esupportail.publisher.web.rest.util.StreamingActualiteWriter;
 import org.esupportail.publisher.web.rest.vo.Category;
 import org.esupportail.publisher.web.rest.vo.CategoryProfilesUrl;
 import org.esupportail.publisher.web.rest.vo.FlashInfoVO;
@@ -67,16 +78,20 @@ import org.esupportail.publisher.web.rest.vo.ItemVO;
 import org.esupportail.publisher.web.rest.vo.RubriqueVO;
 import org.hibernate.cfg.NotYetImplementedException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.fasterxml.jackson.annotation.JsonView;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.mysema.commons.lang.Pair;
+import com.google.common.collect.Sets;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.JPAExpressions;
@@ -92,6 +107,12 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class PublishController {
 
+    /** Response header giving the token to pass as since parameter on the next call of /items. */
+    public static final String CHANGE_TOKEN_HEADER = "X-Change-Token";
+
+    /** Response header telling if the response contains only changes since the passed token. */
+    public static final String CHANGE_DELTA_HEADER = "X-Change-Delta";
+
     @Inject
     private OrganizationRepository organizationRepository;
 
@@ -140,6 +161,21 @@ public class PublishController {
     @Inject
     private LinkedFileItemRepository linkedFileItemRepository;
 
+    @Inject
+    private PublisherMetrics publisherMetrics;
+
+    @Inject
+    private StreamingActualiteWriter streamingActualiteWriter;
+
+    @Inject
+    private ItemChangeLogService itemChangeLogService;
+
+    @Inject
+    private PublishedItemsService publishedItemsService;
+
+    @Inject
+    private CacheWarmUpService cacheWarmUpService;
+
     @RequestMapping(value = "/flash/{organization_id}",
         method = RequestMethod.GET,
         produces = MediaType.APPLICATION_JSON_VALUE)
@@ -149,6 +185,7 @@ public class PublishController {
         log.debug("Entering getFlashInfo with params : organization identifier={}", uai);
         Organization org = organizationRepository.findByIdentifiers(uai);
         if (org != null) {
+            cacheWarmUpService.recordHit(CacheWarmUpService.TargetType.ORGANIZATION, org.getId());
             DisplayOrderType displayOrder = DisplayOrderType.LAST_CREATED_MODIFIED_FIRST;
             final BooleanExpression builder = QItemClassificationOrder.itemClassificationOrder.itemClassificationId.abstractItem.id
             	.in(JPAExpressions.selectDistinct(QAbstractItem.abstractItem.id)
@@ -156,7 +193,7 @@ public class PublishController {
                     .where(ItemPredicates.FlashItemsOfOrganization(org), ItemPredicates.OwnedItemsOfStatus(false, ItemStatus.PUBLISHED.getId())));
             List<ItemClassificationOrder> itemsClasss = Lists.newArrayList(itemClassificationOrderRepository.findAll(builder, ItemPredicates.orderByClassifDefinition(displayOrder)));
 
-            return getFlashInfo(itemsClasss, request);
+            return publisherMetrics.recordPublished("flash", () -> getFlashInfo(itemsClasss, request), List::size);
         }
         return Lists.newArrayList();
     }
@@ -188,6 +225,7 @@ public class PublishController {
         log.debug("Entering getFlashInfo with params : organization identifier={}, reader_id={}, redactor_id={}", uai, readerId, redactorId);
         final Organization org = organizationRepository.findByIdentifiers(uai);
         if (org != null) {
+            cacheWarmUpService.recordHit(CacheWarmUpService.TargetType.ORGANIZATION, org.getId());
             final BooleanBuilder builder = new BooleanBuilder(PublisherPredicates.AllOfUsedState(true))
                 .and(PublisherPredicates.AllOfReader(readerId))
                 .and(PublisherPredicates.AllOfRedactor(redactorId))
@@ -204,7 +242,7 @@ public class PublishController {
                     final List<ItemClassificationOrder> itemsClasss = Lists.newArrayList(itemClassificationOrderRepository.findAll(builderExp,
                         ItemPredicates.orderByClassifDefinition(publisher.getDefaultDisplayOrder())));
 
-                    return getFlashInfo(itemsClasss, request);
+                    return publisherMetrics.recordPublished("flash", () -> getFlashInfo(itemsClasss, request), List::size);
                 }
             }catch(IncorrectResultSizeDataAccessException e){
                 log.error("The request to obtain all Flash-Info on an organization found more than one Flash context. Solve this problem !");
@@ -310,14 +348,104 @@ public class PublishController {
 
     @RequestMapping(value = "/items/{publisher_id}",
         method = RequestMethod.GET,
-        produces = {MediaType.APPLICATION_XML_VALUE})
-    public Actualite getItemsFromPublisher(@PathVariable("publisher_id") Long publisherId, HttpServletRequest request ) {
+        produces = {MediaType.APPLICATION_XML_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public void getItemsFromPublisher(@PathVariable("publisher_id") Long publisherId,
+                                      @RequestParam(value = "since", required = false) String since,
+                                      HttpServletRequest request, HttpServletResponse response) throws IOException {
         //getting items on new way
-        log.debug("Entering getItems with param : publisher_id={}", publisherId);
+        log.debug("Entering getItems with param : publisher_id={}, since={}", publisherId, since);
         Optional<Publisher> optionalPublisher =  publisherRepository.findById(publisherId);
         Publisher publisher = optionalPublisher.orElse(null);
+        if (publisher != null) {
+            cacheWarmUpService.recordHit(CacheWarmUpService.TargetType.PUBLISHER, publisherId);
+        }
 
-        return getItemsOnPublisherNewWay(publisher, request);
+        // changes are read before items, so a change done while writing the response will be sent again on the next call
+        final ItemChangeLogService.Changes changes = getChangesSince(since, publisherId);
+        response.setHeader(CHANGE_TOKEN_HEADER, String.valueOf(changes != null ? changes.getToken() : itemChangeLogService.getCurrentToken()));
+        response.setHeader(CHANGE_DELTA_HEADER, String.valueOf(changes != null));
+
+        final MediaType mediaType = getItemsMediaType(request);
+        response.setContentType(mediaType.toString());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try {
+            publisherMetrics.recordPublished("items", () -> writeItemsOnPublisher(publisher, changes, mediaType, request, response),
+                Integer::intValue);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private ItemChangeLogService.Changes getChangesSince(final String since, final long publisherId) {
+        if (since == null || since.isEmpty()) {
+            return null;
+        }
+        try {
+            return itemChangeLogService.getChangesSince(Long.parseLong(since), publisherId).orElse(null);
+        } catch (NumberFormatException e) {
+            log.debug("Invalid change token {}, the whole publication will be returned", since);
+            return null;
+        }
+    }
+
+    private MediaType getItemsMediaType(final HttpServletRequest request) {
+        final String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept != null) {
+            try {
+                final List<MediaType> acceptedTypes = MediaType.parseMediaTypes(accept);
+                MediaType.sortBySpecificityAndQuality(acceptedTypes);
+                for (MediaType acceptedType : acceptedTypes) {
+                    if (acceptedType.isCompatibleWith(MediaType.APPLICATION_XML)) {
+                        return MediaType.APPLICATION_XML;
+                    }
+                    if (acceptedType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                        return MediaType.APPLICATION_JSON;
+                    }
+                }
+            } catch (InvalidMediaTypeException e) {
+                log.debug("Invalid Accept header {}", accept);
+            }
+        }
+        return MediaType.APPLICATION_XML;
+    }
+
+    private int writeItemsOnPublisher(final Publisher publisher, final ItemChangeLogService.Changes changes,
+                                      final MediaType mediaType, final HttpServletRequest request,
+                                      final HttpServletResponse response) {
+        final List<RubriqueVO> rubriques;
+        final Iterator<ItemVO> items;
+        List<Long> removedItemIds = null;
+        if (publisher != null) {
+            rubriques = getRubriquesOfPublisher(publisher);
+            Set<Long> changedItemIds = null;
+            if (changes != null) {
+                // changes are those of the publisher, so changed items not published anymore are sent as removed
+                changedItemIds = publishedItemsService.getPublishedItemIds(publisher.getId(), changes.getItemIds());
+                removedItemIds = Lists.newArrayList(Sets.difference(changes.getItemIds(), changedItemIds));
+            }
+            // items are read by pages and built one by one while writing the response
+            items = Iterators.transform(publishedItemsService.getPublishedItems(publisher.getId(),
+                publisher.getDefaultDisplayOrder(), changedItemIds), entry -> {
+                final AbstractItem item = entry.getFirst();
+                final List<LinkedFileItem> linkedFiles = linkedFileItemRepository.findByAbstractItemIdAndInBody(item.getId(), false);
+                return itemVOFactory.from(item, entry.getSecond(),
+                    subscriberService.getDefinedSubscribersOfContext(item.getContextKey()), linkedFiles, request);
+            });
+        } else {
+            rubriques = new ArrayList<>();
+            items = Collections.emptyIterator();
+            if (changes != null) {
+                removedItemIds = Lists.newArrayList(changes.getItemIds());
+            }
+        }
+        try {
+            if (MediaType.APPLICATION_JSON.equals(mediaType)) {
+                return streamingActualiteWriter.writeJson(response.getOutputStream(), rubriques, items, removedItemIds);
+            }
+            return streamingActualiteWriter.writeXml(response.getOutputStream(), rubriques, items, removedItemIds);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @RequestMapping(value = "/categories/{publisher_id}",
@@ -325,10 +453,16 @@ public class PublishController {
         produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE})
     public Category getCategories(@PathVariable("publisher_id") Long publisherId, final HttpServletRequest request) {
         log.debug("Entering getCategories with param : publisher_id={}", publisherId);
+        return publisherMetrics.recordPublished("categories", () -> getCategoriesOfPublisher(publisherId, request),
+            category -> category.getSourceProfiles().size());
+    }
+
+    private Category getCategoriesOfPublisher(final Long publisherId, final HttpServletRequest request) {
         Optional<Publisher> optionalPublisher =  publisherRepository.findById(publisherId);
         Publisher publisher = optionalPublisher.orElse(null);
 
         if (publisher != null && publisher.isUsed() && WritingMode.STATIC.equals(publisher.getContext().getRedactor().getWritingMode())) {
+            cacheWarmUpService.recordHit(CacheWarmUpService.TargetType.PUBLISHER, publisherId);
             final String baseUrl = urlHelper.getRootAppUrl(request);
             if (publisher.getContext().getRedactor().getNbLevelsOfClassification() == 1) {
                 // systeme classic esup-lecture/esup-news mais sans le niveau des thèmes
@@ -355,10 +489,16 @@ public class PublishController {
     public Category getAbstractFeeds(@PathVariable("category_id") Long categoryId, final HttpServletRequest request) {
         // systeme classic esup-lecture/esup-news
         log.debug("Entering getAbstractFeeds with param : category_id={}", categoryId);
+        return publisherMetrics.recordPublished("feeds", () -> getAbstractFeedsOfCategory(categoryId, request),
+            category -> category.getSourceProfiles().size());
+    }
+
+    private Category getAbstractFeedsOfCategory(final Long categoryId, final HttpServletRequest request) {
         Optional<org.esupportail.publisher.domain.Category> optionalCategory =  categoryRepository.findById(categoryId);
         org.esupportail.publisher.domain.Category category = optionalCategory.orElse(null);
 
         if (category != null && category.getPublisher().isUsed() && WritingMode.STATIC.equals(category.getPublisher().getContext().getRedactor().getWritingMode())) {
+            cacheWarmUpService.recordHit(CacheWarmUpService.TargetType.CATEGORY, categoryId);
             final String baseUrl = urlHelper.getRootAppUrl(request);
             List<? extends AbstractFeed> cts = Lists.newArrayList(feedRepository.findAll(ClassificationPredicates.AbstractFeedsOfCategory(categoryId),
                 ClassificationPredicates.feedOrderByDisplayOrderType(category.getDefaultDisplayOrder())));
@@ -375,35 +515,11 @@ public class PublishController {
     }
 
     //@Transactional
-    private Actualite getItemsOnPublisherNewWay(@NotNull Publisher publisher, final HttpServletRequest request  ) {
-        log.debug("getItemsOnPublisherNewWay with publisher {}", publisher);
-        Actualite returnedObj = new Actualite();
-        BooleanBuilder builder = new BooleanBuilder();
-        //final QItemClassificationOrder icoQ = QItemClassificationOrder.itemClassificationOrder;
-        builder.and(ItemPredicates.itemsClassOfPublisher(publisher.getId()));
-        builder.and(ItemPredicates.OwnedItemsClassOfStatus(null, ItemStatus.PUBLISHED));
-
+    private List<RubriqueVO> getRubriquesOfPublisher(@NotNull Publisher publisher) {
         List<? extends AbstractClassification> cts = Lists.newArrayList(categoryRepository.findAll(ClassificationPredicates.CategoryOfPublisher(publisher.getId()),
             ClassificationPredicates.categoryOrderByDisplayOrderType(publisher.getDefaultDisplayOrder())));
         log.debug("list of categories associated to publisher : {}", cts);
 
-        List<ItemClassificationOrder> itemsClasss = Lists.newArrayList(itemClassificationOrderRepository.findAll(builder,
-            ItemPredicates.orderByPublisherDefinition(publisher.getDefaultDisplayOrder()), ItemPredicates.orderByClassifDefinition(DisplayOrderType.LAST_CREATED_MODIFIED_FIRST)));
-        log.debug("list of itemsClasss associated to publisher : {}", itemsClasss);
-
-        Map<Long, Pair<AbstractItem, List<AbstractClassification>>> itemsMap = Maps.newLinkedHashMap();
-
-        // get unique items associated to all his classifs
-        for ( ItemClassificationOrder ico: itemsClasss) {
-            final AbstractClassification classif = ico.getItemClassificationId().getAbstractClassification();
-            //categories.add(classif);
-            final Long itemId = ico.getItemClassificationId().getAbstractItem().getId();
-            if (!itemsMap.containsKey(itemId)) {
-                itemsMap.put(itemId, new Pair<AbstractItem, List<AbstractClassification>>(ico.getItemClassificationId().getAbstractItem(),Lists.newArrayList(classif)));
-            } else {
-                itemsMap.get(itemId).getSecond().add(classif);
-            }
-        }
         List<RubriqueVO> rubriques;
         if (publisher.isDoHighlight()) {
             final HighlightedClassification specialClassif = highlightedClassificationService.getClassification();
@@ -413,36 +529,7 @@ public class PublishController {
         } else {
            rubriques = Lists.newArrayList(rubriqueVOFactory.asVOList(cts));
         }
-
-        returnedObj.setRubriques(rubriques);
-        returnedObj.setItems(new ArrayList<ItemVO>());
-        for (Map.Entry<Long, Pair<AbstractItem, List<AbstractClassification>>> entry : itemsMap.entrySet()) {
-            final AbstractItem item = entry.getValue().getFirst();
-            final List<LinkedFileItem> linkedFiles = linkedFileItemRepository.findByAbstractItemIdAndInBody(item.getId(), false);
-            returnedObj.getItems().add(itemVOFactory.from(item, entry.getValue().getSecond(),
-                subscriberService.getDefinedSubscribersOfContext(item.getContextKey()), linkedFiles, request));
-        }
-
-        /*List<Category> cts = Lists.newArrayList(categoryRepository.findAll(ClassificationPredicates.categoryOfPublisher(publisher.getId()),
-            ClassificationPredicates.categoryOrderByDisplayOrderType(publisher.getDefaultDisplayOrder())));
-        returnedObj.setRubriques(rubriqueVOFactory.asVOList(cts));
-        returnedObj.setItems(new ArrayList<ItemVO>());
-        Map<AbstractItem,List<Category>> map = Maps.newLinkedHashMap();
-        for (Category cat: cts) {
-            BooleanBuilder builder = new BooleanBuilder(ItemPredicates.itemsClassOfClassification(cat));
-            builder.and(ItemPredicates.OwnedItemsOfStatus(null, ItemStatus.PUBLISHED.getId()));
-            final DisplayOrderType displayOrder = cat.getDefaultDisplayOrder();
-            final List<ItemClassificationOrder> itemsClass =
-                Lists.newArrayList(itemClassificationOrderRepository.findAll(builder, ItemPredicates.orderByClassifDefinition(displayOrder)));
-            for (ItemClassificationOrder item : itemsClass) {
-
-            }
-        }
-
-        returnedObj.getItems().add(itemVOFactory.from(item.getItemClassificationId().getAbstractItem(),
-            subscriberService.getDefinedSubscribersOfContext(item.getItemClassificationId().getAbstractItem().getContextKey()));*/
-
-        return returnedObj;
+        return rubriques;
     }
 
 
@@ -17,15 +17,20 @@ package org.esupportail.publisher.web;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
@@ -33,6 +38,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.esupportail.publisher.Application;
 import org.esupportail.publisher.config.SecurityConfiguration;
+import org.esupportail.publisher.config.metric.PublisherMetrics;
 import org.esupportail.publisher.domain.AbstractItem;
 import org.esupportail.publisher.domain.Attachment;
 import org.esupportail.publisher.domain.Flash;
@@ -55,8 +61,11 @@ import org.esupportail.publisher.security.SecurityUtils;
 import org.esupportail.publisher.service.FileService;
 import org.esupportail.publisher.web.rest.dto.UserDTO;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
 import org.springframework.security.access.AccessDeniedException;
@@ -93,11 +102,26 @@ public class ViewController {
 	@Inject
 	private LinkedFileItemRepository linkedFileItemRepository;
 
+	@Inject
+	private PublisherMetrics publisherMetrics;
+
 	private static final String REDIRECT_PARAM = "local-back-to";
 
 	public static final String ITEM_VIEW = "/view/item/";
 	public static final String FILE_VIEW = "/view/file/";
 
+	private static final Pattern BODY_FILES_SRC = Pattern.compile("src=\"files/", Pattern.LITERAL);
+	private static final Pattern BODY_FILE_VIEW_HREF = Pattern.compile("href=\"" + FILE_VIEW.substring(1), Pattern.LITERAL);
+	private static final Pattern ABSOLUTE_URL = Pattern.compile("^https?://.*$");
+
+	/** Bodies with rewritten urls, keyed by item id, last modification date and base url. */
+	private final Cache<String, String> renderedBodies = CacheBuilder.newBuilder()
+			.maximumSize(1000)
+			.expireAfterAccess(1, TimeUnit.HOURS)
+			.build();
+
+	private String version;
+
 	@RequestMapping(value = SecurityConfiguration.PROTECTED_PATH, produces = MediaType.TEXT_HTML_VALUE)
 	public String itemView(HttpServletRequest request) {
 		try {
@@ -140,9 +164,9 @@ public class ViewController {
 		item.setEnclosure(replaceRelativeUrl(item.getEnclosure(), baseUrl));
 		// looking to replace img src with path of object with body attribute of for specific property
 		if (item instanceof News) {
-			((News) item).setBody(replaceBodyUrl(((News) item).getBody(), baseUrl));
+			((News) item).setBody(getRenderedBody(item, ((News) item).getBody(), baseUrl));
 		} else if (item instanceof Flash) {
-			((Flash) item).setBody(replaceBodyUrl(((Flash) item).getBody(), baseUrl));
+			((Flash) item).setBody(getRenderedBody(item, ((Flash) item).getBody(), baseUrl));
 		} else if (item instanceof Resource) {
 			((Resource) item).setRessourceUrl(replaceRelativeUrl(((Resource) item).getRessourceUrl(), baseUrl));
 		} else if (!(item instanceof Media) && !(item instanceof Attachment)) {
@@ -213,8 +237,10 @@ public class ViewController {
 
 			// copy it to response's OutputStream
 			try {
-				Files.copy(file, response.getOutputStream());
+				final Timer.Sample sample = publisherMetrics.start();
+				final long size = Files.copy(file, response.getOutputStream());
 				response.flushBuffer();
+				publisherMetrics.recordFileTransfer(sample, "download", size);
 			} catch (FileNotFoundException fnfe) {
 				log.warn("Try to download a file that doesn't exist into the fileSystem", fnfe);
 				throw new FileNotFoundException(filePath);
@@ -313,25 +339,45 @@ public class ViewController {
 
 	@ModelAttribute("version")
 	public String getVersion() throws IOException {
-		final Properties properties = new Properties();
-		properties.load(Application.class.getResourceAsStream("/version.properties"));
-		final String version = properties.getProperty("version");
+		// build info doesn't change at runtime
+		if (version == null) {
+			final Properties properties = new Properties();
+			try (InputStream is = Application.class.getResourceAsStream("/version.properties")) {
+				properties.load(is);
+			}
+			version = properties.getProperty("version");
+		}
 		return version;
 	}
 
-	private String replaceBodyUrl(final String body, final String baseUrl) {
+	private String getRenderedBody(final AbstractItem item, final String body, final String baseUrl) {
+		if (body == null || body.trim().isEmpty()) {
+			return body;
+		}
+		final Instant lastModified = item.getLastModifiedDate() != null ? item.getLastModifiedDate() : item.getCreatedDate();
+		final String key = item.getId() + "|" + (lastModified != null ? lastModified.toEpochMilli() : 0) + "|" + baseUrl;
+		final String rendered = renderedBodies.getIfPresent(key);
+		if (rendered != null) {
+			return rendered;
+		}
+		final String replaced = replaceBodyUrl(body, baseUrl);
+		renderedBodies.put(key, replaced);
+		return replaced;
+	}
+
+	static String replaceBodyUrl(final String body, final String baseUrl) {
 		if (body != null && !body.trim().isEmpty()) {
-			String fileview = FILE_VIEW;
-			if (fileview.startsWith("/"))
-				fileview = fileview.substring(1);
-			return body.replaceAll("src=\"files/", "src=\"" + baseUrl + "files/").replaceAll("href=\"" + fileview,
-					"href=\"" + baseUrl + fileview);
+			final String fileview = FILE_VIEW.substring(1);
+			final String withFiles = BODY_FILES_SRC.matcher(body)
+					.replaceAll(Matcher.quoteReplacement("src=\"" + baseUrl + "files/"));
+			return BODY_FILE_VIEW_HREF.matcher(withFiles)
+					.replaceAll(Matcher.quoteReplacement("href=\"" + baseUrl + fileview));
 		}
 		return body;
 	}
 
-	private String replaceRelativeUrl(final String localUrl, final String baseUrl) {
-		if (localUrl != null && !localUrl.trim().isEmpty() && !localUrl.matches("^https?://.*$")) {
+	static String replaceRelativeUrl(final String localUrl, final String baseUrl) {
+		if (localUrl != null && !localUrl.trim().isEmpty() && !ABSOLUTE_URL.matcher(localUrl).matches()) {
 			return baseUrl + localUrl;
 		}
 		return localUrl;
@@ -15,19 +15,26 @@
  */
 package org.esupportail.publisher.web.rest;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.security.RolesAllowed;
 import javax.inject.Inject;
 
 import org.esupportail.publisher.security.AuthoritiesConstants;
 import org.esupportail.publisher.service.AuditEventService;
-//import org.esupportail.publisher.web.propertyeditors.LocaleDateTimeEditor;
-import java.time.Instant;
+import org.esupportail.publisher.service.AuditEventService.AuditEventsPage;
+import org.esupportail.publisher.web.rest.util.KeysetPaginationUtil;
+
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.web.bind.WebDataBinder;
-import org.springframework.web.bind.annotation.InitBinder;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -38,30 +45,54 @@ import org.springframework.web.bind.annotation.RestController;
  */
 @RestController
 @RequestMapping("/api")
+@Slf4j
 public class AuditResource {
 
+    private static final String CURSOR_SORT = "date";
+
 	@Inject
 	private AuditEventService auditEventService;
 
-//	@InitBinder
-//	public void initBinder(WebDataBinder binder) {
-//		binder.registerCustomEditor(Instant.class, new LocaleDateTimeEditor("yyyy-MM-dd", false));
-//	}
-
-    @RequestMapping(value = "/audits/all",
-            method = RequestMethod.GET,
-            produces = MediaType.APPLICATION_JSON_VALUE)
-	@RolesAllowed(AuthoritiesConstants.ADMIN)
-	public List<AuditEvent> findAll() {
-		return auditEventService.findAll();
-	}
-
-    @RequestMapping(value = "/audits/byDates",
+    /**
+     * GET  /audits -> get audit events, the most recent first.
+     * Events are paged by keyset, the next page being given in the Link header, and can be filtered by principal,
+     * type and dates, fromDate being included and toDate excluded.
+     */
+    @RequestMapping(value = "/audits",
             method = RequestMethod.GET,
             produces = MediaType.APPLICATION_JSON_VALUE)
 	@RolesAllowed(AuthoritiesConstants.ADMIN)
-	public List<AuditEvent> findByDates(@RequestParam(value = "fromDate") Instant fromDate,
-			@RequestParam(value = "toDate") Instant toDate) {
-		return auditEventService.findByDates(fromDate, toDate);
+	public ResponseEntity<List<AuditEvent>> find(@RequestParam(value = "principal", required = false) String principal,
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(value = "fromDate", required = false) Instant fromDate,
+            @RequestParam(value = "toDate", required = false) Instant toDate,
+            @RequestParam(value = "per_page", required = false) Integer perPage,
+            @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAM, required = false) String cursor) {
+        final int limit = KeysetPaginationUtil.getLimit(perPage);
+        Instant afterDate = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                final KeysetPaginationUtil.Cursor after = KeysetPaginationUtil.decodeCursor(cursor);
+                if (!CURSOR_SORT.equals(after.getSort())) {
+                    throw new IllegalArgumentException("Cursor of an other sort " + after.getSort());
+                }
+                afterDate = Instant.parse(after.getValue());
+                afterId = after.getId();
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                log.debug("Invalid cursor {}", cursor, e);
+                return ResponseEntity.badRequest().header("Failure", "Invalid cursor").build();
+            }
+        }
+        final AuditEventsPage page = auditEventService.findPage(principal, type, fromDate, toDate, afterDate, afterId, limit);
+        final String nextCursor = page.hasNext()
+            ? KeysetPaginationUtil.encodeCursor(CURSOR_SORT, page.getLastId(), page.getLastDate().toString()) : null;
+        final Map<String, Object> params = new LinkedHashMap<>();
+        params.put("principal", principal);
+        params.put("type", type);
+        params.put("fromDate", fromDate);
+        params.put("toDate", toDate);
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetHttpHeaders("/api/audits", nextCursor, limit, params);
+        return new ResponseEntity<>(page.getEvents(), headers, HttpStatus.OK);
 	}
 }
@@ -24,10 +24,13 @@ import javax.inject.Inject;
 import javax.servlet.http.HttpServletResponse;
 
 import org.esupportail.publisher.domain.Category;
+import org.esupportail.publisher.domain.ContextKey;
 import org.esupportail.publisher.domain.Publisher;
+import org.esupportail.publisher.domain.enums.ContextType;
 import org.esupportail.publisher.repository.CategoryRepository;
 import org.esupportail.publisher.security.SecurityConstants;
 import org.esupportail.publisher.security.UserContextLoaderService;
+import org.esupportail.publisher.service.ContextHierarchy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -54,6 +57,9 @@ public class CategoryResource {
     @Inject
     private CategoryRepository categoryRepository;
 
+    @Inject
+    private ContextHierarchy contextHierarchy;
+
     @Inject
     public UserContextLoaderService userSessionTreeLoader;
 
@@ -90,6 +96,7 @@ public class CategoryResource {
             return create(category);
         }
         categoryRepository.save(category);
+        contextHierarchy.evict(category.getContextKey());
         return ResponseEntity.ok().build();
     }
 
@@ -135,5 +142,6 @@ public class CategoryResource {
     public void delete(@PathVariable Long id) {
         log.debug("REST request to delete Category : {}", id);
         categoryRepository.deleteById(id);
+        contextHierarchy.evict(new ContextKey(id, ContextType.CATEGORY));
     }
 }
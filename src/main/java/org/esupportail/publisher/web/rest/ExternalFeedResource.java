@@ -15,10 +15,13 @@
  */
 package org.esupportail.publisher.web.rest;
 
+import org.esupportail.publisher.domain.ContextKey;
 import org.esupportail.publisher.domain.ExternalFeed;
+import org.esupportail.publisher.domain.enums.ContextType;
 import org.esupportail.publisher.domain.evaluators.AbstractEvaluator;
 import org.esupportail.publisher.repository.ExternalFeedRepository;
 import org.esupportail.publisher.security.SecurityConstants;
+import org.esupportail.publisher.service.ContextHierarchy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -46,6 +49,9 @@ public class ExternalFeedResource {
     @Inject
     private ExternalFeedRepository externalFeedRepository;
 
+    @Inject
+    private ContextHierarchy contextHierarchy;
+
     /**
      * POST  /externalFeeds -> Create a new externalFeed.
      */
@@ -75,6 +81,7 @@ public class ExternalFeedResource {
             return create(externalFeed);
         }
         externalFeedRepository.save(externalFeed);
+        contextHierarchy.evict(externalFeed.getContextKey());
         return ResponseEntity.ok().build();
     }
 
@@ -117,5 +124,6 @@ public class ExternalFeedResource {
     public void delete(@PathVariable Long id) {
         log.debug("REST request to delete ExternalFeed : {}", id);
         externalFeedRepository.deleteById(id);
+        contextHierarchy.evict(new ContextKey(id, ContextType.FEED));
     }
 }
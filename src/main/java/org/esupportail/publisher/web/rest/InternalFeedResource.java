@@ -16,10 +16,13 @@
 package org.esupportail.publisher.web.rest;
 
 
+import org.esupportail.publisher.domain.ContextKey;
 import org.esupportail.publisher.domain.Filter;
 import org.esupportail.publisher.domain.InternalFeed;
+import org.esupportail.publisher.domain.enums.ContextType;
 import org.esupportail.publisher.repository.InternalFeedRepository;
 import org.esupportail.publisher.security.SecurityConstants;
+import org.esupportail.publisher.service.ContextHierarchy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -47,6 +50,9 @@ public class InternalFeedResource {
     @Inject
     private InternalFeedRepository internalFeedRepository;
 
+    @Inject
+    private ContextHierarchy contextHierarchy;
+
     /**
      * POST  /internalFeeds -> Create a new internalFeed.
      */
@@ -76,6 +82,7 @@ public class InternalFeedResource {
             return create(internalFeed);
         }
         internalFeedRepository.save(internalFeed);
+        contextHierarchy.evict(internalFeed.getContextKey());
         return ResponseEntity.ok().build();
     }
 
@@ -118,5 +125,6 @@ public class InternalFeedResource {
     public void delete(@PathVariable Long id) {
         log.debug("REST request to delete InternalFeed : {}", id);
         internalFeedRepository.deleteById(id);
+        contextHierarchy.evict(new ContextKey(id, ContextType.FEED));
     }
 }
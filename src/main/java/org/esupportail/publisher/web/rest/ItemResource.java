@@ -17,6 +17,10 @@ package org.esupportail.publisher.web.rest;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import javax.inject.Inject;
@@ -35,7 +39,11 @@ import org.esupportail.publisher.security.IPermissionService;
 import org.esupportail.publisher.security.SecurityConstants;
 import org.esupportail.publisher.service.ContentService;
 import org.esupportail.publisher.service.FileService;
+import org.esupportail.publisher.service.ItemChangeLogService;
+import org.esupportail.publisher.service.ItemChangeLogService.ChangeType;
+import org.esupportail.publisher.service.NotificationService;
 import org.esupportail.publisher.web.rest.dto.ActionDTO;
+import org.esupportail.publisher.web.rest.util.KeysetPaginationUtil;
 import org.esupportail.publisher.web.rest.util.PaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +63,7 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.querydsl.core.types.ExpressionUtils;
 import com.querydsl.core.types.Predicate;
 
 /**
@@ -78,6 +87,12 @@ public class ItemResource {
     @Inject
     private FileService fileService;
 
+    @Inject
+    private ItemChangeLogService itemChangeLogService;
+
+    @Inject
+    private NotificationService notificationService;
+
     /**
      * POST  /items -> Create a new item.
      */
@@ -91,6 +106,7 @@ public class ItemResource {
             return ResponseEntity.badRequest().header("Failure", "A new items cannot already have an ID").build();
         }
         itemRepository.save(item);
+        itemChangeLogService.recordChange(item.getId(), ChangeType.CREATED);
         return ResponseEntity.created(new URI("/api/items/" + item.getId())).build();
     }
 
@@ -119,6 +135,10 @@ public class ItemResource {
             item.setStatus(ItemStatus.PENDING);
         }
         itemRepository.save(item);
+        itemChangeLogService.recordChange(item.getId(), ChangeType.MODIFIED);
+        if (ItemStatus.PENDING.equals(item.getStatus())) {
+            notificationService.recordEvent(item.getId(), NotificationService.EventType.PENDING_MODERATION);
+        }
         return ResponseEntity.ok().build();
     }
 
@@ -149,6 +169,7 @@ public class ItemResource {
 
     /**
      * GET  /items -> get all the items.
+     * With the cursor parameter (empty for the first page) items are paged by keyset, the next page being given in the Link header.
      */
     @RequestMapping(value = "/items",
         method = RequestMethod.GET,
@@ -158,20 +179,58 @@ public class ItemResource {
                                            @RequestParam(value = "per_page", required = false) Integer limit,
                                            @RequestParam(value = "displayOrder", required = false) DisplayOrderType displayOrder,
                                            @RequestParam(value = "owned", required = false) Boolean owned,
-                                           @RequestParam(value = "item_status", required = false) Integer itemStatus)
+                                           @RequestParam(value = "item_status", required = false) Integer itemStatus,
+                                           @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAM, required = false) String cursor)
         throws URISyntaxException {
+        Predicate filter = permissionService.filterAuthorizedAllOfContextType(SecurityContextHolder.getContext().getAuthentication(),
+            ContextType.ITEM, PermissionType.LOOKOVER, ItemPredicates.OwnedItemsOfStatus(owned, itemStatus));
+        log.debug("Filter applied to obtain all items : {}", filter.toString());
+        if (cursor != null) {
+            return getAllAfterCursor(filter, cursor, limit, displayOrder, owned, itemStatus);
+        }
         Sort sort = new QSort(ItemPredicates.orderByItemDefinition(DisplayOrderType.START_DATE));
         if (displayOrder != null) {
             sort = new QSort(ItemPredicates.orderByClassifDefinition(displayOrder));
         }
-        Predicate filter = permissionService.filterAuthorizedAllOfContextType(SecurityContextHolder.getContext().getAuthentication(),
-            ContextType.ITEM, PermissionType.LOOKOVER, ItemPredicates.OwnedItemsOfStatus(owned, itemStatus));
-        log.debug("Filter applied to obtain all items : {}", filter.toString());
         Page<AbstractItem> page = itemRepository.findAll(filter, PaginationUtil.generatePageRequest(offset, limit, sort));
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/items", offset, limit);
         return new ResponseEntity<ItemList>(new ItemList(page.getContent()), headers, HttpStatus.OK);
     }
 
+    private ResponseEntity<ItemList> getAllAfterCursor(final Predicate filter, final String cursor, final Integer perPage,
+                                                       final DisplayOrderType displayOrder, final Boolean owned,
+                                                       final Integer itemStatus) {
+        final DisplayOrderType order = displayOrder != null ? displayOrder : DisplayOrderType.START_DATE;
+        final int limit = KeysetPaginationUtil.getLimit(perPage);
+        Predicate pageFilter = filter;
+        if (!cursor.isEmpty()) {
+            try {
+                final KeysetPaginationUtil.Cursor after = KeysetPaginationUtil.decodeCursor(cursor);
+                if (!order.name().equals(after.getSort())) {
+                    return ResponseEntity.badRequest().header("Failure", "The cursor was provided for an other display order").build();
+                }
+                pageFilter = ExpressionUtils.allOf(filter, ItemPredicates.keysetAfter(order, after.getValue(), after.getId()));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                log.debug("Invalid cursor {}", cursor, e);
+                return ResponseEntity.badRequest().header("Failure", "Invalid cursor").build();
+            }
+        }
+        // one more item is read to know if there is a next page
+        List<AbstractItem> items = itemRepository.findFirstItems(pageFilter, limit + 1, ItemPredicates.keysetOrderByItemDefinition(order));
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items = items.subList(0, limit);
+            final AbstractItem last = items.get(limit - 1);
+            nextCursor = KeysetPaginationUtil.encodeCursor(order.name(), last.getId(), ItemPredicates.keysetValueOf(order, last));
+        }
+        final Map<String, Object> params = new LinkedHashMap<>();
+        params.put("displayOrder", displayOrder);
+        params.put("owned", owned);
+        params.put("item_status", itemStatus);
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetHttpHeaders("/api/items", nextCursor, limit, params);
+        return new ResponseEntity<ItemList>(new ItemList(items), headers, HttpStatus.OK);
+    }
+
     /**
      * GET  /items/:id -> get the "id" item.
      */
@@ -204,7 +263,8 @@ public class ItemResource {
         log.debug("REST request to delete Item : {}", id);
         Optional<AbstractItem> optionalAbstractItem =  itemRepository.findById(id);
         AbstractItem item = optionalAbstractItem == null || !optionalAbstractItem.isPresent()? null : optionalAbstractItem.get();
-        fileService.deleteInternalResource(item.getEnclosure());
+        fileService.deleteInternalResourceAfterCommit(item.getEnclosure());
+        itemChangeLogService.recordChange(id, ChangeType.REMOVED);
         itemRepository.deleteById(id);
     }
 }
@@ -128,7 +128,7 @@ public class NewsResource {
         log.debug("REST request to delete News : {}", id);
         Optional<News> optionalNews =  newsRepository.findById(id);
         AbstractItem item = optionalNews == null || !optionalNews.isPresent()? null : optionalNews.get();
-        fileService.deleteInternalResource(item.getEnclosure());
+        fileService.deleteInternalResourceAfterCommit(item.getEnclosure());
         newsRepository.deleteById(id);
     }
 }
@@ -29,6 +29,7 @@ import org.esupportail.publisher.domain.enums.PermissionType;
 import org.esupportail.publisher.repository.OrganizationRepository;
 import org.esupportail.publisher.security.IPermissionService;
 import org.esupportail.publisher.security.SecurityConstants;
+import org.esupportail.publisher.service.ContextHierarchy;
 import org.esupportail.publisher.service.OrganizationService;
 import org.esupportail.publisher.service.bean.UserContextTree;
 import org.slf4j.Logger;
@@ -60,6 +61,8 @@ public class OrganizationResource {
 	@Inject
 	private OrganizationRepository organizationRepository;
 	@Inject
+	private ContextHierarchy contextHierarchy;
+	@Inject
 	private OrganizationService organizationService;
 
     @Inject
@@ -178,6 +181,7 @@ public class OrganizationResource {
 		log.debug("REST request to delete Organization : {}", id);
 		organizationRepository.deleteById(id);
 		userSessionTree.removeCtx(new ContextKey(id, ContextType.ORGANIZATION));
+		contextHierarchy.evict(new ContextKey(id, ContextType.ORGANIZATION));
 	}
 
 	/**
@@ -24,12 +24,15 @@ import javax.inject.Inject;
 import javax.servlet.http.HttpServletResponse;
 
 import org.esupportail.publisher.domain.AbstractPermission;
+import org.esupportail.publisher.domain.ContextKey;
 import org.esupportail.publisher.domain.Publisher;
+import org.esupportail.publisher.domain.enums.ContextType;
 import org.esupportail.publisher.domain.enums.PermissionType;
 import org.esupportail.publisher.repository.PublisherRepository;
 import org.esupportail.publisher.repository.predicates.PublisherPredicates;
 import org.esupportail.publisher.security.IPermissionService;
 import org.esupportail.publisher.security.SecurityConstants;
+import org.esupportail.publisher.service.ContextHierarchy;
 import org.esupportail.publisher.service.PublisherService;
 import org.esupportail.publisher.web.rest.dto.ActionDTO;
 import org.slf4j.Logger;
@@ -63,6 +66,9 @@ public class PublisherResource {
     @Inject
     private PublisherRepository publisherRepository;
 
+    @Inject
+    private ContextHierarchy contextHierarchy;
+
     @Inject
     private IPermissionService permissionService;
 
@@ -116,11 +122,13 @@ public class PublisherResource {
             model.setDefaultDisplayOrder(publisher.getDefaultDisplayOrder());
             model.setUsed(publisher.isUsed());
             publisherRepository.save(publisher);
+            contextHierarchy.evict(publisher.getContextKey());
             return ResponseEntity.ok().build();
         }
 
         publisherService.doMove(publisher, publisher.getDisplayOrder());
         publisherRepository.save(publisher);
+        contextHierarchy.evict(publisher.getContextKey());
         return ResponseEntity.ok().build();
     }
 
@@ -204,5 +212,6 @@ public class PublisherResource {
     public void delete(@PathVariable Long id) {
         log.debug("REST request to delete Publisher : {}", id);
         publisherRepository.deleteById(id);
+        contextHierarchy.evict(new ContextKey(id, ContextType.PUBLISHER));
     }
 }
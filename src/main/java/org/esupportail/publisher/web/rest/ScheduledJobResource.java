@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.web.rest;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.esupportail.publisher.security.SecurityConstants;
+import org.esupportail.publisher.service.ScheduledJobService;
+import org.esupportail.publisher.service.ScheduledJobService.JobRun;
+import org.esupportail.publisher.service.ScheduledJobService.JobStatus;
+import org.esupportail.publisher.service.bean.ScheduledJob;
+import org.esupportail.publisher.web.rest.util.KeysetPaginationUtil;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for viewing jobs run by only one node and the history of their runs.
+ */
+@RestController
+@RequestMapping("/api")
+@Slf4j
+public class ScheduledJobResource {
+
+    @Inject
+    private ScheduledJobService scheduledJobService;
+
+    /**
+     * GET  /jobs -> get all jobs with their lock and last run.
+     */
+    @RequestMapping(value = "/jobs",
+            method = RequestMethod.GET,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize(SecurityConstants.IS_ROLE_ADMIN)
+    public List<JobStatus> getAll() {
+        return scheduledJobService.getJobs();
+    }
+
+    /**
+     * GET  /jobs/:name/runs -> get runs of the "name" job, from the most recent.
+     */
+    @RequestMapping(value = "/jobs/{name}/runs",
+            method = RequestMethod.GET,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize(SecurityConstants.IS_ROLE_ADMIN)
+    public ResponseEntity<List<JobRun>> getRuns(@PathVariable String name,
+                                                @RequestParam(value = "per_page", required = false) Integer perPage,
+                                                @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAM, required = false) String cursor) {
+        final ScheduledJob job = ScheduledJob.fromLockName(name);
+        if (job == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        final int limit = KeysetPaginationUtil.getLimit(perPage);
+        Long beforeId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                beforeId = KeysetPaginationUtil.decodeCursor(cursor).getId();
+            } catch (IllegalArgumentException e) {
+                log.debug("Invalid cursor {}", cursor, e);
+                return ResponseEntity.badRequest().header("Failure", "Invalid cursor").build();
+            }
+        }
+        // one more run is read to know if there is a next page
+        List<JobRun> runs = scheduledJobService.getRuns(job, beforeId, limit + 1);
+        String nextCursor = null;
+        if (runs.size() > limit) {
+            runs = runs.subList(0, limit);
+            nextCursor = KeysetPaginationUtil.encodeCursor("id", runs.get(limit - 1).getId(), "");
+        }
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetHttpHeaders("/api/jobs/" + name + "/runs", nextCursor, limit,
+            Collections.emptyMap());
+        return new ResponseEntity<>(runs, headers, HttpStatus.OK);
+    }
+}
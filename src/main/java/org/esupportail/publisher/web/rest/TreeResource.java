@@ -29,8 +29,12 @@ import org.esupportail.publisher.web.propertyeditors.ContextKeyEditor;
 import org.esupportail.publisher.web.rest.dto.SearchSubjectFormDTO;
 import org.esupportail.publisher.web.rest.dto.TreeJS;
 import org.esupportail.publisher.web.rest.dto.UserDTO;
+import org.esupportail.publisher.web.rest.util.PaginationUtil;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -64,15 +68,21 @@ public class TreeResource {
 
 
     /**
-     * GET /nodes -> get root nodes
+     * GET /contexts -> get root nodes with search=1, or childs of the context with search=id:TYPE,
+     * nodes having childs are expanded until depth is reached.
+     * GET /contexts?q= -> search contexts by display name.
      */
     @RequestMapping(value = "/contexts", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<TreeJS>> getContexts(@RequestParam("search") String id/*, @RequestParam(value="filtered", required = false) Boolean filtered*/) {
-        log.debug("REST request to get tree of Context from id {}", id);
+    public ResponseEntity<List<TreeJS>> getContexts(@RequestParam(value = "search", required = false) String id,
+                                                    @RequestParam(value = "depth", required = false, defaultValue = "1") int depth,
+                                                    @RequestParam(value = "q", required = false) String query/*, @RequestParam(value="filtered", required = false) Boolean filtered*/) {
+        log.debug("REST request to get tree of Context from id {}, depth {}, query {}", id, depth, query);
         List<TreeJS> nodes = null;
-        if ("1".equals(id)) {
-            nodes = contextService.getRootTree(PermissionType.LOOKOVER);
-        } else {
+        if (query != null && !query.trim().isEmpty()) {
+            nodes = contextService.searchTree(query.trim(), PermissionType.LOOKOVER);
+        } else if ("1".equals(id)) {
+            nodes = contextService.getRootTree(PermissionType.LOOKOVER, depth);
+        } else if (id != null) {
             String[] spid = id.split(":");
             if (spid.length == 2) {
                 Long ctxId = Long.valueOf(spid[0]);
@@ -80,7 +90,7 @@ public class TreeResource {
                 if (ctxId != null && ctxType != null) {
                     ContextKey ctx = new ContextKey(ctxId, ctxType);
                     //nodes = contextService.getTreeChilds(ctx, PermissionType.LOOKOVER, filtered);
-                    nodes = contextService.getTreeChilds(ctx, PermissionType.LOOKOVER, true);
+                    nodes = contextService.getTreeChilds(ctx, PermissionType.LOOKOVER, true, depth);
                 }
             }
         }
@@ -120,6 +130,12 @@ public class TreeResource {
         List<TreeJS> nodes = null;
         if ("1".equals(form.getSearch())) {
             nodes = groupService.getRootNodes(form.getContext(), form.getSubContexts());
+        } else if (form.getLimit() != null) {
+            Page<TreeJS> page = groupService.getGroupMembers(form.getSearch(),
+                PaginationUtil.generatePageRequest(form.getOffset(), form.getLimit()));
+            HttpHeaders headers = new HttpHeaders();
+            headers.add("X-Total-Count", "" + page.getTotalElements());
+            return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
         } else {
             nodes = groupService.getGroupMembers(form.getSearch());
         }
@@ -130,14 +146,40 @@ public class TreeResource {
     }
 
     /**
-     * GET /groups/usermembers -> get user members of a group
+     * GET /groups/usermembers -> get user members of a group,
+     * paged when page or per_page is set, sorted on displayName (default) or login, and filtered with search.
      */
     @RequestMapping(value = "/groups/usermembers", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
     @PreAuthorize(SecurityConstants.IS_ROLE_ADMIN + " || " + SecurityConstants.IS_ROLE_USER)
     //TODO checking rights of gettings members of the passed group
-    public ResponseEntity<List<UserDTO>> getUserOfGroup(@RequestParam("id") String id) {
-        log.debug("REST request to get user members of groups from id {}", id);
-        return new ResponseEntity<>(groupService.getUserMembers(id), HttpStatus.OK);
+    public ResponseEntity<List<UserDTO>> getUserOfGroup(@RequestParam("id") String id,
+                                                        @RequestParam(value = "page", required = false) Integer offset,
+                                                        @RequestParam(value = "per_page", required = false) Integer limit,
+                                                        @RequestParam(value = "sort", required = false) String sort,
+                                                        @RequestParam(value = "search", required = false) String search) {
+        log.debug("REST request to get user members of groups from id {}, page {}, per_page {}, sort {}, search {}",
+            id, offset, limit, sort, search);
+        if (offset == null && limit == null && search == null) {
+            return new ResponseEntity<>(groupService.getUserMembers(id), HttpStatus.OK);
+        }
+        Page<UserDTO> page = groupService.getUserMembers(id, search,
+            PaginationUtil.generatePageRequest(offset, limit, membersSort(sort)));
+        // links of PaginationUtil can't keep the id parameter, only the total is returned
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-Total-Count", "" + page.getTotalElements());
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * @param sort "property[,asc|desc]" with property login or displayName.
+     */
+    private Sort membersSort(final String sort) {
+        if (sort == null || sort.trim().isEmpty()) return Sort.by("displayName");
+        final String[] parts = sort.split(",");
+        final String property = "login".equals(parts[0].trim()) ? "login" : "displayName";
+        final Sort.Direction direction = parts.length > 1 && "desc".equalsIgnoreCase(parts[1].trim())
+            ? Sort.Direction.DESC : Sort.Direction.ASC;
+        return Sort.by(direction, property);
     }
 
     /**
@@ -39,4 +39,9 @@ public class SearchSubjectFormDTO {
 
     private String search;
 
+    /** Optional paging of group members, page number starting at 1. */
+    private Integer offset;
+
+    private Integer limit;
+
 }
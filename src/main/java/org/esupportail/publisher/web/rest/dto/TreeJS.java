@@ -40,6 +40,9 @@ public class TreeJS implements Serializable{
 
     private String parent;
 
+    /** Precomputed user's right to edit the context, only set on context nodes. */
+    private Boolean canEdit;
+
     private State state = new State();
 
     private LiAttr li_attr = new LiAttr();
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.web.rest.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import lombok.Getter;
+
+/**
+ * Utility class for handling keyset pagination.
+ *
+ * <p>
+ * Instead of a page number, each page gives in the <a href="http://tools.ietf.org/html/rfc5988">Link header</a>
+ * an opaque cursor on its last element, the next page starts after it, so reading a page costs the same whatever its depth.
+ * An empty cursor asks for the first page.
+ * </p>
+ */
+public class KeysetPaginationUtil {
+
+    public static final String CURSOR_PARAM = "cursor";
+
+    private static final String SEPARATOR = "|";
+
+    public static int getLimit(Integer limit) {
+        if (limit == null || limit < 1 || limit > PaginationUtil.MAX_LIMIT) {
+            return PaginationUtil.DEFAULT_LIMIT;
+        }
+        return limit;
+    }
+
+    public static String encodeCursor(final String sort, final long id, final String value) {
+        final String cursor = sort + SEPARATOR + id + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException when the cursor wasn't provided by encodeCursor.
+     */
+    public static Cursor decodeCursor(final String cursor) {
+        final String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        final String[] parts = decoded.split("\\" + SEPARATOR, 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+        return new Cursor(parts[0], Long.parseLong(parts[1]), parts[2]);
+    }
+
+    /**
+     * @param nextCursor cursor of the last element of the page, null when it's the last page.
+     * @param params other request parameters to keep on links.
+     */
+    public static HttpHeaders generateKeysetHttpHeaders(final String baseUrl, final String nextCursor, final int limit,
+                                                        final Map<String, Object> params) {
+        HttpHeaders headers = new HttpHeaders();
+        String link = "";
+        if (nextCursor != null) {
+            link = "<" + buildUrl(baseUrl, nextCursor, limit, params) + ">; rel=\"next\",";
+        }
+        link += "<" + buildUrl(baseUrl, "", limit, params) + ">; rel=\"first\"";
+        headers.add(HttpHeaders.LINK, link);
+        return headers;
+    }
+
+    private static String buildUrl(final String baseUrl, final String cursor, final int limit, final Map<String, Object> params) {
+        final UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(baseUrl)
+            .queryParam(CURSOR_PARAM, cursor)
+            .queryParam("per_page", limit);
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            if (param.getValue() != null) {
+                builder.queryParam(param.getKey(), param.getValue());
+            }
+        }
+        return builder.build().toUriString();
+    }
+
+    @Getter
+    public static class Cursor {
+        private final String sort;
+        private final long id;
+        private final String value;
+
+        public Cursor(final String sort, final long id, final String value) {
+            this.sort = sort;
+            this.id = id;
+            this.value = value;
+        }
+    }
+}
@@ -17,8 +17,11 @@ package org.esupportail.publisher.web.rest.util;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -60,6 +63,17 @@ public class PaginationUtil {
         return PageRequest.of(offset - 1, limit);
     }
 
+    /**
+     * Return the page of an already loaded list.
+     */
+    public static <T> Page<T> toPage(List<T> list, Pageable pageable) {
+        if (pageable.getOffset() >= list.size()) {
+            return new PageImpl<>(new ArrayList<T>(), pageable, list.size());
+        }
+        int end = (int) Math.min(pageable.getOffset() + pageable.getPageSize(), list.size());
+        return new PageImpl<>(new ArrayList<>(list.subList((int) pageable.getOffset(), end)), pageable, list.size());
+    }
+
     public static HttpHeaders generatePaginationHttpHeaders(Page page, String baseUrl, Integer offset, Integer limit)
         throws URISyntaxException {
 
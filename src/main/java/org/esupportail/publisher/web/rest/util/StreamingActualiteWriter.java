@@ -0,0 +1,253 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.web.rest.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import org.esupportail.publisher.web.rest.vo.Actualite;
+import org.esupportail.publisher.web.rest.vo.ItemVO;
+import org.esupportail.publisher.web.rest.vo.RubriqueVO;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Write an {@link Actualite} document item by item, instead of building the whole object graph before marshalling it.
+ * The output is the same as the one of the JAXB and Jackson message converters: each element is marshalled with the
+ * same JAXB context or object mapper, only the envelope is written here.
+ */
+@Component
+@Slf4j
+public class StreamingActualiteWriter {
+
+    private static final String XML_PROLOG = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+
+    private static final String ROOT = "actualites";
+    private static final String RUBRIQUES = "rubriques";
+    private static final String ITEMS = "items";
+    private static final String REMOVED = "removed";
+    private static final String UUID = "uuid";
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    private JAXBContext jaxbContext;
+
+    /** Namespaces declared by JAXB on the root element, and so on each marshalled fragment. */
+    private String rootNamespaces;
+
+    private String jsonRubriquesName;
+    private String jsonItemsName;
+    private boolean jsonRubriquesFirst;
+
+    private ObjectWriter rubriqueJsonWriter;
+    private ObjectWriter itemJsonWriter;
+
+    public StreamingActualiteWriter() {
+        super();
+    }
+
+    public StreamingActualiteWriter(final ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        init();
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            jaxbContext = JAXBContext.newInstance(Actualite.class);
+            final String emptyRoot = new String(marshalFragment(new Actualite()), StandardCharsets.UTF_8);
+            rootNamespaces = emptyRoot.substring(ROOT.length() + 1, emptyRoot.indexOf('>'));
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Unable to initialize JAXB context of " + Actualite.class, e);
+        }
+
+        final BeanDescription description = objectMapper.getSerializationConfig()
+            .introspect(objectMapper.constructType(Actualite.class));
+        int rubriquesIdx = -1;
+        int itemsIdx = -1;
+        int idx = 0;
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            if (RUBRIQUES.equals(property.getInternalName())) {
+                jsonRubriquesName = property.getName();
+                rubriquesIdx = idx;
+            } else if (ITEMS.equals(property.getInternalName())) {
+                jsonItemsName = property.getName();
+                itemsIdx = idx;
+            }
+            idx++;
+        }
+        jsonRubriquesFirst = rubriquesIdx < itemsIdx;
+        rubriqueJsonWriter = objectMapper.writerFor(RubriqueVO.class);
+        itemJsonWriter = objectMapper.writerFor(ItemVO.class);
+    }
+
+    /**
+     * @return the number of written items.
+     */
+    public int writeXml(final OutputStream os, final Collection<RubriqueVO> rubriques, final Iterator<ItemVO> items)
+        throws IOException {
+        return writeXml(os, rubriques, items, null);
+    }
+
+    /**
+     * @param removedItemIds ids of items removed from the publication since the change token of the reader, written
+     * in a removed element after items, or null when the whole publication is written.
+     * @return the number of written items.
+     */
+    public int writeXml(final OutputStream os, final Collection<RubriqueVO> rubriques, final Iterator<ItemVO> items,
+                        final Collection<Long> removedItemIds) throws IOException {
+        write(os, XML_PROLOG + "<" + ROOT + rootNamespaces + ">");
+        if (rubriques.isEmpty()) {
+            write(os, "<" + RUBRIQUES + "/>");
+        } else {
+            write(os, "<" + RUBRIQUES + ">");
+            for (RubriqueVO rubrique : rubriques) {
+                writeFragment(os, rubrique);
+            }
+            write(os, "</" + RUBRIQUES + ">");
+        }
+        int nbItems = 0;
+        if (!items.hasNext()) {
+            write(os, "<" + ITEMS + "/>");
+        } else {
+            write(os, "<" + ITEMS + ">");
+            while (items.hasNext()) {
+                writeFragment(os, items.next());
+                nbItems++;
+            }
+            write(os, "</" + ITEMS + ">");
+        }
+        if (removedItemIds != null) {
+            write(os, "<" + REMOVED + ">");
+            for (Long removedItemId : removedItemIds) {
+                write(os, "<" + UUID + ">" + removedItemId + "</" + UUID + ">");
+            }
+            write(os, "</" + REMOVED + ">");
+        }
+        write(os, "</" + ROOT + ">");
+        os.flush();
+        return nbItems;
+    }
+
+    /**
+     * @return the number of written items.
+     */
+    public int writeJson(final OutputStream os, final Collection<RubriqueVO> rubriques, final Iterator<ItemVO> items)
+        throws IOException {
+        return writeJson(os, rubriques, items, null);
+    }
+
+    /**
+     * @param removedItemIds ids of items removed from the publication since the change token of the reader, written
+     * in a removed array after items, or null when the whole publication is written.
+     * @return the number of written items.
+     */
+    public int writeJson(final OutputStream os, final Collection<RubriqueVO> rubriques, final Iterator<ItemVO> items,
+                         final Collection<Long> removedItemIds) throws IOException {
+        int nbItems = 0;
+        try (JsonGenerator generator = objectMapper.createGenerator(os, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            if (jsonRubriquesFirst) {
+                writeJsonRubriques(generator, rubriques);
+            }
+            generator.writeArrayFieldStart(jsonItemsName);
+            while (items.hasNext()) {
+                itemJsonWriter.writeValue(generator, items.next());
+                nbItems++;
+            }
+            generator.writeEndArray();
+            if (!jsonRubriquesFirst) {
+                writeJsonRubriques(generator, rubriques);
+            }
+            if (removedItemIds != null) {
+                generator.writeArrayFieldStart(REMOVED);
+                for (Long removedItemId : removedItemIds) {
+                    generator.writeString(removedItemId.toString());
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+        return nbItems;
+    }
+
+    private void writeJsonRubriques(final JsonGenerator generator, final Collection<RubriqueVO> rubriques) throws IOException {
+        generator.writeArrayFieldStart(jsonRubriquesName);
+        for (RubriqueVO rubrique : rubriques) {
+            rubriqueJsonWriter.writeValue(generator, rubrique);
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeFragment(final OutputStream os, final Object element) throws IOException {
+        final byte[] fragment;
+        try {
+            fragment = marshalFragment(element);
+        } catch (JAXBException e) {
+            throw new IOException("Unable to marshal " + element, e);
+        }
+        // namespaces are already declared on the root element
+        final int endOfFirstTag = indexOf(fragment, (byte) '>');
+        final String firstTag = new String(fragment, 0, endOfFirstTag, StandardCharsets.UTF_8);
+        final int nsIdx = rootNamespaces.isEmpty() ? -1 : firstTag.indexOf(rootNamespaces);
+        if (nsIdx < 0) {
+            os.write(fragment);
+        } else {
+            write(os, firstTag.substring(0, nsIdx) + firstTag.substring(nsIdx + rootNamespaces.length()));
+            os.write(fragment, endOfFirstTag, fragment.length - endOfFirstTag);
+        }
+    }
+
+    private byte[] marshalFragment(final Object element) throws JAXBException {
+        final Marshaller marshaller = jaxbContext.createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name());
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+        marshaller.marshal(element, bos);
+        return bos.toByteArray();
+    }
+
+    private static int indexOf(final byte[] bytes, final byte value) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return bytes.length;
+    }
+
+    private static void write(final OutputStream os, final String value) throws IOException {
+        os.write(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
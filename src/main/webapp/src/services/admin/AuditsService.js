@@ -1,15 +1,26 @@
 import FetchWrapper from '../util/FetchWrapper'
+import ParseLinkUtils from '../util/ParseLinkUtils'
 
 class AuditsService {
-  findAll () {
-    return FetchWrapper.getJson('api/audits/all')
+  // Page d'audits, le curseur de la page suivante est donné par le header Link
+  find (fromDate, toDate, principal, cursor) {
+    const params = { cursor: cursor || '' }
+    if (fromDate) {
+      params.fromDate = formatDate(fromDate)
+    }
+    if (toDate) {
+      params.toDate = formatDate(toDate)
+    }
+    if (principal) {
+      params.principal = principal
+    }
+    return FetchWrapper.getJson('api/audits?' + new URLSearchParams(params))
   }
 
-  findByDates (fromDate, toDate) {
-    return FetchWrapper.getJson('api/audits/byDates?' + new URLSearchParams({
-      fromDate: formatDate(fromDate),
-      toDate: formatDate(toDate)
-    }))
+  // Curseur de la page suivante, null sur la dernière page
+  nextCursor (linkHeader) {
+    const links = ParseLinkUtils.parse(linkHeader, 'cursor')
+    return (links && links.next) || null
   }
 }
 
@@ -1,7 +1,8 @@
 import CommonUtils from './CommonUtils'
 
 class ParseLinkUtils {
-  parse (header) {
+  // Valeur du paramètre de pagination (page par défaut) de chaque lien, par nom de lien
+  parse (header, param = 'page') {
     if (!header || !header.length || header.length === 0) {
       return
     }
@@ -20,12 +21,12 @@ class ParseLinkUtils {
         new RegExp('([^?=&]+)(=([^&]*))?', 'g'),
         function ($0, $1, $2, $3) { queryString[$1] = $3 }
       )
-      var page = queryString.page
-      if (CommonUtils.isString(page)) {
-        page = parseInt(page)
+      var value = queryString[param]
+      if (CommonUtils.isString(value)) {
+        value = param === 'page' ? parseInt(value) : decodeURIComponent(value)
       }
       var name = section[1].replace(/rel="(.*)"/, '$1').trim()
-      links[name] = page
+      links[name] = value
     })
 
     return links
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.async;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.esupportail.publisher.config.bean.ExecutorProperties;
+import org.esupportail.publisher.config.bean.ExecutorProperties.RejectionPolicy;
+import org.esupportail.publisher.config.metric.PublisherMetrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+public class WorkloadTaskExecutorTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private WorkloadTaskExecutor executor;
+
+    private WorkloadTaskExecutor newExecutor(final RejectionPolicy policy) {
+        executor = new WorkloadTaskExecutor("test", new ExecutorProperties(1, 1, 1, policy));
+        executor.initialize();
+        executor.bindTo(registry);
+        return executor;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    private double gauge(final String name) {
+        return registry.get(name).tag("name", "test").gauge().value();
+    }
+
+    /**
+     * Occupy the only thread and the only place in the queue.
+     */
+    private void fill(final AtomicInteger done) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+            done.incrementAndGet();
+        });
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(done::incrementAndGet);
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testGaugesAndDiscardPolicy() throws Exception {
+        newExecutor(RejectionPolicy.DISCARD);
+        final AtomicInteger done = new AtomicInteger();
+        fill(done);
+
+        executor.execute(done::incrementAndGet);
+
+        Assertions.assertEquals(1, gauge(PublisherMetrics.EXECUTOR_ACTIVE));
+        Assertions.assertEquals(1, gauge(PublisherMetrics.EXECUTOR_QUEUED));
+        Assertions.assertEquals(1, gauge(PublisherMetrics.EXECUTOR_POOL_SIZE));
+        Assertions.assertEquals(1, registry.get(PublisherMetrics.EXECUTOR_REJECTED).tag("name", "test").functionCounter().count());
+
+        release.countDown();
+        executor.shutdown();
+        Assertions.assertEquals(2, done.get());
+        Assertions.assertEquals(2, registry.get(PublisherMetrics.EXECUTOR_WAIT).tag("name", "test").timer().count());
+        Assertions.assertEquals(2, registry.get(PublisherMetrics.EXECUTOR_EXECUTION).tags("name", "test", "outcome", "success")
+            .timer().count());
+    }
+
+    @Test
+    public void testCallerRunsPolicy() throws Exception {
+        newExecutor(RejectionPolicy.CALLER_RUNS);
+        final AtomicInteger done = new AtomicInteger();
+        fill(done);
+
+        final AtomicReference<Thread> runner = new AtomicReference<>();
+        executor.execute(() -> runner.set(Thread.currentThread()));
+
+        Assertions.assertSame(Thread.currentThread(), runner.get());
+        Assertions.assertEquals(1, executor.getRejectedCount());
+    }
+
+    @Test
+    public void testAbortPolicy() throws Exception {
+        newExecutor(RejectionPolicy.ABORT);
+        fill(new AtomicInteger());
+
+        Assertions.assertThrows(TaskRejectedException.class, () -> executor.execute(() -> { }));
+        Assertions.assertEquals(1, executor.getRejectedCount());
+    }
+
+    @Test
+    public void testFailedTasksAreTimed() throws Exception {
+        newExecutor(RejectionPolicy.ABORT);
+        executor.execute(() -> {
+            throw new IllegalStateException("expected");
+        });
+        executor.shutdown();
+        Assertions.assertEquals(1, registry.get(PublisherMetrics.EXECUTOR_EXECUTION).tags("name", "test", "outcome", "error")
+            .timer().count());
+    }
+}
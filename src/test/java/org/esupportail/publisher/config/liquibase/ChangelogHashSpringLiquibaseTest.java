@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.liquibase;
+
+import javax.sql.DataSource;
+
+import liquibase.exception.LiquibaseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+public class ChangelogHashSpringLiquibaseTest {
+
+    private static final String V1 = "config/liquibase-hash/v1/";
+
+    private static final String V2 = "config/liquibase-hash/v2/";
+
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:changelogHash;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    /**
+     * @return true if the update was skipped.
+     */
+    private boolean boot(final String version, final boolean skipWhenUnchanged, final String contexts) throws LiquibaseException {
+        final ChangelogHashSpringLiquibase liquibase = new ChangelogHashSpringLiquibase();
+        liquibase.setCloseDataSourceOnceMigrated(false);
+        liquibase.setDataSource(dataSource);
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.setChangeLog("classpath:" + version + "master.xml");
+        liquibase.setChangeLogResources("classpath*:" + version + "**/*");
+        liquibase.setSkipWhenUnchanged(skipWhenUnchanged);
+        liquibase.setContexts(contexts);
+        liquibase.afterPropertiesSet();
+        return liquibase.isSkipped();
+    }
+
+    private int countChangeSets() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM DATABASECHANGELOG", Integer.class);
+    }
+
+    private String storedHash(final String version) {
+        return jdbcTemplate.queryForObject("SELECT hash FROM " + ChangelogHashSpringLiquibase.TABLE_NAME + " WHERE changelog = ?",
+            String.class, "classpath:" + version + "master.xml");
+    }
+
+    @Test
+    public void testSkipWhenUnchanged() throws LiquibaseException {
+        Assertions.assertFalse(boot(V1, true, null));
+        Assertions.assertEquals(2, countChangeSets());
+        final String hash = storedHash(V1);
+        Assertions.assertNotNull(hash);
+
+        Assertions.assertTrue(boot(V1, true, null));
+        Assertions.assertTrue(boot(V1, true, null));
+        Assertions.assertEquals(2, countChangeSets());
+        Assertions.assertEquals(hash, storedHash(V1));
+    }
+
+    @Test
+    public void testUpdateWhenChangelogsChange() throws LiquibaseException {
+        Assertions.assertFalse(boot(V1, true, null));
+        jdbcTemplate.update("INSERT INTO T_HASH_TEST (id) VALUES (1)");
+
+        Assertions.assertFalse(boot(V2, true, null));
+        Assertions.assertEquals(3, countChangeSets());
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM T_HASH_TEST WHERE name IS NULL", Integer.class));
+        Assertions.assertNotEquals(storedHash(V1), storedHash(V2));
+
+        Assertions.assertTrue(boot(V2, true, null));
+    }
+
+    @Test
+    public void testUpdateWhenContextsChange() throws LiquibaseException {
+        Assertions.assertFalse(boot(V1, true, null));
+        Assertions.assertFalse(boot(V1, true, "dev"));
+        Assertions.assertTrue(boot(V1, true, "dev"));
+    }
+
+    @Test
+    public void testUpdateWhenAppliedChangeSetsDiffer() throws LiquibaseException {
+        Assertions.assertFalse(boot(V1, true, null));
+        // changeset removed by hand from the history, liquibase should apply it again
+        jdbcTemplate.execute("DROP TABLE T_HASH_TEST");
+        jdbcTemplate.update("DELETE FROM DATABASECHANGELOG WHERE id = ?", "001-1");
+
+        Assertions.assertFalse(boot(V1, true, null));
+        Assertions.assertEquals(2, countChangeSets());
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM T_HASH_TEST", Integer.class));
+    }
+
+    @Test
+    public void testAlwaysUpdateWhenDisabled() throws LiquibaseException {
+        Assertions.assertFalse(boot(V1, false, null));
+        Assertions.assertFalse(boot(V1, false, null));
+        Assertions.assertEquals(2, countChangeSets());
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.liquibase;
+
+import java.sql.Connection;
+
+import javax.sql.DataSource;
+
+import liquibase.Liquibase;
+import liquibase.change.Change;
+import liquibase.change.ColumnConfig;
+import liquibase.change.ConstraintsConfig;
+import liquibase.change.core.CreateTableChange;
+import liquibase.changelog.ChangeSet;
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Build the schema of the application changelogs on the H2 database of tests.
+ * H2 2.x refuses a primary key on nullable columns and booleans in VARCHAR(1) columns, and has VALUE as keyword, so
+ * these columns of the main schema are changed once the changelogs are parsed, the changelogs files stay as run on
+ * other databases.
+ */
+@TestConfiguration
+public class H2LiquibaseConfiguration {
+
+    public static final String CHANGE_LOG = "classpath:config/liquibase/master.xml";
+
+    @Bean
+    public SpringLiquibase liquibase(final DataSource dataSource) {
+        return newLiquibase(dataSource);
+    }
+
+    /**
+     * @return the liquibase runner of the application changelogs, for tests without Spring context.
+     */
+    public static SpringLiquibase newLiquibase(final DataSource dataSource) {
+        final SpringLiquibase liquibase = new H2SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog(CHANGE_LOG);
+        return liquibase;
+    }
+
+    private static class H2SpringLiquibase extends SpringLiquibase {
+
+        @Override
+        protected Liquibase createLiquibase(final Connection c) throws LiquibaseException {
+            final Liquibase liquibase = super.createLiquibase(c);
+            for (ChangeSet changeSet : liquibase.getDatabaseChangeLog().getChangeSets()) {
+                for (Change change : changeSet.getChanges()) {
+                    if (change instanceof CreateTableChange) {
+                        adapt((CreateTableChange) change);
+                    }
+                }
+            }
+            return liquibase;
+        }
+
+        private static void adapt(final CreateTableChange table) {
+            for (ColumnConfig column : table.getColumns()) {
+                if ("T_CLASSIFICATION_ITEM".equalsIgnoreCase(table.getTableName())
+                    && ("item_id".equals(column.getName()) || "classification_id".equals(column.getName()))) {
+                    // other databases make them not null with the primary key
+                    column.setConstraints(new ConstraintsConfig().setNullable(false));
+                } else if ("T_USER".equalsIgnoreCase(table.getTableName())
+                    && ("enabled".equals(column.getName()) || "accept_notifications".equals(column.getName()))) {
+                    // loaded as booleans from users.csv
+                    column.setType("BOOLEAN");
+                } else if ("T_PERSISTENT_AUDIT_EVENT_DATA".equalsIgnoreCase(table.getTableName())
+                    && "value".equals(column.getName())) {
+                    // quoted as a keyword, upper case to be found by unquoted queries with NON_KEYWORDS=VALUE
+                    column.setName("VALUE");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.metric;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PublisherMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final PublisherMetrics publisherMetrics = new PublisherMetrics(registry);
+
+    private final HibernateQueryCounter queryCounter = new HibernateQueryCounter();
+
+    @Test
+    public void testRecordPublished() {
+        List<String> payload = publisherMetrics.recordPublished("items", () -> {
+            queryCounter.inspect("select 1");
+            queryCounter.inspect("select 2");
+            return Arrays.asList("a", "b", "c");
+        }, List::size);
+
+        Assertions.assertEquals(3, payload.size());
+        Assertions.assertEquals(1, registry.get(PublisherMetrics.PUBLISHED_BUILD)
+            .tags("endpoint", "items", "outcome", "success").timer().count());
+        DistributionSummary items = registry.get(PublisherMetrics.PUBLISHED_ITEMS).tag("endpoint", "items").summary();
+        Assertions.assertEquals(3, items.totalAmount());
+        DistributionSummary queries = registry.get(PublisherMetrics.PUBLISHED_QUERIES).tag("endpoint", "items").summary();
+        Assertions.assertEquals(2, queries.totalAmount());
+    }
+
+    @Test
+    public void testRecordPublishedOnError() {
+        Assertions.assertThrows(IllegalStateException.class, () -> publisherMetrics.recordPublished("feeds", () -> {
+            throw new IllegalStateException();
+        }, o -> 0));
+
+        Assertions.assertEquals(1, registry.get(PublisherMetrics.PUBLISHED_BUILD)
+            .tags("endpoint", "feeds", "outcome", "error").timer().count());
+        Assertions.assertNull(registry.find(PublisherMetrics.PUBLISHED_ITEMS).tag("endpoint", "feeds").summary());
+    }
+}
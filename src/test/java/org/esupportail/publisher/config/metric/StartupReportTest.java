@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.config.metric;
+
+import java.util.stream.Collectors;
+
+import org.esupportail.publisher.config.CacheConfiguration;
+import org.esupportail.publisher.config.Constants;
+import org.esupportail.publisher.config.ESUPPublisherProperties;
+import org.esupportail.publisher.config.bean.StartupProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.metrics.ApplicationStartup;
+
+/**
+ * Start a part of the application in the test profile, and check that the startup report is produced
+ * and that no step exceeds the budget of app.metrics.startup.budget.
+ */
+public class StartupReportTest {
+
+    @Configuration
+    @EnableConfigurationProperties(ESUPPublisherProperties.class)
+    @Import({PublisherMetricsConfiguration.class, CacheConfiguration.class})
+    @ImportAutoConfiguration(CacheAutoConfiguration.class)
+    static class StartupConfiguration {
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        final SpringApplication application = new SpringApplication(StartupConfiguration.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setApplicationStartup(StartupReport.newApplicationStartup());
+        application.setAdditionalProfiles(Constants.SPRING_PROFILE_TEST);
+        return application.run("--spring.cache.type=jcache",
+            "--spring.cache.jcache.provider=org.ehcache.jsr107.EhcacheCachingProvider");
+    }
+
+    @Test
+    public void testStartupReport() {
+        try (ConfigurableApplicationContext context = start()) {
+            final StartupReport.Report report = context.getBean(StartupReport.class).getReport();
+            Assertions.assertNotNull(report);
+            Assertions.assertEquals(context.getBean(ESUPPublisherProperties.class).getMetrics().getStartup().getBudget().toMillis(),
+                report.getBudgetMillis());
+            Assertions.assertTrue(report.getDurationMillis() > 0);
+            Assertions.assertFalse(report.getSlowestSteps().isEmpty());
+            Assertions.assertTrue(report.getSlowestSteps().stream().anyMatch(step -> "spring.context.refresh".equals(step.getName())));
+            Assertions.assertTrue(report.getApplicationSteps().stream().anyMatch(step -> "esup.cache.create".equals(step.getName())),
+                "Missing application step in " + report.getApplicationSteps());
+            Assertions.assertTrue(report.getOverBudgetSteps().isEmpty(), () -> "Steps over the budget of "
+                + report.getBudgetMillis() + " ms: " + report.getOverBudgetSteps().stream()
+                .map(step -> step.getName() + " " + step.getTags() + " " + step.getDurationMillis() + " ms")
+                .collect(Collectors.joining(", ")));
+        }
+    }
+
+    @Test
+    public void testNoReportWithoutBuffering() {
+        final StartupReport startupReport = new StartupReport(ApplicationStartup.DEFAULT, new StartupProperties());
+        startupReport.onApplicationReady();
+        Assertions.assertNull(startupReport.getReport());
+    }
+}
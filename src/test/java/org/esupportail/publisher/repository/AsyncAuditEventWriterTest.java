@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.esupportail.publisher.config.bean.AuditProperties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class AsyncAuditEventWriterTest {
+
+    private static final Instant DATE = Instant.parse("2026-01-01T10:00:00Z");
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private AsyncAuditEventWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        final DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:auditEvents;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("CREATE TABLE T_PERSISTENT_AUDIT_EVENT (event_id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "principal VARCHAR(255) NOT NULL, event_date TIMESTAMP, event_type VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE T_PERSISTENT_AUDIT_EVENT_DATA (event_id BIGINT NOT NULL, name VARCHAR(150) NOT NULL, "
+            + "value VARCHAR(255), PRIMARY KEY (event_id, name))");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (writer != null) {
+            writer.shutdown();
+        }
+        jdbcTemplate.execute("DROP TABLE T_PERSISTENT_AUDIT_EVENT_DATA");
+        jdbcTemplate.execute("DROP TABLE T_PERSISTENT_AUDIT_EVENT");
+    }
+
+    private AsyncAuditEventWriter newWriter(final int capacity, final int batchSize, final Duration flushInterval) {
+        final AuditProperties properties = new AuditProperties();
+        properties.setQueueCapacity(capacity);
+        properties.setBatchSize(batchSize);
+        properties.setFlushInterval(flushInterval);
+        properties.setOfferTimeout(Duration.ofMillis(10));
+        return new AsyncAuditEventWriter(jdbcTemplate, transactionTemplate, properties);
+    }
+
+    private int countEvents() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM T_PERSISTENT_AUDIT_EVENT", Integer.class);
+    }
+
+    private int countData() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM T_PERSISTENT_AUDIT_EVENT_DATA", Integer.class);
+    }
+
+    @Test
+    public void testFullQueueDropsEvents() {
+        // never started, nothing is consumed
+        writer = newWriter(10, 5, Duration.ofSeconds(1));
+        int accepted = 0;
+        for (int i = 0; i < 15; i++) {
+            if (writer.add("user" + i, DATE, "AUTHENTICATION_SUCCESS", Collections.emptyMap())) {
+                accepted++;
+            }
+        }
+        Assertions.assertEquals(10, accepted);
+        Assertions.assertEquals(5, writer.getDroppedCount());
+        Assertions.assertEquals(10, writer.getQueueSize());
+
+        writer.flush();
+        Assertions.assertEquals(10, countEvents());
+        Assertions.assertEquals(0, writer.getQueueSize());
+    }
+
+    @Test
+    public void testConcurrentEventsAreAllWrittenOnShutdown() throws Exception {
+        writer = newWriter(10000, 100, Duration.ofMillis(200));
+        writer.start();
+        final int threads = 8;
+        final int eventsPerThread = 500;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final String principal = "user" + t;
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                    Assertions.assertTrue(writer.add(principal, DATE, "AUTHENTICATION_SUCCESS",
+                        Collections.singletonMap("remoteAddress", "10.0.0." + i)));
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        writer.shutdown();
+        Assertions.assertEquals(threads * eventsPerThread, countEvents());
+        Assertions.assertEquals(threads * eventsPerThread, countData());
+        Assertions.assertEquals(threads * eventsPerThread, writer.getWrittenCount());
+        Assertions.assertEquals(0, writer.getDroppedCount());
+        Assertions.assertEquals(eventsPerThread, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM T_PERSISTENT_AUDIT_EVENT WHERE principal = ?", Integer.class, "user3"));
+        writer = null;
+    }
+
+    @Test
+    public void testEventIsWrittenAfterFlushInterval() throws Exception {
+        writer = newWriter(100, 100, Duration.ofMillis(100));
+        writer.start();
+        writer.add("admin", DATE, "AUTHENTICATION_SUCCESS", Collections.singletonMap("sessionId", "abc"));
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (countEvents() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(1, countEvents());
+        Assertions.assertEquals("abc", jdbcTemplate.queryForObject(
+            "SELECT value FROM T_PERSISTENT_AUDIT_EVENT_DATA WHERE name = ?", String.class, "sessionId"));
+    }
+
+    @Test
+    public void testInvalidEventDoesNotLoseItsBatch() {
+        writer = newWriter(100, 10, Duration.ofSeconds(1));
+        writer.add("user1", DATE, "AUTHENTICATION_SUCCESS", Collections.singletonMap("key", "value1"));
+        writer.add(null, DATE, "AUTHENTICATION_SUCCESS", Collections.emptyMap());
+        writer.add("user2", DATE, "AUTHENTICATION_SUCCESS", Collections.singletonMap("key", "value2"));
+        writer.flush();
+
+        Assertions.assertEquals(2, countEvents());
+        Assertions.assertEquals(2, countData());
+        Assertions.assertEquals(2, writer.getWrittenCount());
+        Assertions.assertEquals(1, writer.getDroppedCount());
+    }
+}
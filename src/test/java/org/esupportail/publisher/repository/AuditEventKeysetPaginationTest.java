@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.esupportail.publisher.domain.PersistentAuditEvent;
+import org.esupportail.publisher.repository.predicates.AuditEventPredicates;
+
+import com.querydsl.core.types.ExpressionUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+/**
+ * Walk audit events of a H2 dataset page by page on (date, id), each page must be read without offset,
+ * with one statement for events and a few batches for their data, and pages must give all matching events.
+ */
+public class AuditEventKeysetPaginationTest {
+
+    private static final int NB_EVENTS = 2000;
+
+    private static final int PAGE_SIZE = 50;
+
+    private static final Instant BASE_DATE = Instant.parse("2026-01-01T00:00:00Z");
+
+    private static EntityManagerFactory entityManagerFactory;
+
+    private static EntityManager entityManager;
+
+    private static PersistenceAuditEventRepositoryCustom repository;
+
+    private static List<PersistentAuditEvent> allEvents;
+
+    @BeforeAll
+    public static void setUp() {
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:auditKeyset;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE", "sa", ""));
+        factoryBean.setPackagesToScan("org.esupportail.publisher.domain");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Properties properties = new Properties();
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("javax.persistence.validation.mode", "none");
+        properties.put("hibernate.physical_naming_strategy", "org.hibernate.boot.model.naming.PhysicalNamingStrategyStandardImpl");
+        properties.put("hibernate.session_factory.statement_inspector", StatementCollector.class.getName());
+        factoryBean.setJpaProperties(properties);
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+        entityManager = entityManagerFactory.createEntityManager();
+        repository = new PersistenceAuditEventRepositoryCustomImpl(entityManager);
+
+        entityManager.getTransaction().begin();
+        for (int i = 0; i < NB_EVENTS; i++) {
+            final PersistentAuditEvent event = new PersistentAuditEvent();
+            event.setPrincipal("user" + (i % 7));
+            event.setAuditEventType(i % 5 == 0 ? "AUTHENTICATION_FAILURE" : "AUTHENTICATION_SUCCESS");
+            // many events at the same date
+            event.setAuditEventDate(BASE_DATE.plus(Duration.ofMinutes(i % 300)));
+            event.getData().put("remoteAddress", "10.0.0." + (i % 250));
+            entityManager.persist(event);
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+        allEvents = entityManager.createQuery("select e from PersistentAuditEvent e", PersistentAuditEvent.class).getResultList();
+        entityManager.clear();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    @Test
+    public void testWalkAllPages() {
+        Assertions.assertEquals(expected(e -> true), walk(null, null, null, null));
+    }
+
+    @Test
+    public void testWalkFilteredPages() {
+        final Instant from = BASE_DATE.plus(Duration.ofMinutes(50));
+        final Instant to = BASE_DATE.plus(Duration.ofMinutes(200));
+        final List<Long> expected = expected(e -> "user3".equals(e.getPrincipal())
+            && "AUTHENTICATION_FAILURE".equals(e.getAuditEventType())
+            && !e.getAuditEventDate().isBefore(from) && e.getAuditEventDate().isBefore(to));
+        Assertions.assertFalse(expected.isEmpty());
+        Assertions.assertEquals(expected, walk("user3", "AUTHENTICATION_FAILURE", from, to));
+    }
+
+    private List<Long> expected(final Predicate<PersistentAuditEvent> filter) {
+        return allEvents.stream().filter(filter)
+            .sorted(Comparator.comparing(PersistentAuditEvent::getAuditEventDate).thenComparing(PersistentAuditEvent::getId).reversed())
+            .map(PersistentAuditEvent::getId).collect(Collectors.toList());
+    }
+
+    private List<Long> walk(final String principal, final String type, final Instant from, final Instant to) {
+        final List<Long> ids = new ArrayList<>();
+        PersistentAuditEvent last = null;
+        do {
+            com.querydsl.core.types.Predicate filter = AuditEventPredicates.filter(principal, type, from, to);
+            if (last != null) {
+                filter = ExpressionUtils.allOf(filter, AuditEventPredicates.keysetAfter(last.getAuditEventDate(), last.getId()));
+            }
+            StatementCollector.clear();
+            List<PersistentAuditEvent> page = repository.findFirstEvents(filter, PAGE_SIZE + 1);
+            last = null;
+            if (page.size() > PAGE_SIZE) {
+                page = page.subList(0, PAGE_SIZE);
+                last = page.get(PAGE_SIZE - 1);
+            }
+            page.forEach(e -> {
+                Assertions.assertTrue(e.getData().get("remoteAddress").startsWith("10.0.0."));
+                ids.add(e.getId());
+            });
+            final List<String> statements = StatementCollector.getStatements();
+            final List<String> eventStatements = statements.stream().filter(sql -> sql.contains(" from T_PERSISTENT_AUDIT_EVENT "))
+                .collect(Collectors.toList());
+            final List<String> dataStatements = statements.stream().filter(sql -> sql.contains(" from T_PERSISTENT_AUDIT_EVENT_DATA "))
+                .collect(Collectors.toList());
+            Assertions.assertEquals(1, eventStatements.size(), "one statement by page");
+            Assertions.assertFalse(eventStatements.get(0).toLowerCase().contains("offset"), eventStatements.get(0));
+            // hibernate splits a batch in predefined sizes
+            Assertions.assertTrue(dataStatements.size() <= 3, "data of a page are read by batch " + dataStatements);
+            entityManager.clear();
+        } while (last != null);
+        return ids;
+    }
+}
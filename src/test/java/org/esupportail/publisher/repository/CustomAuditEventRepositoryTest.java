@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.repository;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.esupportail.publisher.config.ESUPPublisherProperties;
+import org.esupportail.publisher.config.audit.AuditEventConverter;
+import org.esupportail.publisher.config.liquibase.H2LiquibaseConfiguration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.actuate.audit.AuditEventRepository;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Buffered audit events are written by find, even when it is called in a read-only transaction.
+ */
+@DataJpaTest
+@Import({CustomAuditEventRepository.class, AuditEventConverter.class, CustomAuditEventRepositoryTest.TestConfig.class,
+    H2LiquibaseConfiguration.class})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+    // the writer inserts the value column of event data
+    "spring.datasource.url=jdbc:h2:mem:customAuditEvents;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE",
+    "spring.jpa.properties.javax.persistence.validation.mode=none"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CustomAuditEventRepositoryTest {
+
+    private static final Instant DATE = Instant.parse("2026-01-01T10:00:00Z");
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        public ESUPPublisherProperties esupPublisherProperties() {
+            return new ESUPPublisherProperties();
+        }
+    }
+
+    @Inject
+    private AuditEventRepository auditEventRepository;
+
+    @Inject
+    private AsyncAuditEventWriter asyncAuditEventWriter;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        // events stay queued until they are flushed
+        asyncAuditEventWriter.shutdown();
+        jdbcTemplate.execute("DELETE FROM T_PERSISTENT_AUDIT_EVENT_DATA");
+        jdbcTemplate.execute("DELETE FROM T_PERSISTENT_AUDIT_EVENT");
+    }
+
+    @Test
+    public void testFindInReadOnlyTransactionWritesBufferedEvents() {
+        asyncAuditEventWriter.add("user1", DATE, "AUTHENTICATION_SUCCESS", Collections.singletonMap("remoteAddress", "10.0.0.1"));
+        asyncAuditEventWriter.add("user2", DATE, "AUTHENTICATION_SUCCESS", Collections.singletonMap("remoteAddress", "10.0.0.2"));
+
+        final TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        final List<AuditEvent> found = readOnly.execute(status -> {
+            final List<AuditEvent> events = auditEventRepository.find(null, null, null);
+            // nothing written by the caller is kept
+            status.setRollbackOnly();
+            return events;
+        });
+
+        Assertions.assertEquals(2, found.size());
+        Assertions.assertEquals(0, asyncAuditEventWriter.getQueueSize());
+        Assertions.assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM T_PERSISTENT_AUDIT_EVENT", Integer.class));
+        Assertions.assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM T_PERSISTENT_AUDIT_EVENT_DATA", Integer.class));
+    }
+}
@@ -23,7 +23,9 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import javax.inject.Inject;
@@ -248,6 +250,20 @@ public class ItemClassificationOrderRepositoryTest {
         assertThat(repository.count(), equalTo(0L));
 	}
 
+	@Test
+	public void testNextDisplayOrders() {
+		List<Object[]> rows = repository.getNextDisplayOrdersInClassifications(Arrays.asList(feed1.getId(),
+				feed2.getId(), cat1.getId()));
+		Map<Long, Integer> nextOrders = new HashMap<>();
+		for (Object[] row : rows) {
+			nextOrders.put((Long) row[0], ((Number) row[1]).intValue());
+		}
+		assertThat(nextOrders.size(), is(2));
+		assertThat(nextOrders.get(feed1.getId()), equalTo(repository.getNextDisplayOrderInClassification(feed1.getId())));
+		assertThat(nextOrders.get(feed1.getId()), equalTo(26));
+		assertThat(nextOrders.get(feed2.getId()), equalTo(1));
+	}
+
 	@Test
 	public void testCustomOrderFeed() {
 		InternalFeed feed3 = ObjTest.newInternalFeed(INDICE_3, pub1, cat1);
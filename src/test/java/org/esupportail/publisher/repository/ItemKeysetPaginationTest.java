@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.News;
+import org.esupportail.publisher.domain.Organization;
+import org.esupportail.publisher.domain.QAbstractItem;
+import org.esupportail.publisher.domain.Redactor;
+import org.esupportail.publisher.domain.User;
+import org.esupportail.publisher.domain.enums.DisplayOrderType;
+import org.esupportail.publisher.domain.enums.ItemStatus;
+import org.esupportail.publisher.repository.predicates.ItemPredicates;
+import org.esupportail.publisher.web.rest.util.KeysetPaginationUtil;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+/**
+ * Walk items of a large H2 dataset page by page with keyset cursors, each page must be read with one
+ * statement without offset, and pages must give all items in the display order.
+ */
+@Slf4j
+public class ItemKeysetPaginationTest {
+
+    private static final int NB_ITEMS = 3000;
+
+    private static final int PAGE_SIZE = 50;
+
+    private static final Instant BASE_DATE = Instant.parse("2026-01-01T00:00:00Z");
+
+    private static EntityManagerFactory entityManagerFactory;
+
+    private static EntityManager entityManager;
+
+    private static ItemRepositoryCustom repository;
+
+    @BeforeAll
+    public static void setUp() {
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:itemKeyset;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE", "sa", ""));
+        factoryBean.setPackagesToScan("org.esupportail.publisher.domain");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Properties properties = new Properties();
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("javax.persistence.validation.mode", "none");
+        properties.put("hibernate.physical_naming_strategy", "org.hibernate.boot.model.naming.PhysicalNamingStrategyStandardImpl");
+        properties.put("hibernate.session_factory.statement_inspector", StatementCollector.class.getName());
+        factoryBean.setJpaProperties(properties);
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+        entityManager = entityManagerFactory.createEntityManager();
+        repository = new ItemRepositoryCustomImpl(entityManager);
+
+        entityManager.getTransaction().begin();
+        final User user = new User("user", "User");
+        entityManager.persist(user);
+        final Organization organization = ObjTest.newOrganization("1");
+        organization.setCreatedBy(user);
+        entityManager.persist(organization);
+        final Redactor redactor = ObjTest.newRedactor("1");
+        entityManager.persist(redactor);
+        for (int i = 0; i < NB_ITEMS; i++) {
+            final News news = ObjTest.newNews(String.valueOf(i % 300), organization, redactor);
+            // many ties on each sort key
+            news.setStatus(i % 4 == 0 ? ItemStatus.PENDING : ItemStatus.DRAFT);
+            news.setStartDate(LocalDate.of(2026, 1, 1).plusDays(i % 50));
+            news.setCreatedDate(BASE_DATE.plus(Duration.ofMinutes(i % 700)));
+            news.setLastModifiedDate(i % 3 == 0 ? news.getCreatedDate().plusSeconds(i) : news.getCreatedDate());
+            news.setCreatedBy(user);
+            news.setLastModifiedBy(user);
+            entityManager.persist(news);
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    @ParameterizedTest
+    @EnumSource(DisplayOrderType.class)
+    public void testWalkAllPages(DisplayOrderType displayOrder) {
+        final List<Long> expected = entityManager.createQuery("select i from AbstractItem i", AbstractItem.class).getResultList()
+            .stream().sorted(comparator(displayOrder)).map(AbstractItem::getId).collect(Collectors.toList());
+        Assertions.assertEquals(NB_ITEMS, expected.size());
+        Assertions.assertEquals(expected, walk(displayOrder, null));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = DisplayOrderType.class, names = {"LAST_CREATED_MODIFIED_FIRST", "NAME"})
+    public void testWalkFilteredPages(DisplayOrderType displayOrder) {
+        final List<Long> expected = entityManager.createQuery("select i from AbstractItem i", AbstractItem.class).getResultList()
+            .stream().filter(i -> ItemStatus.PENDING.equals(i.getStatus()))
+            .sorted(comparator(displayOrder)).map(AbstractItem::getId).collect(Collectors.toList());
+        Assertions.assertEquals(NB_ITEMS / 4, expected.size());
+        Assertions.assertEquals(expected, walk(displayOrder, QAbstractItem.abstractItem.status.eq(ItemStatus.PENDING)));
+    }
+
+    private List<Long> walk(final DisplayOrderType displayOrder, final Predicate filter) {
+        final List<Long> ids = new ArrayList<>();
+        final List<Long> pageDurations = new ArrayList<>();
+        String cursor = "";
+        do {
+            Predicate pageFilter = filter;
+            if (!cursor.isEmpty()) {
+                final KeysetPaginationUtil.Cursor after = KeysetPaginationUtil.decodeCursor(cursor);
+                Assertions.assertEquals(displayOrder.name(), after.getSort());
+                pageFilter = ExpressionUtils.allOf(filter, ItemPredicates.keysetAfter(displayOrder, after.getValue(), after.getId()));
+            }
+            StatementCollector.clear();
+            final long start = System.nanoTime();
+            List<AbstractItem> page = repository.findFirstItems(pageFilter, PAGE_SIZE + 1,
+                ItemPredicates.keysetOrderByItemDefinition(displayOrder));
+            pageDurations.add(System.nanoTime() - start);
+            // other statements load eager associations of items
+            final List<String> itemStatements = StatementCollector.getStatements().stream().filter(sql -> sql.contains(" from T_ITEM "))
+                .collect(Collectors.toList());
+            Assertions.assertEquals(1, itemStatements.size(), "one statement by page");
+            Assertions.assertFalse(itemStatements.get(0).toLowerCase().contains("offset"), itemStatements.get(0));
+            cursor = null;
+            if (page.size() > PAGE_SIZE) {
+                page = page.subList(0, PAGE_SIZE);
+                final AbstractItem last = page.get(PAGE_SIZE - 1);
+                cursor = KeysetPaginationUtil.encodeCursor(displayOrder.name(), last.getId(),
+                    ItemPredicates.keysetValueOf(displayOrder, last));
+            }
+            page.forEach(i -> ids.add(i.getId()));
+            entityManager.clear();
+        } while (cursor != null);
+        log.info("{} pages read in order {}, first page in {}µs, last page in {}µs", pageDurations.size(), displayOrder,
+            pageDurations.get(0) / 1000, pageDurations.get(pageDurations.size() - 1) / 1000);
+        return ids;
+    }
+
+    private static Comparator<AbstractItem> comparator(final DisplayOrderType displayOrder) {
+        switch (displayOrder) {
+            case LAST_CREATED_MODIFIED_FIRST:
+                return Comparator.comparing(AbstractItem::getLastModifiedDate).thenComparing(AbstractItem::getId).reversed();
+            case ONLY_LAST_CREATED_FIRST:
+                return Comparator.comparing(AbstractItem::getCreatedDate).thenComparing(AbstractItem::getId).reversed();
+            case NAME:
+                return Comparator.comparing(AbstractItem::getTitle).thenComparing(AbstractItem::getId);
+            case CUSTOM:
+                return Comparator.comparing(AbstractItem::getId).reversed();
+            default:
+                return Comparator.comparing(AbstractItem::getStartDate).thenComparing(AbstractItem::getId).reversed();
+        }
+    }
+}
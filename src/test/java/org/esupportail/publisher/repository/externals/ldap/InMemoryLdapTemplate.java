@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.repository.externals.ldap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.ldap.LdapName;
+
+import org.springframework.ldap.core.ContextMapper;
+import org.springframework.ldap.core.DirContextAdapter;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.ldap.query.LdapQuery;
+import org.springframework.ldap.support.LdapUtils;
+
+/**
+ * Embedded directory for tests: entries are kept in memory and searches evaluate the encoded LDAP filter
+ * (and, or, not, equality, presence and substrings, case insensitive) on entries under the query base,
+ * relative to the root dn of the directory.
+ * Each search is counted to check the number of round trips done on a real directory.
+ */
+public class InMemoryLdapTemplate extends LdapTemplate {
+
+    private final Map<String, Attributes> entries = new LinkedHashMap<>();
+
+    /**
+     * Base of the context source, query bases are relative to it.
+     */
+    private final String rootDn;
+
+    private final AtomicInteger searchCount = new AtomicInteger();
+
+    public InMemoryLdapTemplate(final String rootDn) {
+        this.rootDn = rootDn.toLowerCase();
+    }
+
+    public InMemoryLdapTemplate addEntry(final String dn, final String... attributeValues) {
+        final Attributes attributes = new BasicAttributes(true);
+        for (String attributeValue : attributeValues) {
+            final int idx = attributeValue.indexOf('=');
+            final String name = attributeValue.substring(0, idx);
+            Attribute attribute = attributes.get(name);
+            if (attribute == null) {
+                attribute = new BasicAttribute(name);
+                attributes.put(attribute);
+            }
+            attribute.add(attributeValue.substring(idx + 1));
+        }
+        entries.put(dn, attributes);
+        return this;
+    }
+
+    public int getSearchCount() {
+        return searchCount.get();
+    }
+
+    public void resetSearchCount() {
+        searchCount.set(0);
+    }
+
+    @Override
+    public <T> List<T> search(final LdapQuery query, final ContextMapper<T> mapper) {
+        searchCount.incrementAndGet();
+        final Predicate<Attributes> filter = new FilterParser(query.filter().encode()).parse();
+        final String base = query.base() == null || query.base().isEmpty() ? rootDn
+            : query.base().toString().toLowerCase() + "," + rootDn;
+        final List<T> results = new ArrayList<>();
+        try {
+            for (Map.Entry<String, Attributes> entry : entries.entrySet()) {
+                if (entry.getKey().toLowerCase().endsWith(base) && filter.test(entry.getValue())) {
+                    final T result = mapper.mapFromContext(new DirContextAdapter(entry.getValue(), new LdapName(entry.getKey())));
+                    if (result != null) {
+                        results.add(result);
+                    }
+                }
+            }
+        } catch (NamingException e) {
+            throw LdapUtils.convertLdapException(e);
+        }
+        return results;
+    }
+
+    private static final class FilterParser {
+
+        private final String filter;
+
+        private int pos;
+
+        private FilterParser(final String filter) {
+            this.filter = filter;
+        }
+
+        private Predicate<Attributes> parse() {
+            expect('(');
+            final char operator = filter.charAt(pos);
+            if (operator == '&' || operator == '|') {
+                pos++;
+                final List<Predicate<Attributes>> children = new ArrayList<>();
+                while (filter.charAt(pos) == '(') {
+                    children.add(parse());
+                }
+                expect(')');
+                if (operator == '&') {
+                    return attributes -> children.stream().allMatch(child -> child.test(attributes));
+                }
+                return attributes -> children.stream().anyMatch(child -> child.test(attributes));
+            }
+            if (operator == '!') {
+                pos++;
+                final Predicate<Attributes> child = parse();
+                expect(')');
+                return child.negate();
+            }
+            // escaped values can't contain parenthesis
+            final int end = filter.indexOf(')', pos);
+            final String item = filter.substring(pos, end);
+            pos = end + 1;
+            final int idx = item.indexOf('=');
+            final String name = item.substring(0, idx);
+            final String value = item.substring(idx + 1);
+            if ("*".equals(value)) {
+                return attributes -> attributes.get(name) != null;
+            }
+            final StringBuilder regex = new StringBuilder();
+            for (String part : value.split("\\*", -1)) {
+                if (regex.length() > 0 || value.startsWith("*")) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(unescape(part)));
+            }
+            final Pattern pattern = Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+            return attributes -> {
+                final Attribute attribute = attributes.get(name);
+                if (attribute == null) {
+                    return false;
+                }
+                try {
+                    final NamingEnumeration<?> values = attribute.getAll();
+                    while (values.hasMore()) {
+                        if (pattern.matcher(values.next().toString()).matches()) {
+                            return true;
+                        }
+                    }
+                } catch (NamingException e) {
+                    throw LdapUtils.convertLdapException(e);
+                }
+                return false;
+            };
+        }
+
+        private void expect(final char c) {
+            if (filter.charAt(pos) != c) {
+                throw new IllegalArgumentException("Expected '" + c + "' at " + pos + " in " + filter);
+            }
+            pos++;
+        }
+
+        private static String unescape(final String value) {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) == '\\' && i + 3 <= value.length()) {
+                    sb.append((char) Integer.parseInt(value.substring(i + 1, i + 3), 16));
+                    i += 2;
+                } else {
+                    sb.append(value.charAt(i));
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
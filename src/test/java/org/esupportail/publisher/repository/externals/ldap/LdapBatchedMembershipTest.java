@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.repository.externals.ldap;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.esupportail.publisher.domain.externals.ExternalGroupHelper;
+import org.esupportail.publisher.domain.externals.ExternalUserHelper;
+
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Batched membership checks used to validate targets of a content must take the same decisions as the checks
+ * done target by target, with one directory search instead of one by target.
+ */
+public class LdapBatchedMembershipTest {
+
+    private static final String GROUP_DN = "cn=%s,ou=groups,dc=esco-centre,dc=fr";
+
+    private static final String USER_DN = "uid=%s,ou=people,dc=esco-centre,dc=fr";
+
+    private static final List<String> GROUP_TARGETS = Arrays.asList("esco:Etablissements:LYCEE_A:Eleves",
+        "esco:Etablissements:LYCEE_B", "clg:Profs", "other:Club", "other:Unknown");
+
+    private static final List<String> USER_TARGETS = Arrays.asList("u1", "u2", "u3", "u4", "u5", "u6", "u99");
+
+    private static final Set<String> AUTHORIZED_GROUPS = Sets.newHashSet("esco:Etablissements:LYCEE_A", "clg:Profs");
+
+    private InMemoryLdapTemplate ldapTemplate;
+
+    private LdapGroupDaoImpl groupDao;
+
+    private LdapUserDaoImpl userDao;
+
+    @BeforeEach
+    public void setUp() {
+        ldapTemplate = new InMemoryLdapTemplate("dc=esco-centre,dc=fr");
+        group("esco:Etablissements:LYCEE_A", group("esco:Etablissements:LYCEE_A:Eleves"), user("u1"));
+        group("esco:Etablissements:LYCEE_A:Eleves", user("u2"), user("u3"));
+        group("esco:Etablissements:LYCEE_A:Clubs", group("other:Club"));
+        group("esco:Etablissements:LYCEE_B", user("u4"), group("clg:Profs"));
+        group("clg:Profs", user("u5"));
+        group("other:Club", user("u6"));
+        for (String uid : USER_TARGETS) {
+            if (!"u99".equals(uid)) {
+                ldapTemplate.addEntry(String.format(USER_DN, uid), "uid=" + uid, "displayName=User " + uid,
+                    "ESCOUAI=" + (uid.compareTo("u4") < 0 ? "0290009C" : "0180000A"));
+            }
+        }
+
+        final ExternalGroupHelper groupHelper = new ExternalGroupHelper("cn", "displayName", "cn", "member",
+            Pattern.compile(String.format(GROUP_DN, "(.*)")), 1, Pattern.compile(String.format(USER_DN, "(.*)")), 1,
+            null, false, true, false, Pattern.compile("^$"), new HashSet<>(), "ou=groups");
+        final ExternalUserHelper userHelper = new ExternalUserHelper();
+        userHelper.setUserIdAttribute("uid");
+        userHelper.setUserDisplayNameAttribute("displayName");
+        userHelper.setUserEmailAttribute("mail");
+        userHelper.setUserSearchAttribute("displayName");
+        userHelper.setOtherUserAttributes(new HashSet<>());
+        userHelper.setOtherUserDisplayedAttributes(new HashSet<>());
+        userHelper.setUserDNSubPath("ou=people");
+        userDao = new LdapUserDaoImpl(ldapTemplate, userHelper);
+        groupDao = new LdapGroupDaoImpl(ldapTemplate, groupHelper, Arrays.asList(), userDao, Arrays.asList());
+    }
+
+    private void group(final String id, final String... members) {
+        final String[] attributes = new String[members.length + 2];
+        attributes[0] = "cn=" + id;
+        attributes[1] = "displayName=" + id;
+        for (int i = 0; i < members.length; i++) {
+            attributes[i + 2] = "member=" + members[i];
+        }
+        ldapTemplate.addEntry(String.format(GROUP_DN, id), attributes);
+    }
+
+    private static String group(final String id) {
+        return String.format(GROUP_DN, id);
+    }
+
+    private static String user(final String uid) {
+        return String.format(USER_DN, uid);
+    }
+
+    @Test
+    public void testGroupsMemberOfAtLeastOneGroup() {
+        final Set<String> expected = new HashSet<>();
+        for (String group : GROUP_TARGETS) {
+            if (groupDao.isGroupMemberOfAtLeastOneGroup(group, AUTHORIZED_GROUPS)) {
+                expected.add(group);
+            }
+        }
+        Assertions.assertEquals(Sets.newHashSet("esco:Etablissements:LYCEE_A:Eleves", "clg:Profs", "other:Club"), expected);
+
+        ldapTemplate.resetSearchCount();
+        Assertions.assertEquals(expected, groupDao.getGroupsMemberOfAtLeastOneGroup(GROUP_TARGETS, AUTHORIZED_GROUPS));
+        Assertions.assertEquals(1, ldapTemplate.getSearchCount());
+    }
+
+    @Test
+    public void testUsersMemberOfAtLeastOneGroup() {
+        final Set<String> expected = new HashSet<>();
+        for (String uid : USER_TARGETS) {
+            if (groupDao.isUserMemberOfAtLeastOneGroup(uid, AUTHORIZED_GROUPS)) {
+                expected.add(uid);
+            }
+        }
+        Assertions.assertEquals(Sets.newHashSet("u1", "u2", "u3", "u5"), expected);
+
+        ldapTemplate.resetSearchCount();
+        Assertions.assertEquals(expected, groupDao.getUsersMemberOfAtLeastOneGroup(USER_TARGETS, AUTHORIZED_GROUPS));
+        Assertions.assertEquals(1, ldapTemplate.getSearchCount());
+        Assertions.assertTrue(groupDao.getUsersMemberOfAtLeastOneGroup(USER_TARGETS, new HashSet<>()).isEmpty());
+    }
+
+    @Test
+    public void testGroupsMemberOfGroupFilter() {
+        final String filter = "(cn=esco:Etablissements:*)";
+        final Set<String> expected = new HashSet<>();
+        for (String group : GROUP_TARGETS) {
+            if (groupDao.isGroupMemberOfGroupFilter(filter, group)) {
+                expected.add(group);
+            }
+        }
+        Assertions.assertEquals(Sets.newHashSet("esco:Etablissements:LYCEE_A:Eleves", "esco:Etablissements:LYCEE_B",
+            "clg:Profs", "other:Club"), expected);
+
+        ldapTemplate.resetSearchCount();
+        Assertions.assertEquals(expected, groupDao.getGroupsMemberOfGroupFilter(filter, GROUP_TARGETS));
+        // unresolved targets are looked for in members of groups of the filter
+        Assertions.assertEquals(2, ldapTemplate.getSearchCount());
+    }
+
+    @Test
+    public void testUidsFoundWithFilter() {
+        final String filter = "(ESCOUAI=0290009C)";
+        final Set<String> expected = new HashSet<>();
+        for (String uid : USER_TARGETS) {
+            if (userDao.isUserFoundWithFilter(filter, uid)) {
+                expected.add(uid);
+            }
+        }
+        Assertions.assertEquals(Sets.newHashSet("u1", "u2", "u3"), expected);
+
+        ldapTemplate.resetSearchCount();
+        Assertions.assertEquals(expected, userDao.getUidsFoundWithFilter(filter, USER_TARGETS));
+        Assertions.assertEquals(1, ldapTemplate.getSearchCount());
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.repository.externals.ldap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.esupportail.publisher.domain.externals.ExternalGroupHelper;
+import org.esupportail.publisher.domain.externals.ExternalUserHelper;
+import org.esupportail.publisher.domain.externals.IExternalUser;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Members of a large group are paged: display names of all members are loaded with light searches,
+ * and full user attributes only for members of the requested page.
+ */
+public class LdapGroupMembersPagingTest {
+
+    private static final String GROUP_DN = "cn=%s,ou=groups,dc=esco-centre,dc=fr";
+
+    private static final String USER_DN = "uid=%s,ou=people,dc=esco-centre,dc=fr";
+
+    private static final String GROUP_ID = "esco:Etablissements:LYCEE_A:Eleves";
+
+    private static final int NB_USERS = 2000;
+
+    private InMemoryLdapTemplate ldapTemplate;
+
+    private LdapGroupDaoImpl buildGroupDao(final boolean byUserAttributes) {
+        ldapTemplate = new InMemoryLdapTemplate("dc=esco-centre,dc=fr");
+        final List<String> attributes = new ArrayList<>();
+        attributes.add("cn=" + GROUP_ID);
+        attributes.add("displayName=" + GROUP_ID);
+        for (int i = 0; i < NB_USERS; i++) {
+            final String uid = String.format("u%04d", i);
+            // display names are in the reverse order of uids
+            final String displayName = String.format("User %04d", NB_USERS - i);
+            if (byUserAttributes) {
+                ldapTemplate.addEntry(String.format(USER_DN, uid), "uid=" + uid, "displayName=" + displayName,
+                    "isMemberOf=" + GROUP_ID);
+            } else {
+                ldapTemplate.addEntry(String.format(USER_DN, uid), "uid=" + uid, "displayName=" + displayName);
+                attributes.add("member=" + String.format(USER_DN, uid));
+            }
+        }
+        ldapTemplate.addEntry(String.format(USER_DN, "other"), "uid=other", "displayName=Other", "isMemberOf=other:Group");
+        ldapTemplate.addEntry(String.format(GROUP_DN, GROUP_ID), attributes.toArray(new String[0]));
+
+        final ExternalGroupHelper groupHelper = new ExternalGroupHelper("cn", "displayName", "cn", "member",
+            Pattern.compile(String.format(GROUP_DN, "(.*)")), 1, Pattern.compile(String.format(USER_DN, "(.*)")), 1,
+            null, false, true, byUserAttributes, Pattern.compile("^$"), new HashSet<>(), "ou=groups");
+        final ExternalUserHelper userHelper = new ExternalUserHelper();
+        userHelper.setUserIdAttribute("uid");
+        userHelper.setUserDisplayNameAttribute("displayName");
+        userHelper.setUserEmailAttribute("mail");
+        userHelper.setUserSearchAttribute("displayName");
+        userHelper.setUserGroupAttribute("isMemberOf");
+        userHelper.setOtherUserAttributes(new HashSet<>());
+        userHelper.setOtherUserDisplayedAttributes(new HashSet<>());
+        userHelper.setUserDNSubPath("ou=people");
+        final LdapUserDaoImpl userDao = new LdapUserDaoImpl(ldapTemplate, userHelper);
+        return new LdapGroupDaoImpl(ldapTemplate, groupHelper, Arrays.asList(), userDao, Arrays.asList());
+    }
+
+    private static List<String> ids(final Page<IExternalUser> page) {
+        final List<String> ids = new ArrayList<>();
+        for (IExternalUser user : page.getContent()) {
+            ids.add(user.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testPagesByUserAttributes() {
+        final LdapGroupDaoImpl groupDao = buildGroupDao(true);
+        ldapTemplate.resetSearchCount();
+        final Page<IExternalUser> page = groupDao.getDirectUserMembers(GROUP_ID, null, PageRequest.of(0, 20));
+        Assertions.assertEquals(NB_USERS, page.getTotalElements());
+        Assertions.assertEquals(20, page.getContent().size());
+        // default order on display names
+        Assertions.assertEquals("u1999", page.getContent().get(0).getId());
+        Assertions.assertEquals("User 0001", page.getContent().get(0).getDisplayName());
+        Assertions.assertEquals("u1980", page.getContent().get(19).getId());
+        // one search for names, one for attributes of the page
+        Assertions.assertEquals(2, ldapTemplate.getSearchCount());
+    }
+
+    @Test
+    public void testPagesByMemberAttribute() {
+        final LdapGroupDaoImpl groupDao = buildGroupDao(false);
+        ldapTemplate.resetSearchCount();
+        final Page<IExternalUser> page = groupDao.getDirectUserMembers(GROUP_ID, null,
+            PageRequest.of(2, 50, Sort.by("login")));
+        Assertions.assertEquals(NB_USERS, page.getTotalElements());
+        Assertions.assertEquals(40, page.getTotalPages());
+        Assertions.assertEquals(50, page.getContent().size());
+        Assertions.assertEquals("u0100", page.getContent().get(0).getId());
+        Assertions.assertEquals("u0149", page.getContent().get(49).getId());
+        // group, chunked names and the page, never one search by member
+        Assertions.assertEquals(1 + NB_USERS / 50 + 1, ldapTemplate.getSearchCount());
+    }
+
+    @Test
+    public void testSortAndSearch() {
+        final LdapGroupDaoImpl groupDao = buildGroupDao(true);
+        Page<IExternalUser> page = groupDao.getDirectUserMembers(GROUP_ID, null,
+            PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "displayName")));
+        Assertions.assertEquals(Arrays.asList("u0000", "u0001", "u0002"), ids(page));
+
+        page = groupDao.getDirectUserMembers(GROUP_ID, " user 000", PageRequest.of(0, 20, Sort.by("login")));
+        Assertions.assertEquals(9, page.getTotalElements());
+        Assertions.assertEquals(Arrays.asList("u1991", "u1992", "u1993", "u1994", "u1995", "u1996", "u1997", "u1998",
+            "u1999"), ids(page));
+
+        page = groupDao.getDirectUserMembers(GROUP_ID, "U0123", PageRequest.of(0, 20));
+        Assertions.assertEquals(Arrays.asList("u0123"), ids(page));
+
+        page = groupDao.getDirectUserMembers(GROUP_ID, null, PageRequest.of(200, 20));
+        Assertions.assertEquals(NB_USERS, page.getTotalElements());
+        Assertions.assertTrue(page.getContent().isEmpty());
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.security;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.esupportail.publisher.config.ESUPPublisherProperties;
+import org.esupportail.publisher.domain.enums.StringEvaluationMode;
+import org.esupportail.publisher.service.bean.AuthoritiesDefinition;
+import org.esupportail.publisher.service.evaluators.IEvaluation;
+import org.esupportail.publisher.service.evaluators.UserAttributesEvaluation;
+import org.esupportail.publisher.service.evaluators.UserMultivaluedAttributesEvaluation;
+import org.esupportail.publisher.web.rest.dto.UserDTO;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchyImpl;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class AuthorityServiceImplTest {
+
+    private AuthorityServiceImpl authorityService;
+
+    private CountingEvaluation admins;
+
+    @BeforeEach
+    public void setUp() {
+        admins = new CountingEvaluation(new UserAttributesEvaluation("uid", "admin", StringEvaluationMode.EQUALS));
+        AuthoritiesDefinition defs = new AuthoritiesDefinition();
+        defs.setAdmins(admins);
+        defs.setUsers(new UserMultivaluedAttributesEvaluation("isMemberOf", "esco:Applications:Publisher:.*", StringEvaluationMode.MATCH));
+
+        RoleHierarchyImpl roleHierarchy = new RoleHierarchyImpl();
+        roleHierarchy.setHierarchy(AuthoritiesConstants.ADMIN + " > " + AuthoritiesConstants.USER
+            + " > " + AuthoritiesConstants.AUTHENTICATED + " > " + AuthoritiesConstants.ANONYMOUS);
+
+        ESUPPublisherProperties properties = new ESUPPublisherProperties();
+        properties.getSecurity().setAuthoritiesTimeToLive(Duration.ofMinutes(1));
+
+        authorityService = new AuthorityServiceImpl();
+        authorityService.rolesDefs = defs;
+        ReflectionTestUtils.setField(authorityService, "roleHierarchy", roleHierarchy);
+        ReflectionTestUtils.setField(authorityService, "esupPublisherProperties", properties);
+        authorityService.init();
+    }
+
+    @Test
+    public void testRolesEvaluation() {
+        Collection<? extends GrantedAuthority> authorities = authorityService.getUserAuthorities(user("admin", "esco:other"));
+        Assertions.assertTrue(authorities.contains(new SimpleGrantedAuthority(AuthoritiesConstants.ADMIN)));
+        Assertions.assertTrue(authorities.contains(new SimpleGrantedAuthority(AuthoritiesConstants.USER)));
+
+        authorities = authorityService.getUserAuthorities(user("F08001ut", "esco:Applications:Publisher:Fictif_0450822X"));
+        Assertions.assertFalse(authorities.contains(new SimpleGrantedAuthority(AuthoritiesConstants.ADMIN)));
+        Assertions.assertTrue(authorities.contains(new SimpleGrantedAuthority(AuthoritiesConstants.USER)));
+
+        authorities = authorityService.getUserAuthorities(user("F08001ut", "esco:other"));
+        Assertions.assertFalse(authorities.contains(new SimpleGrantedAuthority(AuthoritiesConstants.USER)));
+        Assertions.assertTrue(authorities.contains(new SimpleGrantedAuthority(AuthoritiesConstants.AUTHENTICATED)));
+
+        Assertions.assertEquals(AuthorityUtils.NO_AUTHORITIES, authorityService.getUserAuthorities((UserDTO) null));
+    }
+
+    @Test
+    public void testAuthoritiesReusedWhileAttributesDontChange() {
+        authorityService.getUserAuthorities(user("F08001ut", "esco:other"));
+        authorityService.getUserAuthorities(user("F08001ut", "esco:other"));
+        Assertions.assertEquals(1, admins.calls);
+
+        Collection<? extends GrantedAuthority> authorities =
+            authorityService.getUserAuthorities(user("F08001ut", "esco:Applications:Publisher:Fictif_0450822X"));
+        Assertions.assertEquals(2, admins.calls);
+        Assertions.assertTrue(authorities.contains(new SimpleGrantedAuthority(AuthoritiesConstants.USER)));
+
+        // back to the previous group, the user gets its previous authorities
+        authorities = authorityService.getUserAuthorities(user("F08001ut", "esco:other"));
+        Assertions.assertEquals(2, admins.calls);
+        Assertions.assertFalse(authorities.contains(new SimpleGrantedAuthority(AuthoritiesConstants.USER)));
+    }
+
+    private static UserDTO user(final String uid, final String group) {
+        Map<String, List<String>> attrs = new HashMap<>();
+        attrs.put("uid", Lists.newArrayList(uid));
+        attrs.put("isMemberOf", Lists.newArrayList("esco:admin:central", group));
+        return new UserDTO(uid, uid, true, false, "test@recia.fr", attrs);
+    }
+
+    private static class CountingEvaluation implements IEvaluation {
+        private final IEvaluation delegate;
+        private int calls;
+
+        CountingEvaluation(final IEvaluation delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isApplicable(final UserDTO userInfos) {
+            calls++;
+            return delegate.isApplicable(userInfos);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.security;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpSession;
+
+public class ExpiringSessionMappingStorageTest {
+
+    private final MutableClock clock = new MutableClock();
+
+    private final ExpiringSessionMappingStorage storage = new ExpiringSessionMappingStorage(Duration.ofMinutes(30), 3, clock);
+
+    @Test
+    public void testRemoveByMappingId() {
+        MockHttpSession session = new MockHttpSession(null, "S1");
+        storage.addSessionById("ST-1", session);
+
+        Assertions.assertSame(session, storage.removeSessionByMappingId("ST-1"));
+        Assertions.assertNull(storage.removeSessionByMappingId("ST-1"));
+        Assertions.assertEquals(0, storage.size());
+    }
+
+    @Test
+    public void testRemoveBySessionId() {
+        storage.addSessionById("ST-1", new MockHttpSession(null, "S1"));
+        storage.addSessionById("ST-2", new MockHttpSession(null, "S2"));
+
+        storage.removeBySessionById("S1");
+
+        Assertions.assertEquals(1, storage.size());
+        Assertions.assertNull(storage.removeSessionByMappingId("ST-1"));
+        Assertions.assertNotNull(storage.removeSessionByMappingId("ST-2"));
+    }
+
+    @Test
+    public void testNewTicketReplaceSessionMapping() {
+        MockHttpSession session = new MockHttpSession(null, "S1");
+        storage.addSessionById("ST-1", session);
+        storage.addSessionById("ST-2", session);
+
+        Assertions.assertEquals(1, storage.size());
+        Assertions.assertNull(storage.removeSessionByMappingId("ST-1"));
+        Assertions.assertSame(session, storage.removeSessionByMappingId("ST-2"));
+    }
+
+    @Test
+    public void testExpiration() {
+        storage.addSessionById("ST-1", new MockHttpSession(null, "S1"));
+        clock.advance(Duration.ofMinutes(20));
+        storage.addSessionById("ST-2", new MockHttpSession(null, "S2"));
+        clock.advance(Duration.ofMinutes(10));
+
+        Assertions.assertNull(storage.removeSessionByMappingId("ST-1"));
+        Assertions.assertEquals(0, storage.purgeExpired());
+        clock.advance(Duration.ofMinutes(20));
+        Assertions.assertEquals(1, storage.purgeExpired());
+        Assertions.assertEquals(0, storage.size());
+    }
+
+    @Test
+    public void testMaxEntries() {
+        for (int i = 1; i <= 5; i++) {
+            storage.addSessionById("ST-" + i, new MockHttpSession(null, "S" + i));
+        }
+
+        Assertions.assertEquals(3, storage.size());
+        Assertions.assertNull(storage.removeSessionByMappingId("ST-1"));
+        Assertions.assertNull(storage.removeSessionByMappingId("ST-2"));
+        Assertions.assertNotNull(storage.removeSessionByMappingId("ST-5"));
+    }
+
+    static class MutableClock extends Clock {
+
+        private Instant instant = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
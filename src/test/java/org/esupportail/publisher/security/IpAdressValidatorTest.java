@@ -16,11 +16,14 @@
 package org.esupportail.publisher.security;
 
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 
 import org.esupportail.publisher.config.bean.validator.IpAddressValidator;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
 
 public class IpAdressValidatorTest {
 
@@ -55,4 +58,43 @@ public class IpAdressValidatorTest {
             Assertions.assertFalse(validator.isValid(ip, null), String.format("IP %s is not validated", ip));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIpRangeMatches() {
+        String[] ranges = {"192.168.1.1/20", "10.0.0.0/8", "10.1.2.3", "172.16.5.4", "::1", "2001:db8::/32"};
+        IpRangeAuthorizationManager matcher = new IpRangeAuthorizationManager(new LinkedHashSet<>(Arrays.asList(ranges)));
+
+        String[] allowed = {"192.168.0.0", "192.168.15.255", "10.255.255.255", "172.16.5.4", "::1",
+                "2001:0db8:0000:0000:0000:ff00:0042:8329", "::ffff:10.0.0.1"};
+        for (String ip: allowed) {
+            Assertions.assertTrue(matcher.matches(ip), String.format("IP %s should match", ip));
+        }
+        String[] denied = {"192.168.16.0", "11.0.0.0", "172.16.5.5", "::2", "2001:db9::1", "127.0.0.1", "not an ip", null};
+        for (String ip: denied) {
+            Assertions.assertFalse(matcher.matches(ip), String.format("IP %s should not match", ip));
+        }
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.20.30.40");
+        Assertions.assertTrue(matcher.matches(request));
+    }
+
+    @Test
+    public void testIpRangeMatchesLikeHasIpAddress() {
+        String[] ranges = {"192.168.1.1/20", "192.168.8.0/22", "192.168.16.0/24", "10.0.0.0/31", "10.0.0.2/31", "2001:db8::/64"};
+        IpRangeAuthorizationManager matcher = new IpRangeAuthorizationManager(new LinkedHashSet<>(Arrays.asList(ranges)));
+
+        String[] ips = {"192.168.0.1", "192.168.11.255", "192.168.15.255", "192.168.16.1", "192.168.17.1",
+                "10.0.0.0", "10.0.0.3", "10.0.0.4", "2001:db8::1", "2001:db8:0:1::1", "::1"};
+        for (String ip: ips) {
+            boolean expected = Arrays.stream(ranges).anyMatch(range -> new IpAddressMatcher(range).matches(ip));
+            Assertions.assertEquals(expected, matcher.matches(ip), String.format("IP %s should be evaluated as hasIpAddress", ip));
+        }
+    }
+
+    @Test
+    public void testIpRangeNotValid() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new IpRangeAuthorizationManager(new LinkedHashSet<>(Arrays.asList("192.168.1.260"))));
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.security;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpSession;
+
+public class JdbcSessionMappingStorageTest {
+
+    private final ExpiringSessionMappingStorageTest.MutableClock clock = new ExpiringSessionMappingStorageTest.MutableClock();
+
+    private JdbcTemplate jdbcTemplate;
+
+    private JdbcSessionMappingStorage node1;
+
+    private JdbcSessionMappingStorage node2;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:casSessionMapping;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE " + JdbcSessionMappingStorage.TABLE_NAME + " (mapping_id VARCHAR(255) PRIMARY KEY, "
+            + "session_id VARCHAR(128) NOT NULL, node_id VARCHAR(255) NOT NULL, expires_at BIGINT NOT NULL, "
+            + "revoked BOOLEAN DEFAULT FALSE NOT NULL)");
+        node1 = new JdbcSessionMappingStorage(jdbcTemplate, "node1", Duration.ofMinutes(30), 100, clock);
+        node2 = new JdbcSessionMappingStorage(jdbcTemplate, "node2", Duration.ofMinutes(30), 100, clock);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.execute("DROP TABLE " + JdbcSessionMappingStorage.TABLE_NAME);
+    }
+
+    @Test
+    public void testLocalLogout() {
+        MockHttpSession session = new MockHttpSession(null, "S1");
+        node1.addSessionById("ST-1", session);
+        Assertions.assertEquals(1, countRows());
+
+        Assertions.assertSame(session, node1.removeSessionByMappingId("ST-1"));
+        Assertions.assertEquals(0, countRows());
+    }
+
+    @Test
+    public void testLogoutReceivedOnOtherNode() {
+        MockHttpSession session = new MockHttpSession(null, "S1");
+        node1.addSessionById("ST-1", session);
+
+        Assertions.assertNull(node2.removeSessionByMappingId("ST-1"));
+        Assertions.assertFalse(session.isInvalid());
+        Assertions.assertEquals(0, node2.invalidateRevokedSessions());
+
+        Assertions.assertEquals(1, node1.invalidateRevokedSessions());
+        Assertions.assertTrue(session.isInvalid());
+        Assertions.assertEquals(0, countRows());
+    }
+
+    @Test
+    public void testSessionDestroyed() {
+        node1.addSessionById("ST-1", new MockHttpSession(null, "S1"));
+        node2.addSessionById("ST-2", new MockHttpSession(null, "S1"));
+
+        node1.removeBySessionById("S1");
+
+        Assertions.assertEquals(1, countRows());
+        Assertions.assertNull(node1.removeSessionByMappingId("ST-1"));
+    }
+
+    @Test
+    public void testPurgeExpired() {
+        node1.addSessionById("ST-1", new MockHttpSession(null, "S1"));
+        clock.advance(Duration.ofMinutes(20));
+        node2.addSessionById("ST-2", new MockHttpSession(null, "S2"));
+        clock.advance(Duration.ofMinutes(15));
+
+        Assertions.assertEquals(1, node2.purgeExpired());
+        Assertions.assertEquals(1, countRows());
+    }
+
+    private int countRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + JdbcSessionMappingStorage.TABLE_NAME, Integer.class);
+    }
+}
@@ -0,0 +1,295 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.security;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.esupportail.publisher.config.metric.PublisherMetrics;
+import org.esupportail.publisher.domain.AbstractFeed;
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.Category;
+import org.esupportail.publisher.domain.ContextKey;
+import org.esupportail.publisher.domain.ItemClassificationOrder;
+import org.esupportail.publisher.domain.News;
+import org.esupportail.publisher.domain.Organization;
+import org.esupportail.publisher.domain.PermissionOnContext;
+import org.esupportail.publisher.domain.Publisher;
+import org.esupportail.publisher.domain.SubjectKey;
+import org.esupportail.publisher.domain.User;
+import org.esupportail.publisher.domain.enums.ContextType;
+import org.esupportail.publisher.domain.enums.PermissionClass;
+import org.esupportail.publisher.domain.enums.PermissionType;
+import org.esupportail.publisher.domain.enums.SubjectType;
+import org.esupportail.publisher.domain.evaluators.AbstractEvaluator;
+import org.esupportail.publisher.repository.CategoryRepository;
+import org.esupportail.publisher.repository.FeedRepository;
+import org.esupportail.publisher.repository.IPermissionRepositorySelector;
+import org.esupportail.publisher.repository.ItemClassificationOrderRepository;
+import org.esupportail.publisher.repository.ItemRepository;
+import org.esupportail.publisher.repository.ObjTest;
+import org.esupportail.publisher.repository.OrganizationRepository;
+import org.esupportail.publisher.repository.PermissionRepository;
+import org.esupportail.publisher.repository.PublisherRepository;
+import org.esupportail.publisher.repository.predicates.ClassificationPredicates;
+import org.esupportail.publisher.repository.predicates.ItemPredicates;
+import org.esupportail.publisher.repository.predicates.PermissionPredicates;
+import org.esupportail.publisher.repository.predicates.PublisherPredicates;
+import org.esupportail.publisher.service.bean.UserContextTree;
+import org.esupportail.publisher.service.evaluators.IEvaluation;
+import org.esupportail.publisher.service.evaluators.IEvaluationFactory;
+import org.esupportail.publisher.service.factories.CompositeKeyDTOFactory;
+import org.esupportail.publisher.service.factories.PermissionDTOSelectorFactory;
+import org.esupportail.publisher.web.rest.dto.PermOnCtxDTO;
+import org.esupportail.publisher.web.rest.dto.SubjectKeyDTO;
+import org.esupportail.publisher.web.rest.dto.UserDTO;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.mysema.commons.lang.Pair;
+import com.querydsl.core.types.Predicate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Items added in a loaded tree must get the parents and permissions they would get from a reload of the tree.
+ * The user can only look over the organization and has different roles on two categories of a publisher.
+ */
+public class UserContextLoaderServiceImplTest {
+
+    @Mock
+    private IPermissionRepositorySelector permissionDao;
+    @Mock
+    private PermissionRepository<PermissionOnContext> permissionRepository;
+    @Mock
+    private IEvaluationFactory evaluationFactory;
+    @Mock
+    private PermissionDTOSelectorFactory permissionDTOFactory;
+    @Mock
+    private OrganizationRepository organizationDao;
+    @Mock
+    private PublisherRepository publisherDao;
+    @Mock
+    private CategoryRepository categoryDao;
+    @Mock
+    private FeedRepository<AbstractFeed> feedDao;
+    @Mock
+    private ItemClassificationOrderRepository itemClassifDao;
+    @Mock
+    private ItemRepository<AbstractItem> itemDao;
+    @Mock
+    private PublisherMetrics publisherMetrics;
+    @Mock
+    private CompositeKeyDTOFactory<SubjectKeyDTO, SubjectKey, String, SubjectType> subjectKeyConverter;
+    @InjectMocks
+    private UserContextLoaderServiceImpl userContextLoaderService;
+
+    private AutoCloseable closeable;
+
+    private final UserDTO userDTO = new UserDTO("F08001ut", "user", true, false);
+
+    private final User user = new User("F08001ut", "user");
+
+    private final Map<Long, List<ItemClassificationOrder>> linksOfCategories = Maps.newHashMap();
+
+    private Category contributorCategory;
+
+    private Category managerCategory;
+
+    private PermOnCtxDTO contributorPerm;
+
+    private PermOnCtxDTO managerPerm;
+
+    @BeforeEach
+    public void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        final UserContextTree userSessionTree = new UserContextTree();
+        ReflectionTestUtils.setField(userSessionTree, "subjectKeyConverter", subjectKeyConverter);
+        userContextLoaderService.userSessionTree = userSessionTree;
+        when(subjectKeyConverter.convertToDTOKey(any(SubjectKey.class))).thenAnswer(invocation -> {
+            final SubjectKey key = invocation.getArgument(0);
+            return new SubjectKeyDTO(key.getKeyId(), key.getKeyType());
+        });
+
+        final Organization organization = ObjTest.newOrganization("1");
+        organization.setId(1L);
+        final Publisher publisher = new Publisher(organization, ObjTest.newReader("1"), ObjTest.newRedactor("1"),
+            "PUB 1", PermissionClass.CONTEXT, true, true, false);
+        publisher.setId(2L);
+        contributorCategory = ObjTest.newCategory("contributor", publisher);
+        contributorCategory.setId(3L);
+        managerCategory = ObjTest.newCategory("manager", publisher);
+        managerCategory.setId(4L);
+
+        final IEvaluation applicable = mock(IEvaluation.class);
+        when(applicable.isApplicable(any())).thenReturn(true);
+        when(evaluationFactory.from(any())).thenReturn(applicable);
+        when(permissionDao.getPermissionDao(PermissionClass.CONTEXT)).thenReturn(permissionRepository);
+        when(permissionRepository.findAll(any(Predicate.class))).thenReturn(Collections.emptyList());
+        final PermissionOnContext onOrganization = perm(organization.getContextKey(), PermissionType.LOOKOVER);
+        when(permissionRepository.findAll(PermissionPredicates.OnCtxType(ContextType.ORGANIZATION, PermissionClass.CONTEXT,
+            false))).thenReturn(Lists.newArrayList(onOrganization));
+        final PermOnCtxDTO lookOverPerm = dto(PermissionType.LOOKOVER);
+        when(permissionDTOFactory.from(onOrganization)).thenReturn(lookOverPerm);
+        contributorPerm = dto(PermissionType.CONTRIBUTOR);
+        managerPerm = dto(PermissionType.MANAGER);
+        final PermissionOnContext onContributorCategory = perm(contributorCategory.getContextKey(), PermissionType.CONTRIBUTOR);
+        final PermissionOnContext onManagerCategory = perm(managerCategory.getContextKey(), PermissionType.MANAGER);
+        when(permissionDTOFactory.from(onContributorCategory)).thenReturn(contributorPerm);
+        when(permissionDTOFactory.from(onManagerCategory)).thenReturn(managerPerm);
+        when(permissionRepository.findAll(PermissionPredicates.OnCtx(Lists.newArrayList(contributorCategory.getContextKey(),
+            managerCategory.getContextKey()), PermissionClass.CONTEXT, false)))
+            .thenReturn(Lists.newArrayList(onContributorCategory, onManagerCategory));
+
+        when(organizationDao.findById(1L)).thenReturn(Optional.of(organization));
+        when(publisherDao.findAll(PublisherPredicates.AllOfOrganization(organization))).thenReturn(Lists.newArrayList(publisher));
+        when(publisherDao.findById(2L)).thenReturn(Optional.of(publisher));
+        when(categoryDao.findAll(ClassificationPredicates.CategoryOfPublisher(2L)))
+            .thenReturn(Lists.newArrayList(contributorCategory, managerCategory));
+        when(categoryDao.findById(3L)).thenReturn(Optional.of(contributorCategory));
+        when(categoryDao.findById(4L)).thenReturn(Optional.of(managerCategory));
+        for (Category category : Lists.newArrayList(contributorCategory, managerCategory)) {
+            linksOfCategories.put(category.getId(), Lists.newArrayList());
+            when(itemClassifDao.findAll(ItemPredicates.itemsClassOfClassification(category)))
+                .thenAnswer(invocation -> Lists.newArrayList(linksOfCategories.get(category.getId())));
+        }
+        when(itemDao.findAll(any(Predicate.class))).thenReturn(Collections.emptyList());
+    }
+
+    @AfterEach
+    void closeService() throws Exception {
+        closeable.close();
+    }
+
+    private PermissionOnContext perm(final ContextKey ctx, final PermissionType role) {
+        final PermissionOnContext perm = mock(PermissionOnContext.class);
+        when(perm.getContext()).thenReturn(ctx);
+        when(perm.getRole()).thenReturn(role);
+        when(perm.getEvaluator()).thenReturn(mock(AbstractEvaluator.class));
+        return perm;
+    }
+
+    private PermOnCtxDTO dto(final PermissionType role) {
+        final PermOnCtxDTO dto = mock(PermOnCtxDTO.class);
+        when(dto.getRole()).thenReturn(role);
+        return dto;
+    }
+
+    private News newItem(final long id, final Category... categories) {
+        final News item = ObjTest.newNews(String.valueOf(id));
+        item.setId(id);
+        item.setCreatedBy(user);
+        link(item, categories);
+        return item;
+    }
+
+    private void link(final News item, final Category... categories) {
+        for (List<ItemClassificationOrder> links : linksOfCategories.values()) {
+            links.removeIf(link -> link.getItemClassificationId().getAbstractItem().getId().equals(item.getId()));
+        }
+        for (Category category : categories) {
+            linksOfCategories.get(category.getId()).add(new ItemClassificationOrder(item, category, 0));
+        }
+    }
+
+    private Set<ContextKey> keys(final Category... categories) {
+        final Set<ContextKey> keys = Sets.newHashSet();
+        for (Category category : categories) {
+            keys.add(category.getContextKey());
+        }
+        return keys;
+    }
+
+    private void loadTree(final String role) {
+        final Collection<? extends GrantedAuthority> authorities = Lists.newArrayList(new SimpleGrantedAuthority(role));
+        userContextLoaderService.doExpireForReload();
+        userContextLoaderService.loadUserTree(userDTO, authorities);
+    }
+
+    private List<Object> stateOf(final AbstractItem item) {
+        final UserContextTree tree = userContextLoaderService.userSessionTree;
+        return Lists.newArrayList(tree.getPermsFromContextTree(item.getContextKey()),
+            tree.getParentsOfContext(item.getContextKey()), tree.isItemOwner(item.getId(), userDTO.getModelId()));
+    }
+
+    @Test
+    public void testAddedItemAsOnReload() {
+        newItem(10L, contributorCategory);
+        loadTree(AuthoritiesConstants.USER);
+
+        final News item = newItem(11L, contributorCategory, managerCategory);
+        Assertions.assertTrue(userContextLoaderService.addItemToTree(item, keys(contributorCategory, managerCategory)));
+        final List<Object> added = stateOf(item);
+        Assertions.assertEquals(new Pair<>(PermissionType.MANAGER, managerPerm), added.get(0));
+        Assertions.assertEquals(Boolean.TRUE, added.get(2));
+
+        loadTree(AuthoritiesConstants.USER);
+        Assertions.assertEquals(stateOf(item), added);
+    }
+
+    @Test
+    public void testReclassifiedItemAsOnReload() {
+        final News item = newItem(10L, managerCategory);
+        loadTree(AuthoritiesConstants.USER);
+        Assertions.assertEquals(PermissionType.MANAGER,
+            userContextLoaderService.userSessionTree.getRoleFromContextTree(item.getContextKey()));
+
+        link(item, contributorCategory);
+        Assertions.assertTrue(userContextLoaderService.addItemToTree(item, keys(contributorCategory)));
+        final List<Object> added = stateOf(item);
+        Assertions.assertEquals(new Pair<>(PermissionType.CONTRIBUTOR, contributorPerm), added.get(0));
+        Assertions.assertEquals(keys(contributorCategory), added.get(1));
+
+        loadTree(AuthoritiesConstants.USER);
+        Assertions.assertEquals(stateOf(item), added);
+    }
+
+    @Test
+    public void testItemOutOfTreeNeedsReload() {
+        final News item = newItem(10L);
+        Assertions.assertFalse(userContextLoaderService.addItemToTree(item, keys(contributorCategory)));
+
+        loadTree(AuthoritiesConstants.USER);
+        Assertions.assertFalse(userContextLoaderService.addItemToTree(item,
+            Sets.newHashSet(new ContextKey(99L, ContextType.CATEGORY))));
+    }
+
+    @Test
+    public void testSuperAdminTreeUpToDate() {
+        loadTree(AuthoritiesConstants.ADMIN);
+        final News item = newItem(10L, contributorCategory);
+        Assertions.assertTrue(userContextLoaderService.addItemToTree(item, keys(contributorCategory)));
+        Assertions.assertEquals(PermissionType.ADMIN,
+            userContextLoaderService.userSessionTree.getRoleFromContextTree(item.getContextKey()));
+    }
+}
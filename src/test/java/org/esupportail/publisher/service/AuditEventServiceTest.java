@@ -20,6 +20,8 @@ import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -36,6 +38,7 @@ import org.esupportail.publisher.Application;
 import org.esupportail.publisher.config.audit.AuditEventConverter;
 import org.esupportail.publisher.domain.PersistentAuditEvent;
 import org.esupportail.publisher.repository.PersistenceAuditEventRepository;
+import org.esupportail.publisher.service.AuditEventService.AuditEventsPage;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -99,82 +102,61 @@ public class AuditEventServiceTest {
 
 
 	@Test
-	public void findAll_ShouldBeReturnAllAuditEvent() {
+	public void findPage_ShouldBeReturnFirstPageWithNext() {
 		//GIVEN
 		List<PersistentAuditEvent> persistentAuditList = new ArrayList<>();
+		for (long i = 3; i > 0; i--) {
+			PersistentAuditEvent event = new PersistentAuditEvent();
+			event.setId(i);
+			event.setPrincipal("F1800nmj");
+			event.setAuditEventType("AUTHENTICATION_SUCCESS");
+			event.setAuditEventDate(LocalDateTime.of(2018, 4, 30, 10, 0, 0).toInstant(ZoneOffset.UTC).plusSeconds(i));
+			persistentAuditList.add(event);
+		}
 		List<AuditEvent> auditEventList = new ArrayList<>();
-
-		Map<String, Object> dataAuditEvent = new HashMap<>();
-		dataAuditEvent.put("remoteAddress", "0:0:0:0:0:0:0:1");
-		dataAuditEvent.put("sessionId", "2CE9E14FA24CEEB2BED4AF60D13B342B");
-
-		Map<String, Object> dataAuditEvent1 = new HashMap<>();
-		dataAuditEvent1.put("remoteAddress", "0:0:0:0:0:0:0:1");
-		dataAuditEvent1.put("sessionId", "08200478A2A327F89204B6CD3BF2CC7C");
-
-		Map<String, Object> dataAuditEvent2 = new HashMap<>();
-		dataAuditEvent2.put("remoteAddress", "0:0:0:0:0:0:0:1");
-		dataAuditEvent2.put("sessionId", "9DEF13CA85D3836A4980BBF1C48C3F0E");
-
-		AuditEvent auditEvent = new AuditEvent(Instant.now(), "F1800nmj",
-				"AUTHENTICATION_SUCCESS",dataAuditEvent);
-		AuditEvent auditEvent1 = new AuditEvent(Instant.now(), "F1800nmj",
-				"AUTHENTICATION_SUCCESS",dataAuditEvent1);
-		AuditEvent auditEvent2 = new AuditEvent(Instant.now(), "F1800nmj",
-				"AUTHENTICATION_SUCCESS",dataAuditEvent2);
-		auditEventList.add(auditEvent);
-		auditEventList.add(auditEvent1);
-		auditEventList.add(auditEvent2);
+		auditEventList.add(new AuditEvent(persistentAuditList.get(0).getAuditEventDate(), "F1800nmj", "AUTHENTICATION_SUCCESS", new HashMap<>()));
+		auditEventList.add(new AuditEvent(persistentAuditList.get(1).getAuditEventDate(), "F1800nmj", "AUTHENTICATION_SUCCESS", new HashMap<>()));
 
 		//GIVEN SERVICE
-		when(persistenceAuditEventRepository.findAll()).thenReturn(persistentAuditList);
-		when(auditEventConverter.convertToAuditEvent(persistentAuditList)).thenReturn(auditEventList);
+		when(persistenceAuditEventRepository.findFirstEvents(any(), eq(3))).thenReturn(persistentAuditList);
+		when(auditEventConverter.convertToAuditEvent(persistentAuditList.subList(0, 2))).thenReturn(auditEventList);
 
 		//WHEN
-		final List<AuditEvent> resultList = auditEventService.findAll();
+		final AuditEventsPage page = auditEventService.findPage("F1800nmj", null, null, null, null, null, 2);
 
 		//THEN
-		verify(persistenceAuditEventRepository).findAll();
-		verify(auditEventConverter).convertToAuditEvent(persistentAuditList);
-		assertThat(resultList.size(), equalTo(3));
+		verify(persistenceAuditEventRepository).findFirstEvents(any(), eq(3));
+		assertThat(page.getEvents().size(), equalTo(2));
+		assertThat(page.hasNext(), is(true));
+		assertThat(page.getLastId(), equalTo(2L));
+		assertThat(page.getLastDate(), equalTo(persistentAuditList.get(1).getAuditEventDate()));
 	}
 
 	@Test
-	public void findByDates_ShoudBeReturn2AuditEvent() {
+	public void findPage_ShouldBeReturnLastPage() {
 		//GIVEN
 		List<PersistentAuditEvent> persistentAuditList = new ArrayList<>();
 		Instant fromDate = LocalDateTime.of(2018, 3, 12, 20, 30, 0).toInstant(ZoneOffset.UTC);
-        Instant toDate = LocalDateTime.of(2018, 10, 30, 10, 12, 0).toInstant(ZoneOffset.UTC);
+		Instant toDate = LocalDateTime.of(2018, 10, 30, 10, 12, 0).toInstant(ZoneOffset.UTC);
 
 		List<AuditEvent> auditEventList = new ArrayList<>();
-
 		Map<String, Object> dataAuditEvent = new HashMap<>();
 		dataAuditEvent.put("remoteAddress", "0:0:0:0:0:0:0:1");
 		dataAuditEvent.put("sessionId", "2CE9E14FA24CEEB2BED4AF60D13B342B");
-
-		Map<String, Object> dataAuditEvent1 = new HashMap<>();
-		dataAuditEvent1.put("remoteAddress", "0:0:0:0:0:0:0:1");
-		dataAuditEvent1.put("sessionId", "08200478A2A327F89204B6CD3BF2CC7C");
-
-
-		AuditEvent auditEvent = new AuditEvent(LocalDateTime.of(2018, 4, 30, 10, 0, 0)
-            .toInstant(ZoneOffset.UTC), "F1800nmj","AUTHENTICATION_SUCCESS",dataAuditEvent);
-		AuditEvent auditEvent1 = new AuditEvent(LocalDateTime.of(2018, 6, 2, 14, 50, 0)
-            .toInstant(ZoneOffset.UTC), "F1800nmj","AUTHENTICATION_SUCCESS",dataAuditEvent1);
-		auditEventList.add(auditEvent);
-		auditEventList.add(auditEvent1);
+		auditEventList.add(new AuditEvent(LocalDateTime.of(2018, 4, 30, 10, 0, 0)
+			.toInstant(ZoneOffset.UTC), "F1800nmj","AUTHENTICATION_SUCCESS",dataAuditEvent));
 
 		//GIVEN SERVICE
-		when(persistenceAuditEventRepository.findAllByAuditEventDateBetween(fromDate, toDate)).thenReturn(persistentAuditList);
+		when(persistenceAuditEventRepository.findFirstEvents(any(), eq(21))).thenReturn(persistentAuditList);
 		when(auditEventConverter.convertToAuditEvent(persistentAuditList)).thenReturn(auditEventList);
 
 		//WHEN
-		final List<AuditEvent> resultList = auditEventService.findByDates(fromDate, toDate);
+		final AuditEventsPage page = auditEventService.findPage(null, null, fromDate, toDate, toDate, 10L, 20);
 
 		//THEN
-		verify(persistenceAuditEventRepository).findAllByAuditEventDateBetween(fromDate, toDate);
 		verify(auditEventConverter).convertToAuditEvent(persistentAuditList);
-		assertThat(resultList.size(), equalTo(2));
+		assertThat(page.getEvents().size(), equalTo(1));
+		assertThat(page.hasNext(), is(false));
 	}
 
     @Test
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import org.esupportail.publisher.config.bean.WarmUpProperties;
+import org.esupportail.publisher.service.CacheWarmUpService.Target;
+import org.esupportail.publisher.service.CacheWarmUpService.TargetType;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+public class CacheWarmUpServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T10:00:00Z");
+
+    private JdbcTemplate jdbcTemplate;
+
+    private CacheWarmer cacheWarmer;
+
+    private WarmUpProperties properties;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:warmUpTargets;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE " + CacheWarmUpService.TABLE_NAME + " (target_type VARCHAR(20) NOT NULL, "
+            + "target_id BIGINT NOT NULL, hits BIGINT NOT NULL, last_hit TIMESTAMP NOT NULL, PRIMARY KEY (target_type, target_id))");
+        cacheWarmer = Mockito.mock(CacheWarmer.class);
+        properties = new WarmUpProperties();
+        properties.setMaxTargets(2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.execute("DROP TABLE " + CacheWarmUpService.TABLE_NAME);
+    }
+
+    private CacheWarmUpService newService(final Instant now) {
+        return new CacheWarmUpService(jdbcTemplate, cacheWarmer, properties, Runnable::run, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private void hit(final CacheWarmUpService service, final TargetType type, final long id, final int count) {
+        for (int i = 0; i < count; i++) {
+            service.recordHit(type, id);
+        }
+    }
+
+    @Test
+    public void testHitsAreSummedAcrossRuns() {
+        final CacheWarmUpService firstRun = newService(NOW);
+        hit(firstRun, TargetType.PUBLISHER, 1, 3);
+        hit(firstRun, TargetType.CATEGORY, 2, 2);
+        Assertions.assertEquals(2, firstRun.flushHits());
+        // nothing new to write
+        Assertions.assertEquals(0, firstRun.flushHits());
+
+        final CacheWarmUpService secondRun = newService(NOW.plusSeconds(60));
+        hit(secondRun, TargetType.CATEGORY, 2, 5);
+        hit(secondRun, TargetType.ORGANIZATION, 3, 1);
+        Assertions.assertEquals(2, secondRun.flushHits());
+
+        Assertions.assertEquals(Arrays.asList(new Target(TargetType.CATEGORY, 2), new Target(TargetType.PUBLISHER, 1)),
+            secondRun.getMostPolledTargets(2));
+        Assertions.assertEquals(3, secondRun.getMostPolledTargets(10).size());
+    }
+
+    @Test
+    public void testOldHitsAreForgotten() {
+        final CacheWarmUpService firstRun = newService(NOW);
+        hit(firstRun, TargetType.PUBLISHER, 1, 10);
+        firstRun.flushHits();
+
+        final CacheWarmUpService secondRun = newService(NOW.plus(properties.getRetention()).plus(Duration.ofHours(1)));
+        hit(secondRun, TargetType.PUBLISHER, 2, 1);
+        secondRun.flushHits();
+
+        final List<Target> targets = secondRun.getMostPolledTargets(10);
+        Assertions.assertEquals(Arrays.asList(new Target(TargetType.PUBLISHER, 2)), targets);
+    }
+
+    @Test
+    public void testWarmUpOfMostPolledTargets() {
+        final CacheWarmUpService firstRun = newService(NOW);
+        hit(firstRun, TargetType.PUBLISHER, 1, 3);
+        hit(firstRun, TargetType.CATEGORY, 2, 2);
+        hit(firstRun, TargetType.ORGANIZATION, 3, 1);
+        firstRun.flushHits();
+        Mockito.when(cacheWarmer.warmCategory(2)).thenThrow(new IllegalStateException("broken category"));
+
+        final CacheWarmUpService secondRun = newService(NOW);
+        Assertions.assertEquals(CacheWarmUpService.State.PENDING, secondRun.getState());
+        secondRun.onApplicationReady();
+
+        Assertions.assertEquals(CacheWarmUpService.State.DONE, secondRun.getState());
+        Assertions.assertEquals(2, secondRun.getTotal());
+        Assertions.assertEquals(1, secondRun.getWarmed());
+        Assertions.assertEquals(1, secondRun.getFailed());
+        Mockito.verify(cacheWarmer).warmPublisher(1);
+        Mockito.verify(cacheWarmer).warmCategory(2);
+        Mockito.verify(cacheWarmer, Mockito.never()).warmOrganization(Mockito.anyLong());
+    }
+
+    @Test
+    public void testDisabledWarmUp() {
+        properties.setEnabled(false);
+        final CacheWarmUpService service = newService(NOW);
+        hit(service, TargetType.PUBLISHER, 1, 3);
+        Assertions.assertEquals(0, service.flushHits());
+        service.onApplicationReady();
+        Assertions.assertEquals(CacheWarmUpService.State.DISABLED, service.getState());
+        Mockito.verifyNoInteractions(cacheWarmer);
+    }
+}
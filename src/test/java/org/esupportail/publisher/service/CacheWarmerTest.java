@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import static org.mockito.Mockito.verify;
+
+import javax.inject.Inject;
+
+import org.esupportail.publisher.config.liquibase.H2LiquibaseConfiguration;
+import org.esupportail.publisher.domain.AbstractClassification;
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.Category;
+import org.esupportail.publisher.domain.Flash;
+import org.esupportail.publisher.domain.ItemClassificationOrder;
+import org.esupportail.publisher.domain.Organization;
+import org.esupportail.publisher.domain.Publisher;
+import org.esupportail.publisher.domain.Redactor;
+import org.esupportail.publisher.domain.User;
+import org.esupportail.publisher.domain.enums.ItemStatus;
+import org.esupportail.publisher.repository.ClassificationRepository;
+import org.esupportail.publisher.repository.ItemClassificationOrderRepository;
+import org.esupportail.publisher.repository.ItemRepository;
+import org.esupportail.publisher.repository.ObjTest;
+import org.esupportail.publisher.repository.OrganizationRepository;
+import org.esupportail.publisher.repository.PublisherRepository;
+import org.esupportail.publisher.repository.ReaderRepository;
+import org.esupportail.publisher.repository.RedactorRepository;
+import org.esupportail.publisher.repository.UserRepository;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Runs the warm up on the schema built by the application changelogs, without authenticated user as on the executor
+ * of the warm up.
+ */
+@DataJpaTest
+@Import({CacheWarmer.class, CacheWarmerTest.AuditingConfiguration.class, H2LiquibaseConfiguration.class})
+@TestPropertySource(properties = {
+    // items dates are checked by a javascript constraint, not needed to warm up
+    "spring.jpa.properties.javax.persistence.validation.mode=none"})
+// closed after the tests, its auditing handler would be kept by the @Configurable listeners of other persistence units
+@DirtiesContext
+public class CacheWarmerTest {
+
+    @TestConfiguration
+    @EnableJpaAuditing(auditorAwareRef = "testAuditorAware")
+    static class AuditingConfiguration {
+        @Bean
+        public AuditorAware<User> testAuditorAware(final UserRepository userRepository) {
+            return () -> userRepository.findById("system");
+        }
+    }
+
+    @Inject
+    private CacheWarmer cacheWarmer;
+
+    @Inject
+    private OrganizationRepository organizationRepository;
+
+    @Inject
+    private ReaderRepository readerRepository;
+
+    @Inject
+    private RedactorRepository redactorRepository;
+
+    @Inject
+    private PublisherRepository publisherRepository;
+
+    @Inject
+    private ClassificationRepository<AbstractClassification> classificationRepository;
+
+    @Inject
+    private ItemRepository<AbstractItem> itemRepository;
+
+    @Inject
+    private ItemClassificationOrderRepository itemClassificationOrderRepository;
+
+    @MockBean
+    private SubscriberService subscriberService;
+
+    @MockBean
+    private EnclosureMetadataService enclosureMetadataService;
+
+    private Organization organization;
+
+    private Publisher publisher;
+
+    private Flash publishedFlash;
+
+    @BeforeEach
+    public void setUp() {
+        SecurityContextHolder.clearContext();
+        final Category category = ObjTest.newCategory("warm");
+        publisher = category.getPublisher();
+        organization = organizationRepository.saveAndFlush(publisher.getContext().getOrganization());
+        readerRepository.saveAndFlush(publisher.getContext().getReader());
+        final Redactor redactor = redactorRepository.saveAndFlush(publisher.getContext().getRedactor());
+        publisher = publisherRepository.saveAndFlush(publisher);
+        classificationRepository.saveAndFlush(category);
+
+        publishedFlash = newItem(ObjTest.newFlash("published", organization, redactor), ItemStatus.PUBLISHED, category);
+        newItem(ObjTest.newFlash("draft", organization, redactor), ItemStatus.DRAFT, category);
+        newItem(ObjTest.newNews("published", organization, redactor), ItemStatus.PUBLISHED, category);
+    }
+
+    private <T extends AbstractItem> T newItem(final T item, final ItemStatus status, final Category category) {
+        item.setStatus(status);
+        final T saved = itemRepository.saveAndFlush(item);
+        itemClassificationOrderRepository.saveAndFlush(new ItemClassificationOrder(saved, category, 0));
+        return saved;
+    }
+
+    @Test
+    public void testWarmOrganizationWithoutAuthentication() {
+        Assertions.assertEquals(1, cacheWarmer.warmOrganization(organization.getId()));
+        verify(subscriberService).getDefinedSubscribersOfContext(publishedFlash.getContextKey());
+        Assertions.assertEquals(-1, cacheWarmer.warmOrganization(-1));
+    }
+
+    @Test
+    public void testWarmPublisherWithoutAuthentication() {
+        Assertions.assertEquals(2, cacheWarmer.warmPublisher(publisher.getId()));
+        verify(subscriberService).getDefaultsSubscribersOfContext(publisher.getContextKey());
+        Assertions.assertEquals(-1, cacheWarmer.warmPublisher(-1));
+    }
+}
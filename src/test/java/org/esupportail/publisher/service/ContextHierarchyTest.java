@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import org.esupportail.publisher.config.bean.ContextHierarchyProperties;
+import org.esupportail.publisher.domain.AbstractFeed;
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.Category;
+import org.esupportail.publisher.domain.ContextKey;
+import org.esupportail.publisher.domain.InternalFeed;
+import org.esupportail.publisher.domain.Organization;
+import org.esupportail.publisher.domain.Publisher;
+import org.esupportail.publisher.domain.enums.ContextType;
+import org.esupportail.publisher.repository.CategoryRepository;
+import org.esupportail.publisher.repository.FeedRepository;
+import org.esupportail.publisher.repository.ItemRepository;
+import org.esupportail.publisher.repository.OrganizationRepository;
+import org.esupportail.publisher.repository.PublisherRepository;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ContextHierarchyTest {
+
+    private PublisherRepository publisherRepository;
+
+    private CategoryRepository categoryRepository;
+
+    private FeedRepository<AbstractFeed> feedRepository;
+
+    private ItemRepository<AbstractItem> itemRepository;
+
+    private ContextHierarchy hierarchy;
+
+    private Organization organization;
+
+    private Publisher publisher;
+
+    private Category category;
+
+    private InternalFeed feed;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        publisherRepository = Mockito.mock(PublisherRepository.class);
+        categoryRepository = Mockito.mock(CategoryRepository.class);
+        feedRepository = Mockito.mock(FeedRepository.class);
+        itemRepository = Mockito.mock(ItemRepository.class);
+        hierarchy = new ContextHierarchy(publisherRepository, categoryRepository, feedRepository, itemRepository,
+            new ContextHierarchyProperties());
+
+        organization = organization(1L);
+        publisher = publisher(10L, organization);
+        category = new Category();
+        category.setId(20L);
+        category.setPublisher(publisher);
+        feed = new InternalFeed();
+        feed.setId(30L);
+        feed.setPublisher(publisher);
+        feed.setParent(category);
+        final AbstractItem item = Mockito.mock(AbstractItem.class);
+        Mockito.when(item.getOrganization()).thenReturn(organization);
+        Mockito.when(categoryRepository.findById(20L)).thenReturn(Optional.of(category));
+        Mockito.when(feedRepository.findById(30L)).thenReturn(Optional.of(feed));
+        Mockito.when(itemRepository.findById(40L)).thenReturn(Optional.of(item));
+    }
+
+    private static Organization organization(final long id) {
+        final Organization organization = new Organization();
+        organization.setId(id);
+        return organization;
+    }
+
+    private Publisher publisher(final long id, final Organization organization) {
+        final Publisher publisher = new Publisher(organization, null, null, "publisher" + id, null, true, false, true);
+        publisher.setId(id);
+        Mockito.when(publisherRepository.findById(id)).thenReturn(Optional.of(publisher));
+        return publisher;
+    }
+
+    @Test
+    public void testAncestorsAreReadThroughOnce() {
+        Assertions.assertEquals(Arrays.asList(category.getContextKey(), publisher.getContextKey(), organization.getContextKey()),
+            hierarchy.getAncestors(feed.getContextKey()));
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(feed.getContextKey()));
+        Assertions.assertEquals(category.getContextKey(), hierarchy.getParent(feed.getContextKey()));
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(category.getContextKey()));
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(new ContextKey(40L, ContextType.ITEM)));
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(organization.getContextKey()));
+        Assertions.assertNull(hierarchy.getParent(organization.getContextKey()));
+
+        Mockito.verify(feedRepository, Mockito.times(1)).findById(30L);
+        Mockito.verify(categoryRepository, Mockito.times(1)).findById(20L);
+        Mockito.verifyNoInteractions(publisherRepository);
+    }
+
+    @Test
+    public void testOrganizationMoveKeepsHierarchy() {
+        final OrganizationRepository organizationRepository = Mockito.mock(OrganizationRepository.class);
+        final OrganizationService organizationService = new OrganizationService();
+        ReflectionTestUtils.setField(organizationService, "organizationRepository", organizationRepository);
+        Mockito.when(organizationRepository.getDisplayOrderOf(1L)).thenReturn(0);
+        Mockito.when(organizationRepository.findById(1L)).thenReturn(Optional.of(organization));
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(feed.getContextKey()));
+
+        organizationService.doMove(1L, 2);
+
+        Mockito.verify(organizationRepository).setLowerDisplayOrderOfRange(0, 2);
+        Assertions.assertEquals(2, organization.getDisplayOrder());
+        // only the display order changed, the hierarchy is still valid
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(feed.getContextKey()));
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(publisher.getContextKey()));
+        Mockito.verify(feedRepository, Mockito.times(1)).findById(30L);
+    }
+
+    @Test
+    public void testPublisherMoveKeepsHierarchy() {
+        final PublisherService publisherService = new PublisherService();
+        ReflectionTestUtils.setField(publisherService, "publisherRepository", publisherRepository);
+        Mockito.when(publisherRepository.getDisplayOrderOf(10L)).thenReturn(3);
+        Assertions.assertEquals(publisher.getContextKey(), hierarchy.getParent(category.getContextKey()));
+
+        publisherService.doMove(publisher, 1);
+
+        Mockito.verify(publisherRepository).setUpperDisplayOrderOfRange(1L, 1, 3);
+        Assertions.assertEquals(1, publisher.getDisplayOrder());
+        Assertions.assertEquals(publisher.getContextKey(), hierarchy.getParent(category.getContextKey()));
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(category.getContextKey()));
+        Mockito.verify(categoryRepository, Mockito.times(1)).findById(20L);
+    }
+
+    @Test
+    public void testEvictReloadsDescendants() {
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(feed.getContextKey()));
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(category.getContextKey()));
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(publisher.getContextKey()));
+        Assertions.assertEquals(3, hierarchy.size());
+
+        // the category is attached to a publisher of an other organization
+        final Organization otherOrganization = organization(2L);
+        final Publisher otherPublisher = publisher(11L, otherOrganization);
+        category.setPublisher(otherPublisher);
+        feed.setPublisher(otherPublisher);
+        hierarchy.evict(category.getContextKey());
+
+        // the feed was evicted with its category, not the publisher
+        Assertions.assertEquals(1, hierarchy.size());
+        Assertions.assertEquals(otherOrganization.getContextKey(), hierarchy.getOrganization(feed.getContextKey()));
+        Assertions.assertEquals(otherPublisher.getContextKey(), hierarchy.getParent(category.getContextKey()));
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(publisher.getContextKey()));
+        Mockito.verify(feedRepository, Mockito.times(2)).findById(30L);
+    }
+
+    @Test
+    public void testDeletedContext() {
+        final ContextKey itemKey = new ContextKey(40L, ContextType.ITEM);
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(itemKey));
+        Mockito.when(itemRepository.findById(40L)).thenReturn(Optional.empty());
+        // still known until evicted
+        Assertions.assertEquals(organization.getContextKey(), hierarchy.getOrganization(itemKey));
+
+        hierarchy.evict(itemKey);
+        Assertions.assertThrows(NoSuchElementException.class, () -> hierarchy.getOrganization(itemKey));
+        Mockito.verify(itemRepository, Mockito.times(2)).findById(ArgumentMatchers.anyLong());
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+import org.esupportail.publisher.config.liquibase.H2LiquibaseConfiguration;
+import org.esupportail.publisher.domain.AbstractClassification;
+import org.esupportail.publisher.domain.Category;
+import org.esupportail.publisher.domain.Organization;
+import org.esupportail.publisher.domain.Publisher;
+import org.esupportail.publisher.domain.Reader;
+import org.esupportail.publisher.domain.SubjectKey;
+import org.esupportail.publisher.domain.User;
+import org.esupportail.publisher.domain.enums.ItemType;
+import org.esupportail.publisher.domain.enums.PermissionClass;
+import org.esupportail.publisher.domain.enums.PermissionType;
+import org.esupportail.publisher.domain.enums.SubjectType;
+import org.esupportail.publisher.repository.ClassificationRepository;
+import org.esupportail.publisher.repository.ObjTest;
+import org.esupportail.publisher.repository.OrganizationRepository;
+import org.esupportail.publisher.repository.PublisherRepository;
+import org.esupportail.publisher.repository.ReaderRepository;
+import org.esupportail.publisher.repository.RedactorRepository;
+import org.esupportail.publisher.repository.UserRepository;
+import org.esupportail.publisher.security.AuthoritiesConstants;
+import org.esupportail.publisher.security.CustomUserDetails;
+import org.esupportail.publisher.security.PermissionServiceImpl;
+import org.esupportail.publisher.security.UserContextLoaderService;
+import org.esupportail.publisher.service.bean.UserContextTree;
+import org.esupportail.publisher.service.factories.CompositeKeyDTOFactory;
+import org.esupportail.publisher.service.factories.UserDTOFactory;
+import org.esupportail.publisher.service.factories.impl.TreeJSFactoryImpl;
+import org.esupportail.publisher.web.rest.dto.PermOnCtxDTO;
+import org.esupportail.publisher.web.rest.dto.SubjectKeyDTO;
+import org.esupportail.publisher.web.rest.dto.TreeJS;
+import org.esupportail.publisher.web.rest.dto.UserDTO;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.annotation.DirtiesContext;
+
+/**
+ * Tree and search of contexts on the schema built by the application changelogs, filtered by a user tree where the
+ * user looks over the organization and a publisher and manages one of its categories.
+ */
+@DataJpaTest
+@Import({ContextService.class, TreeJSFactoryImpl.class, PermissionServiceImpl.class, ContextServiceTest.TestConfig.class,
+    H2LiquibaseConfiguration.class})
+// closed after the tests, its auditing handler would be kept by the @Configurable listeners of other persistence units
+@DirtiesContext
+public class ContextServiceTest {
+
+    @TestConfiguration
+    @EnableJpaAuditing(auditorAwareRef = "testAuditorAware")
+    static class TestConfig {
+        @Bean
+        public AuditorAware<User> testAuditorAware(final UserRepository userRepository) {
+            return () -> userRepository.findById("system");
+        }
+
+        @Bean
+        public UserContextTree userContextTree() {
+            return new UserContextTree();
+        }
+    }
+
+    @Inject
+    private ContextService contextService;
+
+    @Inject
+    private UserContextTree userContextTree;
+
+    @Inject
+    private OrganizationRepository organizationRepository;
+
+    @Inject
+    private ReaderRepository readerRepository;
+
+    @Inject
+    private RedactorRepository redactorRepository;
+
+    @Inject
+    private PublisherRepository publisherRepository;
+
+    @Inject
+    private ClassificationRepository<AbstractClassification> classificationRepository;
+
+    @MockBean
+    private UserContextLoaderService userContextLoaderService;
+
+    @MockBean
+    private UserDTOFactory userDTOFactory;
+
+    @MockBean
+    private ContextHierarchy contextHierarchy;
+
+    @MockBean(name = "subjectKeyDTOFactoryImpl")
+    private CompositeKeyDTOFactory<SubjectKeyDTO, SubjectKey, String, SubjectType> subjectKeyConverter;
+
+    private Organization organization;
+
+    private Publisher publisher;
+
+    private Publisher otherPublisher;
+
+    private Category managedCategory;
+
+    private Category otherCategory;
+
+    private Category categoryOfOtherPublisher;
+
+    @BeforeEach
+    public void setUp() {
+        organization = ObjTest.newOrganization("1");
+        organization.setDisplayName("Lycée test");
+        organization = organizationRepository.saveAndFlush(organization);
+        publisher = newPublisher("1", "Actualités lycée");
+        otherPublisher = newPublisher("2", "Actualités collège");
+        managedCategory = newCategory("Sport lycée", publisher);
+        otherCategory = newCategory("Culture lycée", publisher);
+        categoryOfOtherPublisher = newCategory("Sport collège", otherPublisher);
+
+        final PermOnCtxDTO manager = mock(PermOnCtxDTO.class);
+        when(manager.getRole()).thenReturn(PermissionType.MANAGER);
+        userContextTree.processingLoading();
+        userContextTree.setSuperAdmin(false);
+        userContextTree.addCtx(organization.getContextKey(), false, null, null, null, PermissionType.LOOKOVER);
+        userContextTree.addCtx(publisher.getContextKey(), false, organization.getContextKey(), null, null,
+            PermissionType.LOOKOVER);
+        userContextTree.addCtx(managedCategory.getContextKey(), true, publisher.getContextKey(), null, manager);
+        userContextTree.notifyEndLoading();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private Publisher newPublisher(final String indice, final String displayName) {
+        return publisherRepository.saveAndFlush(new Publisher(organization,
+            readerRepository.saveAndFlush(ObjTest.newReader(indice)),
+            redactorRepository.saveAndFlush(ObjTest.newRedactor(indice)),
+            displayName, PermissionClass.CONTEXT, true, true, false));
+    }
+
+    private Category newCategory(final String name, final Publisher publisher) {
+        final Category category = ObjTest.newCategory(name, publisher);
+        category.setName(name);
+        return classificationRepository.saveAndFlush(category);
+    }
+
+    private void authenticate(final String authority) {
+        final CustomUserDetails userDetails = new CustomUserDetails(new UserDTO("F08001ut", "user", true, false), null,
+            Lists.newArrayList(new SimpleGrantedAuthority(authority)));
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(userDetails, "password",
+            Lists.newArrayList(userDetails.getAuthorities())));
+    }
+
+    private static String id(final AbstractClassification classification) {
+        return classification.getContextKey().getKeyId() + ":" + classification.getContextKey().getKeyType();
+    }
+
+    private static String id(final Publisher publisher) {
+        return publisher.getContextKey().getKeyId() + ":" + publisher.getContextKey().getKeyType();
+    }
+
+    private static String id(final Organization organization) {
+        return organization.getContextKey().getKeyId() + ":" + organization.getContextKey().getKeyType();
+    }
+
+    private static List<String> ids(final List<TreeJS> nodes) {
+        return nodes.stream().map(TreeJS::getId).collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<TreeJS> childs(final TreeJS node) {
+        Assertions.assertTrue(node.getChildren() instanceof List, node.getId() + " should be expanded");
+        Assertions.assertTrue(node.getState().isOpened());
+        return (List<TreeJS>) node.getChildren();
+    }
+
+    @Test
+    public void testLazyTree() {
+        authenticate(AuthoritiesConstants.USER);
+        final List<TreeJS> roots = contextService.getRootTree(PermissionType.LOOKOVER);
+
+        Assertions.assertEquals(Arrays.asList(id(organization)), ids(roots));
+        Assertions.assertEquals(Boolean.TRUE, roots.get(0).getChildren());
+        Assertions.assertFalse(roots.get(0).getState().isOpened());
+        Assertions.assertEquals(Arrays.asList(id(managedCategory)),
+            ids(contextService.getTreeChilds(publisher.getContextKey(), PermissionType.LOOKOVER, true)));
+    }
+
+    @Test
+    public void testTreeExpandedUntilDepth() {
+        authenticate(AuthoritiesConstants.USER);
+        TreeJS root = contextService.getRootTree(PermissionType.LOOKOVER, 2).get(0);
+        final TreeJS publisherNode = childs(root).get(0);
+        Assertions.assertEquals(Arrays.asList(id(publisher)), ids(childs(root)));
+        Assertions.assertEquals(Boolean.TRUE, publisherNode.getChildren());
+        Assertions.assertEquals(Boolean.FALSE, publisherNode.getCanEdit());
+
+        root = contextService.getRootTree(PermissionType.LOOKOVER, ContextService.MAX_TREE_DEPTH + 1).get(0);
+        final List<TreeJS> categories = childs(childs(root).get(0));
+        // only the managed category is authorized, it doesn't have childs to expand
+        Assertions.assertEquals(Arrays.asList(id(managedCategory)), ids(categories));
+        Assertions.assertEquals(Boolean.FALSE, categories.get(0).getChildren());
+        Assertions.assertFalse(categories.get(0).getState().isOpened());
+        Assertions.assertEquals(Boolean.TRUE, categories.get(0).getCanEdit());
+    }
+
+    @Test
+    public void testSearchAuthorizedContexts() {
+        authenticate(AuthoritiesConstants.USER);
+        List<TreeJS> found = contextService.searchTree("LYC", PermissionType.LOOKOVER);
+        Assertions.assertEquals(Arrays.asList(id(organization), id(publisher), id(managedCategory)), ids(found));
+        Assertions.assertEquals(Arrays.asList("#", id(organization), id(publisher)),
+            found.stream().map(TreeJS::getParent).collect(Collectors.toList()));
+
+        found = contextService.searchTree("actualités", PermissionType.LOOKOVER);
+        Assertions.assertEquals(Arrays.asList(id(publisher)), ids(found));
+
+        found = contextService.searchTree("lyc", PermissionType.MANAGER);
+        Assertions.assertEquals(Arrays.asList(id(managedCategory)), ids(found));
+        Assertions.assertEquals(Boolean.TRUE, found.get(0).getCanEdit());
+
+        Assertions.assertTrue(contextService.searchTree("unknown", PermissionType.LOOKOVER).isEmpty());
+    }
+
+    @Test
+    public void testSearchWithoutCategoriesOfFlashPublisher() {
+        final Reader reader = publisher.getContext().getReader();
+        reader.getAuthorizedTypes().add(ItemType.FLASH);
+        readerRepository.saveAndFlush(reader);
+        authenticate(AuthoritiesConstants.USER);
+
+        // categories of FLASH publishers are only managed by admins, as in the tree
+        Assertions.assertTrue(contextService.getTreeChilds(publisher.getContextKey(), PermissionType.LOOKOVER, true).isEmpty());
+        Assertions.assertEquals(Arrays.asList(id(organization), id(publisher)),
+            ids(contextService.searchTree("lyc", PermissionType.LOOKOVER)));
+        Assertions.assertTrue(contextService.searchTree("sport", PermissionType.LOOKOVER).isEmpty());
+
+        authenticate(AuthoritiesConstants.ADMIN);
+        Assertions.assertEquals(Arrays.asList(id(categoryOfOtherPublisher), id(managedCategory)),
+            ids(contextService.searchTree("sport", PermissionType.LOOKOVER)));
+    }
+
+    @Test
+    public void testSearchAsSuperAdmin() {
+        authenticate(AuthoritiesConstants.ADMIN);
+        final List<TreeJS> found = contextService.searchTree("sport", PermissionType.LOOKOVER);
+
+        Assertions.assertEquals(Arrays.asList(id(categoryOfOtherPublisher), id(managedCategory)), ids(found));
+        Assertions.assertEquals(Arrays.asList(id(otherPublisher), id(publisher)),
+            found.stream().map(TreeJS::getParent).collect(Collectors.toList()));
+        Assertions.assertEquals(Arrays.asList(id(otherCategory)),
+            ids(contextService.searchTree("culture", PermissionType.LOOKOVER)));
+    }
+}
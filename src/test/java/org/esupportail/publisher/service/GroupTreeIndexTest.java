@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.esupportail.publisher.domain.Filter;
+import org.esupportail.publisher.domain.enums.FilterType;
+import org.esupportail.publisher.domain.externals.ExternalGroupHelper;
+import org.esupportail.publisher.domain.externals.ExternalUserHelper;
+import org.esupportail.publisher.repository.FilterRepository;
+import org.esupportail.publisher.repository.externals.ldap.InMemoryLdapTemplate;
+import org.esupportail.publisher.repository.externals.ldap.LdapGroupDaoImpl;
+import org.esupportail.publisher.repository.externals.ldap.LdapUserDaoImpl;
+import org.esupportail.publisher.service.bean.GroupIdTrie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.querydsl.core.types.Predicate;
+
+public class GroupTreeIndexTest {
+
+    private static final String GROUP_DN = "cn=%s,ou=groups,dc=esco-centre,dc=fr";
+
+    private static final int NB_SCHOOLS = 500;
+
+    private static final List<String> SCHOOL_GROUPS = Arrays.asList("Eleves", "Profs", "Parents", "Administratifs",
+        "Eleves:2NDE1", "Eleves:2NDE2", "Eleves:1ERE1", "Eleves:TERM1", "Profs:Profs_MATHS", "Profs:Profs_FRANCAIS",
+        "Profs:Profs_ANGLAIS", "Profs:Profs_HISTOIRE", "Parents:Parents_2NDE1", "Parents:Parents_2NDE2",
+        "Parents:Parents_1ERE1", "Parents:Parents_TERM1", "groupes_locaux:Publication_contenus",
+        "groupes_locaux:Club_theatre", "groupes_locaux:Club_echecs", "Administratifs:Direction",
+        "Administratifs:Vie_scolaire", "Administratifs:Intendance", "Profs:Profs Principaux", "Eleves:Delegues",
+        "Parents:Delegues", "Profs:Profs_SVT", "Profs:Profs_PHYSIQUE", "Profs:Profs_EPS", "Profs:Profs_ARTS",
+        "Profs:Profs_MUSIQUE", "Profs:Profs_TECHNO", "Profs:Profs_ALLEMAND", "Profs:Profs_ESPAGNOL", "Profs:Profs_LATIN",
+        "Profs:Profs_PHILO", "Profs:Profs_SES", "Profs:Profs_NSI", "Profs:Profs_DOC", "Profs:Profs_CPE", "Eleves:SECT_EURO");
+
+    private InMemoryLdapTemplate ldapTemplate;
+
+    private GroupTreeIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        ldapTemplate = new InMemoryLdapTemplate("dc=esco-centre,dc=fr");
+        for (int i = 0; i < NB_SCHOOLS; i++) {
+            final String school = String.format("esco:Etablissements:LYCEE_%03d_0%06dA", i, i);
+            group(school);
+            for (String sub : SCHOOL_GROUPS) {
+                group(school + ":" + sub);
+            }
+        }
+        group("esco:Inter_etablissements:Tous_Profs");
+        group("esco:Inter_etablissements:Tous_Eleves");
+        group("esco:admin:central:Publisher");
+        group("other:Club");
+
+        final ExternalGroupHelper groupHelper = new ExternalGroupHelper("cn", "displayName", "cn", "member",
+            Pattern.compile(String.format(GROUP_DN, "(.*)")), 1, Pattern.compile("uid=(.*),ou=people,dc=esco-centre,dc=fr"), 1,
+            null, false, true, false, Pattern.compile("^$"), new HashSet<>(), "ou=groups");
+        final ExternalUserHelper userHelper = new ExternalUserHelper();
+        final LdapGroupDaoImpl groupDao = new LdapGroupDaoImpl(ldapTemplate, groupHelper, Arrays.asList(),
+            new LdapUserDaoImpl(ldapTemplate, userHelper), Arrays.asList());
+
+        final Filter filter = new Filter();
+        filter.setPattern("(cn=esco:*)");
+        filter.setType(FilterType.GROUP);
+        final FilterRepository filterRepository = mock(FilterRepository.class);
+        when(filterRepository.findOne(any(Predicate.class))).thenReturn(Optional.of(filter));
+
+        index = new GroupTreeIndex(groupDao, filterRepository);
+    }
+
+    private void group(final String id) {
+        ldapTemplate.addEntry(String.format(GROUP_DN, id), "cn=" + id, "displayName=" + id);
+    }
+
+    @Test
+    public void testTreeLoadedWithOneSearch() {
+        final GroupIdTrie tree = index.getTree(1L);
+
+        assertEquals(NB_SCHOOLS * (SCHOOL_GROUPS.size() + 1) + 3, tree.getSize());
+        assertTrue(tree.getSize() > 20000);
+        assertEquals(1, ldapTemplate.getSearchCount());
+
+        // navigation is done in memory
+        assertSame(tree, index.getTree(1L));
+        index.findNode("esco:Etablissements:LYCEE_042_0000042A:Profs");
+        assertEquals(1, ldapTemplate.getSearchCount());
+    }
+
+    @Test
+    public void testRootNodesAndChilds() {
+        final List<GroupIdTrie.Node> roots = index.getTree(1L).getRootNodes();
+        assertEquals(1, roots.size());
+        final GroupIdTrie.Node esco = roots.get(0);
+        assertEquals("esco", esco.getPath());
+        assertFalse(esco.isGroup());
+        assertNull(esco.getDisplayedParentPath());
+
+        final List<GroupIdTrie.Node> childs = esco.getChilds(0, 10);
+        assertEquals(3, childs.size());
+        assertEquals("esco:Etablissements", childs.get(0).getPath());
+        assertEquals("esco:Inter_etablissements", childs.get(1).getPath());
+        // "esco:admin" has only one child, so it's merged with it
+        assertEquals("esco:admin:central:Publisher", childs.get(2).getPath());
+        assertEquals("admin:central:Publisher", childs.get(2).getLabel());
+        assertEquals("esco", childs.get(2).getDisplayedParentPath());
+        assertTrue(childs.get(2).isGroup());
+
+        final GroupIdTrie.Node school = index.findNode("esco:Etablissements:LYCEE_042_0000042A");
+        assertNotNull(school);
+        assertTrue(school.isGroup());
+        assertEquals("LYCEE_042_0000042A", school.getLabel());
+        assertEquals(5, school.countChilds());
+        final GroupIdTrie.Node profs = index.findNode("esco:Etablissements:LYCEE_042_0000042A:Profs");
+        assertEquals(19, profs.countChilds());
+        assertEquals("Profs Principaux", profs.getChilds(0, 1).get(0).getLabel());
+        assertEquals("esco:Etablissements:LYCEE_042_0000042A:Profs", profs.getChilds(0, 1).get(0).getDisplayedParentPath());
+        assertFalse(profs.getChilds(0, 1).get(0).hasChilds());
+
+        assertNull(index.findNode("other:Club"));
+        assertNull(index.findNode("esco:Etablissements:UNKNOWN"));
+    }
+
+    @Test
+    public void testChildsPaging() {
+        final GroupIdTrie.Node etabs = index.getTree(1L).getNode("esco:Etablissements");
+        assertEquals(NB_SCHOOLS, etabs.countChilds());
+
+        final List<GroupIdTrie.Node> first = etabs.getChilds(0, 100);
+        assertEquals(100, first.size());
+        assertEquals("esco:Etablissements:LYCEE_000_0000000A", first.get(0).getPath());
+        final List<GroupIdTrie.Node> last = etabs.getChilds(450, 100);
+        assertEquals(50, last.size());
+        assertEquals("esco:Etablissements:LYCEE_499_0000499A", last.get(49).getPath());
+        assertTrue(etabs.getChilds(NB_SCHOOLS, 100).isEmpty());
+    }
+
+    @Test
+    public void testRefreshReloadsLoadedTrees() {
+        index.getTree(1L);
+        group("esco:Etablissements:LYCEE_NEW_0999999A");
+        assertNull(index.findNode("esco:Etablissements:LYCEE_NEW_0999999A"));
+
+        ldapTemplate.resetSearchCount();
+        index.refresh();
+
+        assertEquals(1, ldapTemplate.getSearchCount());
+        assertNotNull(index.findNode("esco:Etablissements:LYCEE_NEW_0999999A"));
+        assertEquals(NB_SCHOOLS + 1, index.getTree(1L).getNode("esco:Etablissements").countChilds());
+    }
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.esupportail.publisher.config.liquibase.H2LiquibaseConfiguration;
+import org.esupportail.publisher.service.ItemChangeLogService.ChangeType;
+import org.esupportail.publisher.service.ItemChangeLogService.Changes;
+
+import com.google.common.collect.Sets;
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Runs on the schema built by the application changelogs.
+ */
+public class ItemChangeLogServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T10:00:00Z");
+
+    private static final Duration RETENTION = Duration.ofDays(30);
+
+    private static final Duration SAFETY_MARGIN = Duration.ofMinutes(1);
+
+    private static final long PUBLISHER_A = 1;
+
+    private static final long PUBLISHER_B = 2;
+
+    private static final long CLASSIFICATION_A = 10;
+
+    private static final long CLASSIFICATION_B = 20;
+
+    private static DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    /** records changes at NOW */
+    private ItemChangeLogService service;
+
+    /** reads changes once the safety margin is elapsed */
+    private ItemChangeLogService reader;
+
+    @BeforeAll
+    public static void createSchema() throws LiquibaseException {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:itemChangeLog;DB_CLOSE_DELAY=-1", "sa", "");
+        final SpringLiquibase liquibase = H2LiquibaseConfiguration.newLiquibase(dataSource);
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // items and classifications are inserted without their organization, redactor and publisher
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        insertClassification(CLASSIFICATION_A, PUBLISHER_A);
+        insertClassification(CLASSIFICATION_B, PUBLISHER_B);
+        service = newService(NOW);
+        reader = newService(NOW.plus(SAFETY_MARGIN).plusSeconds(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.execute("DELETE FROM " + ItemChangeLogService.TABLE_NAME);
+        jdbcTemplate.execute("ALTER TABLE " + ItemChangeLogService.TABLE_NAME + " ALTER COLUMN id RESTART WITH 1");
+        jdbcTemplate.execute("DELETE FROM T_CLASSIFICATION_ITEM");
+        jdbcTemplate.execute("DELETE FROM T_ITEM");
+        jdbcTemplate.execute("DELETE FROM T_CLASSIFICATION");
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+    }
+
+    @Test
+    public void testNoChanges() {
+        Assertions.assertEquals(0, reader.getCurrentToken());
+        assertChanges(reader.getChangesSince(0, PUBLISHER_A), 0, Collections.emptySet());
+        // token of an other database or of purged changes
+        Assertions.assertFalse(reader.getChangesSince(5, PUBLISHER_A).isPresent());
+        Assertions.assertFalse(reader.getChangesSince(-1, PUBLISHER_A).isPresent());
+    }
+
+    @Test
+    public void testChangesSinceToken() {
+        insertItem(1, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A);
+        insertItem(2, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A);
+        insertItem(3, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A);
+        service.recordChange(1, ChangeType.CREATED);
+        service.recordChange(2, ChangeType.CREATED);
+        final long firstPoll = reader.getCurrentToken();
+        assertChanges(reader.getChangesSince(0, PUBLISHER_A), firstPoll, Sets.newHashSet(1L, 2L));
+
+        service.recordChange(2, ChangeType.MODIFIED);
+        service.recordChange(3, ChangeType.CREATED);
+        service.recordChange(2, ChangeType.PUBLISHED);
+        final long secondPoll = reader.getCurrentToken();
+        assertChanges(reader.getChangesSince(firstPoll, PUBLISHER_A), secondPoll, Sets.newHashSet(2L, 3L));
+
+        // quiet publication
+        assertChanges(reader.getChangesSince(secondPoll, PUBLISHER_A), secondPoll, Collections.emptySet());
+
+        service.recordChange(1, ChangeType.REMOVED);
+        assertChanges(reader.getChangesSince(secondPoll, PUBLISHER_A), reader.getCurrentToken(), Collections.singleton(1L));
+        assertChanges(reader.getChangesSince(firstPoll, PUBLISHER_A), reader.getCurrentToken(), Sets.newHashSet(1L, 2L, 3L));
+    }
+
+    @Test
+    public void testChangesAreScopedToPublishers() {
+        insertItem(1, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A);
+        insertItem(2, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_B);
+        insertItem(3, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A, CLASSIFICATION_B);
+        // not classified, in no publication
+        insertItem(4, "DRAFT", LocalDate.now(), null);
+        service.recordChange(1, ChangeType.MODIFIED);
+        service.recordChange(2, ChangeType.MODIFIED);
+        service.recordChange(3, ChangeType.MODIFIED);
+        service.recordChange(4, ChangeType.MODIFIED);
+
+        assertChanges(reader.getChangesSince(0, PUBLISHER_A), reader.getCurrentToken(), Sets.newHashSet(1L, 3L));
+        assertChanges(reader.getChangesSince(0, PUBLISHER_B), reader.getCurrentToken(), Sets.newHashSet(2L, 3L));
+        assertChanges(reader.getChangesSince(0, 3), reader.getCurrentToken(), Collections.emptySet());
+    }
+
+    @Test
+    public void testMovedAndRemovedItemsAreChangesOfTheirOldPublisher() {
+        insertItem(1, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A);
+        insertItem(2, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_B);
+        final long token = reader.getCurrentToken();
+
+        // item 1 moved from A to B, logged for the old links then for the new ones
+        service.recordChange(1, ChangeType.MODIFIED);
+        jdbcTemplate.update("DELETE FROM T_CLASSIFICATION_ITEM WHERE item_id = 1");
+        linkItem(1, CLASSIFICATION_B);
+        service.recordChange(1, ChangeType.MODIFIED, Collections.singleton(PUBLISHER_B));
+        // item 2 removed, logged before removing its links
+        service.recordChange(2, ChangeType.REMOVED);
+        jdbcTemplate.update("DELETE FROM T_CLASSIFICATION_ITEM WHERE item_id = 2");
+        jdbcTemplate.update("DELETE FROM T_ITEM WHERE id = 2");
+
+        // item 1 is a removal for readers of A, as it isn't in their publication anymore
+        assertChanges(reader.getChangesSince(token, PUBLISHER_A), reader.getCurrentToken(), Collections.singleton(1L));
+        assertChanges(reader.getChangesSince(token, PUBLISHER_B), reader.getCurrentToken(), Sets.newHashSet(1L, 2L));
+    }
+
+    @Test
+    public void testTokenHeldBackBeforeRecentChanges() {
+        insertItem(1, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A);
+        insertItem(2, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A);
+        insertItem(3, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A);
+        insertChange(1, 1, NOW.minus(Duration.ofMinutes(5)));
+        insertChange(3, 3, NOW);
+
+        // the change 2 isn't committed yet, the token stays before the recent change 3
+        final Optional<Changes> changes = service.getChangesSince(0, PUBLISHER_A);
+        assertChanges(changes, 1, Sets.newHashSet(1L, 3L));
+        Assertions.assertEquals(1, service.getCurrentToken());
+
+        insertChange(2, 2, NOW.minusSeconds(10));
+        assertChanges(service.getChangesSince(changes.get().getToken(), PUBLISHER_A), 1, Sets.newHashSet(2L, 3L));
+        assertChanges(reader.getChangesSince(changes.get().getToken(), PUBLISHER_A), 3, Sets.newHashSet(2L, 3L));
+    }
+
+    @Test
+    public void testTokenOfRecentChangesOnly() {
+        insertItem(1, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A);
+        insertItem(2, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A);
+        insertChange(2, 2, NOW);
+        // the token is held back to the start of the log, the reader will get the whole publication again
+        Assertions.assertEquals(0, service.getCurrentToken());
+        Assertions.assertFalse(service.getChangesSince(0, PUBLISHER_A).isPresent());
+
+        // a change committed later with a lower id isn't missed
+        insertChange(1, 1, NOW);
+        assertChanges(service.getChangesSince(0, PUBLISHER_A), 0, Sets.newHashSet(1L, 2L));
+    }
+
+    @Test
+    public void testScheduledJobsChanges() {
+        final LocalDate today = LocalDate.now();
+        insertItem(1, "PUBLISHED", today.minusDays(10), today.minusDays(1), CLASSIFICATION_A, CLASSIFICATION_B);
+        insertItem(2, "PUBLISHED", today.minusDays(10), today.plusDays(1), CLASSIFICATION_A);
+        insertItem(3, "PUBLISHED", today.minusDays(10), null, CLASSIFICATION_A);
+        insertItem(4, "SCHEDULED", today, today.plusDays(10), CLASSIFICATION_A);
+        insertItem(5, "SCHEDULED", today.plusDays(1), today.plusDays(10), CLASSIFICATION_A);
+        insertItem(6, "DRAFT", today.minusDays(10), today.minusDays(1), CLASSIFICATION_A);
+
+        final long token = reader.getCurrentToken();
+        Assertions.assertEquals(2, service.recordExpiredPublishedArchiving(today));
+        assertChanges(reader.getChangesSince(token, PUBLISHER_A), reader.getCurrentToken(), Collections.singleton(1L));
+        assertChanges(reader.getChangesSince(token, PUBLISHER_B), reader.getCurrentToken(), Collections.singleton(1L));
+
+        Assertions.assertEquals(1, service.recordScheduledPublishing(today));
+        assertChanges(reader.getChangesSince(token, PUBLISHER_A), reader.getCurrentToken(), Sets.newHashSet(1L, 4L));
+        Assertions.assertEquals("PUBLISHED", jdbcTemplate.queryForObject("SELECT change_type FROM "
+            + ItemChangeLogService.TABLE_NAME + " WHERE item_id = 4", String.class));
+    }
+
+    @Test
+    public void testPurgedChangesInvalidateOldTokens() {
+        insertItem(1, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A);
+        insertItem(2, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A);
+        insertItem(3, "PUBLISHED", LocalDate.now(), null, CLASSIFICATION_A);
+        service.recordChange(1, ChangeType.CREATED);
+        final long oldToken = reader.getCurrentToken();
+        service.recordChange(2, ChangeType.CREATED);
+        final long recentToken = reader.getCurrentToken();
+        newService(NOW.plus(Duration.ofDays(10))).recordChange(3, ChangeType.MODIFIED);
+
+        final ItemChangeLogService afterRetention = newService(NOW.plus(RETENTION).plus(Duration.ofDays(1)));
+        afterRetention.purgeOldChanges();
+        Assertions.assertEquals(1, countRows());
+
+        // the change of item 2 was purged, the reader must get the whole publication
+        Assertions.assertFalse(afterRetention.getChangesSince(oldToken, PUBLISHER_A).isPresent());
+        assertChanges(afterRetention.getChangesSince(recentToken, PUBLISHER_A), afterRetention.getCurrentToken(),
+            Collections.singleton(3L));
+
+        newService(NOW.plus(RETENTION).plus(Duration.ofDays(20))).purgeOldChanges();
+        Assertions.assertEquals(0, countRows());
+        Assertions.assertFalse(afterRetention.getChangesSince(recentToken, PUBLISHER_A).isPresent());
+    }
+
+    private ItemChangeLogService newService(final Instant now) {
+        return new ItemChangeLogService(jdbcTemplate, RETENTION, SAFETY_MARGIN, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private void insertClassification(final long id, final long publisherId) {
+        jdbcTemplate.update("INSERT INTO T_CLASSIFICATION (id, type, created_date, created_by, access_view, "
+            + "default_display_order, description, display_order, name, rss_allowed, ttl, publisher_id) "
+            + "VALUES (?, 'CAT', CURRENT_TIMESTAMP, 'system', 'PUBLIC', 'NAME', 'test', 0, ?, '1', 3600, ?)",
+            id, "classification" + id, publisherId);
+    }
+
+    private void insertItem(final long id, final String status, final LocalDate startDate, final LocalDate endDate,
+                            final long... classificationIds) {
+        jdbcTemplate.update("INSERT INTO T_ITEM (id, type, created_date, created_by, highlight, rss_allowed, start_date, "
+            + "end_date, status, summary, title, entity_id, redactor_id) "
+            + "VALUES (?, 'NEWS', CURRENT_TIMESTAMP, 'system', '0', '1', ?, ?, ?, 'summary', ?, 1, 1)",
+            id, java.sql.Date.valueOf(startDate), endDate != null ? java.sql.Date.valueOf(endDate) : null, status,
+            "item" + id);
+        for (long classificationId : classificationIds) {
+            linkItem(id, classificationId);
+        }
+    }
+
+    private void linkItem(final long itemId, final long classificationId) {
+        jdbcTemplate.update("INSERT INTO T_CLASSIFICATION_ITEM (item_id, classification_id, display_order) VALUES (?, ?, 0)",
+            itemId, classificationId);
+    }
+
+    private void insertChange(final long id, final long itemId, final Instant changedAt) {
+        jdbcTemplate.update("INSERT INTO " + ItemChangeLogService.TABLE_NAME
+            + " (id, item_id, publisher_id, change_type, changed_at) VALUES (?, ?, ?, ?, ?)",
+            id, itemId, PUBLISHER_A, ChangeType.MODIFIED.name(), Timestamp.from(changedAt));
+    }
+
+    private int countRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + ItemChangeLogService.TABLE_NAME, Integer.class);
+    }
+
+    private static void assertChanges(final Optional<Changes> changes, final long token, final Set<Long> itemIds) {
+        Assertions.assertTrue(changes.isPresent());
+        Assertions.assertEquals(token, changes.get().getToken());
+        Assertions.assertEquals(itemIds, changes.get().getItemIds());
+    }
+}
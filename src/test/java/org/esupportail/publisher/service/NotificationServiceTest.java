@@ -0,0 +1,363 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.esupportail.publisher.config.bean.CustomMailProperties;
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.ContextKey;
+import org.esupportail.publisher.domain.User;
+import org.esupportail.publisher.domain.enums.ContextType;
+import org.esupportail.publisher.repository.ItemRepository;
+import org.esupportail.publisher.service.NotificationService.EventType;
+
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.transaction.support.TransactionOperations;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+public class NotificationServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T10:00:00Z");
+
+    private static final Set<ContextKey> CONTEXTS = Sets.newHashSet(new ContextKey(1L, ContextType.CATEGORY));
+
+    private JdbcTemplate jdbcTemplate;
+
+    private ItemRepository<AbstractItem> itemRepository;
+
+    private NotificationRecipientResolver recipientResolver;
+
+    private CustomMailProperties properties;
+
+    private SmtpServer smtpServer;
+
+    private NotificationService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:notificationEvents;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE " + NotificationService.TABLE_NAME + " (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "item_id BIGINT NOT NULL, event_type VARCHAR(20) NOT NULL, created_at TIMESTAMP NOT NULL)");
+        itemRepository = Mockito.mock(ItemRepository.class);
+        recipientResolver = Mockito.mock(NotificationRecipientResolver.class);
+        properties = new CustomMailProperties();
+        properties.setFrom("publisher@localhost");
+        properties.setBaseUrl("http://localhost:8080");
+        properties.getNotification().setEnabled(true);
+        smtpServer = new SmtpServer();
+
+        final JavaMailSenderImpl javaMailSender = new JavaMailSenderImpl();
+        javaMailSender.setHost("localhost");
+        javaMailSender.setPort(smtpServer.getPort());
+        javaMailSender.getJavaMailProperties().setProperty("mail.smtp.localhost", "localhost");
+        final ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("i18n/messages");
+        messageSource.setDefaultEncoding(StandardCharsets.UTF_8.name());
+        final ClassLoaderTemplateResolver templateResolver = new ClassLoaderTemplateResolver();
+        templateResolver.setPrefix("templates/");
+        templateResolver.setSuffix(".html");
+        templateResolver.setTemplateMode(TemplateMode.HTML);
+        templateResolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        final SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(templateResolver);
+        templateEngine.setTemplateEngineMessageSource(messageSource);
+
+        service = new NotificationService(jdbcTemplate, itemRepository, recipientResolver, javaMailSender, templateEngine,
+            messageSource, properties, TransactionOperations.withoutTransaction(), Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        smtpServer.close();
+        jdbcTemplate.execute("DROP TABLE " + NotificationService.TABLE_NAME);
+    }
+
+    private AbstractItem item(final long id, final String title, final String author) {
+        final AbstractItem item = Mockito.mock(AbstractItem.class);
+        Mockito.when(item.getId()).thenReturn(id);
+        Mockito.when(item.getTitle()).thenReturn(title);
+        Mockito.when(item.getStartDate()).thenReturn(LocalDate.of(2026, 1, 2));
+        Mockito.when(item.getCreatedBy()).thenReturn(new User(author, author));
+        return item;
+    }
+
+    private void givenItems(final AbstractItem... items) {
+        Mockito.when(itemRepository.findAllById(ArgumentMatchers.any())).thenReturn(Arrays.asList(items));
+    }
+
+    private long countEvents() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + NotificationService.TABLE_NAME, Long.class);
+    }
+
+    @Test
+    public void testDigestsAggregatedPerRecipientOverOneConnection() {
+        final AbstractItem first = item(1, "First pending news", "author1");
+        final AbstractItem second = item(2, "Second pending news", "author1");
+        final AbstractItem validated = item(3, "Validated news", "author2");
+        givenItems(first, second, validated);
+        Mockito.when(recipientResolver.getModerationContexts(ArgumentMatchers.any())).thenReturn(CONTEXTS);
+        Mockito.when(recipientResolver.getModeratorMails(CONTEXTS)).thenReturn(Sets.newHashSet("moderator1@localhost",
+            "moderator2@localhost"));
+        Mockito.when(recipientResolver.getAuthorMail(validated)).thenReturn("author2@localhost");
+
+        service.recordEvent(1, EventType.PENDING_MODERATION);
+        service.recordEvent(2, EventType.PENDING_MODERATION);
+        // saved again while pending
+        service.recordEvent(1, EventType.PENDING_MODERATION);
+        service.recordEvent(3, EventType.PUBLISHED);
+
+        Assertions.assertEquals(3, service.sendDigests());
+        Assertions.assertEquals(1, smtpServer.getConnections());
+        Assertions.assertEquals(3, smtpServer.getMessages().size());
+        Assertions.assertEquals(0, countEvents());
+        // moderators of the same contexts are resolved once
+        Mockito.verify(recipientResolver, Mockito.times(1)).getModeratorMails(CONTEXTS);
+
+        for (Message message : smtpServer.getMessages()) {
+            if (message.getRecipients().contains("author2@localhost")) {
+                Assertions.assertTrue(message.getData().contains("Validated news"));
+                Assertions.assertFalse(message.getData().contains("pending news"));
+            } else {
+                Assertions.assertEquals(1, count(message.getData(), "First pending news"));
+                Assertions.assertEquals(1, count(message.getData(), "Second pending news"));
+                Assertions.assertFalse(message.getData().contains("Validated news"));
+            }
+        }
+        Assertions.assertEquals(0, service.sendDigests());
+    }
+
+    @Test
+    public void testMaxMessagesPerConnection() {
+        properties.getNotification().setMaxMessagesPerConnection(2);
+        givenItems(item(1, "Pending news", "author1"));
+        Mockito.when(recipientResolver.getModerationContexts(ArgumentMatchers.any())).thenReturn(CONTEXTS);
+        Mockito.when(recipientResolver.getModeratorMails(CONTEXTS)).thenReturn(Sets.newHashSet("moderator1@localhost",
+            "moderator2@localhost", "moderator3@localhost"));
+        service.recordEvent(1, EventType.PENDING_MODERATION);
+
+        Assertions.assertEquals(3, service.sendDigests());
+        Assertions.assertEquals(2, smtpServer.getConnections());
+        Assertions.assertEquals(3, smtpServer.getMessages().size());
+    }
+
+    @Test
+    public void testEventsOfRemovedItemsAreDropped() {
+        givenItems();
+        service.recordEvent(1, EventType.PUBLISHED);
+
+        Assertions.assertEquals(0, service.sendDigests());
+        Assertions.assertEquals(0, smtpServer.getConnections());
+        Assertions.assertEquals(0, countEvents());
+    }
+
+    @Test
+    public void testEventsKeptWhenSmtpServerIsDown() throws IOException {
+        final AbstractItem validated = item(3, "Validated news", "author2");
+        givenItems(validated);
+        Mockito.when(recipientResolver.getAuthorMail(validated)).thenReturn("author2@localhost");
+        service.recordEvent(3, EventType.PUBLISHED);
+        smtpServer.close();
+
+        Assertions.assertEquals(0, service.sendDigests());
+        Assertions.assertEquals(1, countEvents());
+    }
+
+    @Test
+    public void testEventsKeptForFailedRecipientsOnly() {
+        final AbstractItem pending = item(1, "Pending news", "author1");
+        final AbstractItem validated = item(2, "Validated news", "author2");
+        final AbstractItem otherValidated = item(3, "Other validated news", "author3");
+        givenItems(pending, validated, otherValidated);
+        Mockito.when(recipientResolver.getModerationContexts(ArgumentMatchers.any())).thenReturn(CONTEXTS);
+        Mockito.when(recipientResolver.getModeratorMails(CONTEXTS)).thenReturn(Sets.newHashSet("moderator1@localhost",
+            "rejected@localhost"));
+        Mockito.when(recipientResolver.getAuthorMail(validated)).thenReturn("author2@localhost");
+        Mockito.when(recipientResolver.getAuthorMail(otherValidated)).thenReturn("author3@localhost");
+        smtpServer.reject("rejected@localhost");
+
+        service.recordEvent(1, EventType.PENDING_MODERATION);
+        service.recordEvent(2, EventType.PUBLISHED);
+        service.recordEvent(3, EventType.PUBLISHED);
+
+        Assertions.assertEquals(3, service.sendDigests());
+        // the pending moderation event is kept for the moderator whose digest was rejected
+        Assertions.assertEquals(Collections.singletonList(1L), jdbcTemplate.queryForList("SELECT item_id FROM "
+            + NotificationService.TABLE_NAME, Long.class));
+    }
+
+    @Test
+    public void testEventsRecordedWhileSendingAreKept() {
+        final AbstractItem validated = item(2, "Validated news", "author2");
+        givenItems(validated);
+        Mockito.when(recipientResolver.getAuthorMail(validated)).thenAnswer(invocation -> {
+            // an event committed after the read, with a lower id than the read ones
+            jdbcTemplate.update("INSERT INTO " + NotificationService.TABLE_NAME + " (id, item_id, event_type, created_at) "
+                + "VALUES (0, 1, 'PUBLISHED', CURRENT_TIMESTAMP)");
+            return "author2@localhost";
+        });
+        service.recordEvent(2, EventType.PUBLISHED);
+
+        Assertions.assertEquals(1, service.sendDigests());
+        Assertions.assertEquals(Collections.singletonList(1L), jdbcTemplate.queryForList("SELECT item_id FROM "
+            + NotificationService.TABLE_NAME, Long.class));
+    }
+
+    @Test
+    public void testNoEventsWhenDisabled() {
+        properties.getNotification().setEnabled(false);
+        service.recordEvent(1, EventType.PENDING_MODERATION);
+        Assertions.assertEquals(0, countEvents());
+    }
+
+    private static int count(final String data, final String text) {
+        int count = 0;
+        for (int i = data.indexOf(text); i >= 0; i = data.indexOf(text, i + text.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    private static class Message {
+        private final List<String> recipients = new ArrayList<>();
+        private final StringBuilder data = new StringBuilder();
+
+        List<String> getRecipients() {
+            return recipients;
+        }
+
+        String getData() {
+            return data.toString();
+        }
+    }
+
+    /**
+     * Minimal smtp server accepting all mails, counting connections.
+     */
+    private static class SmtpServer {
+        private final ServerSocket serverSocket;
+        private final AtomicInteger connections = new AtomicInteger();
+        private final List<Message> messages = Collections.synchronizedList(new ArrayList<>());
+        private final Set<String> rejectedRecipients = Collections.synchronizedSet(new HashSet<>());
+
+        SmtpServer() throws IOException {
+            serverSocket = new ServerSocket(0);
+            final Thread thread = new Thread(this::accept, "smtp-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        int getConnections() {
+            return connections.get();
+        }
+
+        List<Message> getMessages() {
+            return messages;
+        }
+
+        void reject(final String recipient) {
+            rejectedRecipients.add(recipient);
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    connections.incrementAndGet();
+                    converse(socket);
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }
+
+        private void converse(final Socket socket) throws IOException {
+            final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            final OutputStream out = socket.getOutputStream();
+            reply(out, "220 localhost");
+            Message message = new Message();
+            String line;
+            while ((line = in.readLine()) != null) {
+                final String command = line.toUpperCase();
+                if (command.startsWith("RCPT TO:")) {
+                    final String recipient = line.substring(line.indexOf('<') + 1, line.indexOf('>'));
+                    if (rejectedRecipients.contains(recipient)) {
+                        reply(out, "550 Mailbox unavailable");
+                    } else {
+                        message.recipients.add(recipient);
+                        reply(out, "250 OK");
+                    }
+                } else if (command.equals("DATA")) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        message.data.append(line).append('\n');
+                    }
+                    messages.add(message);
+                    message = new Message();
+                    reply(out, "250 OK");
+                } else if (command.equals("QUIT")) {
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    // EHLO, HELO, MAIL FROM, RSET, NOOP
+                    reply(out, "250 OK");
+                }
+            }
+        }
+
+        private void reply(final OutputStream out, final String reply) throws IOException {
+            out.write((reply + "\r\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.enums.ItemStatus;
+import org.esupportail.publisher.repository.ItemRepository;
+import org.esupportail.publisher.service.bean.ScheduledJob;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+public class PublicationSchedulerTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 10);
+
+    private final AtomicReference<Instant> now = new AtomicReference<>();
+
+    private ItemRepository<AbstractItem> itemRepository;
+
+    private ItemChangeLogService itemChangeLogService;
+
+    private ScheduledJobService scheduledJobService;
+
+    private PublicationScheduler scheduler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        itemRepository = mock(ItemRepository.class);
+        itemChangeLogService = mock(ItemChangeLogService.class);
+        scheduledJobService = mock(ScheduledJobService.class);
+        when(scheduledJobService.run(any(), any())).thenAnswer(invocation -> {
+            invocation.getArgument(1, IntSupplier.class).getAsInt();
+            return true;
+        });
+        final Clock clock = mock(Clock.class);
+        when(clock.instant()).thenAnswer(invocation -> now.get());
+        when(clock.getZone()).thenReturn(ZoneOffset.UTC);
+        when(clock.millis()).thenAnswer(invocation -> now.get().toEpochMilli());
+        setTime(DAY, 8, 0);
+        scheduler = new PublicationScheduler(itemRepository, itemChangeLogService, scheduledJobService,
+            TransactionOperations.withoutTransaction(), clock);
+    }
+
+    private void setTime(final LocalDate day, final int hour, final int minute) {
+        now.set(day.atTime(hour, minute).atZone(ZoneId.of("UTC")).toInstant());
+    }
+
+    @Test
+    public void testNothingQueriedBeforeNextDates() {
+        when(itemRepository.findFirstScheduledStartDate()).thenReturn(DAY.plusDays(2));
+        when(itemRepository.findFirstPublishedEndDate()).thenReturn(DAY.plusDays(5));
+        for (int minute = 0; minute < 60; minute++) {
+            setTime(DAY, 8, minute);
+            scheduler.applyDueStatusChanges();
+        }
+        Assertions.assertEquals(DAY.plusDays(2), scheduler.getNextPublishing());
+        Assertions.assertEquals(DAY.plusDays(6), scheduler.getNextArchiving());
+        // next dates are loaded once by day
+        verify(itemRepository, times(1)).findFirstScheduledStartDate();
+        verify(itemRepository, never()).publishScheduled(any());
+        verify(itemRepository, never()).archiveExpiredPublished(any());
+        verify(scheduledJobService, never()).run(any(), any());
+    }
+
+    @Test
+    public void testPublishedWhenStartDateIsReached() {
+        when(itemRepository.findFirstScheduledStartDate()).thenReturn(DAY.plusDays(1));
+        when(itemRepository.findFirstPublishedEndDate()).thenReturn(null);
+        scheduler.applyDueStatusChanges();
+
+        setTime(DAY, 23, 59);
+        scheduler.applyDueStatusChanges();
+        verify(itemRepository, never()).publishScheduled(any());
+
+        when(itemRepository.publishScheduled(DAY.plusDays(1))).thenReturn(3);
+        setTime(DAY.plusDays(1), 0, 0);
+        scheduler.applyDueStatusChanges();
+        verify(itemChangeLogService).recordScheduledPublishing(DAY.plusDays(1));
+        verify(itemRepository).publishScheduled(DAY.plusDays(1));
+        verify(scheduledJobService).run(eq(ScheduledJob.APPLY_PUBLICATION_STATUS), any());
+        verify(itemRepository, never()).archiveExpiredPublished(any());
+    }
+
+    @Test
+    public void testArchivedTheDayAfterEndDate() {
+        when(itemRepository.findFirstScheduledStartDate()).thenReturn(null);
+        // until items are archived
+        when(itemRepository.findFirstPublishedEndDate()).thenReturn(DAY, DAY, null);
+        scheduler.applyDueStatusChanges();
+        verify(itemRepository, never()).archiveExpiredPublished(any());
+
+        setTime(DAY.plusDays(1), 0, 1);
+        scheduler.applyDueStatusChanges();
+        verify(itemChangeLogService).recordExpiredPublishedArchiving(DAY.plusDays(1));
+        verify(itemRepository).archiveExpiredPublished(DAY.plusDays(1));
+        Assertions.assertNull(scheduler.getNextArchiving());
+
+        setTime(DAY.plusDays(1), 0, 2);
+        scheduler.applyDueStatusChanges();
+        verify(itemRepository, times(1)).archiveExpiredPublished(any());
+    }
+
+    @Test
+    public void testSavedItemsLowerNextDates() {
+        when(itemRepository.findFirstScheduledStartDate()).thenReturn(DAY.plusDays(10));
+        when(itemRepository.findFirstPublishedEndDate()).thenReturn(null);
+        scheduler.applyDueStatusChanges();
+
+        scheduler.itemSaved(ItemStatus.PUBLISHED, DAY, DAY.plusDays(3));
+        scheduler.itemSaved(ItemStatus.DRAFT, DAY, DAY.plusDays(1));
+        Assertions.assertEquals(DAY.plusDays(4), scheduler.getNextArchiving());
+        scheduler.itemSaved(ItemStatus.SCHEDULED, DAY.plusDays(20), null);
+        Assertions.assertEquals(DAY.plusDays(10), scheduler.getNextPublishing());
+
+        // an item scheduled for today is published on the next poll, not after midnight
+        scheduler.itemSaved(ItemStatus.SCHEDULED, DAY, null);
+        setTime(DAY, 8, 1);
+        scheduler.applyDueStatusChanges();
+        verify(itemRepository).publishScheduled(DAY);
+        Assertions.assertEquals(DAY.plusDays(10), scheduler.getNextPublishing());
+    }
+
+    @Test
+    public void testChangesDoneByAnOtherNode() {
+        when(itemRepository.findFirstScheduledStartDate()).thenReturn(DAY);
+        when(itemRepository.findFirstPublishedEndDate()).thenReturn(null);
+        doReturn(false).when(scheduledJobService).run(any(), any());
+        scheduler.applyDueStatusChanges();
+        verify(itemRepository, never()).publishScheduled(any());
+        // the node holding the lock updates items, next dates are read again
+        verify(itemRepository, times(2)).findFirstScheduledStartDate();
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+import org.esupportail.publisher.config.liquibase.H2LiquibaseConfiguration;
+import org.esupportail.publisher.domain.AbstractClassification;
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.Category;
+import org.esupportail.publisher.domain.ItemClassificationOrder;
+import org.esupportail.publisher.domain.News;
+import org.esupportail.publisher.domain.Organization;
+import org.esupportail.publisher.domain.Publisher;
+import org.esupportail.publisher.domain.Redactor;
+import org.esupportail.publisher.domain.User;
+import org.esupportail.publisher.domain.enums.DisplayOrderType;
+import org.esupportail.publisher.domain.enums.ItemStatus;
+import org.esupportail.publisher.repository.ClassificationRepository;
+import org.esupportail.publisher.repository.ItemClassificationOrderRepository;
+import org.esupportail.publisher.repository.ItemRepository;
+import org.esupportail.publisher.repository.ObjTest;
+import org.esupportail.publisher.repository.OrganizationRepository;
+import org.esupportail.publisher.repository.PublisherRepository;
+import org.esupportail.publisher.repository.ReaderRepository;
+import org.esupportail.publisher.repository.RedactorRepository;
+import org.esupportail.publisher.repository.UserRepository;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.mysema.commons.lang.Pair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Reads the published items by pages smaller than the number of links, on the schema built by the application
+ * changelogs.
+ */
+@DataJpaTest
+@Import({PublishedItemsServiceTest.AuditingConfiguration.class, H2LiquibaseConfiguration.class})
+@TestPropertySource(properties = {
+    // items dates are checked by a javascript constraint, not needed to read items
+    "spring.jpa.properties.javax.persistence.validation.mode=none"})
+// closed after the tests, its auditing handler would be kept by the @Configurable listeners of other persistence units
+@DirtiesContext
+public class PublishedItemsServiceTest {
+
+    @TestConfiguration
+    @EnableJpaAuditing(auditorAwareRef = "testAuditorAware")
+    static class AuditingConfiguration {
+        @Bean
+        public AuditorAware<User> testAuditorAware(final UserRepository userRepository) {
+            return () -> userRepository.findById("system");
+        }
+    }
+
+    @Inject
+    private OrganizationRepository organizationRepository;
+
+    @Inject
+    private ReaderRepository readerRepository;
+
+    @Inject
+    private RedactorRepository redactorRepository;
+
+    @Inject
+    private PublisherRepository publisherRepository;
+
+    @Inject
+    private ClassificationRepository<AbstractClassification> classificationRepository;
+
+    @Inject
+    private ItemRepository<AbstractItem> itemRepository;
+
+    @Inject
+    private ItemClassificationOrderRepository itemClassificationOrderRepository;
+
+    private PublishedItemsService publishedItemsService;
+
+    private Publisher publisher;
+
+    private Category categoryA;
+
+    private Category categoryB;
+
+    private News onlyInA1;
+
+    private News onlyInA2;
+
+    private News inBoth;
+
+    private News onlyInB;
+
+    private News draft;
+
+    @BeforeEach
+    public void setUp() {
+        publishedItemsService = new PublishedItemsService(itemClassificationOrderRepository, 2);
+
+        publisher = ObjTest.newPublisher("pub");
+        final Organization organization = organizationRepository.saveAndFlush(publisher.getContext().getOrganization());
+        readerRepository.saveAndFlush(publisher.getContext().getReader());
+        final Redactor redactor = redactorRepository.saveAndFlush(publisher.getContext().getRedactor());
+        publisher = publisherRepository.saveAndFlush(publisher);
+        categoryA = classificationRepository.saveAndFlush(ObjTest.newCategory("a", publisher));
+        categoryB = classificationRepository.saveAndFlush(ObjTest.newCategory("b", publisher));
+
+        onlyInA1 = newNews("a1", organization, redactor, ItemStatus.PUBLISHED, categoryA);
+        inBoth = newNews("both", organization, redactor, ItemStatus.PUBLISHED, categoryA, categoryB);
+        onlyInA2 = newNews("a2", organization, redactor, ItemStatus.PUBLISHED, categoryA);
+        onlyInB = newNews("b", organization, redactor, ItemStatus.PUBLISHED, categoryB);
+        draft = newNews("draft", organization, redactor, ItemStatus.DRAFT, categoryA, categoryB);
+    }
+
+    private News newNews(final String indice, final Organization organization, final Redactor redactor,
+                         final ItemStatus status, final Category... categories) {
+        final News news = ObjTest.newNews(indice, organization, redactor);
+        news.setStatus(status);
+        final News saved = itemRepository.saveAndFlush(news);
+        for (Category category : categories) {
+            itemClassificationOrderRepository.saveAndFlush(new ItemClassificationOrder(saved, category, 0));
+        }
+        return saved;
+    }
+
+    private static List<Long> ids(final List<Pair<AbstractItem, List<AbstractClassification>>> items) {
+        return items.stream().map(entry -> entry.getFirst().getId()).collect(Collectors.toList());
+    }
+
+    private static List<Long> classificationIds(final Pair<AbstractItem, List<AbstractClassification>> entry) {
+        return entry.getSecond().stream().map(AbstractClassification::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testAllPublishedItemsInPublicationOrder() {
+        final List<Pair<AbstractItem, List<AbstractClassification>>> items = Lists.newArrayList(
+            publishedItemsService.getPublishedItems(publisher.getId(), DisplayOrderType.NAME, null));
+
+        final List<Long> ids = ids(items);
+        Assertions.assertEquals(4, ids.size());
+        // categories are sorted by name, items of the first category come first
+        Assertions.assertEquals(Sets.newHashSet(onlyInA1.getId(), inBoth.getId(), onlyInA2.getId()),
+            Sets.newHashSet(ids.subList(0, 3)));
+        Assertions.assertEquals(onlyInB.getId(), ids.get(3));
+
+        for (Pair<AbstractItem, List<AbstractClassification>> entry : items) {
+            if (entry.getFirst().getId().equals(inBoth.getId())) {
+                Assertions.assertEquals(Arrays.asList(categoryA.getId(), categoryB.getId()), classificationIds(entry));
+            } else if (entry.getFirst().getId().equals(onlyInB.getId())) {
+                Assertions.assertEquals(Arrays.asList(categoryB.getId()), classificationIds(entry));
+            } else {
+                Assertions.assertEquals(Arrays.asList(categoryA.getId()), classificationIds(entry));
+            }
+        }
+    }
+
+    @Test
+    public void testPublishedItemsOfChanges() {
+        final List<Long> changed = Arrays.asList(inBoth.getId(), onlyInB.getId(), draft.getId());
+        Assertions.assertEquals(Sets.newHashSet(inBoth.getId(), onlyInB.getId()),
+            publishedItemsService.getPublishedItemIds(publisher.getId(), changed));
+
+        final List<Pair<AbstractItem, List<AbstractClassification>>> items = Lists.newArrayList(
+            publishedItemsService.getPublishedItems(publisher.getId(), DisplayOrderType.NAME, changed));
+        Assertions.assertEquals(Arrays.asList(inBoth.getId(), onlyInB.getId()), ids(items));
+        Assertions.assertEquals(Arrays.asList(categoryA.getId(), categoryB.getId()), classificationIds(items.get(0)));
+
+        Assertions.assertTrue(publishedItemsService.getPublishedItemIds(publisher.getId(), Arrays.asList()).isEmpty());
+        Assertions.assertFalse(publishedItemsService.getPublishedItems(publisher.getId(), DisplayOrderType.NAME,
+            Arrays.asList()).hasNext());
+    }
+}
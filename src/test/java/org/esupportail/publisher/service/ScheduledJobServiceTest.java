@@ -0,0 +1,256 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.esupportail.publisher.service.ScheduledJobService.JobRun;
+import org.esupportail.publisher.service.ScheduledJobService.JobStatus;
+import org.esupportail.publisher.service.ScheduledJobService.Outcome;
+import org.esupportail.publisher.service.bean.ScheduledJob;
+
+import net.javacrumbs.shedlock.provider.jdbctemplate.JdbcTemplateLockProvider;
+import org.h2.util.DateTimeUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionOperations;
+
+public class ScheduledJobServiceTest {
+
+    private final AtomicReference<Instant> now = new AtomicReference<>(Instant.parse("2026-01-01T00:20:01Z"));
+
+    private JdbcTemplate jdbcTemplate;
+
+    private ScheduledJobService service;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:scheduledJobs;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE " + ScheduledJobService.LOCK_TABLE_NAME + " (name VARCHAR(64) PRIMARY KEY, "
+            + "lock_until TIMESTAMP NOT NULL, locked_at TIMESTAMP NOT NULL, locked_by VARCHAR(255) NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE " + ScheduledJobService.TABLE_NAME + " (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "job_name VARCHAR(64) NOT NULL, node_name VARCHAR(255) NOT NULL, started_at TIMESTAMP NOT NULL, "
+            + "duration_ms BIGINT NOT NULL, processed_rows INT, outcome VARCHAR(20) NOT NULL, error_message VARCHAR(512))");
+        final Clock clock = mock(Clock.class);
+        when(clock.instant()).thenAnswer(invocation -> now.get());
+        when(clock.getZone()).thenReturn(ZoneOffset.UTC);
+        service = newService("node1", clock);
+    }
+
+    private ScheduledJobService newService(final String nodeName, final Clock clock) {
+        // lock dates are stored in UTC as with the database time of the application
+        return new ScheduledJobService(jdbcTemplate, new JdbcTemplateLockProvider(JdbcTemplateLockProvider.Configuration.builder()
+            .withJdbcTemplate(jdbcTemplate).withTimeZone(ScheduledJobService.LOCK_TIME_ZONE).build()),
+            TransactionOperations.withoutTransaction(), nodeName, clock);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+        jdbcTemplate.execute("DROP TABLE " + ScheduledJobService.TABLE_NAME);
+        jdbcTemplate.execute("DROP TABLE " + ScheduledJobService.LOCK_TABLE_NAME);
+    }
+
+    private void elapse(final Duration duration) {
+        now.set(now.get().plus(duration));
+    }
+
+    /**
+     * Locks of cron jobs are kept one minute at least.
+     */
+    private void releaseLocks() {
+        jdbcTemplate.update("UPDATE " + ScheduledJobService.LOCK_TABLE_NAME + " SET lock_until = ?",
+            utc(Instant.now().minusSeconds(1)));
+    }
+
+    private static Timestamp utc(final Instant instant) {
+        return Timestamp.valueOf(LocalDateTime.ofInstant(instant, ZoneOffset.UTC));
+    }
+
+    private void lock(final ScheduledJob job, final Instant until) {
+        jdbcTemplate.update("INSERT INTO " + ScheduledJobService.LOCK_TABLE_NAME + " (name, lock_until, locked_at, locked_by) "
+            + "VALUES (?, ?, ?, ?)", job.getLockName(), utc(until), utc(Instant.now()), "node2");
+    }
+
+    @Test
+    public void testRunsAreRecorded() {
+        Assertions.assertTrue(service.run(ScheduledJob.REMOVE_OLD_CONTENTS, () -> {
+            elapse(Duration.ofSeconds(3));
+            return 42;
+        }));
+        releaseLocks();
+        final RuntimeException error = new IllegalStateException("database is gone");
+        Assertions.assertSame(error, Assertions.assertThrows(IllegalStateException.class,
+            () -> service.run(ScheduledJob.REMOVE_OLD_CONTENTS, () -> {
+                throw error;
+            })));
+
+        final List<JobRun> runs = service.getRuns(ScheduledJob.REMOVE_OLD_CONTENTS, null, 10);
+        Assertions.assertEquals(2, runs.size());
+        Assertions.assertEquals(Outcome.FAILED, runs.get(0).getOutcome());
+        Assertions.assertNull(runs.get(0).getProcessedRows());
+        Assertions.assertTrue(runs.get(0).getErrorMessage().contains("database is gone"));
+        Assertions.assertEquals(Outcome.SUCCESS, runs.get(1).getOutcome());
+        Assertions.assertEquals(42, runs.get(1).getProcessedRows());
+        Assertions.assertEquals(3000, runs.get(1).getDurationMs());
+        Assertions.assertEquals("node1", runs.get(1).getNodeName());
+        Assertions.assertEquals(ScheduledJob.REMOVE_OLD_CONTENTS.getLockName(), runs.get(1).getJobName());
+        Assertions.assertTrue(service.getRuns(ScheduledJob.PURGE_ITEM_CHANGES, null, 10).isEmpty());
+    }
+
+    @Test
+    public void testLockNamesAreUnique() {
+        for (ScheduledJob job : ScheduledJob.values()) {
+            Assertions.assertSame(job, ScheduledJob.fromLockName(job.getLockName()));
+        }
+        // the monthly purge doesn't share its lock with the publication anymore
+        final ScheduledJobService otherNode = newService("node2", Clock.systemUTC());
+        final AtomicBoolean otherPurge = new AtomicBoolean(true);
+        final AtomicBoolean otherPublication = new AtomicBoolean();
+        try {
+            Assertions.assertTrue(service.run(ScheduledJob.REMOVE_OLD_CONTENTS, () -> {
+                CompletableFuture.runAsync(() -> {
+                    otherPurge.set(otherNode.run(ScheduledJob.REMOVE_OLD_CONTENTS, () -> 0));
+                    otherPublication.set(otherNode.run(ScheduledJob.APPLY_PUBLICATION_STATUS, () -> 0));
+                }).join();
+                return 0;
+            }));
+        } finally {
+            otherNode.shutdown();
+        }
+        Assertions.assertFalse(otherPurge.get());
+        Assertions.assertTrue(otherPublication.get());
+    }
+
+    @Test
+    public void testLockedByAnOtherNode() {
+        lock(ScheduledJob.PURGE_ITEM_CHANGES, Instant.now().plus(Duration.ofHours(1)));
+        now.set(Instant.now());
+
+        final AtomicBoolean executed = new AtomicBoolean();
+        Assertions.assertFalse(service.run(ScheduledJob.PURGE_ITEM_CHANGES, () -> {
+            executed.set(true);
+            return 0;
+        }));
+        Assertions.assertFalse(executed.get());
+        Assertions.assertTrue(service.getRuns(ScheduledJob.PURGE_ITEM_CHANGES, null, 10).isEmpty());
+
+        for (JobStatus job : service.getJobs()) {
+            Assertions.assertEquals(ScheduledJob.PURGE_ITEM_CHANGES.getLockName().equals(job.getName()) ? "node2" : null,
+                job.getLockedBy());
+        }
+    }
+
+    @Test
+    public void testLockStatusInJvmTimeZone() {
+        lock(ScheduledJob.PURGE_ITEM_CHANGES, Instant.now().plus(Duration.ofMinutes(30)));
+        lock(ScheduledJob.REMOVE_OLD_CONTENTS, Instant.now().minus(Duration.ofMinutes(30)));
+        final TimeZone defaultTimeZone = TimeZone.getDefault();
+        for (String zone : Arrays.asList("Europe/Paris", "America/New_York", "UTC")) {
+            TimeZone.setDefault(TimeZone.getTimeZone(zone));
+            // H2 keeps the time zone read at its first use
+            DateTimeUtils.resetCalendar();
+            try {
+                Assertions.assertEquals("node2", getStatus(ScheduledJob.PURGE_ITEM_CHANGES).getLockedBy(), zone);
+                Assertions.assertNull(getStatus(ScheduledJob.REMOVE_OLD_CONTENTS).getLockedBy(), zone);
+            } finally {
+                TimeZone.setDefault(defaultTimeZone);
+                DateTimeUtils.resetCalendar();
+            }
+        }
+    }
+
+    @Test
+    public void testLockDurationFollowsMeasuredRuns() {
+        final ScheduledJob job = ScheduledJob.REMOVE_OLD_CONTENTS;
+        Assertions.assertEquals(ScheduledJobService.MIN_LOCK_AT_MOST_FOR, service.getLockAtMostFor(job));
+
+        service.run(job, () -> {
+            elapse(Duration.ofSeconds(10));
+            return 1;
+        });
+        Assertions.assertEquals(ScheduledJobService.MIN_LOCK_AT_MOST_FOR, service.getLockAtMostFor(job));
+
+        releaseLocks();
+        service.run(job, () -> {
+            elapse(Duration.ofMinutes(20));
+            return 1;
+        });
+        Assertions.assertEquals(Duration.ofMinutes(40), service.getLockAtMostFor(job));
+
+        // only the last runs are measured
+        for (int i = 0; i < 10; i++) {
+            releaseLocks();
+            service.run(job, () -> {
+                elapse(Duration.ofMinutes(2));
+                return 1;
+            });
+        }
+        Assertions.assertEquals(Duration.ofMinutes(4), service.getLockAtMostFor(job));
+
+        // the lock is kept one minute after the run
+        Assertions.assertNotNull(getStatus(job).getLockedBy());
+        releaseLocks();
+        final JobStatus status = getStatus(job);
+        Assertions.assertEquals(Duration.ofMinutes(4), status.getLockAtMostFor());
+        Assertions.assertEquals(120000, status.getLastRun().getDurationMs());
+        Assertions.assertNull(status.getLockedBy());
+    }
+
+    private JobStatus getStatus(final ScheduledJob job) {
+        return service.getJobs().stream().filter(j -> j.getName().equals(job.getLockName())).findFirst().get();
+    }
+
+    @Test
+    public void testHistoryPagesAndRetention() {
+        for (int i = 0; i < 5; i++) {
+            final int processed = i;
+            releaseLocks();
+            service.run(ScheduledJob.PURGE_ITEM_CHANGES, () -> processed);
+        }
+        final List<JobRun> first = service.getRuns(ScheduledJob.PURGE_ITEM_CHANGES, null, 2);
+        Assertions.assertEquals(4, first.get(0).getProcessedRows());
+        Assertions.assertEquals(3, first.get(1).getProcessedRows());
+        final List<JobRun> second = service.getRuns(ScheduledJob.PURGE_ITEM_CHANGES, first.get(1).getId(), 2);
+        Assertions.assertEquals(2, second.get(0).getProcessedRows());
+        Assertions.assertEquals(1, second.get(1).getProcessedRows());
+
+        elapse(ScheduledJobService.HISTORY_RETENTION.plusDays(1));
+        releaseLocks();
+        service.run(ScheduledJob.PURGE_ITEM_CHANGES, () -> 5);
+        final List<JobRun> runs = service.getRuns(ScheduledJob.PURGE_ITEM_CHANGES, null, 10);
+        Assertions.assertEquals(1, runs.size());
+        Assertions.assertEquals(5, runs.get(0).getProcessedRows());
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service.factories.impl;
+
+import java.util.Properties;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.esupportail.publisher.config.metric.HibernateQueryCounter;
+import org.esupportail.publisher.domain.AbstractClassification;
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.Category;
+import org.esupportail.publisher.domain.ContextKey;
+import org.esupportail.publisher.domain.InternalFeed;
+import org.esupportail.publisher.domain.ItemClassificationOrder;
+import org.esupportail.publisher.domain.LinkedFileItem;
+import org.esupportail.publisher.domain.News;
+import org.esupportail.publisher.domain.Organization;
+import org.esupportail.publisher.domain.Publisher;
+import org.esupportail.publisher.domain.Reader;
+import org.esupportail.publisher.domain.Redactor;
+import org.esupportail.publisher.domain.SubjectKey;
+import org.esupportail.publisher.domain.SubjectKeyExtended;
+import org.esupportail.publisher.domain.Subscriber;
+import org.esupportail.publisher.domain.User;
+import org.esupportail.publisher.domain.enums.ContextType;
+import org.esupportail.publisher.domain.enums.PermissionClass;
+import org.esupportail.publisher.domain.enums.SubjectType;
+import org.esupportail.publisher.domain.enums.SubscribeType;
+import org.esupportail.publisher.repository.ItemRepository;
+import org.esupportail.publisher.repository.ItemRepositoryCustomImpl;
+import org.esupportail.publisher.repository.LinkedFileItemRepository;
+import org.esupportail.publisher.repository.ObjTest;
+import org.esupportail.publisher.repository.SubscriberRepository;
+import org.esupportail.publisher.service.factories.CompositeKeyExtendedDTOFactory;
+import org.esupportail.publisher.service.factories.SubjectDTOSimpleFactory;
+import org.esupportail.publisher.web.rest.dto.ContentDTO;
+import org.esupportail.publisher.web.rest.dto.SubjectDTO;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Loading a content for the edit form must not depend on the number of classifications, targets and files of the item.
+ */
+public class ContentDTOFactoryImplTest {
+
+    private static final int NB_PUBLISHERS = 5;
+
+    private static final int NB_CLASSIFICATIONS_BY_PUBLISHER = 8;
+
+    private static final int NB_TARGETS = 30;
+
+    private static final int NB_FILES = 10;
+
+    private static EntityManagerFactory entityManagerFactory;
+
+    private static EntityManager entityManager;
+
+    private static ContentDTOFactoryImpl contentDTOFactory;
+
+    private static long smallItemId;
+
+    private static long bigItemId;
+
+    @BeforeAll
+    @SuppressWarnings("unchecked")
+    public static void setUp() {
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:contentDTO;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE", "sa", ""));
+        factoryBean.setPackagesToScan("org.esupportail.publisher.domain");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Properties properties = new Properties();
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("javax.persistence.validation.mode", "none");
+        properties.put("hibernate.physical_naming_strategy", "org.hibernate.boot.model.naming.PhysicalNamingStrategyStandardImpl");
+        properties.put("hibernate.session_factory.statement_inspector", HibernateQueryCounter.class.getName());
+        // every statement must reach the database
+        properties.put("hibernate.cache.use_second_level_cache", "false");
+        factoryBean.setJpaProperties(properties);
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+        entityManager = entityManagerFactory.createEntityManager();
+
+        final JpaRepositoryFactory repositoryFactory = new JpaRepositoryFactory(entityManager);
+        contentDTOFactory = new ContentDTOFactoryImpl();
+        ReflectionTestUtils.setField(contentDTOFactory, "itemRepository", repositoryFactory.getRepository(ItemRepository.class,
+            RepositoryFragments.just(new ItemRepositoryCustomImpl(entityManager))));
+        ReflectionTestUtils.setField(contentDTOFactory, "subscriberRepository", repositoryFactory.getRepository(SubscriberRepository.class));
+        ReflectionTestUtils.setField(contentDTOFactory, "linkedFileItemRepository", repositoryFactory.getRepository(LinkedFileItemRepository.class));
+        final SubjectDTOSimpleFactory subjectDTOSimpleFactory = Mockito.mock(SubjectDTOSimpleFactory.class);
+        Mockito.when(subjectDTOSimpleFactory.from(Mockito.any(SubjectKey.class))).thenAnswer(invocation -> {
+            final SubjectKey key = invocation.getArgument(0);
+            return new SubjectDTO(key.getKeyId(), key.getKeyType());
+        });
+        ReflectionTestUtils.setField(contentDTOFactory, "subjectDTOSimpleFactory", subjectDTOSimpleFactory);
+        ReflectionTestUtils.setField(contentDTOFactory, "subjectKeyExtendedDTOFactory", Mockito.mock(CompositeKeyExtendedDTOFactory.class));
+
+        entityManager.getTransaction().begin();
+        final User user = new User("user", "User");
+        entityManager.persist(user);
+        final Organization organization = ObjTest.newOrganization("1");
+        organization.setCreatedBy(user);
+        entityManager.persist(organization);
+        final Redactor redactor = ObjTest.newRedactor("1");
+        entityManager.persist(redactor);
+
+        final News smallItem = newNews("small", organization, redactor, user);
+        final News bigItem = newNews("big", organization, redactor, user);
+        for (int p = 0; p < NB_PUBLISHERS; p++) {
+            // each classification of an other publisher loaded its own publisher graph
+            final Reader reader = ObjTest.newReader(String.valueOf(p));
+            entityManager.persist(reader);
+            final Publisher publisher = new Publisher(organization, reader, redactor, "PUB " + p, PermissionClass.CONTEXT,
+                true, true, true);
+            publisher.setCreatedBy(user);
+            entityManager.persist(publisher);
+            final Category category = ObjTest.newCategory(p + "_cat", publisher);
+            category.setCreatedBy(user);
+            entityManager.persist(category);
+            if (p == 0) {
+                entityManager.persist(new ItemClassificationOrder(smallItem, category, 0));
+            }
+            entityManager.persist(new ItemClassificationOrder(bigItem, category, 0));
+            for (int c = 1; c < NB_CLASSIFICATIONS_BY_PUBLISHER; c++) {
+                final InternalFeed feed = ObjTest.newInternalFeed(p + "_" + c, publisher, category);
+                feed.setCreatedBy(user);
+                entityManager.persist(feed);
+                entityManager.persist(new ItemClassificationOrder(bigItem, feed, c));
+            }
+        }
+        entityManager.persist(new Subscriber(new SubjectKeyExtended(ObjTest.subjectKey1), smallItem.getContextKey(), SubscribeType.FORCED));
+        for (int t = 0; t < NB_TARGETS; t++) {
+            final SubjectType type = t % 3 == 0 ? SubjectType.GROUP : SubjectType.PERSON;
+            entityManager.persist(new Subscriber(new SubjectKeyExtended(new SubjectKey("subject" + t, type)), bigItem.getContextKey(),
+                SubscribeType.FORCED));
+        }
+        entityManager.persist(new Subscriber(ObjTest.subjectKeyFromUserAttr, bigItem.getContextKey(), SubscribeType.FREE));
+        entityManager.persist(new LinkedFileItem("files/small.pdf", "small.pdf", smallItem, false, "application/pdf"));
+        for (int f = 0; f < NB_FILES; f++) {
+            entityManager.persist(new LinkedFileItem("files/" + f + ".png", f + ".png", bigItem, f % 2 == 0, "image/png"));
+        }
+        entityManager.getTransaction().commit();
+        smallItemId = smallItem.getId();
+        bigItemId = bigItem.getId();
+        entityManager.clear();
+    }
+
+    private static News newNews(final String indice, final Organization organization, final Redactor redactor, final User user) {
+        final News news = ObjTest.newNews(indice, organization, redactor);
+        news.setCreatedBy(user);
+        news.setLastModifiedBy(user);
+        entityManager.persist(news);
+        return news;
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    @Test
+    public void testContentLoadedInBoundedStatements() throws Exception {
+        final long smallStatements = countStatements(smallItemId);
+        final long bigStatements = countStatements(bigItemId);
+        Assertions.assertEquals(smallStatements, bigStatements, "statements shouldn't depend on the size of the content");
+        Assertions.assertTrue(bigStatements <= 4, "item, classifications, subscribers and files: " + bigStatements);
+    }
+
+    @Test
+    public void testContentIsComplete() throws Exception {
+        final ContentDTO content = contentDTOFactory.from(bigItemId);
+        entityManager.clear();
+        Assertions.assertEquals(bigItemId, content.getItem().getId());
+        Assertions.assertEquals(NB_PUBLISHERS * NB_CLASSIFICATIONS_BY_PUBLISHER, content.getClassifications().size());
+        final long categories = content.getClassifications().stream().map(ContextKey::getKeyType)
+            .filter(ContextType.CATEGORY::equals).count();
+        Assertions.assertEquals(NB_PUBLISHERS, categories);
+        for (ContextKey key : content.getClassifications()) {
+            final AbstractClassification classification = entityManager.find(AbstractClassification.class, key.getKeyId());
+            Assertions.assertEquals(classification.getContextKey(), key);
+        }
+        Assertions.assertEquals(NB_TARGETS + 1, content.getTargets().size());
+        Assertions.assertEquals(NB_TARGETS, content.getTargets().stream().filter(t -> t.getSubject() != null).count());
+        Assertions.assertEquals(NB_FILES, content.getLinkedFiles().size());
+        entityManager.clear();
+    }
+
+    private static long countStatements(final long itemId) throws Exception {
+        entityManager.clear();
+        final long before = HibernateQueryCounter.count();
+        final ContentDTO content = contentDTOFactory.from(itemId);
+        final long statements = HibernateQueryCounter.count() - before;
+        Assertions.assertNotNull(content);
+        entityManager.clear();
+        return statements;
+    }
+}
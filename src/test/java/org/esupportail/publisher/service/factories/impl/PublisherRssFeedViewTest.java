@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service.factories.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.esupportail.publisher.config.metric.PublisherMetrics;
+import org.esupportail.publisher.domain.AbstractItem;
+import org.esupportail.publisher.domain.Category;
+import org.esupportail.publisher.domain.ItemClassificationOrder;
+import org.esupportail.publisher.domain.News;
+import org.esupportail.publisher.domain.Organization;
+import org.esupportail.publisher.service.EnclosureMetadataService;
+import org.esupportail.publisher.service.bean.FileUploadHelper;
+import org.esupportail.publisher.service.bean.ServiceUrlHelper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Rendering of a 1000 items feed, enclosures metadata should be read once per file.
+ */
+@Slf4j
+public class PublisherRssFeedViewTest {
+
+    private static final int NB_ITEMS = 1000;
+
+    private static final int NB_FILES = 50;
+
+    @TempDir
+    Path uploadDir;
+
+    private PublisherRssFeedView rssFeedView;
+
+    private PublisherAtomFeedView atomFeedView;
+
+    private EnclosureMetadataService enclosureMetadataService;
+
+    private final Map<String, Object> model = new HashMap<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        FileUploadHelper publicFileUploadHelper = new FileUploadHelper(uploadDir.toString() + File.separator, "file:" + uploadDir,
+            "files/", new HashSet<>(), false, 1024, new HashSet<>());
+        enclosureMetadataService = new EnclosureMetadataService();
+        ReflectionTestUtils.setField(enclosureMetadataService, "publicFileUploadHelper", publicFileUploadHelper);
+
+        ServiceUrlHelper urlHelper = new ServiceUrlHelper("", Arrays.asList("localhost"), "http://", "/view/item/");
+        PublisherMetrics publisherMetrics = new PublisherMetrics(new SimpleMeterRegistry());
+        rssFeedView = new PublisherRssFeedView();
+        atomFeedView = new PublisherAtomFeedView();
+        for (Object view : Arrays.asList(rssFeedView, atomFeedView)) {
+            ReflectionTestUtils.setField(view, "urlHelper", urlHelper);
+            ReflectionTestUtils.setField(view, "enclosureMetadataService", enclosureMetadataService);
+            ReflectionTestUtils.setField(view, "publisherMetrics", publisherMetrics);
+        }
+
+        for (int i = 0; i < NB_FILES; i++) {
+            Files.write(uploadDir.resolve("image" + i + ".png"), new byte[i + 1]);
+        }
+        Category category = new Category();
+        category.setName("Category");
+        List<ItemClassificationOrder> items = new ArrayList<>();
+        for (int i = 0; i < NB_ITEMS; i++) {
+            News news = new News();
+            news.setId((long) i);
+            news.setTitle("News " + i);
+            news.setSummary("Summary " + i);
+            news.setEnclosure(i % 7 == 0 ? "https://ext.fr/image.jpg" : "files/image" + (i % NB_FILES) + ".png");
+            items.add(new ItemClassificationOrder(news, category, i));
+        }
+        Organization organization = new Organization();
+        organization.setDisplayName("Organization");
+        model.put(PublisherRssFeedView.ORG_PARAM, organization);
+        model.put(PublisherRssFeedView.ITEMS_PARAM, items);
+    }
+
+    @Test
+    public void testRenderWithoutFileSystemAccess() throws Exception {
+        final String first = render(rssFeedView);
+        Assertions.assertTrue(first.contains("<enclosure url=\"http://localhost/files/image1.png\" length=\"2\" type=\"image/png\" />"), first);
+        Assertions.assertTrue(first.contains("<enclosure url=\"https://ext.fr/image.jpg\" type=\"image/jpg\" />"));
+        Assertions.assertEquals(NB_FILES, enclosureMetadataService.size());
+
+        // metadata are kept in memory, removing files doesn't change the rendering
+        for (int i = 0; i < NB_FILES; i++) {
+            Files.delete(uploadDir.resolve("image" + i + ".png"));
+        }
+        Assertions.assertEquals(withoutBuildDate(first), withoutBuildDate(render(rssFeedView)));
+        Assertions.assertTrue(render(atomFeedView).contains("length=\"2\""));
+
+        enclosureMetadataService.evict("files/image1.png");
+        Assertions.assertFalse(render(rssFeedView).contains("length=\"2\""));
+    }
+
+    @Test
+    public void testRenderOfAllItems() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            final String rss = render(rssFeedView);
+            Assertions.assertEquals(NB_ITEMS, count(rss, "<item>"));
+            Assertions.assertEquals(NB_ITEMS, count(rss, "<enclosure "));
+            Assertions.assertTrue(rss.contains("<title>News " + (NB_ITEMS - 1) + "</title>"));
+            final String atom = render(atomFeedView);
+            Assertions.assertEquals(NB_ITEMS, count(atom, "<entry>"));
+            Assertions.assertEquals(NB_ITEMS, count(atom, "rel=\"enclosure\""));
+        }
+        // each file was read once for all renderings
+        Assertions.assertEquals(NB_FILES, enclosureMetadataService.size());
+    }
+
+    /**
+     * Opt-in measure of the rendering cost, run with -Dbenchmark=true: as enclosures metadata are read once, the
+     * cost of a feed should grow linearly with its number of items.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkRender() throws Exception {
+        final int nbSmallItems = NB_ITEMS / 10;
+        for (Object view : Arrays.asList(rssFeedView, atomFeedView)) {
+            final long small = measure(view, nbSmallItems);
+            final long all = measure(view, NB_ITEMS);
+            log.info("Rendering of {}: {} items in {} µs, {} items in {} µs", view.getClass().getSimpleName(),
+                nbSmallItems, small, NB_ITEMS, all);
+            // linear cost with a large margin for the noise of the measure
+            Assertions.assertTrue(all < 3 * small * NB_ITEMS / nbSmallItems,
+                view.getClass().getSimpleName() + " doesn't scale with the number of items");
+        }
+        Assertions.assertEquals(NB_FILES, enclosureMetadataService.size());
+    }
+
+    /**
+     * @return the mean duration of the rendering of the first items, in µs.
+     */
+    private long measure(final Object view, final int nbItems) throws Exception {
+        @SuppressWarnings("unchecked")
+        final List<ItemClassificationOrder> items = (List<ItemClassificationOrder>) model.get(PublisherRssFeedView.ITEMS_PARAM);
+        model.put(PublisherRssFeedView.ITEMS_PARAM, items.subList(0, nbItems));
+        try {
+            // warm up
+            for (int i = 0; i < 5; i++) {
+                render(view);
+            }
+            final int nbRenders = 20;
+            final long start = System.nanoTime();
+            for (int i = 0; i < nbRenders; i++) {
+                render(view);
+            }
+            return (System.nanoTime() - start) / nbRenders / 1000;
+        } finally {
+            model.put(PublisherRssFeedView.ITEMS_PARAM, items);
+        }
+    }
+
+    private static int count(final String content, final String part) {
+        int nb = 0;
+        for (int i = content.indexOf(part); i >= 0; i = content.indexOf(part, i + part.length())) {
+            nb++;
+        }
+        return nb;
+    }
+
+    /** The channel date is the date of the rendering. */
+    private static String withoutBuildDate(final String rss) {
+        return rss.replaceFirst("<pubDate>[^<]*</pubDate>", "");
+    }
+
+    private String render(final Object view) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/feed/rss/1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        if (view instanceof PublisherRssFeedView) {
+            ((PublisherRssFeedView) view).render(model, request, response);
+        } else {
+            ((PublisherAtomFeedView) view).render(model, request, response);
+        }
+        return response.getContentAsString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.service.factories.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.esupportail.publisher.domain.ContextKey;
+import org.esupportail.publisher.domain.IContext;
+import org.esupportail.publisher.domain.SubjectKey;
+import org.esupportail.publisher.domain.enums.ContextType;
+import org.esupportail.publisher.domain.enums.PermissionType;
+import org.esupportail.publisher.domain.enums.SubjectType;
+import org.esupportail.publisher.security.AuthoritiesConstants;
+import org.esupportail.publisher.security.CustomUserDetails;
+import org.esupportail.publisher.security.PermissionServiceImpl;
+import org.esupportail.publisher.security.UserContextLoaderService;
+import org.esupportail.publisher.service.bean.OwnerContextKey;
+import org.esupportail.publisher.service.bean.UserContextTree;
+import org.esupportail.publisher.service.factories.CompositeKeyDTOFactory;
+import org.esupportail.publisher.web.rest.dto.PermOnCtxDTO;
+import org.esupportail.publisher.web.rest.dto.SubjectKeyDTO;
+import org.esupportail.publisher.web.rest.dto.TreeJS;
+import org.esupportail.publisher.web.rest.dto.UserDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Flags of nodes computed by the permission service on a user tree:
+ * the user looks over the organization and a publisher, manages a category and contributes in another one.
+ */
+public class TreeJSFactoryImplTest {
+
+    private static final ContextKey ORGANIZATION = new ContextKey(1L, ContextType.ORGANIZATION);
+    private static final ContextKey PUBLISHER = new ContextKey(2L, ContextType.PUBLISHER);
+    private static final ContextKey EMPTY_PUBLISHER = new ContextKey(3L, ContextType.PUBLISHER);
+    private static final ContextKey MANAGED_CATEGORY = new ContextKey(4L, ContextType.CATEGORY);
+    private static final ContextKey CONTRIBUTED_CATEGORY = new ContextKey(5L, ContextType.CATEGORY);
+    private static final ContextKey UNKNOWN_CATEGORY = new ContextKey(6L, ContextType.CATEGORY);
+    private static final ContextKey MANAGED_ITEM = new ContextKey(10L, ContextType.ITEM);
+    private static final ContextKey OWNED_ITEM = new ContextKey(11L, ContextType.ITEM);
+    private static final ContextKey OTHER_ITEM = new ContextKey(12L, ContextType.ITEM);
+
+    private final UserDTO user = new UserDTO("F08001ut", "user", true, false);
+
+    private TreeJSFactoryImpl factory;
+
+    @BeforeEach
+    public void setup() {
+        @SuppressWarnings("unchecked")
+        final CompositeKeyDTOFactory<SubjectKeyDTO, SubjectKey, String, SubjectType> subjectKeyConverter = mock(CompositeKeyDTOFactory.class);
+        when(subjectKeyConverter.convertToDTOKey(any(SubjectKey.class))).thenAnswer(invocation -> {
+            final SubjectKey key = invocation.getArgument(0);
+            return new SubjectKeyDTO(key.getKeyId(), key.getKeyType());
+        });
+        final UserContextTree tree = new UserContextTree();
+        ReflectionTestUtils.setField(tree, "subjectKeyConverter", subjectKeyConverter);
+        tree.processingLoading();
+        tree.setSuperAdmin(false);
+        tree.addCtx(ORGANIZATION, false, null, null, null, PermissionType.LOOKOVER);
+        tree.addCtx(PUBLISHER, false, ORGANIZATION, null, null, PermissionType.LOOKOVER);
+        tree.addCtx(EMPTY_PUBLISHER, false, ORGANIZATION, null, null, null);
+        tree.addCtx(MANAGED_CATEGORY, true, PUBLISHER, null, perm(PermissionType.MANAGER));
+        tree.addCtx(CONTRIBUTED_CATEGORY, true, PUBLISHER, null, perm(PermissionType.CONTRIBUTOR));
+        final SubjectKey other = new SubjectKey("other", SubjectType.PERSON);
+        tree.addCtx(new OwnerContextKey(MANAGED_ITEM, other), false, MANAGED_CATEGORY, null, null);
+        tree.addCtx(new OwnerContextKey(OWNED_ITEM, new SubjectKey(user.getLogin(), SubjectType.PERSON)), false,
+            CONTRIBUTED_CATEGORY, null, null);
+        tree.addCtx(new OwnerContextKey(OTHER_ITEM, other), false, CONTRIBUTED_CATEGORY, null, null);
+        tree.notifyEndLoading();
+
+        final PermissionServiceImpl permissionService = new PermissionServiceImpl();
+        permissionService.userSessionTree = tree;
+        permissionService.userSessionTreeLoader = mock(UserContextLoaderService.class);
+        factory = new TreeJSFactoryImpl();
+        ReflectionTestUtils.setField(factory, "permissionService", permissionService);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static PermOnCtxDTO perm(final PermissionType role) {
+        final PermOnCtxDTO perm = mock(PermOnCtxDTO.class);
+        when(perm.getRole()).thenReturn(role);
+        return perm;
+    }
+
+    private void authenticate(final String authority) {
+        final CustomUserDetails userDetails = new CustomUserDetails(user, null,
+            Lists.newArrayList(new SimpleGrantedAuthority(authority)));
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(userDetails, "password",
+            Lists.newArrayList(userDetails.getAuthorities())));
+    }
+
+    private List<TreeJS> nodes(final ContextKey... ctxs) {
+        final List<IContext> contexts = Lists.newArrayList();
+        for (ContextKey ctx : ctxs) {
+            contexts.add(context(ctx));
+        }
+        return factory.asDTOList(contexts, PermissionType.LOOKOVER);
+    }
+
+    private static void assertFlags(final TreeJS node, final boolean hasChilds, final boolean canEdit) {
+        assertEquals(hasChilds, node.getChildren(), node.getId() + " childs");
+        assertEquals(canEdit, node.getCanEdit(), node.getId() + " edition");
+    }
+
+    @Test
+    public void testFlagsOfUserTree() {
+        authenticate(AuthoritiesConstants.USER);
+        final List<TreeJS> nodes = nodes(ORGANIZATION, PUBLISHER, EMPTY_PUBLISHER, MANAGED_CATEGORY,
+            CONTRIBUTED_CATEGORY, UNKNOWN_CATEGORY);
+
+        assertEquals(6, nodes.size());
+        assertEquals("1:ORGANIZATION", nodes.get(0).getId());
+        assertEquals("1:ORGANIZATION", nodes.get(0).getLi_attr().getBase());
+        assertEquals("ctx 1", nodes.get(0).getText());
+        // only publishers where the user has a role are childs
+        assertFlags(nodes.get(0), true, false);
+        assertFlags(nodes.get(1), true, false);
+        assertFlags(nodes.get(2), false, false);
+        // items get the role of their category
+        assertFlags(nodes.get(3), true, true);
+        assertFlags(nodes.get(4), true, false);
+        assertFlags(nodes.get(5), false, false);
+    }
+
+    @Test
+    public void testItemNodes() {
+        authenticate(AuthoritiesConstants.USER);
+        final List<TreeJS> nodes = nodes(MANAGED_ITEM, OWNED_ITEM, OTHER_ITEM);
+
+        for (TreeJS node : nodes) {
+            assertEquals(true, node.getLi_attr().getIsLeaf());
+        }
+        assertFlags(nodes.get(0), false, true);
+        assertFlags(nodes.get(1), false, true);
+        assertFlags(nodes.get(2), false, false);
+        assertNull(new TreeJS().getCanEdit());
+    }
+
+    @Test
+    public void testFlagsOfSuperAdmin() {
+        authenticate(AuthoritiesConstants.ADMIN);
+        final List<TreeJS> nodes = nodes(EMPTY_PUBLISHER, UNKNOWN_CATEGORY, OTHER_ITEM);
+
+        assertFlags(nodes.get(0), true, true);
+        assertFlags(nodes.get(1), true, true);
+        assertFlags(nodes.get(2), false, true);
+    }
+
+    @Test
+    public void testWithoutRole() {
+        authenticate(AuthoritiesConstants.ANONYMOUS);
+        final TreeJS node = factory.from(context(PUBLISHER), PermissionType.LOOKOVER);
+
+        assertFlags(node, false, false);
+    }
+
+    private static IContext context(final ContextKey ctx) {
+        final IContext context = mock(IContext.class);
+        when(context.getContextKey()).thenReturn(ctx);
+        when(context.getDisplayName()).thenReturn("ctx " + ctx.getKeyId());
+        return context;
+    }
+}
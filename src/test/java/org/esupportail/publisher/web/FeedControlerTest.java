@@ -57,7 +57,7 @@ import org.esupportail.publisher.repository.OrganizationRepository;
 import org.esupportail.publisher.repository.PublisherRepository;
 import org.esupportail.publisher.repository.ReaderRepository;
 import org.esupportail.publisher.repository.RedactorRepository;
-import org.esupportail.publisher.service.bean.FileUploadHelper;
+import org.esupportail.publisher.service.EnclosureMetadataService;
 import org.esupportail.publisher.service.bean.ServiceUrlHelper;
 import org.esupportail.publisher.service.factories.impl.PublisherAtomFeedView;
 import org.esupportail.publisher.service.factories.impl.PublisherRssFeedView;
@@ -66,7 +66,6 @@ import com.rometools.rome.io.impl.DateParser;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
@@ -105,8 +104,7 @@ public class FeedControlerTest {
     @Inject
     private ItemClassificationOrderRepository itemClassificationOrderRepository;
     @Inject
-    @Qualifier("publicFileUploadHelper")
-    private FileUploadHelper publicFileUploadHelper;
+    private EnclosureMetadataService enclosureMetadataService;
 
     private MockMvc mockMvc;
 
@@ -129,9 +127,9 @@ public class FeedControlerTest {
         ReflectionTestUtils.setField(feedController, "classificationRepository", classificationRepository);
         ReflectionTestUtils.setField(feedController, "itemClassificationOrderRepository", itemClassificationOrderRepository);
         ReflectionTestUtils.setField(publisherRssFeedView, "urlHelper", urlHelper);
-        ReflectionTestUtils.setField(publisherRssFeedView, "publicFileUploadHelper", publicFileUploadHelper);
+        ReflectionTestUtils.setField(publisherRssFeedView, "enclosureMetadataService", enclosureMetadataService);
         ReflectionTestUtils.setField(publisherAtomFeedView, "urlHelper", urlHelper);
-        ReflectionTestUtils.setField(publisherAtomFeedView, "publicFileUploadHelper", publicFileUploadHelper);
+        ReflectionTestUtils.setField(publisherAtomFeedView, "enclosureMetadataService", enclosureMetadataService);
         this.mockMvc = MockMvcBuilders.standaloneSetup(feedController, publisherRssFeedView).build();
 
         Organization organization = organizationRepository.saveAndFlush(ObjTest.newOrganization("1"));
@@ -38,6 +38,7 @@ import javax.annotation.PostConstruct;
 
 import org.esupportail.publisher.Application;
 import org.esupportail.publisher.config.Constants;
+import org.esupportail.publisher.config.metric.PublisherMetrics;
 import org.esupportail.publisher.domain.AbstractItem;
 import org.esupportail.publisher.domain.Attachment;
 import org.esupportail.publisher.domain.Category;
@@ -134,6 +135,8 @@ public class PublishControllerTest {
     private HighlightedClassificationService highlightedClassificationService;
     @Autowired
     private LinkedFileItemRepository linkedFileItemRepository;
+    @Autowired
+    private PublisherMetrics publisherMetrics;
 
     private MockMvc restPublishControllerMockMvc;
 
@@ -157,6 +160,7 @@ public class PublishControllerTest {
         ReflectionTestUtils.setField(publishController, "urlHelper", urlHelper);
         ReflectionTestUtils.setField(publishController, "highlightedClassificationService", highlightedClassificationService);
         ReflectionTestUtils.setField(publishController, "linkedFileItemRepository", linkedFileItemRepository);
+        ReflectionTestUtils.setField(publishController, "publisherMetrics", publisherMetrics);
 
 
         this.restPublishControllerMockMvc = MockMvcBuilders.standaloneSetup(publishController).build();
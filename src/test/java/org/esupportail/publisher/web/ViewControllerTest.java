@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.web;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ViewControllerTest {
+
+    @Test
+    public void testReplaceBodyUrl() {
+        final String body = "<p><img src=\"files/1/image.png\"/><a href=\"view/file/1/doc.pdf\">doc</a>"
+            + "<img src=\"https://ext.fr/files/a.png\"/><a href=\"view/file/2/other.pdf\">other</a></p>";
+
+        Assertions.assertEquals("<p><img src=\"/ctx$1/files/1/image.png\"/><a href=\"/ctx$1/view/file/1/doc.pdf\">doc</a>"
+                + "<img src=\"https://ext.fr/files/a.png\"/><a href=\"/ctx$1/view/file/2/other.pdf\">other</a></p>",
+            ViewController.replaceBodyUrl(body, "/ctx$1/"));
+        Assertions.assertNull(ViewController.replaceBodyUrl(null, "/"));
+        Assertions.assertEquals(" ", ViewController.replaceBodyUrl(" ", "/"));
+    }
+
+    @Test
+    public void testReplaceRelativeUrl() {
+        Assertions.assertEquals("/ctx/files/1/image.png", ViewController.replaceRelativeUrl("files/1/image.png", "/ctx/"));
+        Assertions.assertEquals("https://ext.fr/a.png", ViewController.replaceRelativeUrl("https://ext.fr/a.png", "/ctx/"));
+        Assertions.assertEquals("http://ext.fr/a.png", ViewController.replaceRelativeUrl("http://ext.fr/a.png", "/ctx/"));
+        Assertions.assertNull(ViewController.replaceRelativeUrl(null, "/ctx/"));
+    }
+}
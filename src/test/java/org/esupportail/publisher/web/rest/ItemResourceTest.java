@@ -57,6 +57,7 @@ import org.esupportail.publisher.security.AuthoritiesConstants;
 import org.esupportail.publisher.security.CustomUserDetails;
 import org.esupportail.publisher.security.IPermissionService;
 import org.esupportail.publisher.service.ContentService;
+import org.esupportail.publisher.service.ItemChangeLogService;
 import org.esupportail.publisher.service.FileService;
 import org.esupportail.publisher.service.factories.UserDTOFactory;
 import org.esupportail.publisher.web.rest.dto.UserDTO;
@@ -128,6 +129,8 @@ public class ItemResourceTest {
     @Inject
     private ContentService contentService;
     @Inject
+    private ItemChangeLogService itemChangeLogService;
+    @Inject
     private UserRepository userRepo;
     @Inject
     private UserDTOFactory userDTOFactory;
@@ -154,6 +157,7 @@ public class ItemResourceTest {
         ReflectionTestUtils.setField(itemResource, "fileService", fileservice);
         ReflectionTestUtils.setField(organizationResource, "organizationRepository", organizationRepository);
         ReflectionTestUtils.setField(itemResource, "contentService", contentService);
+        ReflectionTestUtils.setField(itemResource, "itemChangeLogService", itemChangeLogService);
         ReflectionTestUtils.setField(redactorResource, "redactorRepository", redactorRepository);
         this.restNewsMockMvc = MockMvcBuilders.standaloneSetup(itemResource, organizationResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2014 Esup Portail http://www.esup-portail.org
+ * @Author (C) 2012 Julien Gribonvald <julien.gribonvald@recia.fr>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.esupportail.publisher.web.rest.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.esupportail.publisher.web.rest.vo.Actualite;
+import org.esupportail.publisher.web.rest.vo.ItemVO;
+import org.esupportail.publisher.web.rest.vo.LinkedFileVO;
+import org.esupportail.publisher.web.rest.vo.RubriqueVO;
+import org.esupportail.publisher.web.rest.vo.Visibility;
+import org.esupportail.publisher.web.rest.vo.VisibilityGroup;
+import org.esupportail.publisher.web.rest.vo.VisibilityRegular;
+import org.esupportail.publisher.web.rest.vo.ns.ArticleVO;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+/**
+ * The streamed document must be byte to byte the same as the one written by the message converters from the whole object graph.
+ */
+public class StreamingActualiteWriterTest {
+
+    private final ObjectMapper objectMapper = new Jackson2ObjectMapperBuilder().build();
+
+    private final StreamingActualiteWriter writer = new StreamingActualiteWriter(objectMapper);
+
+    @Test
+    public void testXmlSameAsJaxbConverter() throws Exception {
+        final Actualite actualite = buildActualite(20);
+        assertThat(streamXml(actualite), equalTo(convert(new Jaxb2RootElementHttpMessageConverter(), actualite, MediaType.APPLICATION_XML)));
+    }
+
+    @Test
+    public void testXmlEmptySameAsJaxbConverter() throws Exception {
+        final Actualite actualite = buildActualite(0);
+        actualite.setRubriques(new ArrayList<>());
+        assertThat(streamXml(actualite), equalTo(convert(new Jaxb2RootElementHttpMessageConverter(), actualite, MediaType.APPLICATION_XML)));
+    }
+
+    @Test
+    public void testJsonSameAsJacksonConverter() throws Exception {
+        final Actualite actualite = buildActualite(20);
+        assertThat(streamJson(actualite),
+            equalTo(convert(new MappingJackson2HttpMessageConverter(objectMapper), actualite, MediaType.APPLICATION_JSON)));
+    }
+
+    @Test
+    public void testJsonEmptySameAsJacksonConverter() throws Exception {
+        final Actualite actualite = buildActualite(0);
+        actualite.setRubriques(new ArrayList<>());
+        assertThat(streamJson(actualite),
+            equalTo(convert(new MappingJackson2HttpMessageConverter(objectMapper), actualite, MediaType.APPLICATION_JSON)));
+    }
+
+    @Test
+    public void testWrittenItemsCount() throws Exception {
+        final Actualite actualite = buildActualite(7);
+        assertThat(writer.writeXml(new ByteArrayOutputStream(), actualite.getRubriques(), actualite.getItems().iterator()), equalTo(7));
+        assertThat(writer.writeJson(new ByteArrayOutputStream(), actualite.getRubriques(), actualite.getItems().iterator()), equalTo(7));
+    }
+
+    @Test
+    public void testRemovedItems() throws Exception {
+        final Actualite actualite = buildActualite(0);
+        actualite.setRubriques(new ArrayList<>());
+        final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        writer.writeXml(xml, actualite.getRubriques(), actualite.getItems().iterator(), Arrays.asList(12L, 15L));
+        assertThat(xml.toString(StandardCharsets.UTF_8), endsWith("<rubriques/><items/><removed><uuid>12</uuid><uuid>15</uuid></removed></actualites>"));
+        final ByteArrayOutputStream json = new ByteArrayOutputStream();
+        writer.writeJson(json, actualite.getRubriques(), actualite.getItems().iterator(), Arrays.asList(12L, 15L));
+        assertThat(json.toString(StandardCharsets.UTF_8), equalTo("{\"rubriques\":[],\"items\":[],\"removed\":[\"12\",\"15\"]}"));
+    }
+
+    private String streamXml(final Actualite actualite) throws Exception {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        writer.writeXml(os, actualite.getRubriques(), actualite.getItems().iterator());
+        return os.toString(StandardCharsets.UTF_8);
+    }
+
+    private String streamJson(final Actualite actualite) throws Exception {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        writer.writeJson(os, actualite.getRubriques(), actualite.getItems().iterator());
+        return os.toString(StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String convert(final Object converter, final Actualite actualite, final MediaType mediaType) throws Exception {
+        final MockHttpOutputMessage message = new MockHttpOutputMessage();
+        ((HttpMessageConverter<Object>) converter).write(actualite, mediaType, message);
+        return message.getBodyAsString(StandardCharsets.UTF_8);
+    }
+
+    private static Actualite buildActualite(final int nbItems) {
+        final Actualite actualite = new Actualite();
+        actualite.setRubriques(Arrays.asList(
+            new RubriqueVO("1", "Highlighted <&> \"news\"", "#ff0000", null, true),
+            new RubriqueVO("2", "Vie scolaire é à ç", null, "http://localhost/media/2.png", false)));
+        final List<ItemVO> items = new ArrayList<>();
+        for (int i = 0; i < nbItems; i++) {
+            final ArticleVO article = new ArticleVO();
+            article.setTitle("Title " + i + " <b>bold</b> & 'quoted' ü");
+            article.setLink("http://localhost/view/item/" + i + "?a=1&b=2");
+            article.setEnclosure(i % 3 == 0 ? null : "http://localhost/files/" + i + ".jpg");
+            article.setDescription("<p>Description " + i + " > with\nnew line\ttab</p>");
+            article.setPubDate(Instant.parse("2020-02-09T10:10:12.000Z").plusSeconds(i * 3600L));
+            article.setGuid(i);
+            article.setCategories(Arrays.asList("Cat 1", "Cat 2"));
+            article.setCreator("Creator " + i);
+            article.setDate(Instant.parse("2020-02-09T10:10:12.000Z").plusSeconds(i * 60L));
+            article.setFiles(i % 2 == 0 ? Collections.emptyList()
+                : Collections.singletonList(new LinkedFileVO("http://localhost/files/" + i + ".pdf", "file " + i + ".pdf", "application/pdf")));
+            final Visibility visibility = new Visibility();
+            visibility.getAllowed().add(new VisibilityGroup("esco:Etablissements:" + i));
+            visibility.getObliged().add(new VisibilityRegular("uid", "user" + i));
+            items.add(new ItemVO(article, i % 2 == 0 ? "NEWS" : "MEDIA", "Creator " + i, "2020-02-09T10:10:12",
+                "2020-02-09T10:10:12", i % 4 == 0 ? null : "2020-02-10T10:10:12", String.valueOf(100 + i),
+                Arrays.asList(1L, 2L), visibility));
+        }
+        actualite.setItems(items);
+        return actualite;
+    }
+}